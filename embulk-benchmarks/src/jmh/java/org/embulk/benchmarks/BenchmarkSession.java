@@ -0,0 +1,46 @@
+package org.embulk.benchmarks;
+
+import java.util.concurrent.ExecutionException;
+import org.embulk.EmbulkEmbed;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.ExecSession;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Embulk runtime shared by benchmarks. Plugins which use {@link Exec} need to run in {@link #run(ExecAction)}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkSession {
+    private EmbulkEmbed embed;
+    private ExecSession session;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        embed = new EmbulkEmbed.Bootstrap().initializeCloseable();
+        session = ExecSession.builder(embed.getInjector()).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        session.cleanup();
+        embed.destroy();
+    }
+
+    public BufferAllocator getBufferAllocator() {
+        return session.getBufferAllocator();
+    }
+
+    public <T> T run(ExecAction<T> action) {
+        try {
+            return Exec.doWith(session, action);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.embulk.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DecoderPlugin;
+import org.embulk.spi.EncoderPlugin;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.util.ListFileInput;
+import org.embulk.standards.Bzip2FileDecoderPlugin;
+import org.embulk.standards.Bzip2FileEncoderPlugin;
+import org.embulk.standards.GzipFileDecoderPlugin;
+import org.embulk.standards.GzipFileEncoderPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compresses and decompresses about 4MB of CSV text with the gzip and bzip2 encoder and decoder plugins.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CodecBenchmark {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    @Param({"gzip", "bzip2"})
+    public String codec;
+
+    private EncoderPlugin encoder;
+    private DecoderPlugin decoder;
+    private TaskSource encoderTask;
+    private TaskSource decoderTask;
+    private List<byte[]> plain;
+    private List<byte[]> compressed;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkSession session) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 4 * 1024 * 1024; i++) {
+            sb.append(i).append(",embulk-").append(i % 1000).append(",2015-01-27 19:23:49,").append(i * 0.25).append('\n');
+        }
+        plain = split(sb.toString().getBytes(UTF_8));
+
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    if (codec.equals("gzip")) {
+                        encoder = new GzipFileEncoderPlugin();
+                        decoder = new GzipFileDecoderPlugin();
+                        encoderTask = Exec.newConfigSource().loadConfig(GzipFileEncoderPlugin.PluginTask.class).dump();
+                        decoderTask = Exec.newConfigSource().loadConfig(GzipFileDecoderPlugin.PluginTask.class).dump();
+                    } else {
+                        encoder = new Bzip2FileEncoderPlugin();
+                        decoder = new Bzip2FileDecoderPlugin();
+                        encoderTask = Exec.newConfigSource().loadConfig(Bzip2FileEncoderPlugin.PluginTask.class).dump();
+                        decoderTask = Exec.newConfigSource().loadConfig(Bzip2FileDecoderPlugin.PluginTask.class).dump();
+                    }
+
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    encodeTo(new FileOutput() {
+                            public void nextFile() {}
+
+                            public void add(Buffer buffer) {
+                                bytes.write(buffer.array(), buffer.offset(), buffer.limit());
+                                buffer.release();
+                            }
+
+                            public void finish() {}
+
+                            public void close() {}
+                        });
+                    compressed = split(bytes.toByteArray());
+                    return null;
+                }
+            });
+    }
+
+    private static List<byte[]> split(byte[] bytes) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += BUFFER_SIZE) {
+            chunks.add(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + BUFFER_SIZE)));
+        }
+        return chunks;
+    }
+
+    private void encodeTo(FileOutput output) {
+        FileOutput encoded = encoder.open(encoderTask, output);
+        encoded.nextFile();
+        for (byte[] chunk : plain) {
+            encoded.add(Buffer.wrap(chunk));
+        }
+        encoded.finish();
+        encoded.close();
+    }
+
+    @Benchmark
+    public void encode(BenchmarkSession session, final Blackhole blackhole) {
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    encodeTo(new Sinks.DiscardFileOutput(blackhole));
+                    return null;
+                }
+            });
+    }
+
+    @Benchmark
+    public void decode(BenchmarkSession session, final Blackhole blackhole) {
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    List<Buffer> buffers = new ArrayList<>();
+                    for (byte[] chunk : compressed) {
+                        buffers.add(Buffer.wrap(chunk));
+                    }
+                    FileInput decoded = decoder.open(decoderTask, new ListFileInput(ImmutableList.of(buffers)));
+                    while (decoded.nextFile()) {
+                        while (true) {
+                            Buffer buffer = decoded.poll();
+                            if (buffer == null) {
+                                break;
+                            }
+                            blackhole.consume(buffer.limit());
+                            buffer.release();
+                        }
+                    }
+                    decoded.close();
+                    return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,93 @@
+package org.embulk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.type.Types;
+import org.embulk.standards.CsvFormatterPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formats {@link #RECORDS} records into CSV with CsvFormatterPlugin.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvFormatterBenchmark {
+    static final int RECORDS = 10000;
+
+    private Schema schema;
+    private TaskSource taskSource;
+    private List<PageCopy> pages;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkSession session) {
+        schema = Schema.builder()
+            .add("id", Types.LONG)
+            .add("name", Types.STRING)
+            .add("price", Types.DOUBLE)
+            .add("flag", Types.BOOLEAN)
+            .add("time", Types.TIMESTAMP)
+            .build();
+
+        final List<PageCopy> built = new ArrayList<>();
+        try (PageBuilder pageBuilder = new PageBuilder(session.getBufferAllocator(), schema, new PageOutput() {
+                public void add(Page page) {
+                    built.add(new PageCopy(page));
+                }
+
+                public void finish() {}
+
+                public void close() {}
+            })) {
+            for (int i = 0; i < RECORDS; i++) {
+                pageBuilder.setLong(0, i);
+                pageBuilder.setString(1, i % 3 == 0 ? "quoted, with \"escape\"" : "embulk-" + i);
+                pageBuilder.setDouble(2, i * 0.25);
+                pageBuilder.setBoolean(3, (i & 1) == 0);
+                pageBuilder.setTimestamp(4, Timestamp.ofEpochSecond(1500000000L + i));
+                pageBuilder.addRecord();
+            }
+            pageBuilder.finish();
+        }
+        pages = built;
+
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    taskSource = Exec.newConfigSource().loadConfig(CsvFormatterPlugin.PluginTask.class).dump();
+                    return null;
+                }
+            });
+    }
+
+    @Benchmark
+    public void format(BenchmarkSession session, final Blackhole blackhole) {
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    PageOutput output = new CsvFormatterPlugin().open(taskSource, schema, new Sinks.DiscardFileOutput(blackhole));
+                    for (PageCopy page : pages) {
+                        output.add(page.newPage());
+                    }
+                    output.finish();
+                    output.close();
+                    return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,141 @@
+package org.embulk.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.util.LineDecoder;
+import org.embulk.spi.util.ListFileInput;
+import org.embulk.standards.CsvByteTokenizer;
+import org.embulk.standards.CsvParserPlugin;
+import org.embulk.standards.CsvTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses a CSV file of {@link #RECORDS} records with CsvTokenizer and CsvParserPlugin.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvParserBenchmark {
+    static final int RECORDS = 10000;
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    @Param({"false", "true"})
+    public boolean byteTokenizer;
+
+    private List<byte[]> chunks;
+    private CsvParserPlugin.PluginTask task;
+    private TaskSource taskSource;
+    private Schema schema;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkSession session) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("id,account,time,purchase,comment,price\n");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append(i).append(',')
+                .append(32864 + i * 7).append(',')
+                .append("2015-01-27 19:23:").append(String.format("%02d", i % 60)).append(',')
+                .append("20150127").append(',')
+                .append(i % 3 == 0 ? "\"quoted, with \"\"escape\"\"\"" : "embulk").append(',')
+                .append(i * 0.25).append('\n');
+        }
+        chunks = split(sb.toString().getBytes(UTF_8));
+
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    ConfigSource config = Exec.newConfigSource()
+                        .set("type", "csv")
+                        .set("skip_header_lines", 1)
+                        .set("byte_tokenizer", byteTokenizer)
+                        .set("columns", ImmutableList.of(
+                                    column("id", "long"),
+                                    column("account", "long"),
+                                    ImmutableMap.of("name", "time", "type", "timestamp", "format", "%Y-%m-%d %H:%M:%S"),
+                                    ImmutableMap.of("name", "purchase", "type", "timestamp", "format", "%Y%m%d"),
+                                    column("comment", "string"),
+                                    column("price", "double")));
+                    task = config.loadConfig(CsvParserPlugin.PluginTask.class);
+                    taskSource = task.dump();
+                    schema = task.getSchemaConfig().toSchema();
+                    return null;
+                }
+            });
+    }
+
+    private static ImmutableMap<String, Object> column(String name, String type) {
+        return ImmutableMap.<String, Object>of("name", name, "type", type);
+    }
+
+    private static List<byte[]> split(byte[] bytes) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += BUFFER_SIZE) {
+            chunks.add(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + BUFFER_SIZE)));
+        }
+        return chunks;
+    }
+
+    private FileInput newFileInput() {
+        List<Buffer> buffers = new ArrayList<>();
+        for (byte[] chunk : chunks) {
+            buffers.add(Buffer.wrap(chunk));
+        }
+        return new ListFileInput(ImmutableList.of(buffers));
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        if (byteTokenizer) {
+            CsvByteTokenizer tokenizer = new CsvByteTokenizer(newFileInput(), task);
+            tokenizer.nextFile();
+            tokenizer.skipHeaderLine();
+            while (tokenizer.nextRecord()) {
+                for (int i = 0; i < schema.getColumnCount(); i++) {
+                    blackhole.consume(tokenizer.nextValue() ? tokenizer.getValueLength() : -1);
+                }
+            }
+            tokenizer.close();
+        } else {
+            CsvTokenizer tokenizer = new CsvTokenizer(new LineDecoder(newFileInput(), task), task);
+            tokenizer.nextFile();
+            tokenizer.skipHeaderLine();
+            while (tokenizer.nextRecord()) {
+                for (int i = 0; i < schema.getColumnCount(); i++) {
+                    blackhole.consume(tokenizer.nextColumnOrNull());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void run(BenchmarkSession session, final Blackhole blackhole) {
+        session.run(new ExecAction<Void>() {
+                public Void run() {
+                    new CsvParserPlugin().run(taskSource, schema, newFileInput(), new Sinks.DiscardPageOutput(blackhole));
+                    return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,57 @@
+package org.embulk.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.json.JsonParser;
+import org.msgpack.value.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses a stream of {@link #RECORDS} JSON objects with JsonParser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonParserBenchmark {
+    static final int RECORDS = 10000;
+
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("{\"id\":").append(i)
+                .append(",\"name\":\"embulk-").append(i).append('"')
+                .append(",\"price\":").append(i * 0.25)
+                .append(",\"flag\":").append((i & 1) == 0)
+                .append(",\"tags\":[\"a\",\"b\",\"c\"]")
+                .append(",\"nested\":{\"time\":\"2015-01-27 19:23:49\",\"value\":null}}\n");
+        }
+        json = sb.toString().getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public void parseStream(Blackhole blackhole) throws IOException {
+        try (JsonParser.Stream stream = new JsonParser().open(new ByteArrayInputStream(json))) {
+            while (true) {
+                Value value = stream.next();
+                if (value == null) {
+                    break;
+                }
+                blackhole.consume(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.embulk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageLayout;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.PageStringStorage;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.type.Type;
+import org.embulk.spi.type.Types;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds and reads {@link #RECORDS} records with PageBuilder and PageReader.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PageBenchmark {
+    static final int RECORDS = 10000;
+
+    private static final Type[] TYPES = {Types.LONG, Types.STRING, Types.DOUBLE, Types.BOOLEAN, Types.TIMESTAMP};
+
+    @Param({"4", "16", "64"})
+    public int columns;
+
+    @Param({"ROW_ORIENTED", "COLUMNAR"})
+    public PageLayout layout;
+
+    @Param({"REFERENCE", "INLINE_UTF8"})
+    public PageStringStorage stringStorage;
+
+    private Schema schema;
+    private String[] strings;
+    private List<PageCopy> pages;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkSession session) {
+        Schema.Builder builder = Schema.builder();
+        for (int i = 0; i < columns; i++) {
+            builder.add("c" + i, TYPES[i % TYPES.length]);
+        }
+        schema = builder.build();
+
+        strings = new String[100];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = "value-" + i + "-abcdefghijklmnopqrstuvwxyz";
+        }
+
+        final List<PageCopy> built = new ArrayList<>();
+        buildRecords(session, new PageOutput() {
+                public void add(Page page) {
+                    built.add(new PageCopy(page));
+                }
+
+                public void finish() {}
+
+                public void close() {}
+            });
+        pages = built;
+    }
+
+    private void buildRecords(BenchmarkSession session, PageOutput output) {
+        try (PageBuilder pageBuilder = new PageBuilder(session.getBufferAllocator(), schema, output, layout, stringStorage)) {
+            for (int r = 0; r < RECORDS; r++) {
+                for (Column column : schema.getColumns()) {
+                    int i = column.getIndex();
+                    switch (i % TYPES.length) {
+                        case 0:
+                            pageBuilder.setLong(i, r * 31L + i);
+                            break;
+                        case 1:
+                            pageBuilder.setString(i, strings[(r + i) % strings.length]);
+                            break;
+                        case 2:
+                            pageBuilder.setDouble(i, r * 0.5 + i);
+                            break;
+                        case 3:
+                            pageBuilder.setBoolean(i, (r & 1) == 0);
+                            break;
+                        default:
+                            pageBuilder.setTimestamp(i, Timestamp.ofEpochSecond(1500000000L + r));
+                            break;
+                    }
+                }
+                pageBuilder.addRecord();
+            }
+            pageBuilder.finish();
+        }
+    }
+
+    @Benchmark
+    public void addRecord(BenchmarkSession session, Blackhole blackhole) {
+        buildRecords(session, new Sinks.DiscardPageOutput(blackhole));
+    }
+
+    @Benchmark
+    public void nextRecord(Blackhole blackhole) {
+        try (PageReader reader = new PageReader(schema)) {
+            for (PageCopy page : pages) {
+                reader.setPage(page.newPage());
+                while (reader.nextRecord()) {
+                    for (Column column : schema.getColumns()) {
+                        int i = column.getIndex();
+                        switch (i % TYPES.length) {
+                            case 0:
+                                blackhole.consume(reader.getLong(i));
+                                break;
+                            case 1:
+                                blackhole.consume(reader.getString(i));
+                                break;
+                            case 2:
+                                blackhole.consume(reader.getDouble(i));
+                                break;
+                            case 3:
+                                blackhole.consume(reader.getBoolean(i));
+                                break;
+                            default:
+                                blackhole.consume(reader.getTimestamp(i));
+                                break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.embulk.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Page;
+import org.msgpack.value.ImmutableValue;
+
+/**
+ * Copy of a page which can be read repeatedly. PageReader releases pages, so benchmarks create a new
+ * page from the copy for each read.
+ */
+final class PageCopy {
+    private final byte[] bytes;
+    private final List<String> stringReferences;
+    private final List<ImmutableValue> valueReferences;
+
+    PageCopy(Page page) {
+        Buffer buffer = page.buffer();
+        this.bytes = Arrays.copyOfRange(buffer.array(), buffer.offset(), buffer.offset() + buffer.limit());
+        this.stringReferences = page.getStringReferences();
+        this.valueReferences = page.getValueReferences();
+        page.release();
+    }
+
+    Page newPage() {
+        return Page.wrap(Buffer.wrap(bytes)).setStringReferences(stringReferences).setValueReferences(valueReferences);
+    }
+}
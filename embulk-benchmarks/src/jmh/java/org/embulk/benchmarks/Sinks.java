@@ -0,0 +1,50 @@
+package org.embulk.benchmarks;
+
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageOutput;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Outputs which release everything they receive.
+ */
+final class Sinks {
+    private Sinks() {}
+
+    static class DiscardPageOutput implements PageOutput {
+        private final Blackhole blackhole;
+
+        DiscardPageOutput(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        public void add(Page page) {
+            blackhole.consume(page.buffer().limit());
+            page.release();
+        }
+
+        public void finish() {}
+
+        public void close() {}
+    }
+
+    static class DiscardFileOutput implements FileOutput {
+        private final Blackhole blackhole;
+
+        DiscardFileOutput(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        public void nextFile() {}
+
+        public void add(Buffer buffer) {
+            blackhole.consume(buffer.limit());
+            buffer.release();
+        }
+
+        public void finish() {}
+
+        public void close() {}
+    }
+}
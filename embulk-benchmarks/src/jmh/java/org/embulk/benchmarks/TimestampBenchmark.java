@@ -0,0 +1,80 @@
+package org.embulk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.time.TimestampFormatter;
+import org.embulk.spi.time.TimestampParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses and formats timestamps with TimestampParser and TimestampFormatter for common Ruby and Java formats.
+ *
+ * Consecutive calls use different timestamps so that the parsers do not just return the last parsed value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimestampBenchmark {
+    @Param({
+            "%Y-%m-%d %H:%M:%S",
+            "%Y-%m-%d %H:%M:%S.%N %z",
+            "%Y-%m-%dT%H:%M:%S%z",
+            "%Y%m%d",
+            "%s",
+            "ruby:%Y-%m-%d %H:%M:%S",
+            "java:yyyy-MM-dd HH:mm:ss",
+            "java:yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+        })
+    public String pattern;
+
+    private static final int VALUES = 1024;
+
+    private TimestampParser parser;
+    private TimestampFormatter formatter;
+    private Timestamp[] timestamps;
+    private String[] texts;
+    private StringBuilder sink;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        parser = TimestampParser.of(pattern, "UTC");
+        formatter = TimestampFormatter.of(pattern, "UTC");
+        timestamps = new Timestamp[VALUES];
+        texts = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            // a few seconds apart like rows in a log
+            timestamps[i] = Timestamp.ofEpochSecond(1500000000L + i * 7, 123456789L);
+            texts[i] = formatter.format(timestamps[i]);
+        }
+        sink = new StringBuilder();
+    }
+
+    @Benchmark
+    public Timestamp parse() {
+        index = (index + 1) % VALUES;
+        return parser.parse(texts[index]);
+    }
+
+    @Benchmark
+    public String format() {
+        index = (index + 1) % VALUES;
+        return formatter.format(timestamps[index]);
+    }
+
+    @Benchmark
+    public StringBuilder formatToStringBuilder() {
+        index = (index + 1) % VALUES;
+        sink.setLength(0);
+        formatter.format(timestamps[index], sink);
+        return sink;
+    }
+}
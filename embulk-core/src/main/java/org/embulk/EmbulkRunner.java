@@ -24,6 +24,7 @@ import org.embulk.exec.ResumeState;
 import org.embulk.exec.TransactionStage;
 import org.embulk.jruby.ScriptingContainerDelegate;
 import org.embulk.jruby.ScriptingContainerDelegateImpl;
+import org.embulk.plugin.PluginType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -193,6 +194,37 @@ public class EmbulkRunner {
         }
     }
 
+    /**
+     * Runs the run subcommand continuously in micro-batches.
+     *
+     * It runs a transaction first, and then runs a transaction for every batch of files arrived at "path_prefix" of
+     * the "in" section. A batch is triggered when batchIntervalMillis passes after the first file arrived, or when
+     * the total size of the arrived files reaches batchSize. An arrived file is counted after it's not modified for
+     * a second, so that files being written are not loaded. The config diff is written after every transaction, and
+     * the same EmbulkEmbed with loaded plugins is reused for all transactions. It returns when the thread is
+     * interrupted, and throws an exception when a transaction fails. Only the "file" input plugin is supported.
+     *
+     * It receives Java Paths to be called from org.embulk.cli.EmbulkRun.
+     */
+    public void runContinuously(
+            final Path configFilePath,
+            final Path configDiffPath,
+            final long batchIntervalMillis,
+            final long batchSize) {
+        final ConfigSource configSource;
+        try {
+            configSource = readConfig(configFilePath, Collections.<String, Object>emptyMap(), null);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        try {
+            runContinuouslyInternal(configSource, configDiffPath, batchIntervalMillis, batchSize);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     private void guessInternal(final ConfigSource configSource, final Path outputPath) throws IOException {
         try {
             checkFileWritable(outputPath);
@@ -253,13 +285,7 @@ public class EmbulkRunner {
             throw new RuntimeException("Not writable: " + resumeStatePath.toString());
         }
 
-        final ConfigSource configSource;
-        if (configDiffPath != null && Files.size(configDiffPath) > 0L) {
-            configSource = originalConfigSource.merge(
-                    readConfig(configDiffPath, Collections.<String, Object>emptyMap(), null));
-        } else {
-            configSource = originalConfigSource;
-        }
+        final ConfigSource configSource = mergeConfigDiff(originalConfigSource, configDiffPath);
 
         final ConfigSource resumeConfig;
         if (resumeStatePath != null) {
@@ -338,6 +364,83 @@ public class EmbulkRunner {
         writeConfig(outputPath, configSource.merge(configDiff));  // deprecated
     }
 
+    void runContinuouslyInternal(
+            final ConfigSource originalConfigSource,
+            final Path configDiffPath,
+            final long batchIntervalMillis,
+            final long batchSize) throws IOException {
+        try {
+            checkFileWritable(configDiffPath);
+        } catch (IOException ex) {
+            throw new RuntimeException("Not writable: " + configDiffPath.toString());
+        }
+
+        // files are watched in the same way as the file input plugin lists files by path_prefix
+        final ConfigSource inConfig = originalConfigSource.getNestedOrGetEmpty("in");
+        final PluginType inType = inConfig.get(PluginType.class, "type", null);
+        if (inType == null || !"file".equals(inType.getName())) {
+            throw new ConfigException("Watching new files supports only \"file\" input plugin");
+        }
+        final String pathPrefixString = inConfig.get(String.class, "path_prefix", null);
+        if (pathPrefixString == null) {
+            throw new ConfigException("Watching new files requires \"path_prefix\" in \"in\" section");
+        }
+        final Path pathPrefix = Paths.get(pathPrefixString).normalize();
+        final Path directory;
+        final String fileNamePrefix;
+        if (Files.isDirectory(pathPrefix)) {
+            directory = pathPrefix;
+            fileNamePrefix = "";
+        } else {
+            final Path parent = pathPrefix.getParent();
+            directory = (parent == null ? Paths.get(".") : parent);
+            fileNamePrefix = pathPrefix.getFileName().toString();
+        }
+
+        // config diffs of micro-batches are merged to the config one by one
+        final ConfigSource configSource = mergeConfigDiff(originalConfigSource, configDiffPath);
+
+        // the watcher starts before the first batch so that files arriving during a batch are loaded by the next batch
+        try (FileArrivalWatcher watcher = new FileArrivalWatcher(
+                directory, fileNamePrefix, batchIntervalMillis, batchSize, FILE_QUIET_PERIOD_MILLIS)) {
+            while (true) {
+                final ExecutionResult executionResult = runTransaction(configSource.deepCopy());
+                final ConfigDiff configDiff = executionResult.getConfigDiff();
+                rootLogger.info("Committed.");
+                rootLogger.info("Next config diff: " + configDiff.toString());
+                if (configDiffPath != null) {
+                    writeConfig(configDiffPath, configDiff);
+                }
+                configSource.merge(configDiff);
+
+                rootLogger.info("Waiting for new files at '" + directory + "'");
+                final int arrivedFiles = watcher.awaitBatch();
+                if (arrivedFiles < 0) {
+                    rootLogger.info("Starting a batch after file system events were lost");
+                } else {
+                    rootLogger.info("Starting a batch for " + arrivedFiles + " new or modified files");
+                }
+            }
+        } catch (InterruptedException ex) {
+            rootLogger.info("Stopped watching new files.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // transactions of micro-batches run through this method so that the loop can be tested without plugins
+    ExecutionResult runTransaction(final ConfigSource configSource) {
+        return this.embed.run(configSource);
+    }
+
+    private ConfigSource mergeConfigDiff(final ConfigSource originalConfigSource, final Path configDiffPath) throws IOException {
+        if (configDiffPath != null && Files.size(configDiffPath) > 0L) {
+            return originalConfigSource.merge(
+                    readConfig(configDiffPath, Collections.<String, Object>emptyMap(), null));
+        } else {
+            return originalConfigSource;
+        }
+    }
+
     // def resume_state(config, options={})
     //   configSource = read_config(config, options)
     //   Resumed.new(self, DataSource.from_java(configSource), options)
@@ -468,6 +571,9 @@ public class EmbulkRunner {
     // NOTE: The root logger directly from |LoggerFactory|, not from |Exec.getLogger| as it's outside of |Exec.doWith|.
     private static final Logger rootLogger = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
 
+    // files are loaded after they are not modified for this period while watching new files
+    private static final long FILE_QUIET_PERIOD_MILLIS = 1000L;
+
     private static final Pattern EXT_YAML = Pattern.compile(".*\\.ya?ml$");
     private static final Pattern EXT_YAML_LIQUID = Pattern.compile(".*\\.ya?ml\\.liquid$");
 
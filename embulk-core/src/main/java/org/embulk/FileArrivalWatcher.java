@@ -0,0 +1,203 @@
+package org.embulk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileArrivalWatcher watches a directory and its subdirectories to wait for files to arrive in a micro-batch.
+ *
+ * Only files and directories directly under the directory whose names start with the prefix are watched, in the
+ * same way as the path_prefix option of the file input plugin lists files. A batch is triggered when the batch
+ * interval passes after the first file of the batch arrived, or when the total size of the arrived files reaches
+ * the batch size.
+ *
+ * A file may still be written when it's created. An arrived file is counted only after no events are notified for
+ * the file during the quiet period, and a batch is not triggered until all arrived files are quiet.
+ */
+class FileArrivalWatcher implements AutoCloseable {
+    private final Path directory;
+    private final String fileNamePrefix;
+    private final long batchIntervalNanos;
+    private final long batchSize;
+    private final long quietPeriodNanos;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories;
+
+    // arrived or modified files in the current batch, their sizes, and when the last events for them are notified
+    private final Map<Path, Long> arrivedFiles;
+    private final Map<Path, Long> lastEventNanos;
+    private long firstArrivalNanos;
+    private boolean overflowed;
+
+    FileArrivalWatcher(Path directory, String fileNamePrefix, long batchIntervalMillis, long batchSize, long quietPeriodMillis)
+            throws IOException {
+        this.directory = directory;
+        this.fileNamePrefix = fileNamePrefix;
+        this.batchIntervalNanos = TimeUnit.MILLISECONDS.toNanos(batchIntervalMillis);
+        this.batchSize = batchSize;
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.watchedDirectories = new HashMap<>();
+        this.arrivedFiles = new HashMap<>();
+        this.lastEventNanos = new HashMap<>();
+        this.overflowed = false;
+        // files already in the directory are loaded by the first batch
+        register(directory, true, false);
+    }
+
+    /**
+     * Waits for files to arrive until the batch is triggered.
+     *
+     * @return the number of files arrived in the batch, or -1 if events are lost and the number is unknown
+     */
+    int awaitBatch() throws IOException, InterruptedException {
+        while (true) {
+            final WatchKey key;
+            if (arrivedFiles.isEmpty() && !overflowed) {
+                key = watchService.take();
+            } else {
+                final long now = System.nanoTime();
+                final long remainingNanos = batchIntervalNanos - (now - firstArrivalNanos);
+                final long waitNanos;
+                if (remainingNanos <= 0 || sumQuietSizes(now) >= batchSize) {
+                    // the batch is triggered, and waits for files being written
+                    waitNanos = untilAllQuiet(now);
+                    if (waitNanos <= 0) {
+                        return endBatch();
+                    }
+                } else {
+                    // files being written may reach the batch size when they get quiet
+                    waitNanos = Math.min(remainingNanos, untilNextQuiet(now));
+                }
+                key = watchService.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    continue;
+                }
+            }
+            processEvents(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private int endBatch() {
+        final int count = overflowed ? -1 : arrivedFiles.size();
+        arrivedFiles.clear();
+        lastEventNanos.clear();
+        overflowed = false;
+        return count;
+    }
+
+    private long sumQuietSizes(long now) {
+        long sum = 0;
+        for (Map.Entry<Path, Long> file : arrivedFiles.entrySet()) {
+            if (now - lastEventNanos.get(file.getKey()) >= quietPeriodNanos) {
+                sum += file.getValue();
+            }
+        }
+        return sum;
+    }
+
+    private long untilAllQuiet(long now) {
+        long max = 0;
+        for (long eventNanos : lastEventNanos.values()) {
+            max = Math.max(max, quietPeriodNanos - (now - eventNanos));
+        }
+        return max;
+    }
+
+    private long untilNextQuiet(long now) {
+        long min = Long.MAX_VALUE;
+        for (long eventNanos : lastEventNanos.values()) {
+            final long remaining = quietPeriodNanos - (now - eventNanos);
+            if (remaining > 0) {
+                min = Math.min(min, remaining);
+            }
+        }
+        return min;
+    }
+
+    private void processEvents(WatchKey key) throws IOException {
+        final Path dir = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events are lost. files are listed by the input plugin anyway
+                if (arrivedFiles.isEmpty() && !overflowed) {
+                    firstArrivalNanos = System.nanoTime();
+                }
+                overflowed = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            final Path child = dir.resolve((Path) event.context());
+            final boolean topLevel = dir.equals(directory);
+            if (topLevel && !child.getFileName().toString().startsWith(fileNamePrefix)) {
+                continue;
+            }
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // files may be created in the directory before it's registered
+                    register(child, false, true);
+                }
+            } else {
+                arrive(child);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    // files in a directory created after the watcher started are taken as arrived files
+    private void register(Path dir, boolean topLevel, boolean created) throws IOException {
+        watchedDirectories.put(
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY),
+                dir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                if (topLevel && !child.getFileName().toString().startsWith(fileNamePrefix)) {
+                    continue;
+                }
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    register(child, false, created);
+                } else if (created) {
+                    arrive(child);
+                }
+            }
+        }
+    }
+
+    private void arrive(Path file) {
+        long size;
+        try {
+            size = Files.readAttributes(file, BasicFileAttributes.class).size();
+        } catch (IOException ex) {
+            // the file is removed or renamed, which is not a file to load
+            return;
+        }
+        final long now = System.nanoTime();
+        if (arrivedFiles.isEmpty() && !overflowed) {
+            firstArrivalNanos = now;
+        }
+        arrivedFiles.put(file, size);
+        lastEventNanos.put(file, now);
+    }
+}
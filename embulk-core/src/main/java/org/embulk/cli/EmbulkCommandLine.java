@@ -17,7 +17,9 @@ public class EmbulkCommandLine {
             final boolean force,
             final String format,
             final String output,
-            final String resumeState) {
+            final String resumeState,
+            final String watch,
+            final String batchSize) {
         this.arguments = Collections.unmodifiableList(arguments);
         this.systemConfig = Collections.unmodifiableMap(systemConfig);
         this.bundlePath = bundlePath;
@@ -26,6 +28,8 @@ public class EmbulkCommandLine {
         this.format = format;
         this.output = output;
         this.resumeState = resumeState;
+        this.watch = watch;
+        this.batchSize = batchSize;
     }
 
     public static final class Builder {
@@ -40,6 +44,8 @@ public class EmbulkCommandLine {
             this.loadPath = new ArrayList<String>();
             this.output = null;
             this.resumeState = null;
+            this.watch = null;
+            this.batchSize = null;
         }
 
         public EmbulkCommandLine build() {
@@ -68,7 +74,9 @@ public class EmbulkCommandLine {
                     this.force,
                     this.format,
                     this.output,
-                    this.resumeState);
+                    this.resumeState,
+                    this.watch,
+                    this.batchSize);
         }
 
         public Builder addArguments(final List<String> arguments) {
@@ -126,6 +134,16 @@ public class EmbulkCommandLine {
             return this;
         }
 
+        public Builder setWatch(final String watch) {
+            this.watch = watch;
+            return this;
+        }
+
+        public Builder setBatchSize(final String batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
         private static void addInHashMap(final HashMap<String, Object> map, final String key, final String value) {
             final Object existingValue = map.get(key);
             if (existingValue != null && existingValue instanceof String) {
@@ -150,6 +168,8 @@ public class EmbulkCommandLine {
         private ArrayList<String> loadPath;
         private String output;
         private String resumeState;
+        private String watch;
+        private String batchSize;
     }
 
     public static Builder builder() {
@@ -188,6 +208,14 @@ public class EmbulkCommandLine {
         return this.resumeState;
     }
 
+    public final String getWatch() {
+        return this.watch;
+    }
+
+    public final String getBatchSize() {
+        return this.batchSize;
+    }
+
     private final List<String> arguments;
     private final Map<String, Object> systemConfig;
     private final String bundlePath;
@@ -196,4 +224,6 @@ public class EmbulkCommandLine {
     private final String format;
     private final String output;
     private final String resumeState;
+    private final String watch;
+    private final String batchSize;
 }
@@ -15,6 +15,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.embulk.EmbulkRunner;
 import org.embulk.EmbulkSetup;
 import org.embulk.cli.parse.EmbulkCommandLineHelpRequired;
@@ -24,6 +25,7 @@ import org.embulk.cli.parse.OptionBehavior;
 import org.embulk.cli.parse.OptionDefinition;
 import org.embulk.jruby.ScriptingContainerDelegate;
 import org.embulk.jruby.ScriptingContainerDelegateImpl;
+import org.embulk.spi.unit.ByteSize;
 
 public class EmbulkRun {
     public EmbulkRun(final String embulkVersion) {
@@ -154,6 +156,34 @@ public class EmbulkRun {
                                         commandLineBuilder.setConfigDiff(argument);
                                     }
                                 }))
+                        .addOptionDefinition(OptionDefinition.defineOptionWithArgument(
+                                "w", "watch", "SECONDS", "Keep running, and load files arriving at path_prefix in a transaction every SECONDS at most",
+                                new OptionBehavior() {
+                                    public void behave(final EmbulkCommandLine.Builder commandLineBuilder, final String argument)
+                                            throws EmbulkCommandLineParseException {
+                                        try {
+                                            if (Long.parseLong(argument) <= 0) {
+                                                throw new EmbulkCommandLineParseException("--watch must be larger than 0");
+                                            }
+                                        } catch (NumberFormatException ex) {
+                                            throw new EmbulkCommandLineParseException(ex);
+                                        }
+                                        commandLineBuilder.setWatch(argument);
+                                    }
+                                }))
+                        .addOptionDefinition(OptionDefinition.defineOnlyLongOptionWithArgument(
+                                "batch-size", "SIZE", "With --watch, start a transaction earlier when arriving files reach SIZE (e.g. 256MB)",
+                                new OptionBehavior() {
+                                    public void behave(final EmbulkCommandLine.Builder commandLineBuilder, final String argument)
+                                            throws EmbulkCommandLineParseException {
+                                        try {
+                                            ByteSize.parseByteSize(argument);
+                                        } catch (IllegalArgumentException ex) {
+                                            throw new EmbulkCommandLineParseException(ex);
+                                        }
+                                        commandLineBuilder.setBatchSize(argument);
+                                    }
+                                }))
                         .setArgumentsRange(1, 1);
                 addPluginLoadOptionDefinitions(parserBuilder);
                 addOtherOptionDefinitions(parserBuilder);
@@ -433,6 +463,18 @@ public class EmbulkRun {
                             runner.preview(Paths.get(commandLine.getArguments().get(0)), commandLine.getFormat());
                             break;
                         case RUN:
+                            if (commandLine.getWatch() != null) {
+                                if (outputPath != null || resumeStatePath != null) {
+                                    throw new IllegalArgumentException("--watch can't be used with -o or -r");
+                                }
+                                runner.runContinuously(Paths.get(commandLine.getArguments().get(0)),
+                                                       configDiffPath,
+                                                       TimeUnit.SECONDS.toMillis(Long.parseLong(commandLine.getWatch())),
+                                                       (commandLine.getBatchSize() == null
+                                                            ? Long.MAX_VALUE
+                                                            : ByteSize.parseByteSize(commandLine.getBatchSize()).getBytes()));
+                                break;
+                            }
                             runner.run(Paths.get(commandLine.getArguments().get(0)),
                                        configDiffPath,
                                        outputPath,
@@ -8,6 +8,7 @@ import com.google.common.collect.ImmutableList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // TODO: Stop implementing CommitReport by v0.10 or earlier.
 @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/933
@@ -16,6 +17,10 @@ public class DataSourceImpl
     protected final ObjectNode data;
     protected final ModelManager model;
 
+    // Tasks loaded by loadTask, which are copied for each call. Cleared when this or its nested DataSource is modified.
+    private final ConcurrentHashMap<Class<?>, Object> loadedTasks = new ConcurrentHashMap<Class<?>, Object>();
+    private DataSourceImpl parent;  // DataSource whose data contains this data, as returned by getNested
+
     public DataSourceImpl(ModelManager model) {
         this(model, new ObjectNode(JsonNodeFactory.instance));
     }
@@ -87,7 +92,7 @@ public class DataSourceImpl
         if (!json.isObject()) {
             throw new ConfigException("Attribute " + attrName + " must be an object");
         }
-        return newInstance(model, (ObjectNode) json);
+        return newNestedInstance((ObjectNode) json);
     }
 
     @Override
@@ -96,10 +101,11 @@ public class DataSourceImpl
         if (json == null) {
             json = data.objectNode();
             data.set(attrName, json);
+            invalidateLoadedTasks();
         } else if (!json.isObject()) {
             throw new ConfigException("Attribute " + attrName + " must be an object");
         }
-        return newInstance(model, (ObjectNode) json);
+        return newNestedInstance((ObjectNode) json);
     }
 
     @Override
@@ -110,7 +116,7 @@ public class DataSourceImpl
         } else if (!json.isObject()) {
             throw new ConfigException("Attribute " + attrName + " must be an object");
         }
-        return newInstance(model, (ObjectNode) json);
+        return newNestedInstance((ObjectNode) json);
     }
 
     @Override
@@ -119,6 +125,7 @@ public class DataSourceImpl
             remove(attrName);
         } else {
             data.set(attrName, model.writeObjectAsJsonNode(v));
+            invalidateLoadedTasks();
         }
         return this;
     }
@@ -126,6 +133,7 @@ public class DataSourceImpl
     @Override
     public DataSourceImpl setNested(String attrName, DataSource v) {
         data.set(attrName, v.getObjectNode());
+        invalidateLoadedTasks();
         return this;
     }
 
@@ -134,12 +142,14 @@ public class DataSourceImpl
         for (Map.Entry<String, JsonNode> field : other.getAttributes()) {
             data.set(field.getKey(), field.getValue());
         }
+        invalidateLoadedTasks();
         return this;
     }
 
     @Override
     public DataSourceImpl remove(String attrName) {
         data.remove(attrName);
+        invalidateLoadedTasks();
         return this;
     }
 
@@ -151,6 +161,7 @@ public class DataSourceImpl
     @Override
     public DataSourceImpl merge(DataSource other) {
         mergeJsonObject(data, other.deepCopy().getObjectNode());
+        invalidateLoadedTasks();
         return this;
     }
 
@@ -187,9 +198,28 @@ public class DataSourceImpl
         }
     }
 
+    /**
+     * Loads a task from this TaskSource.
+     *
+     * The task is deserialized only at the first call for each task type. Later calls return a copy of the first
+     * task so that a TaskSource shared by many tasks is not deserialized for every task. Collections of the task are
+     * converted into immutable ones once, and shared by the copies. Nested tasks and TaskSources are copied, so
+     * modifications of the returned task don't affect others.
+     *
+     * Modifications through getObjectNode() are not detected.
+     */
     @Override
     public <T> T loadTask(Class<T> taskType) {
-        return model.readObject(taskType, data.traverse());
+        Object loaded = loadedTasks.get(taskType);
+        if (loaded == null) {
+            loaded = model.readObject(taskType, data.traverse());
+            if (!TaskInvocationHandler.isTask(loaded)) {
+                return taskType.cast(loaded);
+            }
+            loaded = TaskInvocationHandler.freezeTask(loaded);
+            loadedTasks.putIfAbsent(taskType, loaded);
+        }
+        return taskType.cast(TaskInvocationHandler.copyTask(loaded));
     }
 
     @Override
@@ -197,6 +227,18 @@ public class DataSourceImpl
         return model.readObjectWithConfigSerDe(taskType, data.traverse());
     }
 
+    private DataSourceImpl newNestedInstance(ObjectNode json) {
+        DataSourceImpl nested = newInstance(model, json);
+        nested.parent = this;
+        return nested;
+    }
+
+    private void invalidateLoadedTasks() {
+        for (DataSourceImpl source = this; source != null; source = source.parent) {
+            source.loadedTasks.clear();
+        }
+    }
+
     @Override
     public String toString() {
         return data.toString();
@@ -1,15 +1,26 @@
 package org.embulk.config;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 class TaskInvocationHandler implements InvocationHandler {
     private final ModelManager model;
@@ -17,11 +28,20 @@ class TaskInvocationHandler implements InvocationHandler {
     private final Map<String, Object> objects;
     private final Set<String> injectedFields;
 
+    // fields whose values contain tasks or TaskSources, which are copied by copyTask
+    private final Set<String> mutableFields;
+
     public TaskInvocationHandler(ModelManager model, Class<?> iface, Map<String, Object> objects, Set<String> injectedFields) {
+        this(model, iface, objects, injectedFields, ImmutableSet.<String>of());
+    }
+
+    private TaskInvocationHandler(ModelManager model, Class<?> iface, Map<String, Object> objects, Set<String> injectedFields,
+            Set<String> mutableFields) {
         this.model = model;
         this.iface = iface;
         this.objects = objects;
         this.injectedFields = injectedFields;
+        this.mutableFields = mutableFields;
     }
 
     /**
@@ -43,6 +63,145 @@ class TaskInvocationHandler implements InvocationHandler {
         return builder.build();
     }
 
+    // visible for DataSourceImpl.loadTask
+    static boolean isTask(Object object) {
+        return object != null && Proxy.isProxyClass(object.getClass())
+                && Proxy.getInvocationHandler(object) instanceof TaskInvocationHandler;
+    }
+
+    /**
+     * Creates a new task which has the same fields with the given task, and whose collections are immutable.
+     *
+     * Lists, Sets, Maps and Optionals are converted into immutable ones once here so that copyTask shares them
+     * between copies. Fields which contain tasks or TaskSources are remembered to be copied by copyTask.
+     */
+    // visible for DataSourceImpl.loadTask
+    static Object freezeTask(Object task) {
+        TaskInvocationHandler handler = (TaskInvocationHandler) Proxy.getInvocationHandler(task);
+        Map<String, Object> objects = new ConcurrentHashMap<String, Object>(handler.objects.size());
+        ImmutableSet.Builder<String> mutableFields = ImmutableSet.builder();
+        for (Map.Entry<String, Object> field : handler.objects.entrySet()) {
+            Object value = freezeValue(field.getValue());
+            objects.put(field.getKey(), value);
+            if (isMutable(value)) {
+                mutableFields.add(field.getKey());
+            }
+        }
+        return Proxy.newProxyInstance(
+                task.getClass().getClassLoader(), task.getClass().getInterfaces(),
+                new TaskInvocationHandler(handler.model, handler.iface, objects, handler.injectedFields, mutableFields.build()));
+    }
+
+    /**
+     * Creates a new task which has the same fields with the given task frozen by freezeTask.
+     *
+     * It copies the map of fields, and nested tasks and TaskSources, so that modifications of the new task don't
+     * affect the given task. Other values including immutable collections are shared.
+     */
+    // visible for DataSourceImpl.loadTask
+    static Object copyTask(Object task) {
+        TaskInvocationHandler handler = (TaskInvocationHandler) Proxy.getInvocationHandler(task);
+        Map<String, Object> objects = new ConcurrentHashMap<String, Object>(handler.objects);
+        for (String fieldName : handler.mutableFields) {
+            objects.put(fieldName, copyValue(objects.get(fieldName)));
+        }
+        return Proxy.newProxyInstance(
+                task.getClass().getClassLoader(), task.getClass().getInterfaces(),
+                new TaskInvocationHandler(handler.model, handler.iface, objects, handler.injectedFields, handler.mutableFields));
+    }
+
+    private static Object freezeValue(Object value) {
+        if (isTask(value)) {
+            return freezeTask(value);
+        } else if (value instanceof List) {
+            List<Object> frozen = new ArrayList<Object>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                frozen.add(freezeValue(element));
+            }
+            return immutableList(frozen);
+        } else if (value instanceof Set) {
+            Set<Object> frozen = new LinkedHashSet<Object>(((Set<?>) value).size());
+            for (Object element : (Set<?>) value) {
+                frozen.add(freezeValue(element));
+            }
+            return immutableSet(frozen);
+        } else if (value instanceof Map) {
+            Map<Object, Object> frozen = new LinkedHashMap<Object, Object>(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                frozen.put(entry.getKey(), freezeValue(entry.getValue()));
+            }
+            return immutableMap(frozen);
+        } else if (value instanceof Optional) {
+            Optional<?> optional = (Optional<?>) value;
+            return optional.isPresent() ? Optional.of(freezeValue(optional.get())) : optional;
+        } else {
+            return value;
+        }
+    }
+
+    private static boolean isMutable(Object value) {
+        if (isTask(value) || value instanceof TaskSource) {
+            return true;
+        } else if (value instanceof List || value instanceof Set) {
+            for (Object element : (Collection<?>) value) {
+                if (isMutable(element)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (value instanceof Map) {
+            return isMutable(((Map<?, ?>) value).values());
+        } else if (value instanceof Optional) {
+            return isMutable(((Optional<?>) value).orNull());
+        } else {
+            return false;
+        }
+    }
+
+    // copies a frozen value which contains tasks or TaskSources
+    private static Object copyValue(Object value) {
+        if (isTask(value)) {
+            return copyTask(value);
+        } else if (value instanceof TaskSource) {
+            return ((TaskSource) value).deepCopy();
+        } else if (!isMutable(value)) {
+            return value;
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<Object>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return immutableList(copy);
+        } else if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<Object>(((Set<?>) value).size());
+            for (Object element : (Set<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return immutableSet(copy);
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return immutableMap(copy);
+        } else {
+            return Optional.of(copyValue(((Optional<?>) value).get()));
+        }
+    }
+
+    // Guava immutable collections don't accept nulls
+    private static List<Object> immutableList(List<Object> list) {
+        return list.contains(null) ? Collections.unmodifiableList(list) : ImmutableList.copyOf(list);
+    }
+
+    private static Set<Object> immutableSet(Set<Object> set) {
+        return set.contains(null) ? Collections.unmodifiableSet(set) : ImmutableSet.copyOf(set);
+    }
+
+    private static Map<Object, Object> immutableMap(Map<Object, Object> map) {
+        return (map.containsKey(null) || map.containsValue(null)) ? Collections.unmodifiableMap(map) : ImmutableMap.copyOf(map);
+    }
+
     // visible for ModelManager.AccessorSerializer
     Map<String, Object> getObjects() {
         return objects;
@@ -1,13 +1,24 @@
 package org.embulk.exec;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
@@ -25,6 +36,7 @@ import org.embulk.spi.PageOutput;
 import org.embulk.spi.ProcessState;
 import org.embulk.spi.ProcessTask;
 import org.embulk.spi.Schema;
+import org.embulk.spi.SplittableInputPlugin;
 import org.embulk.spi.TransactionalPageOutput;
 import org.embulk.spi.util.Executors;
 import org.embulk.spi.util.Executors.ProcessStateCallback;
@@ -32,14 +44,18 @@ import org.embulk.spi.util.Filters;
 import org.slf4j.Logger;
 
 public class LocalExecutorPlugin implements ExecutorPlugin {
+    private static final int DEFAULT_SCATTER_QUEUE_PAGES = 16;
+
     private int defaultMaxThreads;
     private int defaultMinThreads;
+    private int defaultScatterQueuePages;
 
     @Inject
     public LocalExecutorPlugin(@ForSystemConfig ConfigSource systemConfig) {
         int cores = Runtime.getRuntime().availableProcessors();
         this.defaultMaxThreads = systemConfig.get(Integer.class, "max_threads", cores * 2);
         this.defaultMinThreads = systemConfig.get(Integer.class, "min_output_tasks", cores);
+        this.defaultScatterQueuePages = systemConfig.get(Integer.class, "scatter_queue_pages", DEFAULT_SCATTER_QUEUE_PAGES);
     }
 
     @Override
@@ -54,11 +70,18 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         Logger log = Exec.getLogger(LocalExecutorPlugin.class);
         int maxThreads = config.get(Integer.class, "max_threads", defaultMaxThreads);
         int minThreads = config.get(Integer.class, "min_output_tasks", defaultMinThreads);
-        if (inputTaskCount > 0 && inputTaskCount < minThreads) {
+        if (config.get(Boolean.class, "work_stealing", false)) {
+            log.info("Using local work-stealing executor with max_threads={} / tasks={}", maxThreads, inputTaskCount);
+            return new WorkStealingExecutor(maxThreads, inputTaskCount);
+        } else if (inputTaskCount > 0 && inputTaskCount < minThreads) {
             int scatterCount = (minThreads + inputTaskCount - 1) / inputTaskCount;
-            log.info("Using local thread executor with max_threads={} / output tasks {} = input tasks {} * {}",
-                     maxThreads, inputTaskCount * scatterCount, inputTaskCount, scatterCount);
-            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount);
+            int queuePages = config.get(Integer.class, "scatter_queue_pages", defaultScatterQueuePages);
+            if (queuePages < 1) {
+                throw new ConfigException("scatter_queue_pages must be 1 or larger: " + queuePages);
+            }
+            log.info("Using local thread executor with max_threads={} / output tasks {} = input tasks {} * {} / scatter_queue_pages={}",
+                     maxThreads, inputTaskCount * scatterCount, inputTaskCount, scatterCount, queuePages);
+            return new ScatterExecutor(maxThreads, inputTaskCount, scatterCount, queuePages);
         } else {
             log.info("Using local thread executor with max_threads={} / tasks={}", maxThreads, inputTaskCount);
             return new DirectExecutor(maxThreads, inputTaskCount);
@@ -146,12 +169,16 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         protected final ExecutorService executor;
 
         public DirectExecutor(int maxThreads, int taskCount) {
-            super(taskCount, taskCount);
-            this.executor = java.util.concurrent.Executors.newFixedThreadPool(maxThreads,
+            this(taskCount, java.util.concurrent.Executors.newFixedThreadPool(maxThreads,
                     new ThreadFactoryBuilder()
                             .setNameFormat("embulk-executor-%d")
                             .setDaemon(true)
-                            .build());
+                            .build()));
+        }
+
+        protected DirectExecutor(int taskCount, ExecutorService executor) {
+            super(taskCount, taskCount);
+            this.executor = executor;
         }
 
         @Override
@@ -169,7 +196,7 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             return executor.submit(new Callable<Throwable>() {
                     public Throwable call() {
                         try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d", taskIndex))) {
-                            Executors.process(Exec.session(), task, taskIndex, new ProcessStateCallback() {
+                            process(Exec.session(), task, taskIndex, new ProcessStateCallback() {
                                     public void started() {
                                         state.getInputTaskState(taskIndex).start();
                                         state.getOutputTaskState(taskIndex).start();
@@ -191,18 +218,169 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                     }
                 });
         }
+
+        protected void process(ExecSession exec, ProcessTask task, int taskIndex, ProcessStateCallback callback) {
+            Executors.process(exec, task, taskIndex, callback);
+        }
+    }
+
+    /**
+     * WorkStealingExecutor runs tasks on a fork-join pool, and runs splits of tasks of SplittableInputPlugin as
+     * fork-join subtasks. Idle threads steal remaining splits from threads which are running large tasks.
+     *
+     * Tasks are committed, and resumed, per task as well as DirectExecutor. Splits of a task share the filters and
+     * the output of the task.
+     */
+    public static class WorkStealingExecutor extends DirectExecutor {
+        public WorkStealingExecutor(int maxThreads, int taskCount) {
+            super(taskCount, new ForkJoinPool(maxThreads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName(String.format("embulk-executor-%d", count++));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, null, false));
+        }
+
+        @Override
+        protected void process(ExecSession exec, ProcessTask task, int taskIndex, ProcessStateCallback callback) {
+            InputPlugin inputPlugin = exec.newPlugin(InputPlugin.class, task.getInputPluginType());
+            if (inputPlugin instanceof SplittableInputPlugin) {
+                inputPlugin = new ForkJoinSplitInputPlugin((SplittableInputPlugin) inputPlugin);
+            }
+            List<FilterPlugin> filterPlugins = Filters.newFilterPlugins(exec, task.getFilterPluginTypes());
+            OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
+
+            Executors.process(exec, taskIndex,
+                    inputPlugin, task.getInputSchema(), task.getInputTaskSource(),
+                    filterPlugins, task.getFilterSchemas(), task.getFilterTaskSources(),
+                    outputPlugin, task.getOutputSchema(), task.getOutputTaskSource(),
+                    callback);
+        }
+    }
+
+    @VisibleForTesting
+    static class ForkJoinSplitInputPlugin implements InputPlugin {
+        private final SplittableInputPlugin plugin;
+
+        ForkJoinSplitInputPlugin(SplittableInputPlugin plugin) {
+            this.plugin = plugin;
+        }
+
+        @Override
+        public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control) {
+            return plugin.transaction(config, control);
+        }
+
+        @Override
+        public ConfigDiff resume(TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control) {
+            return plugin.resume(taskSource, schema, taskCount, control);
+        }
+
+        @Override
+        public void cleanup(TaskSource taskSource, Schema schema, int taskCount, List<TaskReport> successTaskReports) {
+            plugin.cleanup(taskSource, schema, taskCount, successTaskReports);
+        }
+
+        @Override
+        public TaskReport run(final TaskSource taskSource, final Schema schema, final int taskIndex, PageOutput output) {
+            final int splitCount = plugin.getSplitCount(taskSource, schema, taskIndex);
+            if (splitCount <= 1) {
+                return plugin.run(taskSource, schema, taskIndex, output);
+            }
+
+            final SplitPageOutput splitOutput = new SplitPageOutput(output);
+            final AtomicBoolean aborted = new AtomicBoolean(false);
+            List<RecursiveTask<TaskReport>> splits = new ArrayList<>(splitCount);
+            for (int i = 0; i < splitCount; i++) {
+                final int splitIndex = i;
+                splits.add(new RecursiveTask<TaskReport>() {
+                        @Override
+                        protected TaskReport compute() {
+                            if (aborted.get()) {
+                                throw new CancellationException();
+                            }
+                            try (SetCurrentThreadName dontCare = new SetCurrentThreadName(String.format("task-%04d-%04d", taskIndex, splitIndex))) {
+                                return plugin.runSplit(taskSource, schema, taskIndex, splitIndex, splitOutput);
+                            }
+                        }
+                    });
+            }
+            // forks the splits so that idle threads in the pool can steal them, and joins all of them
+            for (RecursiveTask<TaskReport> split : splits) {
+                split.fork();
+            }
+
+            List<TaskReport> splitTaskReports = new ArrayList<>(splitCount);
+            try {
+                for (RecursiveTask<TaskReport> split : splits) {
+                    TaskReport report = split.join();
+                    splitTaskReports.add(report != null ? report : Exec.newTaskReport());
+                }
+            } catch (RuntimeException | Error ex) {
+                // splits not started yet are skipped, and running splits are waited for so that no splits write to
+                // the output after the task is aborted. ForkJoinTask.cancel doesn't wait for running splits
+                aborted.set(true);
+                for (RecursiveTask<TaskReport> split : splits) {
+                    split.quietlyJoin();
+                }
+                throw ex;
+            }
+            output.finish();
+            return plugin.mergeSplitTaskReports(taskSource, schema, taskIndex, splitTaskReports);
+        }
+
+        @Override
+        public ConfigDiff guess(ConfigSource config) {
+            return plugin.guess(config);
+        }
+    }
+
+    private static class SplitPageOutput implements PageOutput {
+        private final PageOutput output;
+
+        SplitPageOutput(PageOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public void add(Page page) {
+            synchronized (output) {
+                output.add(page);
+            }
+        }
+
+        @Override
+        public void finish() {
+            // called once by ForkJoinSplitInputPlugin after all splits finish
+        }
+
+        @Override
+        public void close() {
+            // closed by the executor
+        }
     }
 
     public static class ScatterExecutor extends AbstractLocalExecutor {
         private final int scatterCount;
         private final int inputTaskCount;
+        private final int queuePages;
         private final ExecutorService inputExecutor;
         private final ExecutorService outputExecutor;
 
         public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount) {
+            this(maxThreads, inputTaskCount, scatterCount, DEFAULT_SCATTER_QUEUE_PAGES);
+        }
+
+        public ScatterExecutor(int maxThreads, int inputTaskCount, int scatterCount, int queuePages) {
             super(inputTaskCount, inputTaskCount * scatterCount);
             this.inputTaskCount = inputTaskCount;
             this.scatterCount = scatterCount;
+            this.queuePages = queuePages;
             this.inputExecutor = java.util.concurrent.Executors.newFixedThreadPool(
                     Math.max(maxThreads / scatterCount, 1),
                     new ThreadFactoryBuilder()
@@ -254,7 +432,7 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             List<FilterPlugin> filterPlugins = Filters.newFilterPlugins(exec, task.getFilterPluginTypes());
             OutputPlugin outputPlugin = exec.newPlugin(OutputPlugin.class, task.getOutputPluginType());
 
-            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount)) {
+            try (ScatterTransactionalPageOutput tran = new ScatterTransactionalPageOutput(state, taskIndex, scatterCount, queuePages)) {
                 tran.openOutputs(outputPlugin, task.getOutputSchema(), task.getOutputTaskSource());
 
                 try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
@@ -288,50 +466,66 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
     }
 
     private static class ScatterTransactionalPageOutput implements TransactionalPageOutput {
-        private static final Page DONE_PAGE = Page.allocate(0);
-
+        /**
+         * OutputWorker passes pages from the input thread to an output thread through a bounded ring buffer.
+         *
+         * The ring buffer has a single producer (the input thread) and a single consumer (the output thread),
+         * so that pages are handed over without locks. A thread which waits for the other thread spins
+         * shortly, and then parks with a timeout so that a missed unpark does not block it forever.
+         */
         private static class OutputWorker implements Callable<Throwable> {
+            private static final int SPIN_COUNT = 100;
+            private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
             private final PageOutput output;
+            private final Page[] ring;
+            private final AtomicLong head;  // index of the next page to take, updated only by the consumer
+            private final AtomicLong tail;  // index of the next page to put, updated only by the producer
             private final Future<Throwable> future;
-            private volatile int addWaiting;
-            private volatile Page queued;
 
-            public OutputWorker(PageOutput output, ExecutorService executor) {
+            private volatile boolean done;
+            private volatile boolean finished;
+            private volatile Thread parkedProducer;
+            private volatile Thread parkedConsumer;
+
+            private long queueFullWaitNanos;  // updated only by the producer
+            private long queueEmptyWaitNanos;  // updated only by the consumer
+
+            public OutputWorker(PageOutput output, ExecutorService executor, int queuePages) {
                 this.output = output;
-                this.addWaiting = 0;
+                this.ring = new Page[queuePages];
+                this.head = new AtomicLong(0);
+                this.tail = new AtomicLong(0);
                 this.future = executor.submit(this);
             }
 
-            public synchronized void done() throws InterruptedException {
-                while (true) {
-                    if (queued == null && addWaiting == 0) {
-                        queued = DONE_PAGE;
-                        notifyAll();
-                        return;
-                    } else if (queued == DONE_PAGE) {
-                        return;
-                    }
-                    wait();
-                }
+            public void done() {
+                done = true;
+                LockSupport.unpark(parkedConsumer);
             }
 
-            public synchronized void add(Page page) throws InterruptedException {
-                addWaiting++;
-                try {
-                    while (true) {
-                        if (queued == null) {
-                            queued = page;
-                            notifyAll();
-                            return;
-                        } else if (queued == DONE_PAGE) {
-                            page.release();
-                            return;
+            public void add(Page page) throws InterruptedException {
+                final long t = tail.get();
+                if (t - head.get() >= ring.length) {
+                    final long startedAt = System.nanoTime();
+                    int spins = 0;
+                    parkedProducer = Thread.currentThread();
+                    try {
+                        while (t - head.get() >= ring.length && !finished) {
+                            backOff(spins++);
                         }
-                        wait();
+                    } finally {
+                        parkedProducer = null;
+                        queueFullWaitNanos += System.nanoTime() - startedAt;
                     }
-                } finally {
-                    addWaiting--;
                 }
+                if (finished) {
+                    page.release();
+                    return;
+                }
+                ring[(int) (t % ring.length)] = page;
+                tail.set(t + 1);
+                LockSupport.unpark(parkedConsumer);
             }
 
             public Throwable join() throws InterruptedException {
@@ -342,30 +536,78 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
                 }
             }
 
+            /**
+             * Releases pages which the consumer did not take. It must be called after {@link #join()}.
+             */
+            public void releaseRemainingPages() {
+                for (long h = head.get(); h < tail.get(); h++) {
+                    final int index = (int) (h % ring.length);
+                    if (ring[index] != null) {
+                        ring[index].release();
+                        ring[index] = null;
+                    }
+                }
+                head.set(tail.get());
+            }
+
+            public long getQueueFullWaitNanos() {
+                return queueFullWaitNanos;
+            }
+
+            public long getQueueEmptyWaitNanos() {
+                return queueEmptyWaitNanos;
+            }
+
             @Override
-            public synchronized Throwable call() throws InterruptedException {
+            public Throwable call() throws InterruptedException {
                 try {
                     while (true) {
-                        if (queued != null) {
-                            if (queued == DONE_PAGE) {
-                                return null;
+                        final long h = head.get();
+                        if (h == tail.get()) {
+                            if (done) {
+                                if (h == tail.get()) {
+                                    return null;
+                                }
+                                continue;  // pages added before done()
                             }
-                            output.add(queued);
-                            queued = null;
-                            notifyAll();
+                            waitForPages(h);
+                            continue;
                         }
-                        wait();
+                        final int index = (int) (h % ring.length);
+                        final Page page = ring[index];
+                        ring[index] = null;
+                        head.set(h + 1);
+                        LockSupport.unpark(parkedProducer);
+                        output.add(page);
                     }
                 } finally {
-                    try {
-                        if (queued != null && queued != DONE_PAGE) {
-                            queued.release();
-                            queued = null;
-                        }
-                    } finally {
-                        queued = DONE_PAGE;
+                    finished = true;
+                    LockSupport.unpark(parkedProducer);
+                }
+            }
+
+            private void waitForPages(long h) throws InterruptedException {
+                final long startedAt = System.nanoTime();
+                int spins = 0;
+                parkedConsumer = Thread.currentThread();
+                try {
+                    while (h == tail.get() && !done) {
+                        backOff(spins++);
                     }
-                    notifyAll();
+                } finally {
+                    parkedConsumer = null;
+                    queueEmptyWaitNanos += System.nanoTime() - startedAt;
+                }
+            }
+
+            private void backOff(int spins) throws InterruptedException {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (spins < SPIN_COUNT) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
                 }
             }
         }
@@ -378,14 +620,16 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
         private final PageOutput[] filtereds;
         private final CloseResource[] closeThese;
 
+        private final int queuePages;
         private final OutputWorker[] outputWorkers;
 
         private long pageCount;
 
-        public ScatterTransactionalPageOutput(ProcessState state, int taskIndex, int scatterCount) {
+        public ScatterTransactionalPageOutput(ProcessState state, int taskIndex, int scatterCount, int queuePages) {
             this.state = state;
             this.taskIndex = taskIndex;
             this.scatterCount = scatterCount;
+            this.queuePages = queuePages;
 
             this.trans = new TransactionalPageOutput[scatterCount];
             this.filtereds = new PageOutput[scatterCount];
@@ -423,7 +667,7 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             for (int i = 0; i < scatterCount; i++) {
                 PageOutput filtered = filtereds[i];
                 if (filtered != null) {
-                    outputWorkers[i] = new OutputWorker(filtered, outputExecutor);
+                    outputWorkers[i] = new OutputWorker(filtered, outputExecutor, queuePages);
                 }
             }
         }
@@ -485,18 +729,20 @@ public class LocalExecutorPlugin implements ExecutorPlugin {
             for (int i = 0; i < scatterCount; i++) {
                 OutputWorker worker = outputWorkers[i];
                 if (worker != null) {
-                    try {
-                        worker.done();
-                    } catch (InterruptedException ex) {
-                        throw new RuntimeException(ex);
-                    }
+                    worker.done();
                     Throwable error = null;
                     try {
                         error = worker.join();
+                        worker.releaseRemainingPages();
                     } catch (InterruptedException ex) {
                         error = ex;
                     }
                     outputWorkers[i] = null;
+                    Exec.getLogger(LocalExecutorPlugin.class).info(
+                            "Output task {} waited {} ms for the scatter queue to be non-full, and {} ms for it to be non-empty",
+                            taskIndex * scatterCount + i,
+                            TimeUnit.NANOSECONDS.toMillis(worker.getQueueFullWaitNanos()),
+                            TimeUnit.NANOSECONDS.toMillis(worker.getQueueEmptyWaitNanos()));
                     if (error != null) {
                         if (error instanceof RuntimeException) {
                             throw (RuntimeException) error;
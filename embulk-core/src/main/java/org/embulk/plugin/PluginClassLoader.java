@@ -4,7 +4,8 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
-import java.io.ByteArrayOutputStream;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.JarURLConnection;
@@ -24,15 +25,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 
 public class PluginClassLoader extends URLClassLoader {
+    // Embedded JARs whose entries are up to this size in total keep their entries inflated in memory.
+    private static final long MAX_EMBEDDED_JAR_ENTRIES_SIZE_IN_MEMORY = 1024L * 1024L;
+
     private PluginClassLoader(
             final ClassLoader parentClassLoader,
             final URL oneNestedJarFileUrl,
@@ -529,168 +536,92 @@ public class PluginClassLoader extends URLClassLoader {
         final String classResourceName = className.replace('.', '/').concat(".class");
 
         Throwable lastException = null;
-        // TODO: Speed up class loading by caching?
-        for (final String embeddedJarPath : this.embeddedJarPathsInNestedJar) {
-            final URL embeddedJarUrl;
-            final JarURLConnection embeddedJarUrlConnection;
-            final JarInputStream embeddedJarInputStream;
-            try {
-                embeddedJarUrl = getEmbeddedJarUrl(embeddedJarPath);
-                embeddedJarUrlConnection = getEmbeddedJarUrlConnection(embeddedJarUrl);
-                embeddedJarInputStream = getEmbeddedJarInputStream(embeddedJarUrlConnection);
-            } catch (IOException ex) {
-                lastException = ex;
-                continue;
+        for (final EmbeddedJar embeddedJar : getEmbeddedJarIndex().find(classResourceName)) {
+            final int lastDotIndexInClassName = className.lastIndexOf('.');
+            final String packageName;
+            if (lastDotIndexInClassName != -1) {
+                packageName = className.substring(0, lastDotIndexInClassName);
+            } else {
+                packageName = null;
             }
 
-            final Manifest manifest;
+            final URL codeSourceUrl = embeddedJar.url;
+            final Manifest manifest = embeddedJar.manifest;
+
+            // Define the package if the package is not loaded / defined yet.
+            if (packageName != null) {
+                // TODO: Consider package sealing.
+                // https://docs.oracle.com/javase/tutorial/deployment/jar/sealman.html
+                if (this.getPackage(packageName) == null) {
+                    try {
+                        final Attributes fileAttributes;
+                        final Attributes mainAttributes;
+                        if (manifest != null) {
+                            fileAttributes = manifest.getAttributes(classResourceName);
+                            mainAttributes = manifest.getMainAttributes();
+                        } else {
+                            fileAttributes = null;
+                            mainAttributes = null;
+                        }
+
+                        this.definePackage(
+                                packageName,
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.SPECIFICATION_TITLE),
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.SPECIFICATION_VERSION),
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.SPECIFICATION_VENDOR),
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.IMPLEMENTATION_TITLE),
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.IMPLEMENTATION_VERSION),
+                                getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
+                                                           Attributes.Name.IMPLEMENTATION_VENDOR),
+                                null);
+                    } catch (IllegalArgumentException ex) {
+                        // The package duplicates -- in parallel cases
+                        if (getPackage(packageName) == null) {
+                            // TODO: Notify this to reporters as far as possible.
+                            lastException = ex;
+                            System.err.println("FATAL: Should not happen. Package duplicated: " + packageName);
+                            ex.printStackTrace();
+                            continue;
+                        }
+                    }
+                }
+            }
+
+            final byte[] classResourceBytes;
             try {
-                manifest = embeddedJarUrlConnection.getManifest();
+                classResourceBytes = embeddedJar.readEntry(classResourceName);
             } catch (IOException ex) {
                 // TODO: Notify this to reporters as far as possible.
                 lastException = ex;
-                System.err.println("Failed to load manifest in embedded JAR: " + embeddedJarPath);
+                System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
                 ex.printStackTrace();
+                continue;  // Skipping this JAR since it looks broken.
+            }
+            if (classResourceBytes == null) {
+                // TODO: Notify this to reporters as far as possible.
+                System.err.println("Broken entry in embedded JAR: " + classResourceName);
                 continue;
             }
 
-            JarEntry jarEntry;
+            final CodeSource codeSource = new CodeSource(codeSourceUrl, (CodeSigner[]) null);
+            final Class<?> definedClass;
             try {
-                jarEntry = embeddedJarInputStream.getNextJarEntry();
-            } catch (IOException ex) {
+                definedClass = defineClass(className, classResourceBytes, 0, classResourceBytes.length, codeSource);
+            } catch (Throwable ex) {
                 // TODO: Notify this to reporters as far as possible.
                 lastException = ex;
-                System.err.println("Failed to load entry in embedded JAR: " + embeddedJarPath);
+                System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
                 ex.printStackTrace();
                 continue;
             }
-            jarEntries:
-            while (jarEntry != null) {
-                if (jarEntry.getName().equals(classResourceName)) {
-                    final int lastDotIndexInClassName = className.lastIndexOf('.');
-                    final String packageName;
-                    if (lastDotIndexInClassName != -1) {
-                        packageName = className.substring(0, lastDotIndexInClassName);
-                    } else {
-                        packageName = null;
-                    }
-
-                    final URL codeSourceUrl = embeddedJarUrl;
-
-                    // Define the package if the package is not loaded / defined yet.
-                    if (packageName != null) {
-                        // TODO: Consider package sealing.
-                        // https://docs.oracle.com/javase/tutorial/deployment/jar/sealman.html
-                        if (this.getPackage(packageName) == null) {
-                            try {
-                                final Attributes fileAttributes;
-                                final Attributes mainAttributes;
-                                if (manifest != null) {
-                                    fileAttributes = manifest.getAttributes(classResourceName);
-                                    mainAttributes = manifest.getMainAttributes();
-                                } else {
-                                    fileAttributes = null;
-                                    mainAttributes = null;
-                                }
-
-                                this.definePackage(
-                                        packageName,
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.SPECIFICATION_TITLE),
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.SPECIFICATION_VERSION),
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.SPECIFICATION_VENDOR),
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.IMPLEMENTATION_TITLE),
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.IMPLEMENTATION_VERSION),
-                                        getAttributeFromAttributes(mainAttributes, fileAttributes, classResourceName,
-                                                                   Attributes.Name.IMPLEMENTATION_VENDOR),
-                                        null);
-                            } catch (IllegalArgumentException ex) {
-                                // The package duplicates -- in parallel cases
-                                if (getPackage(packageName) == null) {
-                                    // TODO: Notify this to reporters as far as possible.
-                                    lastException = ex;
-                                    System.err.println("FATAL: Should not happen. Package duplicated: " + packageName);
-                                    ex.printStackTrace();
-                                    continue;
-                                }
-                            }
-                        }
-                    }
-
-                    final long classResourceSize = jarEntry.getSize();
-                    final byte[] classResourceBytes;
-                    final long actualSize;
-
-                    if (classResourceSize > -1) {  // JAR entry size available
-                        classResourceBytes = new byte[(int) classResourceSize];
-                        try {
-                            actualSize = embeddedJarInputStream.read(classResourceBytes, 0, (int) classResourceSize);
-                        } catch (IOException ex) {
-                            // TODO: Notify this to reporters as far as possible.
-                            lastException = ex;
-                            System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
-                            ex.printStackTrace();
-                            break jarEntries;  // Breaking from loading since this JAR looks broken.
-                        }
-                        if (actualSize != classResourceSize) {
-                            // TODO: Notify this to reporters as far as possible.
-                            System.err.println("Broken entry in embedded JAR: " + classResourceName);
-                            break jarEntries;  // Breaking from loading since this JAR looks broken.
-                        }
-                    } else {  // JAR entry size unavailable
-                        final ByteArrayOutputStream bytesStream = new ByteArrayOutputStream();
-                        final byte[] buffer = new byte[1024];
-                        long accumulatedSize = 0;
-                        while (true) {
-                            final long readSize;
-                            try {
-                                readSize = embeddedJarInputStream.read(buffer, 0, 1024);
-                            } catch (IOException ex) {
-                                // TODO: Notify this to reporters as far as possible.
-                                lastException = ex;
-                                System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
-                                ex.printStackTrace();
-                                break jarEntries;  // Breaking from loading since this JAR looks broken.
-                            }
-
-                            if (readSize < 0) {
-                                break;
-                            }
-
-                            bytesStream.write(buffer, 0, (int) readSize);
-                            accumulatedSize += readSize;
-                        }
-                        actualSize = accumulatedSize;
-                        classResourceBytes = bytesStream.toByteArray();
-                    }
-
-                    final CodeSource codeSource = new CodeSource(codeSourceUrl, (CodeSigner[]) null);
-                    final Class<?> definedClass;
-                    try {
-                        definedClass = defineClass(className, classResourceBytes, 0, (int) actualSize, codeSource);
-                    } catch (Throwable ex) {
-                        // TODO: Notify this to reporters as far as possible.
-                        lastException = ex;
-                        System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
-                        ex.printStackTrace();
-                        continue;
-                    }
-                    return definedClass;
-                }
-                try {
-                    jarEntry = embeddedJarInputStream.getNextJarEntry();
-                } catch (IOException ex) {
-                    // TODO: Notify this to reporters as far as possible.
-                    lastException = ex;
-                    System.err.println("Failed to load entry in embedded JAR: " + classResourceName);
-                    ex.printStackTrace();
-                    break jarEntries;  // Breaking from loading since this JAR looks broken.
-                }
-            }
+            // The class is never defined again, then its bytes are not kept any more.
+            embeddedJar.releaseEntry(classResourceName);
+            return definedClass;
         }
         if (lastException != null) {
             throw new ClassNotFoundException(className, lastException);
@@ -707,143 +638,256 @@ public class PluginClassLoader extends URLClassLoader {
             // Single nested JAR -- JAR-based plugins
             // Resources directly in the plugin JAR are prioritized.
             final InputStream inputStream = super.getResourceAsStream(resourceName);
-            if (inputStream == null) {
-                try {
-                    final InputStream childInputStream = AccessController.doPrivileged(
-                            new PrivilegedExceptionAction<InputStream>() {
-                                public InputStream run() {
-                                    return getResourceAsStreamFromEmbeddedJars(resourceName);
-                                }
-                            },
-                            this.accessControlContext);
-                    if (childInputStream != null) {
-                        return childInputStream;
-                    }
-                } catch (PrivilegedActionException ignored) {
-                    // Passing through intentionally.
+            if (inputStream != null) {
+                return inputStream;
+            }
+            try {
+                final InputStream childInputStream = AccessController.doPrivileged(
+                        new PrivilegedExceptionAction<InputStream>() {
+                            public InputStream run() {
+                                return getResourceAsStreamFromEmbeddedJars(resourceName);
+                            }
+                        },
+                        this.accessControlContext);
+                if (childInputStream != null) {
+                    return childInputStream;
                 }
+            } catch (PrivilegedActionException ignored) {
+                // Passing through intentionally.
             }
         }
         return null;
     }
 
     private InputStream getResourceAsStreamFromEmbeddedJars(final String resourceName) {
-        for (final String embeddedJarPath : this.embeddedJarPathsInNestedJar) {
-            final JarInputStream embeddedJarInputStream;
+        for (final EmbeddedJar embeddedJar : getEmbeddedJarIndex().find(resourceName)) {
             try {
-                embeddedJarInputStream = getEmbeddedJarInputStream(embeddedJarPath);
+                final InputStream inputStream = embeddedJar.openEntry(resourceName);
+                if (inputStream != null) {
+                    return inputStream;
+                }
             } catch (IOException ex) {
                 // TODO: Notify this to reporters as far as possible.
-                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
+                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJar.path);
                 ex.printStackTrace();
-                continue;
             }
+        }
+        return null;
+    }
 
-            JarEntry jarEntry;
+    private URL findResourceFromEmbeddedJars(final String resourceName) {
+        for (final EmbeddedJar embeddedJar : getEmbeddedJarIndex().find(resourceName)) {
+            // For resources (not classes) in nested JARs, the schema and the URL should be like:
+            // "embulk-plugin-jar:jar:file://.../plugin.jar!/classpath/library.jar!!/org.library/resource.txt"
+            //
+            // The "embulk-plugin-jar" URL is processed with |PluginClassUrlStreamHandler|.
+            // See also: https://www.ibm.com/developerworks/library/j-onejar/index.html
+            //
+            // The URL lives only in the JVM execution.
             try {
-                jarEntry = embeddedJarInputStream.getNextJarEntry();
-            } catch (IOException ex) {
+                return new URL("embulk-plugin-jar", "", -1, embeddedJar.url + "!!/" + resourceName,
+                               new PluginClassUrlStreamHandler("embulk-plugin-jar"));
+            } catch (MalformedURLException ex) {
                 // TODO: Notify this to reporters as far as possible.
-                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
+                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJar.path);
                 ex.printStackTrace();
-                continue;
             }
-            while (jarEntry != null) {
-                if (jarEntry.getName().equals(resourceName)) {
-                    return embeddedJarInputStream;  // Pointing the specific "JAR entry"
+        }
+        return null;
+    }
+
+    private List<URL> findResourcesFromEmbeddedJars(final String resourceName) throws IOException {
+        final ArrayList<URL> resourceUrls = new ArrayList<URL>();
+        for (final EmbeddedJar embeddedJar : getEmbeddedJarIndex().find(resourceName)) {
+            // For resources (not classes) in nested JARs, the schema and the URL should be like:
+            // "embulk-plugin-jar:jar:file://.../plugin.jar!/classpath/library.jar!/org.library/resource.txt"
+            //
+            // The "embulk-plugin-jar" URL is processed with |PluginClassUrlStreamHandler|.
+            // See also: https://www.ibm.com/developerworks/library/j-onejar/index.html
+            //
+            // The URL lives only in the JVM execution.
+            //
+            // Note that |new URL| may throw MalformedURLException (extending IOException).
+            resourceUrls.add(new URL("embulk-plugin-jar", "", -1, embeddedJar.url + "!!/" + resourceName,
+                                     new PluginClassUrlStreamHandler("embulk-plugin-jar")));
+        }
+        return resourceUrls;
+    }
+
+    /**
+     * Returns the index of entries in JARs embedded in the plugin JAR.
+     *
+     * The index is built only once at the first lookup into embedded JARs so that classes directly in the plugin
+     * JAR are loaded without reading embedded JARs. It is called in |AccessController.doPrivileged|.
+     */
+    private EmbeddedJarIndex getEmbeddedJarIndex() {
+        EmbeddedJarIndex index = this.embeddedJarIndex;
+        if (index == null) {
+            synchronized (this.embeddedJarPathsInNestedJar) {
+                index = this.embeddedJarIndex;
+                if (index == null) {
+                    index = buildEmbeddedJarIndex();
+                    this.embeddedJarIndex = index;
                 }
             }
         }
-        return null;
+        return index;
     }
 
-    private URL findResourceFromEmbeddedJars(final String resourceName) {
+    private EmbeddedJarIndex buildEmbeddedJarIndex() {
+        final HashMap<String, List<EmbeddedJar>> entries = new HashMap<String, List<EmbeddedJar>>();
         for (final String embeddedJarPath : this.embeddedJarPathsInNestedJar) {
             final URL embeddedJarUrl;
             final JarURLConnection embeddedJarUrlConnection;
-            final JarInputStream embeddedJarInputStream;
+            final Manifest manifest;
             try {
                 embeddedJarUrl = getEmbeddedJarUrl(embeddedJarPath);
                 embeddedJarUrlConnection = getEmbeddedJarUrlConnection(embeddedJarUrl);
-                embeddedJarInputStream = getEmbeddedJarInputStream(embeddedJarUrlConnection);
+                manifest = embeddedJarUrlConnection.getManifest();
             } catch (IOException ex) {
                 // TODO: Notify this to reporters as far as possible.
-                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
+                System.err.println("Failed to load manifest in embedded JAR: " + embeddedJarPath);
                 ex.printStackTrace();
                 continue;
             }
 
-            JarEntry jarEntry;
-            try {
-                jarEntry = embeddedJarInputStream.getNextJarEntry();
+            // Entries of small JARs are kept inflated in memory so that they are read without scanning the JAR again.
+            // Once the inflated entries exceed the limit in total, the JAR is read again on demand instead.
+            final EmbeddedJar embeddedJar = new EmbeddedJar(embeddedJarPath, embeddedJarUrl, manifest);
+            long entriesSize = 0;
+            boolean keepsEntries = true;
+
+            try (final JarInputStream embeddedJarInputStream = getEmbeddedJarInputStream(embeddedJarUrlConnection)) {
+                // Note that |JarInputStream.getNextJarEntry| may throw IOException.
+                JarEntry jarEntry = embeddedJarInputStream.getNextJarEntry();
+                while (jarEntry != null) {
+                    final String entryName = jarEntry.getName();
+                    if (keepsEntries && !jarEntry.isDirectory()) {
+                        final byte[] bytes = ByteStreams.toByteArray(embeddedJarInputStream);
+                        entriesSize += bytes.length;
+                        if (entriesSize <= MAX_EMBEDDED_JAR_ENTRIES_SIZE_IN_MEMORY) {
+                            embeddedJar.entryBytes.put(entryName, bytes);
+                        } else {
+                            embeddedJar.entryBytes.clear();
+                            keepsEntries = false;
+                        }
+                    }
+                    List<EmbeddedJar> embeddedJars = entries.get(entryName);
+                    if (embeddedJars == null) {
+                        embeddedJars = new ArrayList<EmbeddedJar>(1);
+                        entries.put(entryName, embeddedJars);
+                    }
+                    embeddedJars.add(embeddedJar);
+                    jarEntry = embeddedJarInputStream.getNextJarEntry();
+                }
             } catch (IOException ex) {
                 // TODO: Notify this to reporters as far as possible.
-                System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
+                // Entries indexed until the error are still available.
+                System.err.println("Failed to load entry in embedded JAR: " + embeddedJarPath);
                 ex.printStackTrace();
-                continue;
             }
-            jarEntries:
-            while (jarEntry != null) {
-                if (jarEntry.getName().equals(resourceName)) {
-                    // For resources (not classes) in nested JARs, the schema and the URL should be like:
-                    // "embulk-plugin-jar:jar:file://.../plugin.jar!/classpath/library.jar!!/org.library/resource.txt"
-                    //
-                    // The "embulk-plugin-jar" URL is processed with |PluginClassUrlStreamHandler|.
-                    // See also: https://www.ibm.com/developerworks/library/j-onejar/index.html
-                    //
-                    // The URL lives only in the JVM execution.
-                    try {
-                        // The URL lives only in the JVM execution.
-                        return new URL("embulk-plugin-jar", "", -1, embeddedJarUrl + "!!/" + resourceName,
-                                       new PluginClassUrlStreamHandler("embulk-plugin-jar"));
-                    } catch (MalformedURLException ex) {
-                        // TODO: Notify this to reporters as far as possible.
-                        System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
-                        ex.printStackTrace();
-                        break jarEntries;
-                    }
-                }
-                try {
-                    jarEntry = embeddedJarInputStream.getNextJarEntry();
-                } catch (IOException ex) {
-                    // TODO: Notify this to reporters as far as possible.
-                    System.err.println("Failed to load entry in embedded JAR: " + resourceName + " / " + embeddedJarPath);
-                    ex.printStackTrace();
-                    break jarEntries;
-                }
+        }
+        return new EmbeddedJarIndex(entries);
+    }
+
+    /**
+     * Index from entry names to embedded JARs which contain the entry, in the order of embedded JARs.
+     */
+    private static class EmbeddedJarIndex {
+        private EmbeddedJarIndex(final Map<String, List<EmbeddedJar>> entries) {
+            this.entries = entries;
+        }
+
+        private List<EmbeddedJar> find(final String entryName) {
+            final List<EmbeddedJar> embeddedJars = this.entries.get(entryName);
+            if (embeddedJars == null) {
+                return Collections.<EmbeddedJar>emptyList();
             }
+            return embeddedJars;
         }
-        return null;
+
+        private final Map<String, List<EmbeddedJar>> entries;
     }
 
-    private List<URL> findResourcesFromEmbeddedJars(final String resourceName) throws IOException {
-        final ArrayList<URL> resourceUrls = new ArrayList<URL>();
-        for (final String embeddedJarPath : this.embeddedJarPathsInNestedJar) {
-            final URL embeddedJarUrl = getEmbeddedJarUrl(embeddedJarPath);
-            final JarURLConnection embeddedJarUrlConnection = getEmbeddedJarUrlConnection(embeddedJarUrl);
-            final JarInputStream embeddedJarInputStream = getEmbeddedJarInputStream(embeddedJarUrlConnection);
-
-            // Note that |JarInputStream.getNextJarEntry| may throw IOException.
-            JarEntry jarEntry = embeddedJarInputStream.getNextJarEntry();
-            while (jarEntry != null) {
-                if (jarEntry.getName().equals(resourceName)) {
-                    // For resources (not classes) in nested JARs, the schema and the URL should be like:
-                    // "embulk-plugin-jar:jar:file://.../plugin.jar!/classpath/library.jar!/org.library/resource.txt"
-                    //
-                    // The "embulk-plugin-jar" URL is processed with |PluginClassUrlStreamHandler|.
-                    // See also: https://www.ibm.com/developerworks/library/j-onejar/index.html
-                    //
-                    // The URL lives only in the JVM execution.
-                    //
-                    // Note that |new URL| may throw MalformedURLException (extending IOException).
-                    resourceUrls.add(new URL("embulk-plugin-jar", "", -1, embeddedJarUrl + "!!/" + resourceName,
-                                             new PluginClassUrlStreamHandler("embulk-plugin-jar")));
+    // visible for testing
+    boolean isEmbeddedJarEntryInMemory(final String entryName) {
+        for (final EmbeddedJar embeddedJar : getEmbeddedJarIndex().find(entryName)) {
+            if (embeddedJar.entryBytes.containsKey(entryName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * JAR embedded in the plugin JAR, which may keep its entries inflated in memory.
+     *
+     * Entries not kept in memory, or released from memory, are read from the JAR again.
+     */
+    private class EmbeddedJar {
+        private EmbeddedJar(final String path, final URL url, final Manifest manifest) {
+            this.path = path;
+            this.url = url;
+            this.manifest = manifest;
+            this.entryBytes = new ConcurrentHashMap<String, byte[]>();
+        }
+
+        /**
+         * Returns the bytes of the entry, or null if the entry is not found.
+         */
+        private byte[] readEntry(final String entryName) throws IOException {
+            final byte[] bytes = this.entryBytes.get(entryName);
+            if (bytes != null) {
+                return bytes;
+            }
+            try (final InputStream inputStream = openEntry(entryName)) {
+                if (inputStream == null) {
+                    return null;
                 }
+                return ByteStreams.toByteArray(inputStream);
+            }
+        }
+
+        /**
+         * Returns an InputStream of the entry, or null if the entry is not found.
+         */
+        private InputStream openEntry(final String entryName) throws IOException {
+            final byte[] bytes = this.entryBytes.get(entryName);
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            final JarInputStream embeddedJarInputStream = getEmbeddedJarInputStream(this.path);
+            boolean found = false;
+            try {
                 // Note that |JarInputStream.getNextJarEntry| may throw IOException.
-                jarEntry = embeddedJarInputStream.getNextJarEntry();
+                JarEntry jarEntry = embeddedJarInputStream.getNextJarEntry();
+                while (jarEntry != null) {
+                    if (jarEntry.getName().equals(entryName)) {
+                        found = true;
+                        return embeddedJarInputStream;  // Pointing the specific "JAR entry"
+                    }
+                    jarEntry = embeddedJarInputStream.getNextJarEntry();
+                }
+                return null;
+            } finally {
+                if (!found) {
+                    embeddedJarInputStream.close();
+                }
             }
         }
-        return resourceUrls;
+
+        /**
+         * Releases the bytes of the entry kept in memory, such as a class entry whose class is defined.
+         */
+        private void releaseEntry(final String entryName) {
+            this.entryBytes.remove(entryName);
+        }
+
+        private final String path;
+        private final URL url;
+        private final Manifest manifest;
+        private final Map<String, byte[]> entryBytes;  // empty if entries are not kept in memory
     }
 
     private URL getEmbeddedJarUrl(final String embeddedJarPath) throws MalformedURLException {
@@ -937,4 +981,6 @@ public class PluginClassLoader extends URLClassLoader {
     private final List<String> parentFirstPackagePrefixes;
     private final List<String> parentFirstResourcePrefixes;
     private final AccessControlContext accessControlContext;
+
+    private volatile EmbeddedJarIndex embeddedJarIndex;
 }
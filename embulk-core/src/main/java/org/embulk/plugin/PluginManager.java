@@ -6,6 +6,8 @@ import com.google.inject.Injector;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.embulk.config.ConfigException;
 import org.embulk.jruby.JRubyPluginSource;
 import org.embulk.jruby.ScriptingContainerDelegate;
@@ -26,16 +28,93 @@ public class PluginManager {
         this.injector = injector;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * ResolvedPlugins remembers which PluginSource created a plugin for each pair of an interface and a PluginType.
+     *
+     * It is held by an ExecSession so that plugins created for each task skip sources which don't have them.
+     */
+    public static class ResolvedPlugins {
+        private final ConcurrentHashMap<Key, PluginSource> sources = new ConcurrentHashMap<>();
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+
+        public long getHitCount() {
+            return hitCount.get();
+        }
+
+        public long getMissCount() {
+            return missCount.get();
+        }
+
+        private static class Key {
+            private final Class<?> iface;
+            private final PluginType type;
+
+            Key(Class<?> iface, PluginType type) {
+                this.iface = iface;
+                this.type = type;
+            }
+
+            @Override
+            public int hashCode() {
+                return iface.hashCode() * 31 + type.hashCode();
+            }
+
+            @Override
+            public boolean equals(Object other) {
+                if (!(other instanceof Key)) {
+                    return false;
+                }
+                Key key = (Key) other;
+                return iface.equals(key.iface) && type.equals(key.type);
+            }
+        }
+    }
+
     public <T> T newPlugin(Class<T> iface, PluginType type) {
-        T t = newPluginWithoutWrapper(iface, type);
+        return newPlugin(iface, type, null);
+    }
+
+    /**
+     * Creates a plugin by the PluginSource which created the same plugin before in resolvedPlugins.
+     *
+     * All sources are tried in order if the plugin is not found in resolvedPlugins.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newPlugin(Class<T> iface, PluginType type, ResolvedPlugins resolvedPlugins) {
+        T t = newPluginWithoutWrapper(iface, type, resolvedPlugins);
         if (t instanceof InputPlugin) {
             return (T) PluginWrappers.inputPlugin((InputPlugin) t);
         }
         return t;
     }
 
-    private <T> T newPluginWithoutWrapper(Class<T> iface, PluginType type) {
+    private <T> T newPluginWithoutWrapper(Class<T> iface, PluginType type, ResolvedPlugins resolvedPlugins) {
+        if (resolvedPlugins == null || type == null) {
+            return newPluginFromSources(iface, type, null);
+        }
+
+        final ResolvedPlugins.Key key = new ResolvedPlugins.Key(iface, type);
+        final PluginSource resolved = resolvedPlugins.sources.get(key);
+        if (resolved != null) {
+            try {
+                final T plugin = resolved.newPlugin(iface, type);
+                resolvedPlugins.hitCount.incrementAndGet();
+                return plugin;
+            } catch (PluginSourceNotMatchException e) {
+                // Not expected, but resolves it again from all sources.
+                resolvedPlugins.sources.remove(key, resolved);
+            }
+        }
+        resolvedPlugins.missCount.incrementAndGet();
+
+        final PluginSource[] matched = new PluginSource[1];
+        final T plugin = newPluginFromSources(iface, type, matched);
+        resolvedPlugins.sources.put(key, matched[0]);
+        return plugin;
+    }
+
+    private <T> T newPluginFromSources(Class<T> iface, PluginType type, PluginSource[] matched) {
         if (sources.isEmpty()) {
             throw new ConfigException("No PluginSource is installed");
         }
@@ -49,14 +128,22 @@ public class PluginManager {
         List<PluginSourceNotMatchException> exceptions = new ArrayList<>();
         for (PluginSource source : sources) {
             try {
-                return source.newPlugin(iface, type);
+                final T plugin = source.newPlugin(iface, type);
+                if (matched != null) {
+                    matched[0] = source;
+                }
+                return plugin;
             } catch (PluginSourceNotMatchException e) {
                 exceptions.add(e);
             }
         }
 
         try {
-            return this.jrubySource.newPlugin(iface, type);
+            final T plugin = this.jrubySource.newPlugin(iface, type);
+            if (matched != null) {
+                matched[0] = this.jrubySource;
+            }
+            return plugin;
         } catch (PluginSourceNotMatchException e) {
             exceptions.add(e);
         }
@@ -24,6 +24,7 @@ public class ExecSession {
     private final ILoggerFactory loggerFactory;
     private final ModelManager modelManager;
     private final PluginManager pluginManager;
+    private final PluginManager.ResolvedPlugins resolvedPlugins;
     private final BufferAllocator bufferAllocator;
 
     private final Timestamp transactionTime;
@@ -88,6 +89,7 @@ public class ExecSession {
         this.loggerFactory = loggerFactory.orElse(injector.getInstance(ILoggerFactory.class));
         this.modelManager = injector.getInstance(ModelManager.class);
         this.pluginManager = injector.getInstance(PluginManager.class);
+        this.resolvedPlugins = new PluginManager.ResolvedPlugins();
         this.bufferAllocator = injector.getInstance(BufferAllocator.class);
 
         this.transactionTime = transactionTime;
@@ -103,6 +105,7 @@ public class ExecSession {
         this.loggerFactory = copy.loggerFactory;
         this.modelManager = copy.modelManager;
         this.pluginManager = copy.pluginManager;
+        this.resolvedPlugins = copy.resolvedPlugins;
         this.bufferAllocator = copy.bufferAllocator;
 
         this.transactionTime = copy.transactionTime;
@@ -145,7 +148,8 @@ public class ExecSession {
     }
 
     public <T> T newPlugin(Class<T> iface, PluginType type) {
-        return pluginManager.newPlugin(iface, type);
+        // plugins are created for every task, and the source of each plugin is resolved only once in a session
+        return pluginManager.newPlugin(iface, type, resolvedPlugins);
     }
 
     public TaskReport newTaskReport() {
@@ -186,6 +190,10 @@ public class ExecSession {
         return preview;
     }
 
+    public PluginManager.ResolvedPlugins getResolvedPlugins() {
+        return resolvedPlugins;
+    }
+
     public void cleanup() {
         tempFileSpace.cleanup();
     }
@@ -18,7 +18,7 @@ import org.embulk.plugin.PluginType;
 import org.embulk.plugin.compat.PluginWrappers;
 import org.embulk.spi.util.Decoders;
 
-public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugin {
+public class FileInputRunner implements SplittableInputPlugin, ConfigurableGuessInputPlugin {
     private final FileInputPlugin fileInputPlugin;
 
     public FileInputRunner(FileInputPlugin fileInputPlugin) {
@@ -133,6 +133,41 @@ public class FileInputRunner implements InputPlugin, ConfigurableGuessInputPlugi
 
         TransactionalFileInput tran = PluginWrappers.transactionalFileInput(
                 fileInputPlugin.open(task.getFileInputTaskSource(), taskIndex));
+        return runFileInput(task, schema, decoderPlugins, parserPlugin, tran, output);
+    }
+
+    @Override
+    public int getSplitCount(TaskSource taskSource, Schema schema, int taskIndex) {
+        if (!(fileInputPlugin instanceof SplittableFileInputPlugin)) {
+            return 1;
+        }
+        final RunnerTask task = taskSource.loadTask(RunnerTask.class);
+        return ((SplittableFileInputPlugin) fileInputPlugin).getSplitCount(task.getFileInputTaskSource(), taskIndex);
+    }
+
+    @Override
+    public TaskReport runSplit(TaskSource taskSource, Schema schema, int taskIndex, int splitIndex,
+            PageOutput output) {
+        final RunnerTask task = taskSource.loadTask(RunnerTask.class);
+        List<DecoderPlugin> decoderPlugins = newDecoderPlugins(task);
+        ParserPlugin parserPlugin = newParserPlugin(task);
+
+        TransactionalFileInput tran = PluginWrappers.transactionalFileInput(
+                ((SplittableFileInputPlugin) fileInputPlugin).openSplit(task.getFileInputTaskSource(), taskIndex, splitIndex));
+        return runFileInput(task, schema, decoderPlugins, parserPlugin, tran, output);
+    }
+
+    @Override
+    public TaskReport mergeSplitTaskReports(TaskSource taskSource, Schema schema, int taskIndex,
+            List<TaskReport> splitTaskReports) {
+        final RunnerTask task = taskSource.loadTask(RunnerTask.class);
+        return ((SplittableFileInputPlugin) fileInputPlugin).mergeSplitTaskReports(
+                task.getFileInputTaskSource(), taskIndex, splitTaskReports);
+    }
+
+    private TaskReport runFileInput(RunnerTask task, Schema schema,
+            List<DecoderPlugin> decoderPlugins, ParserPlugin parserPlugin,
+            TransactionalFileInput tran, PageOutput output) {
         try (CloseResource closer = new CloseResource(tran)) {
             try (AbortTransactionResource aborter = new AbortTransactionResource(tran)) {
                 FileInput fileInput = Decoders.open(decoderPlugins, task.getDecoderTaskSources(), tran);
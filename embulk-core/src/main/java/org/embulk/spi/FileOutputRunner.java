@@ -1,16 +1,19 @@
 package org.embulk.spi;
 
+import com.google.common.base.Optional;
 import java.util.ArrayList;
 import java.util.List;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
 import org.embulk.plugin.PluginType;
 import org.embulk.plugin.compat.PluginWrappers;
+import org.embulk.spi.unit.ByteSize;
 import org.embulk.spi.util.Encoders;
 
 public class FileOutputRunner implements OutputPlugin {
@@ -31,6 +34,14 @@ public class FileOutputRunner implements OutputPlugin {
         @Config("formatter")
         public ConfigSource getFormatterConfig();
 
+        @Config("max_file_size")
+        @ConfigDefault("null")
+        public Optional<ByteSize> getMaxFileSize();
+
+        @Config("max_records_per_file")
+        @ConfigDefault("null")
+        public Optional<Long> getMaxRecordsPerFile();
+
         public void setFileOutputTaskSource(TaskSource v);
 
         public TaskSource getFileOutputTaskSource();
@@ -57,6 +68,12 @@ public class FileOutputRunner implements OutputPlugin {
             final Schema schema, final int taskCount,
             final OutputPlugin.Control control) {
         final RunnerTask task = config.loadConfig(RunnerTask.class);
+        if (task.getMaxFileSize().isPresent() && task.getMaxFileSize().get().getBytes() <= 0) {
+            throw new ConfigException("\"max_file_size\" must be larger than 0");
+        }
+        if (task.getMaxRecordsPerFile().isPresent() && task.getMaxRecordsPerFile().get() <= 0) {
+            throw new ConfigException("\"max_records_per_file\" must be larger than 0");
+        }
         return fileOutputPlugin.transaction(config, taskCount, new RunnerControl(schema, task, control));
     }
 
@@ -121,11 +138,17 @@ public class FileOutputRunner implements OutputPlugin {
                 aborter.abortThis(finalOutput);
                 closer.closeThis(finalOutput);
 
-                FileOutput encodedOutput = Encoders.open(encoderPlugins, task.getEncoderTaskSources(), finalOutput);
-                closer.closeThis(encodedOutput);
+                final PageOutput output;
+                if (task.getMaxFileSize().isPresent() || task.getMaxRecordsPerFile().isPresent()) {
+                    output = new RollingPageOutput(task, schema, encoderPlugins, formatterPlugin, finalOutput);
+                    closer.closeThis(output);
+                } else {
+                    FileOutput encodedOutput = Encoders.open(encoderPlugins, task.getEncoderTaskSources(), finalOutput);
+                    closer.closeThis(encodedOutput);
 
-                PageOutput output = formatterPlugin.open(task.getFormatterTaskSource(), schema, encodedOutput);
-                closer.closeThis(output);
+                    output = formatterPlugin.open(task.getFormatterTaskSource(), schema, encodedOutput);
+                    closer.closeThis(output);
+                }
 
                 TransactionalPageOutput ret = new DelegateTransactionalPageOutput(finalOutput, output);
                 aborter.dontAbort();
@@ -135,6 +158,235 @@ public class FileOutputRunner implements OutputPlugin {
         }
     }
 
+    // RollingPageOutput rolls to a new file when max_file_size or max_records_per_file is reached. Formatter and
+    // encoders are opened again for every file so that any formatter starts a new file with its header, and pages
+    // are split at a record boundary. The file output plugin sees only nextFile() calls of the formatters.
+    private static class RollingPageOutput implements PageOutput {
+        private final RunnerTask task;
+        private final Schema schema;
+        private final List<EncoderPlugin> encoderPlugins;
+        private final FormatterPlugin formatterPlugin;
+        private final FileOutput finalOutput;
+        private final long maxFileSize;
+        private final long maxRecordsPerFile;
+
+        // output to finalOutput shared by formatters, which doesn't finish nor close finalOutput
+        private final SegmentFileOutput segmentOutput;
+        // formatter of the current file, or null after rolling until the next page comes
+        private PageOutput segment;
+        private long segmentRecords;
+
+        // created when a page is split first
+        private PageReader splitReader = null;
+        private PageBuilder splitBuilder = null;
+
+        RollingPageOutput(RunnerTask task, Schema schema, List<EncoderPlugin> encoderPlugins, FormatterPlugin formatterPlugin,
+                          FileOutput finalOutput) {
+            this.task = task;
+            this.schema = schema;
+            this.encoderPlugins = encoderPlugins;
+            this.formatterPlugin = formatterPlugin;
+            this.finalOutput = finalOutput;
+            this.maxFileSize = task.getMaxFileSize().isPresent() ? task.getMaxFileSize().get().getBytes() : Long.MAX_VALUE;
+            this.maxRecordsPerFile = task.getMaxRecordsPerFile().or(Long.MAX_VALUE);
+            this.segmentOutput = new SegmentFileOutput(finalOutput);
+            // the first formatter is opened early as it's done without rolling
+            openSegment();
+        }
+
+        @Override
+        public void add(Page page) {
+            if (segment == null) {
+                openSegment();
+            }
+            final int recordCount = PageReader.getRecordCount(page);
+            if (segmentRecords + recordCount <= maxRecordsPerFile) {
+                segment.add(page);
+                segmentRecords += recordCount;
+                rollIfFull();
+                return;
+            }
+
+            if (splitReader == null) {
+                splitReader = new PageReader(schema);
+                splitBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, new PageOutput() {
+                        public void add(Page page) {
+                            segment.add(page);
+                        }
+
+                        public void finish() {}
+
+                        public void close() {}
+                    });
+            }
+            // the reader releases the page
+            splitReader.setPage(page);
+            final RecordCopier copier = new RecordCopier(splitReader, splitBuilder);
+            while (splitReader.nextRecord()) {
+                if (segment == null) {
+                    openSegment();
+                }
+                schema.visitColumns(copier);
+                splitBuilder.addRecord();
+                segmentRecords++;
+                if (segmentRecords >= maxRecordsPerFile) {
+                    splitBuilder.flush();
+                    roll();
+                }
+            }
+            splitBuilder.flush();
+            if (segment != null) {
+                rollIfFull();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (segment != null) {
+                segment.finish();
+            }
+            finalOutput.finish();
+        }
+
+        @Override
+        public void close() {
+            try (CloseResource closeFinalOutput = new CloseResource(finalOutput)) {
+                if (splitReader != null) {
+                    splitReader.close();
+                    splitBuilder.close();
+                }
+                if (segment != null) {
+                    segment.close();
+                    segment = null;
+                }
+            }
+        }
+
+        private void openSegment() {
+            segmentOutput.reset();
+            final FileOutput encodedOutput = Encoders.open(encoderPlugins, task.getEncoderTaskSources(), segmentOutput);
+            try (CloseResource closer = new CloseResource(encodedOutput)) {
+                segment = formatterPlugin.open(task.getFormatterTaskSource(), schema, encodedOutput);
+                closer.dontClose();
+            }
+            segmentRecords = 0;
+        }
+
+        private void rollIfFull() {
+            if (segmentRecords >= maxRecordsPerFile || segmentOutput.getWrittenBytes() >= maxFileSize) {
+                roll();
+            }
+        }
+
+        private void roll() {
+            try {
+                segment.finish();
+            } finally {
+                segment.close();
+                segment = null;
+            }
+        }
+    }
+
+    private static class SegmentFileOutput implements FileOutput {
+        private final FileOutput output;
+        private long writtenBytes;
+
+        SegmentFileOutput(FileOutput output) {
+            this.output = output;
+        }
+
+        // bytes written after encoders since the last reset
+        long getWrittenBytes() {
+            return writtenBytes;
+        }
+
+        void reset() {
+            writtenBytes = 0;
+        }
+
+        @Override
+        public void nextFile() {
+            output.nextFile();
+        }
+
+        @Override
+        public void add(Buffer buffer) {
+            writtenBytes += buffer.limit();
+            output.add(buffer);
+        }
+
+        @Override
+        public void finish() {}
+
+        @Override
+        public void close() {}
+    }
+
+    private static class RecordCopier implements ColumnVisitor {
+        private final PageReader reader;
+        private final PageBuilder builder;
+
+        RecordCopier(PageReader reader, PageBuilder builder) {
+            this.reader = reader;
+            this.builder = builder;
+        }
+
+        @Override
+        public void booleanColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setBoolean(column, reader.getBoolean(column));
+            }
+        }
+
+        @Override
+        public void longColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setLong(column, reader.getLong(column));
+            }
+        }
+
+        @Override
+        public void doubleColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setDouble(column, reader.getDouble(column));
+            }
+        }
+
+        @Override
+        public void stringColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setString(column, reader.getString(column));
+            }
+        }
+
+        @Override
+        public void timestampColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setTimestamp(column, reader.getTimestamp(column));
+            }
+        }
+
+        @Override
+        public void jsonColumn(Column column) {
+            if (reader.isNull(column)) {
+                builder.setNull(column);
+            } else {
+                builder.setJson(column, reader.getJson(column));
+            }
+        }
+    }
+
     private static class DelegateTransactionalPageOutput implements TransactionalPageOutput {
         private final Transactional tran;
         private final PageOutput output;
@@ -2,6 +2,7 @@ package org.embulk.spi;
 
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -15,9 +16,18 @@ public class PageBuilder implements AutoCloseable {
     private final BufferAllocator allocator;
     private final PageOutput output;
     private final Schema schema;
+    private final PageLayout layout;
+    private final PageStringStorage stringStorage;
     private final int[] columnOffsets;
     private final int fixedRecordSize;
 
+    // used only by PageLayout.COLUMNAR
+    private final int[] columnSizes;
+    private int[] columnarValueOffsets;
+    private int[] columnarNullBitmapOffsets;
+    private int columnarCapacity;
+    private int columnarVariableLengthDataPosition;
+
     private Buffer buffer;
     private Slice bufferSlice;
 
@@ -31,20 +41,36 @@ public class PageBuilder implements AutoCloseable {
     private int nextVariableLengthDataOffset;
 
     public PageBuilder(BufferAllocator allocator, Schema schema, PageOutput output) {
+        this(allocator, schema, output, PageLayout.ROW_ORIENTED);
+    }
+
+    public PageBuilder(BufferAllocator allocator, Schema schema, PageOutput output, PageLayout layout) {
+        this(allocator, schema, output, layout, PageStringStorage.REFERENCE);
+    }
+
+    public PageBuilder(BufferAllocator allocator, Schema schema, PageOutput output,
+            PageLayout layout, PageStringStorage stringStorage) {
         this.allocator = allocator;
         this.output = output;
         this.schema = schema;
+        this.layout = layout;
+        this.stringStorage = stringStorage;
         this.columnOffsets = PageFormat.columnOffsets(schema);
+        this.columnSizes = PageFormat.columnSizes(schema);
         this.nullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
         Arrays.fill(nullBitSet, (byte) -1);
         this.row = Row.newRow(schema);
         this.fixedRecordSize = PageFormat.recordHeaderSize(schema) + PageFormat.totalColumnSize(schema);
         this.nextVariableLengthDataOffset = fixedRecordSize;
-        newBuffer();
+        newBuffer(0);
     }
 
-    private void newBuffer() {
-        this.buffer = allocator.allocate(PageFormat.PAGE_HEADER_SIZE + fixedRecordSize);
+    private void newBuffer(int variableLengthDataSize) {
+        if (layout == PageLayout.COLUMNAR) {
+            newColumnarBuffer(variableLengthDataSize);
+            return;
+        }
+        this.buffer = allocator.allocate(PageFormat.PAGE_HEADER_SIZE + fixedRecordSize + variableLengthDataSize);
         this.bufferSlice = Slices.wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
         this.count = 0;
         this.position = PageFormat.PAGE_HEADER_SIZE;
@@ -53,10 +79,43 @@ public class PageBuilder implements AutoCloseable {
         this.referenceSize = 0;
     }
 
+    private void newColumnarBuffer(int variableLengthDataSize) {
+        final int capacity;
+        if (stringStorage == PageStringStorage.INLINE_UTF8) {
+            // a half of the buffer is for fixed-size values, and the other half is for strings
+            this.buffer = allocator.allocate((PageFormat.columnarPageSize(schema, 1) + variableLengthDataSize) * 2);
+            capacity = PageFormat.columnarCapacity(schema, buffer.capacity() / 2);
+        } else {
+            this.buffer = allocator.allocate(PageFormat.columnarPageSize(schema, 1));
+            capacity = PageFormat.columnarCapacity(schema, buffer.capacity());
+        }
+        this.bufferSlice = Slices.wrappedBuffer(buffer.array(), buffer.offset(), buffer.capacity());
+        if (capacity != columnarCapacity || columnarValueOffsets == null) {
+            // offsets depend on the capacity of the buffer, which is usually same with the last buffer
+            this.columnarCapacity = capacity;
+            this.columnarValueOffsets = PageFormat.columnarValueOffsets(schema, capacity);
+            this.columnarNullBitmapOffsets = PageFormat.columnarNullBitmapOffsets(schema, capacity);
+        }
+        this.count = 0;
+        this.position = PageFormat.COLUMNAR_PAGE_HEADER_SIZE;
+        this.columnarVariableLengthDataPosition = PageFormat.columnarPageSize(schema, capacity);
+        this.stringReferences = new ArrayList<>();
+        this.valueReferences = new ArrayList<>();
+        this.referenceSize = 0;
+    }
+
     public Schema getSchema() {
         return schema;
     }
 
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    public PageStringStorage getStringStorage() {
+        return stringStorage;
+    }
+
     public void setNull(Column column) {
         setNull(column.getIndex());
     }
@@ -105,6 +164,25 @@ public class PageBuilder implements AutoCloseable {
         }
     }
 
+    /**
+     * Sets a value of a STRING column from UTF-8 bytes.
+     *
+     * The bytes are copied before this method returns. With {@link PageStringStorage#INLINE_UTF8}, the bytes
+     * are stored in the page without decoding.
+     */
+    public void setStringBytes(Column column, byte[] utf8, int offset, int length) {
+        // TODO check type?
+        setStringBytes(column.getIndex(), utf8, offset, length);
+    }
+
+    public void setStringBytes(int columnIndex, byte[] utf8, int offset, int length) {
+        if (utf8 == null) {
+            setNull(columnIndex);
+        } else {
+            row.setStringBytes(columnIndex, utf8, offset, length);
+        }
+    }
+
     public void setJson(Column column, Value value) {
         // TODO check type?
         setJson(column.getIndex(), value);
@@ -162,6 +240,28 @@ public class PageBuilder implements AutoCloseable {
         clearNull(columnIndex);
     }
 
+    private void writeStringBytes(int columnIndex, byte[] utf8, int length) {
+        if (stringStorage != PageStringStorage.INLINE_UTF8) {
+            writeString(columnIndex, new String(utf8, 0, length, StandardCharsets.UTF_8));
+            return;
+        }
+
+        final int stringOffset;
+        if (layout == PageLayout.COLUMNAR) {
+            stringOffset = columnarVariableLengthDataPosition;
+            columnarVariableLengthDataPosition += PageFormat.INLINE_STRING_HEADER_SIZE + length;
+            bufferSlice.setInt(stringOffset, length);
+            bufferSlice.setBytes(stringOffset + PageFormat.INLINE_STRING_HEADER_SIZE, utf8, 0, length);
+        } else {
+            stringOffset = nextVariableLengthDataOffset;
+            nextVariableLengthDataOffset += PageFormat.INLINE_STRING_HEADER_SIZE + length;
+            bufferSlice.setInt(position + stringOffset, length);
+            bufferSlice.setBytes(position + stringOffset + PageFormat.INLINE_STRING_HEADER_SIZE, utf8, 0, length);
+        }
+        bufferSlice.setInt(getOffset(columnIndex), stringOffset);
+        clearNull(columnIndex);
+    }
+
     private void writeJson(int columnIndex, Value value) {
         int index = valueReferences.size();
         valueReferences.add(value.immutableValue());
@@ -178,13 +278,25 @@ public class PageBuilder implements AutoCloseable {
     }
 
     private int getOffset(int columnIndex) {
+        if (layout == PageLayout.COLUMNAR) {
+            return columnarValueOffsets[columnIndex] + count * columnSizes[columnIndex];
+        }
         return position + columnOffsets[columnIndex];
     }
 
     public void addRecord() {
+        if (stringStorage == PageStringStorage.INLINE_UTF8) {
+            ensureVariableLengthDataCapacity(row.prepareVariableLengthData());
+        }
+
         // record
         row.write(this);
 
+        if (layout == PageLayout.COLUMNAR) {
+            addColumnarRecord();
+            return;
+        }
+
         // record header
         bufferSlice.setInt(position, nextVariableLengthDataOffset);  // nextVariableLengthDataOffset means record size
         bufferSlice.setBytes(position + 4, nullBitSet);
@@ -200,11 +312,63 @@ public class PageBuilder implements AutoCloseable {
         }
     }
 
+    private void ensureVariableLengthDataCapacity(int variableLengthDataSize) {
+        if (layout == PageLayout.COLUMNAR) {
+            if (columnarVariableLengthDataPosition + variableLengthDataSize + referenceSize <= buffer.capacity()) {
+                return;
+            }
+        } else {
+            if (position + fixedRecordSize + variableLengthDataSize + referenceSize <= buffer.capacity()) {
+                return;
+            }
+        }
+
+        // flush records before this record, and allocate a buffer large enough for this record
+        if (count > 0) {
+            doFlush();
+        } else {
+            buffer.release();
+        }
+        newBuffer(variableLengthDataSize);
+    }
+
+    private void addColumnarRecord() {
+        // null bitmaps
+        final int byteIndex = count >>> 3;
+        final int bit = 1 << (count & 7);
+        for (int i = 0; i < columnarNullBitmapOffsets.length; i++) {
+            int offset = columnarNullBitmapOffsets[i] + byteIndex;
+            byte bits = bufferSlice.getByte(offset);
+            if ((nullBitSet[i >>> 3] & (1 << (i & 7))) != 0) {
+                bits |= bit;
+            } else {
+                bits &= ~bit;
+            }
+            bufferSlice.setByte(offset, bits);
+        }
+        count++;
+
+        Arrays.fill(nullBitSet, (byte) -1);
+
+        // flush if next record will not fit in this buffer
+        if (columnarCapacity <= count
+                || buffer.capacity() < PageFormat.columnarPageSize(schema, count + 1) + referenceSize) {
+            flush();
+        }
+    }
+
     private void doFlush() {
         if (buffer != null && count > 0) {
-            // write page header
-            bufferSlice.setInt(0, count);
-            buffer.limit(position);
+            if (layout == PageLayout.COLUMNAR) {
+                // write page header
+                bufferSlice.setInt(0, count | PageFormat.COLUMNAR_FLAG | stringStorageFlag());
+                bufferSlice.setInt(4, columnarCapacity);
+                buffer.limit(columnarVariableLengthDataPosition);
+            } else {
+                // write page header
+                bufferSlice.setInt(0, count | stringStorageFlag());
+                buffer.limit(position);
+            }
 
             // flush page
             Page page = Page.wrap(buffer)
@@ -216,10 +380,14 @@ public class PageBuilder implements AutoCloseable {
         }
     }
 
+    private int stringStorageFlag() {
+        return stringStorage == PageStringStorage.INLINE_UTF8 ? PageFormat.INLINE_STRINGS_FLAG : 0;
+    }
+
     public void flush() {
         doFlush();
         if (buffer == null) {
-            newBuffer();
+            newBuffer(0);
         }
     }
 
@@ -299,6 +467,10 @@ public class PageBuilder implements AutoCloseable {
             values[columnIndex].setString(value);
         }
 
+        private void setStringBytes(int columnIndex, byte[] utf8, int offset, int length) {
+            values[columnIndex].setStringBytes(utf8, offset, length);
+        }
+
         private void setJson(int columnIndex, Value value) {
             values[columnIndex].setJson(value);
         }
@@ -307,6 +479,14 @@ public class PageBuilder implements AutoCloseable {
             values[columnIndex].setTimestamp(value);
         }
 
+        private int prepareVariableLengthData() {
+            int size = 0;
+            for (ColumnValue v : values) {
+                size += v.prepareVariableLengthData();
+            }
+            return size;
+        }
+
         private void write(PageBuilder pageBuilder) {
             for (ColumnValue v : values) {
                 v.write(pageBuilder);
@@ -323,12 +503,16 @@ public class PageBuilder implements AutoCloseable {
 
         void setString(String value);
 
+        void setStringBytes(byte[] utf8, int offset, int length);
+
         void setJson(Value value);
 
         void setTimestamp(Timestamp value);
 
         void setNull();
 
+        int prepareVariableLengthData();
+
         void write(PageBuilder pageBuilder);
     }
 
@@ -356,6 +540,10 @@ public class PageBuilder implements AutoCloseable {
             throw new IllegalStateException("Not reach here");
         }
 
+        public void setStringBytes(byte[] utf8, int offset, int length) {
+            throw new IllegalStateException("Not reach here");
+        }
+
         public void setJson(Value value) {
             throw new IllegalStateException("Not reach here");
         }
@@ -368,6 +556,10 @@ public class PageBuilder implements AutoCloseable {
             isNull = true;
         }
 
+        public int prepareVariableLengthData() {
+            return 0;
+        }
+
         public void write(PageBuilder pageBuilder) {
             if (!isNull) {
                 writeNotNull(pageBuilder);
@@ -439,6 +631,10 @@ public class PageBuilder implements AutoCloseable {
     private static class StringColumnValue extends AbstractColumnValue {
         private String value;
 
+        // UTF-8 bytes of the value when |value| is null. The array is reused across records.
+        private byte[] bytes = new byte[0];
+        private int length;
+
         StringColumnValue(Column column) {
             super(column);
         }
@@ -449,9 +645,70 @@ public class PageBuilder implements AutoCloseable {
             this.isNull = false;
         }
 
+        @Override
+        public void setStringBytes(byte[] utf8, int offset, int length) {
+            ensureBytesCapacity(length);
+            System.arraycopy(utf8, offset, bytes, 0, length);
+            this.length = length;
+            this.value = null;
+            this.isNull = false;
+        }
+
+        @Override
+        public int prepareVariableLengthData() {
+            if (isNull) {
+                return 0;
+            }
+            if (value != null) {
+                // encode here once so that the value is not encoded again for following records
+                encodeUtf8(value);
+                this.value = null;
+            }
+            return PageFormat.INLINE_STRING_HEADER_SIZE + length;
+        }
+
         @Override
         public void writeNotNull(PageBuilder pageBuilder) {
-            pageBuilder.writeString(column.getIndex(), value);
+            if (value != null) {
+                pageBuilder.writeString(column.getIndex(), value);
+            } else {
+                pageBuilder.writeStringBytes(column.getIndex(), bytes, length);
+            }
+        }
+
+        private void ensureBytesCapacity(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = new byte[Math.max(capacity, bytes.length * 2)];
+            }
+        }
+
+        private void encodeUtf8(String string) {
+            final int stringLength = string.length();
+            ensureBytesCapacity(stringLength * 3);
+            int pos = 0;
+            for (int i = 0; i < stringLength; i++) {
+                final char c = string.charAt(i);
+                if (c < 0x80) {
+                    bytes[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[pos++] = (byte) (0xc0 | (c >> 6));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < stringLength && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                    bytes[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogates are replaced as String#getBytes does
+                    bytes[pos++] = (byte) '?';
+                } else {
+                    bytes[pos++] = (byte) (0xe0 | (c >> 12));
+                    bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            this.length = pos;
         }
     }
 
@@ -7,10 +7,46 @@ abstract class PageFormat {
     // +---+
     // count (number of records)
 
+    // Columnar PageHeader
+    // +---+---+
+    // | 4 | 4 |
+    // +---+---+
+    // count | COLUMNAR_FLAG, capacity (number of record slots in each column)
+    //
+    // Columnar PageBody
+    // +-----------------+-----+-------------------+--------------------+-----+----------------------+
+    // | values of col 0 | ... | values of col N-1 | null bits of col 0 | ... | null bits of col N-1 |
+    // +-----------------+-----+-------------------+--------------------+-----+----------------------+
+    // capacity * fixed storage size of the column, and (capacity + 7) / 8 bytes for each null bitmap
+    //
+    // Inline UTF-8 strings
+    // +---+-----------------+
+    // | 4 | length          |
+    // +---+-----------------+
+    // length, UTF-8 bytes
+    //
+    // The fixed-size slot of a STRING column has the offset of the string instead of an index of
+    // Page.getStringReferences. It is relative to the record in row-oriented pages, and relative
+    // to the page in columnar pages. Strings are stored in the variable-length area, which follows
+    // the fixed-size slots of the record in row-oriented pages, and follows the null bitmaps in
+    // columnar pages.
+
     private PageFormat() {}
 
     static final int PAGE_HEADER_SIZE = 4;
 
+    static final int COLUMNAR_PAGE_HEADER_SIZE = 8;
+
+    // The highest bit of count is set in columnar pages so that a reader which does not know
+    // the columnar layout fails with a negative count instead of reading garbage.
+    static final int COLUMNAR_FLAG = 0x80000000;
+
+    static final int INLINE_STRINGS_FLAG = 0x40000000;
+
+    static final int RECORD_COUNT_MASK = 0x3fffffff;
+
+    static final int INLINE_STRING_HEADER_SIZE = 4;
+
     // PageBuilder.setVariableLengthData and PageReader.readVariableLengthData
     // uses 4 bytes integer
     static final int VARIABLE_LENGTH_COLUMN_SIZE = 4;
@@ -39,4 +75,65 @@ abstract class PageFormat {
 
         return offsets;
     }
+
+    static boolean isColumnar(int header) {
+        return (header & COLUMNAR_FLAG) != 0;
+    }
+
+    static boolean hasInlineStrings(int header) {
+        return (header & INLINE_STRINGS_FLAG) != 0;
+    }
+
+    static int recordCount(int header) {
+        return header & RECORD_COUNT_MASK;
+    }
+
+    static int[] columnSizes(Schema schema) {
+        int[] sizes = new int[schema.getColumnCount()];
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            sizes[i] = schema.getColumnType(i).getFixedStorageSize();
+        }
+        return sizes;
+    }
+
+    static int columnarPageSize(Schema schema, int capacity) {
+        return COLUMNAR_PAGE_HEADER_SIZE
+                + schema.getFixedStorageSize() * capacity
+                + ((capacity + 7) / 8) * schema.getColumnCount();
+    }
+
+    static int columnarCapacity(Schema schema, int bufferSize) {
+        if (schema.isEmpty()) {
+            // records of an empty schema take no space
+            return RECORD_COUNT_MASK;
+        }
+        // bits per record: values and a null bit of each column
+        long bitsPerRecord = schema.getFixedStorageSize() * 8L + schema.getColumnCount();
+        int capacity = (int) Math.min(RECORD_COUNT_MASK, (bufferSize - COLUMNAR_PAGE_HEADER_SIZE) * 8L / bitsPerRecord);
+        while (capacity > 0 && columnarPageSize(schema, capacity) > bufferSize) {
+            // null bitmaps are rounded up to bytes
+            capacity--;
+        }
+        return capacity;
+    }
+
+    static int[] columnarValueOffsets(Schema schema, int capacity) {
+        int[] offsets = new int[schema.getColumnCount()];
+        int offset = COLUMNAR_PAGE_HEADER_SIZE;
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            offsets[i] = offset;
+            offset += schema.getColumnType(i).getFixedStorageSize() * capacity;
+        }
+        return offsets;
+    }
+
+    static int[] columnarNullBitmapOffsets(Schema schema, int capacity) {
+        int[] offsets = new int[schema.getColumnCount()];
+        int offset = COLUMNAR_PAGE_HEADER_SIZE + schema.getFixedStorageSize() * capacity;
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            offsets[i] = offset;
+            offset += (capacity + 7) / 8;
+        }
+        return offsets;
+    }
 }
@@ -0,0 +1,25 @@
+package org.embulk.spi;
+
+/**
+ * PageLayout is how PageBuilder places values of records in a Page.
+ *
+ * PageReader detects the layout of each Page by its header. Plugins can read Pages of both layouts
+ * through the same PageReader API regardless of which layout the upstream PageBuilder has chosen.
+ */
+public enum PageLayout {
+    /**
+     * Values of a record are stored next to each other with a record header and a null bitset.
+     *
+     * It is the default layout, and the only layout before v0.9.8.
+     */
+    ROW_ORIENTED,
+
+    /**
+     * Values of a column are stored next to each other, followed by a null bitmap of each column.
+     *
+     * It fits filters and formatters which touch only a few columns of wide records, and vector
+     * access such as {@link PageReader#getLongVector(int)}.
+     */
+    COLUMNAR,
+    ;
+}
@@ -2,12 +2,15 @@ package org.embulk.spi;
 
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import org.embulk.spi.time.Timestamp;
 import org.msgpack.value.Value;
 
 public class PageReader implements AutoCloseable {
     private final Schema schema;
     private final int[] columnOffsets;
+    private final int[] columnSizes;
 
     private Page page = SENTINEL;
     private Slice pageSlice = null;
@@ -17,18 +20,27 @@ public class PageReader implements AutoCloseable {
     private int position;
     private final byte[] nullBitSet;
 
+    private boolean inlineStrings = false;
+
+    // used only for pages in PageLayout.COLUMNAR
+    private boolean columnar = false;
+    private int columnarCapacity = -1;
+    private int[] columnarValueOffsets;
+    private int[] columnarNullBitmapOffsets;
+
     private static final Page SENTINEL = Page.wrap(Buffer.wrap(new byte[4]));  // buffer().release() does nothing
 
     public PageReader(Schema schema) {
         this.schema = schema;
         this.columnOffsets = PageFormat.columnOffsets(schema);
+        this.columnSizes = PageFormat.columnSizes(schema);
         this.nullBitSet = new byte[PageFormat.nullBitSetSize(schema)];
     }
 
     public static int getRecordCount(Page page) {
         Buffer pageBuffer = page.buffer();
         Slice pageSlice = Slices.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.limit());
-        return pageSlice.getInt(0);  // see page format
+        return PageFormat.recordCount(pageSlice.getInt(0));  // see page format
     }
 
     public void setPage(Page page) {
@@ -38,9 +50,22 @@ public class PageReader implements AutoCloseable {
         Buffer pageBuffer = page.buffer();
         Slice pageSlice = Slices.wrappedBuffer(pageBuffer.array(), pageBuffer.offset(), pageBuffer.limit());
 
-        pageRecordCount = pageSlice.getInt(0);  // see page format
+        final int header = pageSlice.getInt(0);  // see page format
+        pageRecordCount = PageFormat.recordCount(header);
         readCount = 0;
-        position = PageFormat.PAGE_HEADER_SIZE;
+        columnar = PageFormat.isColumnar(header);
+        inlineStrings = PageFormat.hasInlineStrings(header);
+        if (columnar) {
+            position = PageFormat.COLUMNAR_PAGE_HEADER_SIZE;
+            int capacity = pageSlice.getInt(4);
+            if (capacity != columnarCapacity) {
+                this.columnarCapacity = capacity;
+                this.columnarValueOffsets = PageFormat.columnarValueOffsets(schema, capacity);
+                this.columnarNullBitmapOffsets = PageFormat.columnarNullBitmapOffsets(schema, capacity);
+            }
+        } else {
+            position = PageFormat.PAGE_HEADER_SIZE;
+        }
 
         this.page = page;
         this.pageSlice = pageSlice;
@@ -50,11 +75,23 @@ public class PageReader implements AutoCloseable {
         return schema;
     }
 
+    public PageLayout getLayout() {
+        return columnar ? PageLayout.COLUMNAR : PageLayout.ROW_ORIENTED;
+    }
+
+    public PageStringStorage getStringStorage() {
+        return inlineStrings ? PageStringStorage.INLINE_UTF8 : PageStringStorage.REFERENCE;
+    }
+
     public boolean isNull(Column column) {
         return isNull(column.getIndex());
     }
 
     public boolean isNull(int columnIndex) {
+        if (columnar) {
+            final int recordIndex = readCount - 1;
+            return (pageSlice.getByte(columnarNullBitmapOffsets[columnIndex] + (recordIndex >>> 3)) & (1 << (recordIndex & 7))) != 0;
+        }
         return (nullBitSet[columnIndex >>> 3] & (1 << (columnIndex & 7))) != 0;
     }
 
@@ -94,10 +131,64 @@ public class PageReader implements AutoCloseable {
         if (isNull(columnIndex)) {
             return null;
         }
+        if (inlineStrings) {
+            final int stringOffset = getInlineStringOffset(columnIndex);
+            final Buffer pageBuffer = page.buffer();
+            return new String(pageBuffer.array(),
+                              pageBuffer.offset() + stringOffset + PageFormat.INLINE_STRING_HEADER_SIZE,
+                              pageSlice.getInt(stringOffset),
+                              StandardCharsets.UTF_8);
+        }
         int index = pageSlice.getInt(getOffset(columnIndex));
         return page.getStringReference(index);
     }
 
+    /**
+     * ByteSink receives UTF-8 bytes of a STRING value from {@link PageReader#getStringBytes(int, ByteSink)}.
+     *
+     * The bytes may be a part of the Buffer of the Page. They must not be modified, nor be referred after
+     * the method returns.
+     */
+    public interface ByteSink {
+        void write(byte[] bytes, int offset, int length);
+    }
+
+    /**
+     * Passes UTF-8 bytes of a STRING value to the sink without decoding it to String.
+     *
+     * It returns false without calling the sink if the value is null. Pages built with
+     * {@link PageStringStorage#INLINE_UTF8} pass the bytes in the page directly. Other pages encode the value.
+     */
+    public boolean getStringBytes(Column column, ByteSink sink) {
+        // TODO check type?
+        return getStringBytes(column.getIndex(), sink);
+    }
+
+    public boolean getStringBytes(int columnIndex, ByteSink sink) {
+        if (isNull(columnIndex)) {
+            return false;
+        }
+        if (inlineStrings) {
+            final int stringOffset = getInlineStringOffset(columnIndex);
+            final Buffer pageBuffer = page.buffer();
+            sink.write(pageBuffer.array(),
+                       pageBuffer.offset() + stringOffset + PageFormat.INLINE_STRING_HEADER_SIZE,
+                       pageSlice.getInt(stringOffset));
+        } else {
+            final byte[] bytes = page.getStringReference(pageSlice.getInt(getOffset(columnIndex))).getBytes(StandardCharsets.UTF_8);
+            sink.write(bytes, 0, bytes.length);
+        }
+        return true;
+    }
+
+    private int getInlineStringOffset(int columnIndex) {
+        final int stringOffset = pageSlice.getInt(getOffset(columnIndex));
+        if (columnar) {
+            return stringOffset;  // relative to the page
+        }
+        return position + stringOffset;  // relative to the record
+    }
+
     public Timestamp getTimestamp(Column column) {
         // TODO check type?
         return getTimestamp(column.getIndex());
@@ -127,14 +218,108 @@ public class PageReader implements AutoCloseable {
     }
 
     private int getOffset(int columnIndex) {
+        if (columnar) {
+            return columnarValueOffsets[columnIndex] + (readCount - 1) * columnSizes[columnIndex];
+        }
         return position + columnOffsets[columnIndex];
     }
 
+    /**
+     * Returns values of a LONG column of all records in the current page.
+     *
+     * It does not move the cursor of {@link #nextRecord()}. Values of null records are undefined.
+     * Check {@link #getNullBitmap(int)} for them.
+     */
+    public long[] getLongVector(Column column) {
+        // TODO check type?
+        return getLongVector(column.getIndex());
+    }
+
+    public long[] getLongVector(int columnIndex) {
+        final long[] values = new long[pageRecordCount];
+        if (columnar) {
+            final int offset = columnarValueOffsets[columnIndex];
+            for (int i = 0; i < pageRecordCount; i++) {
+                values[i] = pageSlice.getLong(offset + i * 8);
+            }
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                values[i] = pageSlice.getLong(recordPosition + columnOffsets[columnIndex]);
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns values of a DOUBLE column of all records in the current page.
+     *
+     * It does not move the cursor of {@link #nextRecord()}. Values of null records are undefined.
+     * Check {@link #getNullBitmap(int)} for them.
+     */
+    public double[] getDoubleVector(Column column) {
+        // TODO check type?
+        return getDoubleVector(column.getIndex());
+    }
+
+    public double[] getDoubleVector(int columnIndex) {
+        final double[] values = new double[pageRecordCount];
+        if (columnar) {
+            final int offset = columnarValueOffsets[columnIndex];
+            for (int i = 0; i < pageRecordCount; i++) {
+                values[i] = pageSlice.getDouble(offset + i * 8);
+            }
+        } else {
+            int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+            for (int i = 0; i < pageRecordCount; i++) {
+                values[i] = pageSlice.getDouble(recordPosition + columnOffsets[columnIndex]);
+                recordPosition += pageSlice.getInt(recordPosition);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns a bitmap of the current page in which the i-th bit is set if the column of the i-th record is null.
+     *
+     * It does not move the cursor of {@link #nextRecord()}.
+     */
+    public BitSet getNullBitmap(Column column) {
+        return getNullBitmap(column.getIndex());
+    }
+
+    public BitSet getNullBitmap(int columnIndex) {
+        if (columnar) {
+            final byte[] bytes = new byte[(pageRecordCount + 7) / 8];
+            pageSlice.getBytes(columnarNullBitmapOffsets[columnIndex], bytes, 0, bytes.length);
+            final BitSet bitmap = BitSet.valueOf(bytes);
+            bitmap.clear(pageRecordCount, bytes.length * 8);  // bits out of the records are undefined
+            return bitmap;
+        }
+        final BitSet bitmap = new BitSet(pageRecordCount);
+        final int byteIndex = 4 + (columnIndex >>> 3);
+        final int bit = 1 << (columnIndex & 7);
+        int recordPosition = PageFormat.PAGE_HEADER_SIZE;
+        for (int i = 0; i < pageRecordCount; i++) {
+            if ((pageSlice.getByte(recordPosition + byteIndex) & bit) != 0) {
+                bitmap.set(i);
+            }
+            recordPosition += pageSlice.getInt(recordPosition);
+        }
+        return bitmap;
+    }
+
     public boolean nextRecord() {
         if (pageRecordCount <= readCount) {
             return false;
         }
 
+        if (columnar) {
+            readCount++;
+            return true;
+        }
+
         if (readCount > 0) {
             // advance position excepting the first record
             int lastRecordSize = pageSlice.getInt(position);
@@ -0,0 +1,25 @@
+package org.embulk.spi;
+
+/**
+ * PageStringStorage is how PageBuilder stores values of STRING columns in a Page.
+ *
+ * PageReader detects the storage of each Page by its header as well as {@link PageLayout}.
+ */
+public enum PageStringStorage {
+    /**
+     * Values are kept as java.lang.String in {@link Page#getStringReferences()}.
+     *
+     * It is the default storage, and the only storage before v0.9.8.
+     */
+    REFERENCE,
+
+    /**
+     * Values are encoded in UTF-8 into the variable-length area of the Buffer of the Page.
+     *
+     * It does not keep a String object per value until the Page is consumed, and the size of a Page
+     * is exact. Plugins can copy the bytes without decoding them with {@link PageBuilder#setStringBytes(int, byte[], int, int)}
+     * and {@link PageReader#getStringBytes(int, PageReader.ByteSink)}.
+     */
+    INLINE_UTF8,
+    ;
+}
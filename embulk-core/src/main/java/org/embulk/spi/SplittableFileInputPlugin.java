@@ -0,0 +1,27 @@
+package org.embulk.spi;
+
+import java.util.List;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+
+/**
+ * SplittableFileInputPlugin is a FileInputPlugin which can divide a task into splits, such as files of a task which
+ * reads many files.
+ *
+ * FileInputRunner runs splits of the task as splits of {@link SplittableInputPlugin}. Each split is decoded and
+ * parsed separately, and task reports of the splits are merged into one task report of the task.
+ */
+public interface SplittableFileInputPlugin extends FileInputPlugin {
+    /**
+     * Returns the number of splits of a task. A task which returns 1 or less is opened by {@code open}.
+     */
+    int getSplitCount(TaskSource taskSource,
+            int taskIndex);
+
+    TransactionalFileInput openSplit(TaskSource taskSource,
+            int taskIndex, int splitIndex);
+
+    TaskReport mergeSplitTaskReports(TaskSource taskSource,
+            int taskIndex,
+            List<TaskReport> splitTaskReports);
+}
@@ -0,0 +1,36 @@
+package org.embulk.spi;
+
+import java.util.List;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+
+/**
+ * SplittableInputPlugin is an InputPlugin which can divide a task into smaller units of work, such as byte ranges.
+ *
+ * An executor which supports splits, such as the local executor with {@code work_stealing: true}, runs splits of
+ * a task concurrently so that idle threads can take over remaining splits of a large task. Other executors call
+ * {@link InputPlugin#run(TaskSource, Schema, int, PageOutput)} as usual, which must process all the splits.
+ * FileInputRunner implements it for {@link SplittableFileInputPlugin}.
+ *
+ * Splits of a task share one PageOutput of the task. The executor serializes {@code add} calls, and calls
+ * {@code finish} once after all the splits finish. Task reports of the splits are merged into one task report
+ * so that the task is committed, or resumed, as a whole as well as tasks of other input plugins.
+ */
+public interface SplittableInputPlugin extends InputPlugin {
+    /**
+     * Returns the number of splits of a task. A task which returns 1 or less is run by {@code run} without splitting.
+     */
+    int getSplitCount(TaskSource taskSource,
+            Schema schema, int taskIndex);
+
+    /**
+     * Runs a split of a task. {@code output.finish()} and {@code output.close()} are ignored.
+     */
+    TaskReport runSplit(TaskSource taskSource,
+            Schema schema, int taskIndex, int splitIndex,
+            PageOutput output);
+
+    TaskReport mergeSplitTaskReports(TaskSource taskSource,
+            Schema schema, int taskIndex,
+            List<TaskReport> splitTaskReports);
+}
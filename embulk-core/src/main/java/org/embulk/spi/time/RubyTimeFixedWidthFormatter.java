@@ -0,0 +1,305 @@
+package org.embulk.spi.time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RubyTimeFixedWidthFormatter formats timestamps in common strftime formats, such as "%Y-%m-%d %H:%M:%S.%6N %z",
+ * by appending digits directly into a StringBuilder.
+ *
+ * It supports %Y %m %d %e %H %k %M %S %L %N (with a width from 1 to 9) %z %F %T %% and literal characters. It does
+ * not format years out of 0..9999, and offsets with seconds such as local mean time. The caller falls back to
+ * RubyDateFormat for them. The results are the same as RubyDateFormat's for the values it formats.
+ *
+ * The formatted date and hour at the beginning of the format are cached for the last hour in local time because
+ * timestamps in a column are usually close to each other. Instances are not thread-safe as RubyDateFormat is not.
+ *
+ * This class is intentionally package-private so that plugins do not directly depend.
+ */
+class RubyTimeFixedWidthFormatter {
+    // Elements of a compiled format. Non-negative elements are literal characters.
+    private static final int YEAR = -1;
+    private static final int MONTH = -2;
+    private static final int DAY = -3;
+    private static final int DAY_BLANK_PADDED = -4;
+    private static final int HOUR = -5;
+    private static final int HOUR_BLANK_PADDED = -6;
+    private static final int MINUTE = -7;
+    private static final int SECOND = -8;
+    private static final int OFFSET = -9;
+    private static final int FRACTION_WIDTH_0 = -10;  // FRACTION_WIDTH_0 - width for %<width>N
+
+    // Years from 0000-01-01 to 9999-12-31 with some margin for time zone offsets
+    private static final long MIN_EPOCH_SECOND = -62167219200L - 86400L;
+    private static final long MAX_EPOCH_SECOND = 253402300800L + 86400L;
+
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private static final int[] POWERS_OF_TEN = {
+        1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000,
+    };
+
+    private RubyTimeFixedWidthFormatter(final int[] elements, final org.joda.time.DateTimeZone jodaDateTimeZone) {
+        this.elements = elements;
+        this.jodaDateTimeZone = jodaDateTimeZone;
+
+        int prefixElements = 0;
+        while (prefixElements < elements.length && isPrefixElement(elements[prefixElements])) {
+            prefixElements++;
+        }
+        this.prefixElements = prefixElements;
+        this.prefix = new StringBuilder();
+        this.cachedLocalHour = Long.MIN_VALUE;
+    }
+
+    /**
+     * Compiles a strftime format.
+     *
+     * @return the formatter, or null if the format is not supported
+     */
+    static RubyTimeFixedWidthFormatter compile(final String formatString,
+                                               final org.joda.time.DateTimeZone jodaDateTimeZone) {
+        final List<Integer> elements = new ArrayList<>();
+        if (!compileElements(formatString, elements)) {
+            return null;
+        }
+        final int[] array = new int[elements.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = elements.get(i);
+        }
+        return new RubyTimeFixedWidthFormatter(array, jodaDateTimeZone);
+    }
+
+    /**
+     * Appends a formatted timestamp.
+     *
+     * @return false, without appending anything, if the timestamp should be formatted by RubyDateFormat
+     */
+    boolean formatTo(final long epochSecond, final int nano, final StringBuilder sb) {
+        if (epochSecond < MIN_EPOCH_SECOND || MAX_EPOCH_SECOND < epochSecond) {
+            return false;
+        }
+        final int offsetMillis = this.jodaDateTimeZone.getOffset(epochSecond * 1000);
+        if (offsetMillis % 60000 != 0) {
+            return false;
+        }
+        final long localSecond = epochSecond + offsetMillis / 1000;
+        final long localHour = Math.floorDiv(localSecond, 3600);
+        if (localHour != this.cachedLocalHour) {
+            if (!this.updateCachedHour(localHour)) {
+                return false;
+            }
+        }
+        final int secondOfHour = (int) (localSecond - localHour * 3600);
+
+        sb.append(this.prefix);
+        for (int i = this.prefixElements; i < this.elements.length; i++) {
+            final int element = this.elements[i];
+            switch (element) {
+                case YEAR:
+                    appendDigits(sb, this.year, 4);
+                    break;
+                case MONTH:
+                    appendDigits(sb, this.month, 2);
+                    break;
+                case DAY:
+                    appendDigits(sb, this.day, 2);
+                    break;
+                case DAY_BLANK_PADDED:
+                    appendBlankPadded(sb, this.day);
+                    break;
+                case HOUR:
+                    appendDigits(sb, this.hour, 2);
+                    break;
+                case HOUR_BLANK_PADDED:
+                    appendBlankPadded(sb, this.hour);
+                    break;
+                case MINUTE:
+                    appendDigits(sb, secondOfHour / 60, 2);
+                    break;
+                case SECOND:
+                    appendDigits(sb, secondOfHour % 60, 2);
+                    break;
+                case OFFSET: {
+                    final int offsetMinutes = offsetMillis / 60000;
+                    final int absoluteOffsetMinutes = Math.abs(offsetMinutes);
+                    sb.append(offsetMinutes < 0 ? '-' : '+');
+                    appendDigits(sb, absoluteOffsetMinutes / 60, 2);
+                    appendDigits(sb, absoluteOffsetMinutes % 60, 2);
+                    break;
+                }
+                default:
+                    if (element >= 0) {
+                        sb.append((char) element);
+                    } else {
+                        // fractions are truncated, not rounded
+                        final int width = FRACTION_WIDTH_0 - element;
+                        appendDigits(sb, nano / POWERS_OF_TEN[9 - width], width);
+                    }
+            }
+        }
+        return true;
+    }
+
+    private boolean updateCachedHour(final long localHour) {
+        final long epochDay = Math.floorDiv(localHour, 24);
+
+        // Converts days to a civil date in the proleptic Gregorian calendar as java.time.LocalDate#ofEpochDay.
+        final long zeroDay = epochDay + DAYS_0000_TO_1970 - 60;  // from 0000-03-01
+        final long era = Math.floorDiv(zeroDay, 146097);
+        final long dayOfEra = zeroDay - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long marchBasedMonth = (5 * dayOfYear + 2) / 153;
+        final int month = (int) (marchBasedMonth < 10 ? marchBasedMonth + 3 : marchBasedMonth - 9);
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || 9999 < year) {
+            return false;
+        }
+
+        this.year = (int) year;
+        this.month = month;
+        this.day = (int) (dayOfYear - (153 * marchBasedMonth + 2) / 5 + 1);
+        this.hour = (int) Math.floorMod(localHour, 24);
+        this.cachedLocalHour = localHour;
+
+        this.prefix.setLength(0);
+        for (int i = 0; i < this.prefixElements; i++) {
+            final int element = this.elements[i];
+            switch (element) {
+                case YEAR:
+                    appendDigits(this.prefix, this.year, 4);
+                    break;
+                case MONTH:
+                    appendDigits(this.prefix, this.month, 2);
+                    break;
+                case DAY:
+                    appendDigits(this.prefix, this.day, 2);
+                    break;
+                case DAY_BLANK_PADDED:
+                    appendBlankPadded(this.prefix, this.day);
+                    break;
+                case HOUR:
+                    appendDigits(this.prefix, this.hour, 2);
+                    break;
+                case HOUR_BLANK_PADDED:
+                    appendBlankPadded(this.prefix, this.hour);
+                    break;
+                default:
+                    this.prefix.append((char) element);
+            }
+        }
+        return true;
+    }
+
+    private static boolean compileElements(final String formatString, final List<Integer> elements) {
+        int index = 0;
+        while (index < formatString.length()) {
+            final char c = formatString.charAt(index++);
+            if (c != '%') {
+                elements.add((int) c);
+                continue;
+            }
+            if (index >= formatString.length()) {
+                return false;
+            }
+
+            char specifier = formatString.charAt(index++);
+            int width = 0;
+            if ('1' <= specifier && specifier <= '9') {
+                width = specifier - '0';
+                if (index >= formatString.length()) {
+                    return false;
+                }
+                specifier = formatString.charAt(index++);
+                if (specifier != 'N') {
+                    return false;
+                }
+            }
+
+            switch (specifier) {
+                case 'Y':
+                    elements.add(YEAR);
+                    break;
+                case 'm':
+                    elements.add(MONTH);
+                    break;
+                case 'd':
+                    elements.add(DAY);
+                    break;
+                case 'e':
+                    elements.add(DAY_BLANK_PADDED);
+                    break;
+                case 'H':
+                    elements.add(HOUR);
+                    break;
+                case 'k':
+                    elements.add(HOUR_BLANK_PADDED);
+                    break;
+                case 'M':
+                    elements.add(MINUTE);
+                    break;
+                case 'S':
+                    elements.add(SECOND);
+                    break;
+                case 'L':
+                    elements.add(FRACTION_WIDTH_0 - 3);
+                    break;
+                case 'N':
+                    elements.add(FRACTION_WIDTH_0 - (width == 0 ? 9 : width));
+                    break;
+                case 'z':
+                    elements.add(OFFSET);
+                    break;
+                case 'F':
+                    compileElements("%Y-%m-%d", elements);
+                    break;
+                case 'T':
+                    compileElements("%H:%M:%S", elements);
+                    break;
+                case '%':
+                    elements.add((int) '%');
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrefixElement(final int element) {
+        return element >= 0
+                || element == YEAR
+                || element == MONTH
+                || element == DAY
+                || element == DAY_BLANK_PADDED
+                || element == HOUR
+                || element == HOUR_BLANK_PADDED;
+    }
+
+    private static void appendDigits(final StringBuilder sb, final int value, final int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            sb.append((char) ('0' + (value / POWERS_OF_TEN[i]) % 10));
+        }
+    }
+
+    private static void appendBlankPadded(final StringBuilder sb, final int value) {
+        if (value < 10) {
+            sb.append(' ');
+            sb.append((char) ('0' + value));
+        } else {
+            appendDigits(sb, value, 2);
+        }
+    }
+
+    private final int[] elements;
+    private final org.joda.time.DateTimeZone jodaDateTimeZone;
+    private final int prefixElements;  // number of elements formatted in the prefix
+    private final StringBuilder prefix;
+
+    private long cachedLocalHour;
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+}
@@ -0,0 +1,404 @@
+package org.embulk.spi.time;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RubyTimeFixedWidthParser parses timestamps in common fixed-width formats, such as "%Y-%m-%d %H:%M:%S.%N %z",
+ * without building RubyTimeParsed.
+ *
+ * It accepts only strict texts in which every numeric field has its full width and its ordinary range, for example,
+ * "2017-07-14 02:40:00.123456 +0900". It returns null for other texts so that the caller falls back to RubyTimeParser,
+ * which handles lenient texts. The results are the same as RubyTimeParser's for the texts it accepts.
+ *
+ * This class is intentionally package-private so that plugins do not directly depend.
+ */
+class RubyTimeFixedWidthParser {
+    // Elements of a compiled format. Non-negative elements are literal characters.
+    private static final int YEAR = -1;
+    private static final int MONTH = -2;
+    private static final int DAY = -3;
+    private static final int HOUR = -4;
+    private static final int MINUTE = -5;
+    private static final int SECOND = -6;
+    private static final int FRACTION = -7;
+    private static final int ZONE = -8;
+
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private RubyTimeFixedWidthParser(final int[] elements,
+                                     final boolean legacy,
+                                     final Zone defaultZone,
+                                     final ZoneOffset defaultZoneOffset) {
+        this.elements = elements;
+        this.legacy = legacy;
+        this.defaultZone = defaultZone;
+        this.defaultZoneOffset = defaultZoneOffset;
+        this.lastZone = defaultZone;
+    }
+
+    /**
+     * Compiles a format for the legacy Embulk's timestamp parser.
+     *
+     * @return the parser, or null if the format is not supported
+     */
+    static RubyTimeFixedWidthParser compileLegacy(final RubyTimeFormat format, final ZoneId defaultZoneId) {
+        final int[] elements = compileElements(format);
+        if (elements == null) {
+            return null;
+        }
+        return new RubyTimeFixedWidthParser(elements, true, resolveLegacy(null, defaultZoneId), null);
+    }
+
+    /**
+     * Compiles a format for the Ruby-compatible timestamp parser.
+     *
+     * @return the parser, or null if the format is not supported
+     */
+    static RubyTimeFixedWidthParser compileRuby(final RubyTimeFormat format, final ZoneOffset defaultZoneOffset) {
+        final int[] elements = compileElements(format);
+        if (elements == null) {
+            return null;
+        }
+        return new RubyTimeFixedWidthParser(elements, false, resolveRuby(null, defaultZoneOffset), defaultZoneOffset);
+    }
+
+    /**
+     * Parses a text into Instant.
+     *
+     * @return the parsed Instant, or null if the text should be parsed by RubyTimeParser
+     */
+    Instant parse(final String text) {
+        final int length = text.length();
+        int pos = 0;
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nano = 0;
+        Zone zone = this.defaultZone;
+
+        for (final int element : this.elements) {
+            switch (element) {
+                case YEAR:
+                    year = readDigits(text, pos, 4);
+                    pos += 4;
+                    break;
+                case MONTH:
+                    month = readDigits(text, pos, 2);
+                    pos += 2;
+                    break;
+                case DAY:
+                    day = readDigits(text, pos, 2);
+                    pos += 2;
+                    break;
+                case HOUR:
+                    hour = readDigits(text, pos, 2);
+                    pos += 2;
+                    break;
+                case MINUTE:
+                    minute = readDigits(text, pos, 2);
+                    pos += 2;
+                    break;
+                case SECOND:
+                    second = readDigits(text, pos, 2);
+                    pos += 2;
+                    break;
+                case FRACTION: {
+                    // 1 to 9 digits followed by a non-digit
+                    final int begin = pos;
+                    int v = 0;
+                    while (pos < length && isDigit(text.charAt(pos))) {
+                        v = v * 10 + (text.charAt(pos) - '0');
+                        pos++;
+                        if (pos - begin > 9) {
+                            return null;
+                        }
+                    }
+                    if (pos == begin) {
+                        return null;
+                    }
+                    for (int i = pos - begin; i < 9; i++) {
+                        v *= 10;
+                    }
+                    nano = v;
+                    break;
+                }
+                case ZONE:
+                    // ZONE is always the last element.
+                    zone = this.findZone(text, pos);
+                    pos = length;
+                    break;
+                default:
+                    if (pos >= length || text.charAt(pos) != element) {
+                        return null;
+                    }
+                    pos++;
+            }
+        }
+
+        // readDigits returns -1 for non-digits.
+        if (pos != length || zone == null
+                || year < 0 || hour < 0 || minute < 0 || second < 0
+                || month < 1 || month > 12
+                || day < 1 || day > monthDays(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+
+        if (zone.zoneId != null) {
+            // Daylight saving time is resolved by java.time as the legacy parser does.
+            return ZonedDateTime.of(year, month, day, hour, minute, second, nano, zone.zoneId).toInstant();
+        }
+        final long epochSecond = toEpochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - zone.offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nano);
+    }
+
+    private static int[] compileElements(final RubyTimeFormat format) {
+        final List<Integer> elements = new ArrayList<>();
+        boolean hasYear = false;
+        boolean hasMonth = false;
+        boolean hasDay = false;
+
+        for (final RubyTimeFormat.TokenWithNext tokenWithNext : format) {
+            if (!elements.isEmpty() && elements.get(elements.size() - 1) == ZONE) {
+                return null;  // Time zones are supported only at the end.
+            }
+
+            final RubyTimeFormatToken token = tokenWithNext.getToken();
+            if (!token.isDirective()) {
+                final String content = ((RubyTimeFormatToken.Immediate) token).getContent();
+                for (int i = 0; i < content.length(); i++) {
+                    final char c = content.charAt(i);
+                    if (isDigit(c)) {
+                        return null;
+                    }
+                    elements.add((int) c);
+                }
+                continue;
+            }
+
+            switch (((RubyTimeFormatToken.Directive) token).getFormatDirective()) {
+                case YEAR_WITH_CENTURY:
+                    elements.add(YEAR);
+                    hasYear = true;
+                    break;
+                case MONTH_OF_YEAR:
+                    elements.add(MONTH);
+                    hasMonth = true;
+                    break;
+                case DAY_OF_MONTH_ZERO_PADDED:
+                case DAY_OF_MONTH_BLANK_PADDED:
+                    elements.add(DAY);
+                    hasDay = true;
+                    break;
+                case HOUR_OF_DAY_ZERO_PADDED:
+                case HOUR_OF_DAY_BLANK_PADDED:
+                    elements.add(HOUR);
+                    break;
+                case MINUTE_OF_HOUR:
+                    elements.add(MINUTE);
+                    break;
+                case SECOND_OF_MINUTE:
+                    elements.add(SECOND);
+                    break;
+                case MILLI_OF_SECOND:
+                case NANO_OF_SECOND:
+                    // RubyTimeParser reads a fixed number of digits if a numeric pattern follows.
+                    if (isNumberPattern(tokenWithNext.getNextToken())) {
+                        return null;
+                    }
+                    elements.add(FRACTION);
+                    break;
+                case TIME_OFFSET:
+                case TIME_ZONE_NAME:
+                    elements.add(ZONE);
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        // Default dates are not considered.
+        if (!hasYear || !hasMonth || !hasDay) {
+            return null;
+        }
+
+        final int[] array = new int[elements.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = elements.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Returns the zone at the end of the text, or null if the zone is not in a strict form.
+     *
+     * The forms accepted are "+HHMM", "+HH:MM", and 1 to 5 alphabets like "UTC", which ZONE_PARSE_REGEX in
+     * RubyTimeParser matches in the same way.
+     */
+    private Zone findZone(final String text, final int begin) {
+        final int length = text.length() - begin;
+        if (length <= 0) {
+            return null;
+        }
+        final char first = text.charAt(begin);
+        if (first == '+' || first == '-') {
+            if (length == 5) {
+                if (!isDigit(text, begin + 1, 4)) {
+                    return null;
+                }
+            } else if (length == 6) {
+                if (!isDigit(text, begin + 1, 2) || text.charAt(begin + 3) != ':' || !isDigit(text, begin + 4, 2)) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        } else {
+            if (length > 5) {
+                return null;
+            }
+            for (int i = begin; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                if (!(('A' <= c && c <= 'Z') || ('a' <= c && c <= 'z'))) {
+                    return null;
+                }
+            }
+        }
+
+        final Zone last = this.lastZone;
+        if (last != null && last.name != null && last.name.length() == length && text.regionMatches(begin, last.name, 0, length)) {
+            return last;
+        }
+
+        final String name = text.substring(begin);
+        final Zone zone;
+        if (this.legacy) {
+            final ZoneId zoneId = TimeZoneIds.parseZoneIdWithJodaAndRubyZoneTab(name);
+            if (zoneId == null) {
+                return null;
+            }
+            zone = resolveLegacy(name, zoneId);
+        } else {
+            final ZoneOffset zoneOffset = TimeZoneIds.parseRubyTimeZoneOffset(name, this.defaultZoneOffset);
+            if (zoneOffset == null) {
+                return null;
+            }
+            zone = resolveRuby(name, zoneOffset);
+        }
+        // Zone is immutable, and it can be shared among threads without synchronization.
+        this.lastZone = zone;
+        return zone;
+    }
+
+    private static Zone resolveLegacy(final String name, final ZoneId zoneId) {
+        if (zoneId == null) {
+            return null;
+        }
+        final ZoneRules rules = zoneId.getRules();
+        if (rules.isFixedOffset()) {
+            return new Zone(name, null, rules.getOffset(Instant.EPOCH).getTotalSeconds());
+        }
+        return new Zone(name, zoneId, 0);
+    }
+
+    private static Zone resolveRuby(final String name, final ZoneOffset zoneOffset) {
+        if (zoneOffset == null) {
+            return null;
+        }
+        return new Zone(name, null, zoneOffset.getTotalSeconds());
+    }
+
+    // Returns -1 if the text does not have |digits| digits at |pos|.
+    private static int readDigits(final String text, final int pos, final int digits) {
+        if (pos + digits > text.length()) {
+            return -1;
+        }
+        int v = 0;
+        for (int i = pos; i < pos + digits; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(final String text, final int pos, final int digits) {
+        return readDigits(text, pos, digits) >= 0;
+    }
+
+    private static boolean isDigit(final char c) {
+        return '0' <= c && c <= '9';
+    }
+
+    private static boolean isNumberPattern(final RubyTimeFormatToken token) {
+        if (token == null) {
+            return false;
+        } else if (!token.isDirective()) {
+            return isDigit(((RubyTimeFormatToken.Immediate) token).getContent().charAt(0));
+        } else {
+            return ((RubyTimeFormatToken.Directive) token).getFormatDirective().isNumeric();
+        }
+    }
+
+    private static boolean isLeapYear(final int year) {
+        return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int monthDays(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Same as java.time.LocalDate#toEpochDay for years 0 to 9999.
+    private static long toEpochDay(final int year, final int month, final int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static final class Zone {
+        private Zone(final String name, final ZoneId zoneId, final int offsetSeconds) {
+            this.name = name;
+            this.zoneId = zoneId;
+            this.offsetSeconds = offsetSeconds;
+        }
+
+        private final String name;  // null for the default
+        private final ZoneId zoneId;  // null if the offset is fixed
+        private final int offsetSeconds;
+    }
+
+    private final int[] elements;
+    private final boolean legacy;
+    private final Zone defaultZone;  // null if the default zone is unknown
+    private final ZoneOffset defaultZoneOffset;
+
+    private Zone lastZone;
+}
@@ -897,24 +897,24 @@ class RubyTimeParsed extends TimeParsed {
             offset /= 60;
             if (offsetSecond != 0) {
                 secondOfMinute -= offsetSecond;
-                offset -= secondOfMinute / 60;
-                secondOfMinute %= 60;
+                offset -= Math.floorDiv(secondOfMinute, 60);
+                secondOfMinute = Math.floorMod(secondOfMinute, 60);
             }
 
             final int offsetMinute = offset % 60;
             offset /= 60;
             if (offsetMinute != 0) {
                 minuteOfHour -= offsetMinute;
-                offset -= minuteOfHour / 60;
-                minuteOfHour %= 60;
+                offset -= Math.floorDiv(minuteOfHour, 60);
+                minuteOfHour = Math.floorMod(minuteOfHour, 60);
             }
 
             final int offsetHour = offset % 24;
             offset /= 24;
             if (offsetHour != 0) {
                 hourOfDay -= offsetHour;
-                offset -= hourOfDay / 24;
-                hourOfDay %= 24;
+                offset -= Math.floorDiv(hourOfDay, 24);
+                hourOfDay = Math.floorMod(hourOfDay, 24);
             }
 
             if (offset != 0) {
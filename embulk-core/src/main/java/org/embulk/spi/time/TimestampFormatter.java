@@ -155,13 +155,29 @@ public class TimestampFormatter {
         return this.delegate.format(value);
     }
 
+    /**
+     * Appends a formatted timestamp to the StringBuilder.
+     *
+     * It does not create an intermediate String for common formats such as "%Y-%m-%d %H:%M:%S.%6N %z" so that
+     * formatter plugins can reuse the StringBuilder.
+     */
+    public void format(final Timestamp value, final StringBuilder sink) {
+        if (this.delegate != null) {
+            this.delegate.format(value, sink);
+            return;
+        }
+        sink.append(this.format(value));
+    }
+
     // Receiving LineEncoder as a parameter is deprecated. TimestampFormatter should have fewer dependencies inside.
     // It won't be removed very soon at least until Embulk v0.10.
     @Deprecated
     public final void format(final Timestamp value, final LineEncoder encoder) {
-        // TODO: Optimize by directly appending to internal buffer
-        encoder.addText(this.format(value));
+        this.encoderBuilder.setLength(0);
+        this.format(value, this.encoderBuilder);
+        encoder.addText(this.encoderBuilder);
     }
 
     private final TimestampFormatterRuby delegate;
+    private final StringBuilder encoderBuilder = new StringBuilder();
 }
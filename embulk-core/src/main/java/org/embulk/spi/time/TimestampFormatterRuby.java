@@ -10,6 +10,8 @@ public class TimestampFormatterRuby extends TimestampFormatter {
                                    final org.joda.time.DateTimeZone jodaDateTimeZone,
                                    final String formatString) {
         this.formatter = formatter;
+        this.fixedWidthFormatter = RubyTimeFixedWidthFormatter.compile(formatString, jodaDateTimeZone);
+        this.builder = new StringBuilder();
         this.zoneOffset = zoneOffset;
         this.jodaDateTimeZone = jodaDateTimeZone;
         this.formatString = formatString;
@@ -43,7 +45,25 @@ public class TimestampFormatterRuby extends TimestampFormatter {
     }
 
     public String format(final Timestamp value) {
-        // TODO: Optimize by using reused StringBuilder.
+        if (this.fixedWidthFormatter != null) {
+            this.builder.setLength(0);
+            if (this.fixedWidthFormatter.formatTo(value.getEpochSecond(), value.getNano(), this.builder)) {
+                return this.builder.toString();
+            }
+        }
+        return this.formatWithRubyDateFormat(value);
+    }
+
+    @Override
+    public void format(final Timestamp value, final StringBuilder sink) {
+        if (this.fixedWidthFormatter != null
+                && this.fixedWidthFormatter.formatTo(value.getEpochSecond(), value.getNano(), sink)) {
+            return;
+        }
+        sink.append(this.formatWithRubyDateFormat(value));
+    }
+
+    private String formatWithRubyDateFormat(final Timestamp value) {
         this.formatter.setDateTime(new org.joda.time.DateTime(value.getEpochSecond() * 1000, this.jodaDateTimeZone));
         this.formatter.setNSec(value.getNano());
         return this.formatter.format(null);
@@ -51,6 +71,8 @@ public class TimestampFormatterRuby extends TimestampFormatter {
 
     @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/830
     private final org.jruby.util.RubyDateFormat formatter;
+    private final RubyTimeFixedWidthFormatter fixedWidthFormatter;  // null if the format is not supported
+    private final StringBuilder builder;
     private final ZoneOffset zoneOffset;  // Nullable
     private final org.joda.time.DateTimeZone jodaDateTimeZone;  // Not null
     private final String formatString;
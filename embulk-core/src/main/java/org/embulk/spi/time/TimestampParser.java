@@ -227,5 +227,24 @@ public class TimestampParser {
         return Timestamp.ofInstant(this.parseInternal(text));
     }
 
+    /**
+     * The last text parsed and its result. Timestamp columns often have the same value in consecutive records.
+     *
+     * It is immutable so that it can be shared among threads without synchronization.
+     */
+    static final class LastParsed {
+        LastParsed(final String text, final Instant instant) {
+            this.text = text;
+            this.instant = instant;
+        }
+
+        Instant getIfSameText(final String text) {
+            return this.text.equals(text) ? this.instant : null;
+        }
+
+        private final String text;
+        private final Instant instant;
+    }
+
     private final TimestampParserLegacy delegate;
 }
@@ -16,8 +16,10 @@ public class TimestampParserLegacy extends TimestampParser {
                                   final int defaultYear,
                                   final int defaultMonthOfYear,
                                   final int defaultDayOfMonth) {
+        final RubyTimeFormat format = RubyTimeFormat.compile(formatString);
         this.formatString = formatString;
-        this.parser = new RubyTimeParser(RubyTimeFormat.compile(formatString));
+        this.parser = new RubyTimeParser(format);
+        this.fixedWidthParser = RubyTimeFixedWidthParser.compileLegacy(format, defaultZoneId);
         this.defaultJodaDateTimeZone = defaultJodaDateTimeZone;
         this.defaultZoneId = defaultZoneId;
         this.defaultYear = defaultYear;
@@ -74,14 +76,30 @@ public class TimestampParserLegacy extends TimestampParser {
             throw new TimestampParseException("text is null or empty string.");
         }
 
-        final RubyTimeParsed parsed = this.parser.parse(text);
-        if (parsed == null) {
-            throw new TimestampParseException("Cannot parse '" + text + "' by '" + this.formatString + "'");
+        final LastParsed lastParsed = this.lastParsed;
+        if (lastParsed != null) {
+            final Instant instant = lastParsed.getIfSameText(text);
+            if (instant != null) {
+                return instant;
+            }
         }
-        return parsed.toLegacy().toInstant(this.defaultYear,
-                                           this.defaultMonthOfYear,
-                                           this.defaultDayOfMonth,
-                                           this.defaultZoneId);
+
+        Instant instant = null;
+        if (this.fixedWidthParser != null) {
+            instant = this.fixedWidthParser.parse(text);
+        }
+        if (instant == null) {
+            final RubyTimeParsed parsed = this.parser.parse(text);
+            if (parsed == null) {
+                throw new TimestampParseException("Cannot parse '" + text + "' by '" + this.formatString + "'");
+            }
+            instant = parsed.toLegacy().toInstant(this.defaultYear,
+                                                  this.defaultMonthOfYear,
+                                                  this.defaultDayOfMonth,
+                                                  this.defaultZoneId);
+        }
+        this.lastParsed = new LastParsed(text, instant);
+        return instant;
     }
 
     private static LocalDate parseDateForDefault(final String defaultDate) {
@@ -94,6 +112,7 @@ public class TimestampParserLegacy extends TimestampParser {
 
     private final String formatString;
     private final RubyTimeParser parser;
+    private final RubyTimeFixedWidthParser fixedWidthParser;  // null if the format is not fixed-width
 
     private final org.joda.time.DateTimeZone defaultJodaDateTimeZone;
     private final ZoneId defaultZoneId;
@@ -101,4 +120,6 @@ public class TimestampParserLegacy extends TimestampParser {
     private final int defaultYear;
     private final int defaultMonthOfYear;
     private final int defaultDayOfMonth;
+
+    private LastParsed lastParsed;
 }
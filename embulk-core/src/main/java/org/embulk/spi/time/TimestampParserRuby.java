@@ -5,16 +5,17 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 
 public class TimestampParserRuby extends TimestampParser {
-    private TimestampParserRuby(final RubyTimeParser parser,
+    private TimestampParserRuby(final RubyTimeFormat format,
                                 final ZoneOffset defaultZoneOffset,
                                 final String formatString) {
-        this.parser = parser;
+        this.parser = new RubyTimeParser(format);
+        this.fixedWidthParser = RubyTimeFixedWidthParser.compileRuby(format, defaultZoneOffset);
         this.defaultZoneOffset = defaultZoneOffset;
         this.formatString = formatString;
     }
 
     static TimestampParserRuby of(final String formatString, final ZoneOffset defaultZoneOffset) {
-        return new TimestampParserRuby(new RubyTimeParser(RubyTimeFormat.compile(formatString)),
+        return new TimestampParserRuby(RubyTimeFormat.compile(formatString),
                                        defaultZoneOffset,
                                        formatString);
     }
@@ -33,14 +34,33 @@ public class TimestampParserRuby extends TimestampParser {
             throw new TimestampParseException("text is null or empty string.");
         }
 
-        final RubyTimeParsed parsed = this.parser.parse(text);
-        if (parsed == null) {
-            throw new TimestampParseException("Cannot parse '" + text + "' by '" + this.formatString + "'");
+        final LastParsed lastParsed = this.lastParsed;
+        if (lastParsed != null) {
+            final Instant instant = lastParsed.getIfSameText(text);
+            if (instant != null) {
+                return instant;
+            }
         }
-        return parsed.toInstant(this.defaultZoneOffset);
+
+        Instant instant = null;
+        if (this.fixedWidthParser != null) {
+            instant = this.fixedWidthParser.parse(text);
+        }
+        if (instant == null) {
+            final RubyTimeParsed parsed = this.parser.parse(text);
+            if (parsed == null) {
+                throw new TimestampParseException("Cannot parse '" + text + "' by '" + this.formatString + "'");
+            }
+            instant = parsed.toInstant(this.defaultZoneOffset);
+        }
+        this.lastParsed = new LastParsed(text, instant);
+        return instant;
     }
 
     private final RubyTimeParser parser;
+    private final RubyTimeFixedWidthParser fixedWidthParser;  // null if the format is not fixed-width
     private final ZoneOffset defaultZoneOffset;
     private final String formatString;
+
+    private LastParsed lastParsed;
 }
@@ -0,0 +1,161 @@
+package org.embulk.spi.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BlockCompressingOutputStream splits written data into fixed-size blocks, compresses the blocks on an
+ * executor in parallel, and writes the compressed blocks to the underlying stream in order.
+ *
+ * Each block is compressed independently, so the compressor should produce a self-contained unit such
+ * as a gzip member or a bzip2 stream whose concatenation is still a valid file.
+ */
+public class BlockCompressingOutputStream extends OutputStream {
+    public interface Compressor {
+        public byte[] compress(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private final OutputStream out;
+    private final Compressor compressor;
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int pos = 0;
+    private boolean submitted = false;
+    private boolean closed = false;
+
+    public BlockCompressingOutputStream(OutputStream out, Compressor compressor, ExecutorService executor,
+            int blockSize, int maxPendingBlocks) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("maxPendingBlocks must be positive");
+        }
+        this.out = out;
+        this.compressor = compressor;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Creates a thread pool of daemon threads for compression. The caller shuts it down.
+     */
+    public static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("compression-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[pos] = (byte) b;
+        pos++;
+        if (pos >= blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(blockSize - pos, len);
+            System.arraycopy(b, off, block, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            if (pos >= blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes blocks whose compression is already done. A partially filled block is not flushed so that
+     * blocks are not split into small pieces.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            writeBlock(pending.removeFirst());
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // an empty input still produces a block so that the output is a valid compressed file
+            if (pos > 0 || !submitted) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(pending.removeFirst());
+            }
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            block = null;
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = pos;
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    return compressor.compress(data, 0, length);
+                }
+            }));
+        submitted = true;
+        pos = 0;
+        block = closed ? null : new byte[blockSize];
+        while (pending.size() > maxPendingBlocks) {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        out.write(compressed);
+    }
+}
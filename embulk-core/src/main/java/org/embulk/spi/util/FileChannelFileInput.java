@@ -0,0 +1,178 @@
+package org.embulk.spi.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+
+/**
+ * FileChannelFileInput reads a local file through memory-mapped regions of the file.
+ *
+ * Bytes are copied from the page cache to a Buffer by one memory copy without read system calls.
+ * A region of {@code mapSize} bytes is mapped ahead of reading, and {@link #poll()} returns a
+ * Buffer of {@code chunkSize} bytes at most.
+ */
+public class FileChannelFileInput implements FileInput {
+    public static final int DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+    public static class Range {
+        private final long start;
+        private final long end;
+
+        public Range(long start, long end) {
+            Preconditions.checkArgument(0 <= start && start <= end, "invalid range");
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+
+    private final BufferAllocator allocator;
+    private final Path path;
+    private final List<Range> ranges;
+    private final int chunkSize;
+    private final int mapSize;
+
+    private boolean opened = false;
+    private FileChannel channel;
+    private int rangeIndex;
+    private long position;
+    private MappedByteBuffer mapped;
+
+    /**
+     * Reads the whole file as a file.
+     */
+    public FileChannelFileInput(BufferAllocator allocator, Path path, int chunkSize, int mapSize) {
+        this(allocator, path, null, chunkSize, mapSize);
+    }
+
+    /**
+     * Reads the ranges of the file as a file. Ranges are concatenated in the order.
+     *
+     * @param chunkSize maximum size of a Buffer returned by poll. 0 to use the default size of the allocator.
+     */
+    public FileChannelFileInput(BufferAllocator allocator, Path path, List<Range> ranges, int chunkSize, int mapSize) {
+        Preconditions.checkArgument(chunkSize >= 0, "chunkSize is negative");
+        Preconditions.checkArgument(mapSize > 0, "mapSize must be larger than 0");
+        this.allocator = allocator;
+        this.path = path;
+        this.ranges = (ranges == null ? null : ImmutableList.copyOf(ranges));
+        this.chunkSize = chunkSize;
+        this.mapSize = mapSize;
+    }
+
+    public boolean nextFile() {
+        closeChannel();
+        if (opened) {
+            return false;
+        }
+        opened = true;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        rangeIndex = -1;
+        position = 0;
+        return true;
+    }
+
+    public Buffer poll() {
+        if (channel == null) {
+            if (!opened) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            return null;
+        }
+        try {
+            if (mapped == null || !mapped.hasRemaining()) {
+                if (!mapNext()) {
+                    return null;
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        Buffer buffer = (chunkSize > 0 ? allocator.allocate(chunkSize) : allocator.allocate());
+        int n = Math.min(mapped.remaining(), (chunkSize > 0 ? chunkSize : buffer.capacity()));
+        mapped.get(buffer.array(), buffer.offset(), n);
+        buffer.limit(n);
+        return buffer;
+    }
+
+    private boolean mapNext() throws IOException {
+        mapped = null;
+        while (true) {
+            long end = currentRangeEnd();
+            if (position < end) {
+                long size = Math.min(mapSize, end - position);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                position += size;
+                return true;
+            }
+            if (!nextRange()) {
+                return false;
+            }
+        }
+    }
+
+    private long currentRangeEnd() throws IOException {
+        if (rangeIndex < 0) {
+            return -1;
+        } else if (ranges == null) {
+            return channel.size();
+        } else {
+            return ranges.get(rangeIndex).getEnd();
+        }
+    }
+
+    private boolean nextRange() {
+        if (ranges == null) {
+            if (rangeIndex >= 0) {
+                return false;
+            }
+            rangeIndex = 0;
+            position = 0;
+            return true;
+        }
+        if (rangeIndex + 1 >= ranges.size()) {
+            return false;
+        }
+        rangeIndex++;
+        position = ranges.get(rangeIndex).getStart();
+        return true;
+    }
+
+    public void close() {
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        // mapped regions are unmapped when they are garbage-collected
+        mapped = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.embulk.spi.util;
+
+import java.nio.file.Path;
+import java.util.List;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.TransactionalFileInput;
+
+public abstract class FileChannelTransactionalFileInput extends FileChannelFileInput implements TransactionalFileInput {
+    public FileChannelTransactionalFileInput(BufferAllocator allocator, Path path, int chunkSize, int mapSize) {
+        super(allocator, path, chunkSize, mapSize);
+    }
+
+    public FileChannelTransactionalFileInput(BufferAllocator allocator, Path path, List<Range> ranges, int chunkSize, int mapSize) {
+        super(allocator, path, ranges, chunkSize, mapSize);
+    }
+}
@@ -34,6 +34,7 @@ public class LineEncoder implements AutoCloseable {
     private final FileOutput underlyingFileOutput;
     private final FileOutputOutputStream outputStream;
     private Writer writer;
+    private char[] chars = new char[64];
 
     public LineEncoder(FileOutput out, EncoderTask task) {
         this.newline = task.getNewline().getString();
@@ -74,6 +75,29 @@ public class LineEncoder implements AutoCloseable {
         }
     }
 
+    /**
+     * Appends characters without converting them to a String.
+     */
+    public void addText(CharSequence text) {
+        final int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+        try {
+            writer.write(chars, 0, length);
+        } catch (IOException ex) {
+            // unexpected
+            throw new RuntimeException(ex);
+        }
+    }
+
     public void nextFile() {
         try {
             writer.flush();
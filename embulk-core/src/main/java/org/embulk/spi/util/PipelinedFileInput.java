@@ -0,0 +1,185 @@
+package org.embulk.spi.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * PipelinedFileInput reads another FileInput on a dedicated thread and hands over the buffers through
+ * a bounded queue, so that the reader (such as a decompressor) and the consumer (such as a parser) run
+ * in parallel. The wrapped FileInput is read ahead by up to {@code queueBuffers} buffers.
+ */
+public class PipelinedFileInput implements FileInput {
+    private static final Object FILE_START = new Object();
+    private static final Object FILE_END = new Object();
+    private static final Object END = new Object();
+
+    private static final long PUT_CHECK_INTERVAL_MILLIS = 100;
+
+    private static class Failure {
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    private final FileInput input;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean inFile = false;
+
+    public PipelinedFileInput(FileInput input, int queueBuffers) {
+        if (queueBuffers <= 0) {
+            throw new IllegalArgumentException("queueBuffers must be positive");
+        }
+        this.input = input;
+        this.queue = new ArrayBlockingQueue<>(queueBuffers);
+        // the thread inherits Exec session from the current thread
+        this.thread = new Thread(new Runnable() {
+                public void run() {
+                    produce();
+                }
+            }, Thread.currentThread().getName() + "-pipeline");
+        this.thread.setDaemon(true);
+    }
+
+    public boolean nextFile() {
+        if (!started) {
+            thread.start();
+            started = true;
+        }
+        while (!finished) {
+            Object e = take();
+            if (e == FILE_START) {
+                inFile = true;
+                return true;
+            } else if (e == END) {
+                finished = true;
+            } else if (e instanceof Buffer) {
+                // rest of the current file is skipped
+                ((Buffer) e).release();
+            }
+        }
+        inFile = false;
+        return false;
+    }
+
+    public Buffer poll() {
+        if (!inFile) {
+            if (!started) {
+                throw new IllegalStateException("nextFile() must be called before poll()");
+            }
+            return null;
+        }
+        Object e = take();
+        if (e instanceof Buffer) {
+            return (Buffer) e;
+        }
+        // e == FILE_END
+        inFile = false;
+        return null;
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            if (started) {
+                // the thread exits after the current poll() of the input returns
+                boolean interrupted = false;
+                while (thread.isAlive()) {
+                    releaseQueuedBuffers();
+                    try {
+                        thread.join(PUT_CHECK_INTERVAL_MILLIS);
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                releaseQueuedBuffers();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void produce() {
+        try {
+            while (!closed && input.nextFile()) {
+                if (!put(FILE_START)) {
+                    return;
+                }
+                while (true) {
+                    Buffer buffer = input.poll();
+                    if (buffer == null) {
+                        break;
+                    }
+                    if (!put(buffer)) {
+                        buffer.release();
+                        return;
+                    }
+                }
+                if (!put(FILE_END)) {
+                    return;
+                }
+            }
+            put(END);
+        } catch (Throwable ex) {
+            put(new Failure(ex));
+        }
+    }
+
+    // returns false if closed
+    private boolean put(Object e) {
+        try {
+            while (!closed) {
+                if (queue.offer(e, PUT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Object take() {
+        Object e;
+        try {
+            e = queue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        if (e instanceof Failure) {
+            finished = true;
+            inFile = false;
+            Throwable cause = ((Failure) e).cause;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return e;
+    }
+
+    private void releaseQueuedBuffers() {
+        Object e;
+        while ((e = queue.poll()) != null) {
+            if (e instanceof Buffer) {
+                ((Buffer) e).release();
+            }
+        }
+    }
+}
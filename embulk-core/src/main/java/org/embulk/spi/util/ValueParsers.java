@@ -0,0 +1,451 @@
+package org.embulk.spi.util;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ValueParsers parses numbers and booleans from a range of bytes or characters without creating a String.
+ *
+ * Results and errors are same with {@link Long#parseLong(String)} and {@link Double#parseDouble(String)}.
+ * Bytes must be in an ASCII-compatible encoding such as UTF-8.
+ */
+public final class ValueParsers {
+    private ValueParsers() {}
+
+    private static final int MAX_LONG_DIGITS = 18;  // any 18 digits fit in long without overflow
+
+    // 10^0 to 10^22 are exactly representable in double
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22,
+    };
+
+    private static final int MIN_EXP10 = -348;
+    private static final int MAX_EXP10 = 347;
+
+    // 128-bit mantissas of 10^e, normalized so that the highest bit is set and rounded down.
+    // POWERS_OF_TEN_HI[e - MIN_EXP10] has the high 64 bits and POWERS_OF_TEN_LO has the low 64 bits.
+    private static final long[] POWERS_OF_TEN_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+    private static final long[] POWERS_OF_TEN_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+    static {
+        final BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int e = MIN_EXP10; e <= MAX_EXP10; e++) {
+            final BigInteger mantissa;
+            if (e >= 0) {
+                final BigInteger power = BigInteger.TEN.pow(e);
+                final int shift = power.bitLength() - 128;
+                mantissa = (shift >= 0 ? power.shiftRight(shift) : power.shiftLeft(-shift));
+            } else {
+                final BigInteger power = BigInteger.TEN.pow(-e);
+                mantissa = BigInteger.ONE.shiftLeft(127 + power.bitLength()).divide(power);
+            }
+            POWERS_OF_TEN_HI[e - MIN_EXP10] = mantissa.shiftRight(64).longValue();
+            POWERS_OF_TEN_LO[e - MIN_EXP10] = mantissa.and(mask).longValue();
+        }
+    }
+
+    // returned by eiselLemire if the result can't be decided
+    private static final long UNDECIDED = -1L;
+
+    public static long parseLong(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            return parseLongSlow(bytes, start, end);
+        }
+        int i = start;
+        boolean negative = false;
+        final byte first = bytes[i];
+        if (first == '-' || first == '+') {
+            negative = (first == '-');
+            i++;
+            if (i == end) {
+                return parseLongSlow(bytes, start, end);
+            }
+        }
+        if (end - i <= MAX_LONG_DIGITS) {
+            long value = 0;
+            for (; i < end; i++) {
+                final int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return parseLongSlow(bytes, start, end);
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+        // accumulate negatively to parse Long.MIN_VALUE, and check overflow as Long.parseLong does
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value < multmin) {
+                return parseLongSlow(bytes, start, end);
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                return parseLongSlow(bytes, start, end);
+            }
+            value -= digit;
+        }
+        return negative ? value : -value;
+    }
+
+    public static long parseLong(CharSequence chars, int start, int end) {
+        if (start >= end) {
+            return parseLongSlow(chars, start, end);
+        }
+        int i = start;
+        boolean negative = false;
+        final char first = chars.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = (first == '-');
+            i++;
+            if (i == end) {
+                return parseLongSlow(chars, start, end);
+            }
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value < multmin) {
+                return parseLongSlow(chars, start, end);
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                return parseLongSlow(chars, start, end);
+            }
+            value -= digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses a decimal number such as {@code -12.5e-3}.
+     *
+     * Simple decimal numbers up to 19 significant digits are converted with the Clinger's fast path or the
+     * Eisel-Lemire algorithm, which rounds correctly. Other inputs, including ones with surrounding spaces,
+     * hexadecimal numbers, {@code NaN} and {@code Infinity}, fall back to {@link Double#parseDouble(String)}.
+     */
+    public static double parseDouble(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = (bytes[i] == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;  // significant digits in mantissa
+        int exp10 = 0;
+        boolean hasDigits = false;
+        for (; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            hasDigits = true;
+            if (mantissa != 0 || digit != 0) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            i++;
+            for (; i < end; i++) {
+                final int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                hasDigits = true;
+                if (mantissa != 0 || digit != 0) {
+                    mantissa = mantissa * 10 + digit;
+                    digits++;
+                }
+                exp10--;
+            }
+        }
+        if (hasDigits && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = (bytes[i] == '-');
+                i++;
+            }
+            int exponent = 0;
+            final int exponentStart = i;
+            for (; i < end; i++) {
+                final int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + digit;
+                }
+            }
+            if (i == exponentStart) {
+                return parseDoubleSlow(bytes, start, end);
+            }
+            exp10 += negativeExponent ? -exponent : exponent;
+        }
+
+        if (!hasDigits || i != end || digits > 19) {
+            return parseDoubleSlow(bytes, start, end);
+        }
+        final double value = toDouble(mantissa, exp10, negative);
+        if (Double.isNaN(value)) {
+            return parseDoubleSlow(bytes, start, end);
+        }
+        return value;
+    }
+
+    public static double parseDouble(CharSequence chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            negative = (chars.charAt(i) == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;  // significant digits in mantissa
+        int exp10 = 0;
+        boolean hasDigits = false;
+        for (; i < end; i++) {
+            final int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            hasDigits = true;
+            if (mantissa != 0 || digit != 0) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+            }
+        }
+        if (i < end && chars.charAt(i) == '.') {
+            i++;
+            for (; i < end; i++) {
+                final int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                hasDigits = true;
+                if (mantissa != 0 || digit != 0) {
+                    mantissa = mantissa * 10 + digit;
+                    digits++;
+                }
+                exp10--;
+            }
+        }
+        if (hasDigits && i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                negativeExponent = (chars.charAt(i) == '-');
+                i++;
+            }
+            int exponent = 0;
+            final int exponentStart = i;
+            for (; i < end; i++) {
+                final int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + digit;
+                }
+            }
+            if (i == exponentStart) {
+                return Double.parseDouble(chars.subSequence(start, end).toString());
+            }
+            exp10 += negativeExponent ? -exponent : exponent;
+        }
+
+        if (!hasDigits || i != end || digits > 19) {
+            return Double.parseDouble(chars.subSequence(start, end).toString());
+        }
+        final double value = toDouble(mantissa, exp10, negative);
+        if (Double.isNaN(value)) {
+            return Double.parseDouble(chars.subSequence(start, end).toString());
+        }
+        return value;
+    }
+
+    /**
+     * Returns true if the bytes are one of {@code true}, {@code yes}, {@code t}, {@code y}, {@code on} and {@code 1}
+     * in lower case, capitalized or upper case.
+     */
+    public static boolean isTrue(byte[] bytes, int start, int end) {
+        switch (end - start) {
+            case 1:
+                final byte c = bytes[start];
+                return c == 't' || c == 'T' || c == 'y' || c == 'Y' || c == '1';
+            case 2:
+                return matchesCase(bytes, start, "on");
+            case 3:
+                return matchesCase(bytes, start, "yes");
+            case 4:
+                return matchesCase(bytes, start, "true");
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isTrue(CharSequence chars, int start, int end) {
+        switch (end - start) {
+            case 1:
+                final char c = chars.charAt(start);
+                return c == 't' || c == 'T' || c == 'y' || c == 'Y' || c == '1';
+            case 2:
+                return matchesCase(chars, start, "on");
+            case 3:
+                return matchesCase(chars, start, "yes");
+            case 4:
+                return matchesCase(chars, start, "true");
+            default:
+                return false;
+        }
+    }
+
+    // matches |lower| in lower case, capitalized or upper case
+    private static boolean matchesCase(byte[] bytes, int start, String lower) {
+        final boolean upper = (bytes[start] == Character.toUpperCase(lower.charAt(0)));
+        if (!upper && bytes[start] != lower.charAt(0)) {
+            return false;
+        }
+        final boolean allUpper = upper && bytes[start + 1] == Character.toUpperCase(lower.charAt(1));
+        for (int i = 1; i < lower.length(); i++) {
+            final char expected = allUpper ? Character.toUpperCase(lower.charAt(i)) : lower.charAt(i);
+            if (bytes[start + i] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesCase(CharSequence chars, int start, String lower) {
+        final boolean upper = (chars.charAt(start) == Character.toUpperCase(lower.charAt(0)));
+        if (!upper && chars.charAt(start) != lower.charAt(0)) {
+            return false;
+        }
+        final boolean allUpper = upper && chars.charAt(start + 1) == Character.toUpperCase(lower.charAt(1));
+        for (int i = 1; i < lower.length(); i++) {
+            final char expected = allUpper ? Character.toUpperCase(lower.charAt(i)) : lower.charAt(i);
+            if (chars.charAt(start + i) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns NaN if the value can't be decided here
+    private static double toDouble(long mantissa, int exp10, boolean negative) {
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        // Clinger's fast path: both of the mantissa and the power of ten are exact
+        if (mantissa >= 0 && mantissa <= (1L << 53) && -22 <= exp10 && exp10 <= 22) {
+            double value = (double) mantissa;
+            if (exp10 < 0) {
+                value /= EXACT_POWERS_OF_TEN[-exp10];
+            } else {
+                value *= EXACT_POWERS_OF_TEN[exp10];
+            }
+            return negative ? -value : value;
+        }
+        final long bits = eiselLemire(mantissa, exp10, negative);
+        if (bits == UNDECIDED) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    // The Eisel-Lemire algorithm. |mantissa| is an unsigned 64-bit integer which is not 0.
+    // See Daniel Lemire, "Number Parsing at a Gigabyte per Second", Software: Practice and Experience 51 (8), 2021.
+    private static long eiselLemire(long mantissa, int exp10, boolean negative) {
+        if (exp10 < MIN_EXP10 || MAX_EXP10 < exp10) {
+            return UNDECIDED;
+        }
+
+        // Normalization
+        final int clz = Long.numberOfLeadingZeros(mantissa);
+        final long man = mantissa << clz;
+        long retExp2 = (long) (((217706 * exp10) >> 16) + 64 + 1023) - clz;
+
+        // Multiplication
+        final long powHi = POWERS_OF_TEN_HI[exp10 - MIN_EXP10];
+        final long powLo = POWERS_OF_TEN_LO[exp10 - MIN_EXP10];
+        long high = unsignedMultiplyHigh(man, powHi);
+        long low = man * powHi;
+
+        // Wider approximation
+        if ((high & 0x1ff) == 0x1ff && Long.compareUnsigned(low + man, man) < 0) {
+            final long yHi = unsignedMultiplyHigh(man, powLo);
+            final long yLo = man * powLo;
+            long mergedHi = high;
+            final long mergedLo = low + yHi;
+            if (Long.compareUnsigned(mergedLo, low) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1ff) == 0x1ff && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + man, man) < 0) {
+                return UNDECIDED;
+            }
+            high = mergedHi;
+            low = mergedLo;
+        }
+
+        // Shifting to 54 bits
+        final long msb = high >>> 63;
+        long retMantissa = high >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+
+        // Half-way ambiguity
+        if (low == 0 && (high & 0x1ff) == 0 && (retMantissa & 3) == 1) {
+            return UNDECIDED;
+        }
+
+        // From 54 to 53 bits
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if ((retMantissa >>> 53) > 0) {
+            retMantissa >>>= 1;
+            retExp2 += 1;
+        }
+        // subnormal numbers, infinity and NaN are left to Double.parseDouble
+        if (Long.compareUnsigned(retExp2 - 1, 0x7ff - 1) >= 0) {
+            return UNDECIDED;
+        }
+        long retBits = (retExp2 << 52) | (retMantissa & 0x000fffffffffffffL);
+        if (negative) {
+            retBits |= 0x8000000000000000L;
+        }
+        return retBits;
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        final long x0 = x & 0xffffffffL;
+        final long x1 = x >>> 32;
+        final long y0 = y & 0xffffffffL;
+        final long y1 = y >>> 32;
+        final long w0 = x0 * y0;
+        final long t = x1 * y0 + (w0 >>> 32);
+        final long w1 = x0 * y1 + (t & 0xffffffffL);
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+
+    private static double parseDoubleSlow(byte[] bytes, int start, int end) {
+        return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    // handles invalid inputs and non-ASCII digits exactly as Long.parseLong does
+    private static long parseLongSlow(byte[] bytes, int start, int end) {
+        return Long.parseLong(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    private static long parseLongSlow(CharSequence chars, int start, int end) {
+        return Long.parseLong(chars.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,87 @@
+package org.embulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.exec.ExecutionResult;
+import org.embulk.spi.Exec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestEmbulkRunner {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(timeout = 10000)
+    public void testRunContinuously() throws Exception {
+        final Path root = temporaryFolder.getRoot().toPath();
+        Files.write(root.resolve("sample_01.csv"), new byte[] {'a'});
+        final List<String> lastPaths = new ArrayList<>();
+        final EmbulkRunner runner = new EmbulkRunner(null) {
+                @Override
+                ExecutionResult runTransaction(ConfigSource configSource) {
+                    final ConfigSource inConfig = configSource.getNested("in");
+                    lastPaths.add(inConfig.get(String.class, "last_path", null));
+                    if (lastPaths.size() == 1) {
+                        // a file arriving during a transaction is loaded by the next transaction
+                        try {
+                            Files.write(root.resolve("sample_02.csv"), new byte[] {'a'});
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    } else {
+                        // stops after the second transaction
+                        Thread.currentThread().interrupt();
+                    }
+                    final String lastPath = root.resolve(String.format("sample_%02d.csv", lastPaths.size())).toString();
+                    return new ExecutionResult(
+                            Exec.newConfigDiff().set("in", Exec.newConfigDiff().set("last_path", lastPath)),
+                            false, ImmutableList.<Throwable>of());
+                }
+            };
+
+        runner.runContinuouslyInternal(config("file"), null, 100L, Long.MAX_VALUE);
+        assertTrue(Thread.interrupted());
+        // config diffs are merged to the configs of the next transactions
+        assertEquals(2, lastPaths.size());
+        assertNull(lastPaths.get(0));
+        assertEquals(root.resolve("sample_01.csv").toString(), lastPaths.get(1));
+    }
+
+    @Test
+    public void testRunContinuouslyWithoutFileInput() throws Exception {
+        final EmbulkRunner runner = new EmbulkRunner(null) {
+                @Override
+                ExecutionResult runTransaction(ConfigSource configSource) {
+                    throw new AssertionError();
+                }
+            };
+        try {
+            runner.runContinuouslyInternal(config("s3"), null, 100L, Long.MAX_VALUE);
+            fail();
+        } catch (ConfigException ex) {
+            // only the file input plugin is watched
+        }
+    }
+
+    private ConfigSource config(String inType) {
+        final ConfigSource inConfig = Exec.newConfigSource()
+                .set("type", inType)
+                .set("path_prefix", temporaryFolder.getRoot().toPath().resolve("sample_").toString());
+        return Exec.newConfigSource().set("in", inConfig);
+    }
+}
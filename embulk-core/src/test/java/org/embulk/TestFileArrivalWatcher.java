@@ -0,0 +1,76 @@
+package org.embulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFileArrivalWatcher {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void createFiles() throws IOException {
+        root = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("sample_a"));
+        Files.write(root.resolve("sample_01.csv"), new byte[] {'a'});
+    }
+
+    @Test(timeout = 10000)
+    public void testBatchInterval() throws Exception {
+        try (FileArrivalWatcher watcher = new FileArrivalWatcher(root, "sample_", 500L, Long.MAX_VALUE, 0L)) {
+            final long start = System.nanoTime();
+            // files not starting with the prefix, and files existing before, are not counted
+            Files.write(root.resolve("other.csv"), new byte[] {'a'});
+            Files.write(root.resolve("sample_02.csv"), new byte[] {'a'});
+            Files.write(root.resolve("sample_a/1.csv"), new byte[] {'a'});
+            assertEquals(2, watcher.awaitBatch());
+            assertTrue(System.nanoTime() - start >= 500L * 1000 * 1000);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBatchSize() throws Exception {
+        try (FileArrivalWatcher watcher = new FileArrivalWatcher(root, "sample_", 3600L * 1000, 10L, 0L)) {
+            Files.write(root.resolve("sample_02.csv"), new byte[20]);
+            assertEquals(1, watcher.awaitBatch());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNewDirectory() throws Exception {
+        try (FileArrivalWatcher watcher = new FileArrivalWatcher(root, "sample_", 500L, Long.MAX_VALUE, 0L)) {
+            Files.createDirectories(root.resolve("sample_b/c"));
+            Files.write(root.resolve("sample_b/c/1.csv"), new byte[] {'a'});
+            assertEquals(1, watcher.awaitBatch());
+
+            // files in the new directory are watched after the batch
+            Files.write(root.resolve("sample_b/c/2.csv"), new byte[] {'a'});
+            assertEquals(1, watcher.awaitBatch());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testQuietPeriod() throws Exception {
+        try (FileArrivalWatcher watcher = new FileArrivalWatcher(root, "sample_", 100L, 10L, 1000L)) {
+            final long start = System.nanoTime();
+            final Path file = root.resolve("sample_02.csv");
+            Files.write(file, new byte[20]);
+            Thread.sleep(500L);
+            // the file is modified again, and the batch waits for the quiet period after the modification
+            Files.write(file, new byte[30]);
+            final long lastModification = System.nanoTime();
+            assertEquals(1, watcher.awaitBatch());
+            assertTrue(System.nanoTime() - start >= 1500L * 1000 * 1000);
+            assertTrue(System.nanoTime() - lastModification >= 900L * 1000 * 1000);
+        }
+    }
+}
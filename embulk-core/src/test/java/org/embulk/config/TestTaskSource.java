@@ -1,8 +1,17 @@
 package org.embulk.config;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.spi.Exec;
 import org.junit.Before;
@@ -32,6 +41,24 @@ public class TestTaskSource {
         public void setString(String v);
     }
 
+    private static interface NestedFields extends Task {
+        public TaskSource getNested();
+    }
+
+    private static interface ListFields extends Task {
+        public List<String> getList();
+
+        public void setList(List<String> v);
+    }
+
+    private static interface CollectionFields extends Task {
+        public List<TypeFields> getList();
+
+        public Map<String, TypeFields> getMap();
+
+        public TaskSource getNested();
+    }
+
     @Rule
     public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
 
@@ -66,4 +93,77 @@ public class TestTaskSource {
         assertFalse(task.equals(task2));
         assertFalse(task.hashCode() == task2.hashCode());
     }
+
+    @Test
+    public void testLoadTaskTwice() {
+        TypeFields task = taskSource.loadTask(TypeFields.class);
+        TypeFields task2 = taskSource.loadTask(TypeFields.class);
+        assertNotSame(task, task2);
+        assertTrue(task.equals(task2));
+
+        // setters of a loaded task don't affect other tasks
+        task.setString("modified");
+        assertEquals("", task2.getString());
+        assertEquals("", taskSource.loadTask(TypeFields.class).getString());
+    }
+
+    @Test
+    public void testLoadTaskAfterModification() {
+        assertEquals("", taskSource.loadTask(TypeFields.class).getString());
+        taskSource.set("String", "modified");
+        assertEquals("modified", taskSource.loadTask(TypeFields.class).getString());
+        taskSource.remove("String").set("String", "again");
+        assertEquals("again", taskSource.loadTask(TypeFields.class).getString());
+
+        // modifications of nested TaskSources are detected as well
+        TaskSource parent = Exec.newTaskSource();
+        parent.getNestedOrSetEmpty("Nested").set("String", "nested");
+        assertEquals("nested", parent.loadTask(NestedFields.class).getNested().get(String.class, "String"));
+        parent.getNested("Nested").set("String", "modified");
+        assertEquals("modified", parent.loadTask(NestedFields.class).getNested().get(String.class, "String"));
+    }
+
+    @Test
+    public void testLoadTaskWithNestedTasks() {
+        TaskSource parent = Exec.newTaskSource();
+        parent.set("List", ImmutableList.of(taskSource));
+        parent.set("Map", ImmutableMap.of("a", taskSource));
+        parent.set("Nested", taskSource);
+        CollectionFields task = parent.loadTask(CollectionFields.class);
+
+        // nested tasks and collections of a loaded task don't affect other tasks
+        task.getList().get(0).setString("modified");
+        task.getMap().get("a").setString("modified");
+        task.getNested().set("String", "modified");
+        CollectionFields task2 = parent.loadTask(CollectionFields.class);
+        assertEquals("", task2.getList().get(0).getString());
+        assertEquals("", task2.getMap().get("a").getString());
+        assertEquals("", task2.getNested().get(String.class, "String"));
+    }
+
+    @Test
+    public void testLoadTaskSharesCollections() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            list.add("file" + i);
+        }
+        TaskSource source = Exec.newTaskSource().set("List", list);
+        ListFields task = source.loadTask(ListFields.class);
+        ListFields task2 = source.loadTask(ListFields.class);
+
+        // a large collection is converted once, and shared by loaded tasks
+        assertSame(task.getList(), task2.getList());
+        assertEquals(list, task.getList());
+        try {
+            task.getList().add("modified");
+            fail();
+        } catch (UnsupportedOperationException ex) {
+            // shared collections are immutable
+        }
+
+        // setters of a loaded task don't affect other tasks
+        task.setList(ImmutableList.of("modified"));
+        assertEquals(list, task2.getList());
+        assertEquals(list, source.loadTask(ListFields.class).getList());
+    }
 }
@@ -0,0 +1,163 @@
+package org.embulk.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Exec;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.SplittableInputPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestLocalExecutorPlugin {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    private static class MockSplittableInputPlugin implements SplittableInputPlugin {
+        final int failingSplitIndex;
+        final AtomicInteger runningSplits = new AtomicInteger();
+
+        MockSplittableInputPlugin(int failingSplitIndex) {
+            this.failingSplitIndex = failingSplitIndex;
+        }
+
+        @Override
+        public int getSplitCount(TaskSource taskSource, Schema schema, int taskIndex) {
+            return 4;
+        }
+
+        @Override
+        public TaskReport runSplit(TaskSource taskSource, Schema schema, int taskIndex, int splitIndex, PageOutput output) {
+            runningSplits.incrementAndGet();
+            try {
+                if (splitIndex == failingSplitIndex) {
+                    throw new IllegalStateException("split " + splitIndex);
+                }
+                Thread.sleep(300L);
+                output.add(Page.allocate(0));
+                output.finish();
+                return Exec.newTaskReport().set("split", splitIndex);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                runningSplits.decrementAndGet();
+            }
+        }
+
+        @Override
+        public TaskReport mergeSplitTaskReports(TaskSource taskSource, Schema schema, int taskIndex,
+                List<TaskReport> splitTaskReports) {
+            int sum = 0;
+            for (TaskReport report : splitTaskReports) {
+                sum += report.get(Integer.class, "split");
+            }
+            return Exec.newTaskReport().set("sum", sum);
+        }
+
+        @Override
+        public TaskReport run(TaskSource taskSource, Schema schema, int taskIndex, PageOutput output) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ConfigDiff resume(TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cleanup(TaskSource taskSource, Schema schema, int taskCount, List<TaskReport> successTaskReports) {}
+
+        @Override
+        public ConfigDiff guess(ConfigSource config) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CountingPageOutput implements PageOutput {
+        final AtomicInteger pages = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+
+        @Override
+        public void add(Page page) {
+            pages.incrementAndGet();
+            page.release();
+        }
+
+        @Override
+        public void finish() {
+            finished.incrementAndGet();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void testRunSplits() throws Exception {
+        final MockSplittableInputPlugin plugin = new MockSplittableInputPlugin(-1);
+        final CountingPageOutput output = new CountingPageOutput();
+        TaskReport report = runTask(plugin, output);
+
+        // task reports of the splits are merged, and the output is finished once
+        assertEquals(0 + 1 + 2 + 3, (int) report.get(Integer.class, "sum"));
+        assertEquals(4, output.pages.get());
+        assertEquals(1, output.finished.get());
+    }
+
+    @Test
+    public void testRunSplitsWithFailure() throws Exception {
+        final MockSplittableInputPlugin plugin = new MockSplittableInputPlugin(0);
+        final CountingPageOutput output = new CountingPageOutput();
+        try {
+            runTask(plugin, output);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+
+        // the failure is thrown after the other splits stop
+        assertEquals(0, plugin.runningSplits.get());
+        assertEquals(0, output.finished.get());
+    }
+
+    private TaskReport runTask(final SplittableInputPlugin plugin, final PageOutput output) throws Exception {
+        return pool.submit(new Callable<TaskReport>() {
+                public TaskReport call() {
+                    return new LocalExecutorPlugin.ForkJoinSplitInputPlugin(plugin).run(Exec.newTaskSource(), null, 0, output);
+                }
+            }).get();
+    }
+}
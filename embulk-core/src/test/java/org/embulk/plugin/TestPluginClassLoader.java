@@ -0,0 +1,130 @@
+package org.embulk.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.embulk.plugin.jar.ExampleDependencyJar;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPluginClassLoader {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static byte[] buildJar(final String[] names, final byte[][] contents) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final JarOutputStream output = new JarOutputStream(bytes, new Manifest())) {
+            for (int i = 0; i < names.length; i++) {
+                output.putNextEntry(new JarEntry(names[i]));
+                output.write(contents[i]);
+                output.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readClassFile(final Class<?> klass) throws Exception {
+        try (final InputStream input = klass.getClassLoader().getResourceAsStream(klass.getName().replace('.', '/') + ".class")) {
+            return ByteStreams.toByteArray(input);
+        }
+    }
+
+    private static byte[] readAll(final InputStream input) throws Exception {
+        try (final InputStream closed = input) {
+            return ByteStreams.toByteArray(closed);
+        }
+    }
+
+    @Test
+    public void testEmbeddedJars() throws Exception {
+        final String className = ExampleDependencyJar.class.getName();
+        final String classResourceName = className.replace('.', '/') + ".class";
+
+        final byte[] large = new byte[2 * 1024 * 1024];  // kept out of memory
+        new Random(1).nextBytes(large);
+        final byte[] smallJar = buildJar(
+                new String[] {"a.txt", classResourceName},
+                new byte[][] {"small".getBytes(StandardCharsets.UTF_8), readClassFile(ExampleDependencyJar.class)});
+        final byte[] largeJar = buildJar(
+                new String[] {"large.bin", "a.txt", "b.txt"},
+                new byte[][] {large, "large".getBytes(StandardCharsets.UTF_8), "b".getBytes(StandardCharsets.UTF_8)});
+
+        final Path pluginJarPath = temporaryFolder.newFile("plugin.jar").toPath();
+        Files.write(pluginJarPath, buildJar(new String[] {"lib/small.jar", "lib/large.jar"}, new byte[][] {smallJar, largeJar}));
+
+        final PluginClassLoader loader = PluginClassLoader.createForNestedJar(
+                ClassLoader.getSystemClassLoader().getParent(),
+                pluginJarPath.toUri().toURL(),
+                Arrays.asList("lib/small.jar", "lib/large.jar"),
+                Collections.<String>emptyList(),
+                Collections.<String>emptyList());
+
+        final Class<?> loadedClass = loader.loadClass(className);
+        assertSame(loader, loadedClass.getClassLoader());
+        assertSame(loadedClass, loader.loadClass(className));
+
+        // the first embedded JAR precedes
+        assertArrayEquals("small".getBytes(StandardCharsets.UTF_8), readAll(loader.getResourceAsStream("a.txt")));
+        assertArrayEquals("b".getBytes(StandardCharsets.UTF_8), readAll(loader.getResourceAsStream("b.txt")));
+        assertArrayEquals(large, readAll(loader.getResourceAsStream("large.bin")));
+        assertNull(loader.getResourceAsStream("c.txt"));
+
+        assertNotNull(loader.findResource("b.txt"));
+        assertArrayEquals("b".getBytes(StandardCharsets.UTF_8), readAll(loader.findResource("b.txt").openStream()));
+        assertEquals(2, Collections.list(loader.findResources("a.txt")).size());
+        assertEquals(0, Collections.list(loader.findResources("c.txt")).size());
+    }
+
+    @Test
+    public void testEmbeddedJarReleasesDefinedClass() throws Exception {
+        final String className = ExampleDependencyJar.class.getName();
+        final String classResourceName = className.replace('.', '/') + ".class";
+        final byte[] classBytes = readClassFile(ExampleDependencyJar.class);
+
+        final byte[] zeros = new byte[2 * 1024 * 1024];  // compressed small, but inflated large
+        final byte[] classJar = buildJar(
+                new String[] {"a.txt", classResourceName},
+                new byte[][] {"a".getBytes(StandardCharsets.UTF_8), classBytes});
+        final byte[] zerosJar = buildJar(new String[] {"zeros.bin"}, new byte[][] {zeros});
+
+        final Path pluginJarPath = temporaryFolder.newFile("plugin.jar").toPath();
+        Files.write(pluginJarPath, buildJar(new String[] {"lib/class.jar", "lib/zeros.jar"}, new byte[][] {classJar, zerosJar}));
+
+        final PluginClassLoader loader = PluginClassLoader.createForNestedJar(
+                ClassLoader.getSystemClassLoader().getParent(),
+                pluginJarPath.toUri().toURL(),
+                Arrays.asList("lib/class.jar", "lib/zeros.jar"),
+                Collections.<String>emptyList(),
+                Collections.<String>emptyList());
+
+        // the threshold is on the inflated size of entries
+        assertTrue(loader.isEmbeddedJarEntryInMemory(classResourceName));
+        assertTrue(loader.isEmbeddedJarEntryInMemory("a.txt"));
+        assertFalse(loader.isEmbeddedJarEntryInMemory("zeros.bin"));
+        assertArrayEquals(zeros, readAll(loader.getResourceAsStream("zeros.bin")));
+
+        // the bytes of a defined class are released, and read from the JAR again as a resource
+        assertSame(loader, loader.loadClass(className).getClassLoader());
+        assertFalse(loader.isEmbeddedJarEntryInMemory(classResourceName));
+        assertTrue(loader.isEmbeddedJarEntryInMemory("a.txt"));
+        assertArrayEquals(classBytes, readAll(loader.getResourceAsStream(classResourceName)));
+    }
+}
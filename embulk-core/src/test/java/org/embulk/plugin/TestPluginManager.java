@@ -0,0 +1,54 @@
+package org.embulk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.embulk.EmbulkTestRuntime;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestPluginManager {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static class NotMatchPluginSource implements PluginSource {
+        private int count;
+
+        public <T> T newPlugin(Class<T> iface, PluginType type) throws PluginSourceNotMatchException {
+            count++;
+            throw new PluginSourceNotMatchException();
+        }
+    }
+
+    @Test
+    public void testResolvedPlugins() {
+        NotMatchPluginSource notMatch = new NotMatchPluginSource();
+        MockPluginSource mock = new MockPluginSource(CharSequence.class, "plugin");
+        PluginManager manager = new PluginManager(ImmutableSet.<PluginSource>of(notMatch, mock), runtime.getInstance(Injector.class));
+        PluginManager.ResolvedPlugins resolved = new PluginManager.ResolvedPlugins();
+
+        PluginType type = PluginType.createFromStringForTesting("a");
+        assertSame("plugin", manager.newPlugin(CharSequence.class, type, resolved));
+        assertEquals(1, notMatch.count);
+        assertEquals(0, resolved.getHitCount());
+        assertEquals(1, resolved.getMissCount());
+
+        // the source which created the plugin is used directly
+        assertSame("plugin", manager.newPlugin(CharSequence.class, PluginType.createFromStringForTesting("a"), resolved));
+        assertSame("plugin", manager.newPlugin(CharSequence.class, type, resolved));
+        assertEquals(1, notMatch.count);
+        assertEquals(2, resolved.getHitCount());
+        assertEquals(1, resolved.getMissCount());
+
+        // another type is resolved again
+        assertSame("plugin", manager.newPlugin(CharSequence.class, PluginType.createFromStringForTesting("b"), resolved));
+        assertEquals(2, notMatch.count);
+        assertEquals(2, resolved.getMissCount());
+
+        // without ResolvedPlugins, all sources are tried every time
+        assertSame("plugin", manager.newPlugin(CharSequence.class, type));
+        assertEquals(3, notMatch.count);
+    }
+}
@@ -1,5 +1,6 @@
 package org.embulk.spi;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import org.embulk.config.ConfigSource;
@@ -20,17 +21,32 @@ public class MockFormatterPlugin implements FormatterPlugin {
 
     @Override
     public PageOutput open(TaskSource taskSource, final Schema schema,
-            FileOutput output) {
+            final FileOutput output) {
         return new PageOutput() {
+            private boolean started = false;
+
             public void add(Page page) {
                 records = readPage(schema, page);
+                // writes a header line and a line per record
+                if (!started) {
+                    output.nextFile();
+                    output.add(Buffer.copyOf("header\n".getBytes(StandardCharsets.UTF_8)));
+                    started = true;
+                }
+                for (List<Object> record : records) {
+                    output.add(Buffer.copyOf((record.toString() + "\n").getBytes(StandardCharsets.UTF_8)));
+                }
             }
 
             @Override
-            public void finish() {}
+            public void finish() {
+                output.finish();
+            }
 
             @Override
-            public void close() {}
+            public void close() {
+                output.close();
+            }
         };
     }
 
@@ -87,6 +87,35 @@ public class TestFileInputRunner {
         }
     }
 
+    private static class MockSplittableFileInputPlugin extends MockFileInputPlugin implements SplittableFileInputPlugin {
+        private final List<Buffer> splitBuffers;
+
+        public MockSplittableFileInputPlugin(List<Buffer> splitBuffers) {
+            super(new LinkedList<Buffer>());
+            this.splitBuffers = splitBuffers;
+        }
+
+        @Override
+        public int getSplitCount(TaskSource taskSource,
+                int taskIndex) {
+            return splitBuffers.size();
+        }
+
+        @Override
+        public TransactionalFileInput openSplit(TaskSource taskSource,
+                int taskIndex, int splitIndex) {
+            buffers.add(splitBuffers.get(splitIndex));
+            return open(taskSource, taskIndex);
+        }
+
+        @Override
+        public TaskReport mergeSplitTaskReports(TaskSource taskSource,
+                int taskIndex,
+                List<TaskReport> splitTaskReports) {
+            return Exec.newTaskReport().set("splits", splitTaskReports.size());
+        }
+    }
+
     @Test
     public void testMockParserIteration() {
         Buffer[] buffers = new Buffer[] {
@@ -174,4 +203,36 @@ public class TestFileInputRunner {
         assertEquals(false, fileInputPlugin.transactionCompleted);
         assertEquals(0, output.pages.size());
     }
+
+    @Test
+    public void testRunSplits() {
+        MockSplittableFileInputPlugin fileInputPlugin = new MockSplittableFileInputPlugin(Arrays.asList(
+                runtime.getBufferAllocator().allocate(),
+                runtime.getBufferAllocator().allocate()));
+        final FileInputRunner runner = new FileInputRunner(fileInputPlugin);
+
+        ConfigSource config = Exec.newConfigSource().set(
+                "parser",
+                ImmutableMap.of("type", "mock", "columns", ImmutableList.of(
+                        ImmutableMap.of("name", "col1", "type", "boolean", "option", ImmutableMap.of()))));
+
+        final MockPageOutput output = new MockPageOutput();
+        final List<TaskReport> reports = new ArrayList<>();
+        runner.transaction(config, new InputPlugin.Control() {
+            public List<TaskReport> run(TaskSource inputTaskSource,
+                    Schema schema, int taskCount) {
+                // each split is parsed separately
+                List<TaskReport> splitReports = new ArrayList<>();
+                for (int i = 0; i < runner.getSplitCount(inputTaskSource, schema, 0); i++) {
+                    splitReports.add(runner.runSplit(inputTaskSource, schema, 0, i, output));
+                }
+                reports.add(runner.mergeSplitTaskReports(inputTaskSource, schema, 0, splitReports));
+                return reports;
+            }
+        });
+
+        assertEquals(true, fileInputPlugin.transactionCompleted);
+        assertEquals(2, output.pages.size());
+        assertEquals(2, (int) reports.get(0).get(Integer.class, "splits"));
+    }
 }
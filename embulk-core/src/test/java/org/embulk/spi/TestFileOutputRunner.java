@@ -8,6 +8,7 @@ import static org.msgpack.value.ValueFactory.newString;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import org.embulk.EmbulkTestRuntime;
@@ -29,6 +30,7 @@ public class TestFileOutputRunner {
 
     private static class MockFileOutputPlugin implements FileOutputPlugin {
         Boolean transactionCompleted = null;
+        final List<StringBuilder> files = new ArrayList<>();
 
         @Override
         public ConfigDiff transaction(ConfigSource config, int taskCount,
@@ -56,10 +58,15 @@ public class TestFileOutputRunner {
             return new TransactionalFileOutput() {
 
                 @Override
-                public void nextFile() {}
+                public void nextFile() {
+                    files.add(new StringBuilder());
+                }
 
                 @Override
-                public void add(Buffer buffer) {}
+                public void add(Buffer buffer) {
+                    files.get(files.size() - 1).append(new String(buffer.array(), buffer.offset(), buffer.limit(), StandardCharsets.UTF_8));
+                    buffer.release();
+                }
 
                 @Override
                 public void finish() {}
@@ -190,4 +197,70 @@ public class TestFileOutputRunner {
 
         assertEquals(false, fileOutputPlugin.transactionCompleted);
     }
+
+    @Test
+    public void testMaxRecordsPerFile() {
+        MockFileOutputPlugin fileOutputPlugin = new MockFileOutputPlugin();
+        ConfigSource config = newLongColumnConfig().set("max_records_per_file", 2);
+        runWithPages(fileOutputPlugin, config, new Long[] {1L, 2L, 3L}, new Long[] {4L}, new Long[] {5L, 6L, 7L});
+
+        // pages are split at a record boundary, and every file has the header
+        assertEquals(
+                ImmutableList.of("header\n[1]\n[2]\n", "header\n[3]\n[4]\n", "header\n[5]\n[6]\n", "header\n[7]\n"),
+                toStrings(fileOutputPlugin.files));
+        assertEquals(true, fileOutputPlugin.transactionCompleted);
+    }
+
+    @Test
+    public void testMaxFileSize() {
+        MockFileOutputPlugin fileOutputPlugin = new MockFileOutputPlugin();
+        ConfigSource config = newLongColumnConfig().set("max_file_size", "10B");
+        runWithPages(fileOutputPlugin, config, new Long[] {1L}, new Long[] {2L, 3L}, new Long[] {4L});
+
+        // files roll after a page reaches the size
+        assertEquals(
+                ImmutableList.of("header\n[1]\n", "header\n[2]\n[3]\n", "header\n[4]\n"),
+                toStrings(fileOutputPlugin.files));
+    }
+
+    private ConfigSource newLongColumnConfig() {
+        ImmutableList<ImmutableMap<String, Object>> columns = ImmutableList.of(
+                ImmutableMap.<String,Object>of("name", "col1", "type", "long", "option", ImmutableMap.of()));
+        return Exec.newConfigSource()
+                .set("type", "unused?")
+                .set("formatter", ImmutableMap.of("type", "mock", "columns", columns));
+    }
+
+    private void runWithPages(MockFileOutputPlugin fileOutputPlugin, ConfigSource config, final Long[]... pages) {
+        final FileOutputRunner runner = new FileOutputRunner(fileOutputPlugin);
+        final Schema schema = config.getNested("formatter")
+                .loadConfig(MockParserPlugin.PluginTask.class)
+                .getSchemaConfig().toSchema();
+
+        runner.transaction(config, schema, 1, new OutputPlugin.Control() {
+            public List<TaskReport> run(final TaskSource outputTask) {
+                TransactionalPageOutput tran = runner.open(outputTask, schema, 0);
+                try {
+                    for (Long[] values : pages) {
+                        for (Page page : PageTestUtils.buildPage(runtime.getBufferAllocator(), schema, (Object[]) values)) {
+                            tran.add(page);
+                        }
+                    }
+                    tran.finish();
+                    tran.commit();
+                } finally {
+                    tran.close();
+                }
+                return new ArrayList<TaskReport>();
+            }
+        });
+    }
+
+    private static List<String> toStrings(List<StringBuilder> files) {
+        List<String> strings = new ArrayList<>();
+        for (StringBuilder file : files) {
+            strings.add(file.toString());
+        }
+        return strings;
+    }
 }
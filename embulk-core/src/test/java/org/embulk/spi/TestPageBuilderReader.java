@@ -14,7 +14,10 @@ import static org.msgpack.value.ValueFactory.newInteger;
 import static org.msgpack.value.ValueFactory.newMap;
 import static org.msgpack.value.ValueFactory.newString;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.spi.time.Timestamp;
@@ -49,6 +52,8 @@ public class TestPageBuilderReader {
     }
 
     private BufferAllocator bufferAllocator;
+    private PageLayout layout = PageLayout.ROW_ORIENTED;
+    private PageStringStorage stringStorage = PageStringStorage.REFERENCE;
     private PageReader reader;
     private PageBuilder builder;
 
@@ -160,7 +165,7 @@ public class TestPageBuilderReader {
 
     private List<Page> buildPages(Schema schema, final Object... objects) {
         MockPageOutput output = new MockPageOutput();
-        this.builder = new PageBuilder(bufferAllocator, schema, output);
+        this.builder = new PageBuilder(bufferAllocator, schema, output, layout, stringStorage);
         int idx = 0;
         while (idx < objects.length) {
             for (int column = 0; column < builder.getSchema().getColumnCount(); ++column) {
@@ -369,4 +374,237 @@ public class TestPageBuilderReader {
         builder.flush();
         builder.flush();
     }
+
+    @Test
+    public void testColumnarMixedTypes() {
+        this.layout = PageLayout.COLUMNAR;
+        check(Schema.builder()
+                    .add("col3", DOUBLE)
+                    .add("col1", STRING)
+                    .add("col3", LONG)
+                    .add("col3", BOOLEAN)
+                    .add("col2", TIMESTAMP)
+                    .add("col4", JSON)
+                    .build(),
+                8122.0, "val1", 3L, false, Timestamp.ofEpochMilli(0), getJsonSampleData(),
+                140.15, "val2", Long.MAX_VALUE, true, Timestamp.ofEpochMilli(10), getJsonSampleData(),
+                null, null, null, null, null, null,
+                -1.5, "val3", Long.MIN_VALUE, null, Timestamp.ofEpochMilli(20), null);
+    }
+
+    @Test
+    public void testColumnarEmptySchema() {
+        MockPageOutput output = new MockPageOutput();
+        this.builder = new PageBuilder(bufferAllocator, Schema.builder().build(), output, PageLayout.COLUMNAR);
+        builder.addRecord();
+        builder.addRecord();
+        builder.flush();
+        builder.close();
+        this.reader = new PageReader(Schema.builder().build());
+        assertEquals(1, output.pages.size());
+        assertEquals(2, PageReader.getRecordCount(output.pages.get(0)));
+        reader.setPage(output.pages.get(0));
+        assertEquals(PageLayout.COLUMNAR, reader.getLayout());
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.nextRecord());
+        assertFalse(reader.nextRecord());
+    }
+
+    @Test
+    public void testColumnarRenewPage() {
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return Buffer.allocate(1);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return Buffer.allocate(minimumCapacity);
+            }
+        };
+        this.layout = PageLayout.COLUMNAR;
+        List<Page> pages = buildPages(Schema.builder().add("col1", LONG).build(),
+                0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+        assertEquals(9, pages.size());
+        checkPage(Schema.builder().add("col1", LONG).build(), pages.get(8), 8L);
+    }
+
+    @Test
+    public void testMixedLayoutsInOneReader() {
+        Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        Page rowPage = buildPage(schema, 1L, "a", 2L, null);
+
+        this.reader = new PageReader(schema);
+        reader.setPage(rowPage);
+        assertEquals(PageLayout.ROW_ORIENTED, reader.getLayout());
+        assertTrue(reader.nextRecord());
+        assertEquals(1L, reader.getLong(0));
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.isNull(1));
+        assertFalse(reader.nextRecord());
+
+        this.layout = PageLayout.COLUMNAR;
+        Page columnarPage = buildPage(schema, 3L, "c", null, "d");
+        reader.setPage(columnarPage);
+        assertEquals(PageLayout.COLUMNAR, reader.getLayout());
+        assertTrue(reader.nextRecord());
+        assertEquals(3L, reader.getLong(0));
+        assertEquals("c", reader.getString(1));
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.isNull(0));
+        assertEquals("d", reader.getString(1));
+        assertFalse(reader.nextRecord());
+    }
+
+    @Test
+    public void testVectors() {
+        checkVectors(PageLayout.ROW_ORIENTED);
+        checkVectors(PageLayout.COLUMNAR);
+    }
+
+    private void checkVectors(PageLayout layout) {
+        Schema schema = Schema.builder()
+                .add("col1", STRING)
+                .add("col2", LONG)
+                .add("col3", DOUBLE)
+                .build();
+        this.layout = layout;
+        Page page = buildPage(schema,
+                "a", 10L, 0.5,
+                null, null, 1.5,
+                "c", 30L, null);
+        this.reader = new PageReader(schema);
+        reader.setPage(page);
+
+        long[] longs = reader.getLongVector(1);
+        assertEquals(3, longs.length);
+        assertEquals(10L, longs[0]);
+        assertEquals(30L, longs[2]);
+
+        double[] doubles = reader.getDoubleVector(schema.getColumn(2));
+        assertEquals(3, doubles.length);
+        assertEquals(0.5, doubles[0], 0.0);
+        assertEquals(1.5, doubles[1], 0.0);
+
+        BitSet longNulls = reader.getNullBitmap(1);
+        assertFalse(longNulls.get(0));
+        assertTrue(longNulls.get(1));
+        assertFalse(longNulls.get(2));
+        assertEquals(1, longNulls.cardinality());
+        assertEquals(2, reader.getNullBitmap(2).nextSetBit(0));
+        assertTrue(reader.getNullBitmap(0).get(1));
+
+        // vector access does not move the cursor
+        assertTrue(reader.nextRecord());
+        assertEquals("a", reader.getString(0));
+        reader.close();
+        this.reader = null;
+    }
+
+    @Test
+    public void testInlineStrings() {
+        this.stringStorage = PageStringStorage.INLINE_UTF8;
+        checkInlineStrings();
+        this.layout = PageLayout.COLUMNAR;
+        checkInlineStrings();
+    }
+
+    private void checkInlineStrings() {
+        Schema schema = Schema.builder()
+                .add("col1", STRING)
+                .add("col2", LONG)
+                .add("col3", STRING)
+                .add("col4", JSON)
+                .build();
+        Page page = buildPage(schema,
+                "test1", 1L, "", getJsonSampleData(),
+                null, 2L, "あいう", null,
+                "🍣", null, null, getJsonSampleData());
+        checkPage(schema, page,
+                "test1", 1L, "", getJsonSampleData(),
+                null, 2L, "あいう", null,
+                "🍣", null, null, getJsonSampleData());
+        // the reader of checkPage owns the page, and releases it when it's closed
+        assertEquals(PageStringStorage.INLINE_UTF8, reader.getStringStorage());
+        reader.close();
+        this.reader = null;
+    }
+
+    @Test
+    public void testRenewPageWithInlineStrings() {
+        this.bufferAllocator = new BufferAllocator() {
+            @Override
+            public Buffer allocate() {
+                return Buffer.allocate(1);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity) {
+                return Buffer.allocate(minimumCapacity);
+            }
+        };
+        this.stringStorage = PageStringStorage.INLINE_UTF8;
+        checkRenewPageWithInlineStrings(3);
+        this.layout = PageLayout.COLUMNAR;
+        // the columnar page allocated for the longer record has room also for the last record
+        checkRenewPageWithInlineStrings(2);
+    }
+
+    private void checkRenewPageWithInlineStrings(int expectedPages) {
+        Schema schema = Schema.builder().add("col1", LONG).add("col2", STRING).build();
+        List<Page> pages = buildPages(schema,
+                0L, "record0",
+                1L, "a longer record than the first record",
+                2L, "record2");
+        // the longer record starts a new page
+        assertEquals(expectedPages, pages.size());
+        checkPage(schema, pages.get(1), 1L, "a longer record than the first record");
+    }
+
+    @Test
+    public void testStringBytes() {
+        checkStringBytes(PageLayout.ROW_ORIENTED, PageStringStorage.REFERENCE);
+        checkStringBytes(PageLayout.ROW_ORIENTED, PageStringStorage.INLINE_UTF8);
+        checkStringBytes(PageLayout.COLUMNAR, PageStringStorage.REFERENCE);
+        checkStringBytes(PageLayout.COLUMNAR, PageStringStorage.INLINE_UTF8);
+    }
+
+    private void checkStringBytes(PageLayout layout, PageStringStorage stringStorage) {
+        Schema schema = Schema.builder().add("col1", STRING).add("col2", STRING).build();
+        MockPageOutput output = new MockPageOutput();
+        this.builder = new PageBuilder(bufferAllocator, schema, output, layout, stringStorage);
+        byte[] utf8 = "xxあいxx".getBytes(StandardCharsets.UTF_8);
+        builder.setStringBytes(0, utf8, 2, utf8.length - 4);
+        builder.setString(1, "v1");
+        builder.addRecord();
+        builder.setNull(0);
+        builder.addRecord();
+        builder.finish();
+        builder.close();
+        this.builder = null;
+
+        this.reader = new PageReader(schema);
+        reader.setPage(output.pages.get(0));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PageReader.ByteSink sink = new PageReader.ByteSink() {
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes.write(b, off, len);
+                }
+            };
+        assertTrue(reader.nextRecord());
+        assertEquals("あい", reader.getString(0));
+        assertTrue(reader.getStringBytes(0, sink));
+        assertEquals("あい", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        bytes.reset();
+        assertTrue(reader.getStringBytes(schema.getColumn(1), sink));
+        assertEquals("v1", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(reader.nextRecord());
+        assertFalse(reader.getStringBytes(0, sink));
+        assertEquals("v1", reader.getString(1));  // values are kept in the next record
+        assertFalse(reader.nextRecord());
+        reader.close();
+        this.reader = null;
+    }
 }
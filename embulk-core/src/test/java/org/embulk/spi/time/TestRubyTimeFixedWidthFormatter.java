@@ -0,0 +1,91 @@
+package org.embulk.spi.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+public class TestRubyTimeFixedWidthFormatter {
+    @Test
+    public void testUnsupportedFormats() {
+        assertNull(compile("%Y-%m-%d %Z"));
+        assertNull(compile("%b %d %Y"));
+        assertNull(compile("%-d"));
+        assertNull(compile("%10N"));
+        assertNull(compile("%3S"));
+        assertNull(compile("%Y%"));
+    }
+
+    @Test
+    public void testFormat() {
+        final RubyTimeFixedWidthFormatter formatter = compile("%Y-%m-%d %H:%M:%S.%6N %z");
+        final StringBuilder sb = new StringBuilder("x");
+        assertTrue(formatter.formatTo(1500000000L, 123456789, sb));
+        assertEquals("x2017-07-14 02:40:00.123456 +0000", sb.toString());
+
+        sb.setLength(0);
+        assertFalse(formatter.formatTo(253402300800L, 0, sb));  // 10000-01-01
+        assertEquals("", sb.toString());
+    }
+
+    @Test
+    public void testSameAsRubyDateFormat() {
+        final String[] formats = {
+            "%Y-%m-%d %H:%M:%S.%6N %z",
+            "%Y-%m-%d %H:%M:%S.%N %z",
+            "%Y-%m-%dT%H:%M:%S.%L%z",
+            "%F %T",
+            "%Y%m%d%H%M%S%1N",
+            "%e/%m/%Y %k:%M:%S %% %z",
+            "%H:%M %Y-%m-%d",
+            "",
+        };
+        final String[] zones = {"UTC", "Asia/Tokyo", "Asia/Kolkata", "America/Los_Angeles", "America/St_Johns"};
+        final Random random = new Random(1);
+        for (final String format : formats) {
+            for (final String zone : zones) {
+                final org.joda.time.DateTimeZone jodaDateTimeZone = org.joda.time.DateTimeZone.forID(zone);
+                final RubyTimeFixedWidthFormatter formatter = RubyTimeFixedWidthFormatter.compile(format, jodaDateTimeZone);
+                long epochSecond = 1500000000L;
+                for (int i = 0; i < 2000; i++) {
+                    // Mostly close to the previous value to use the cached hour
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            epochSecond = random.nextLong() % 253402300800L;
+                            break;
+                        case 1:
+                            epochSecond += random.nextInt(86400 * 2) - 86400;
+                            break;
+                        default:
+                            epochSecond += random.nextInt(120) - 60;
+                    }
+                    final int nano = random.nextInt(1000000000);
+                    assertSameAsRubyDateFormat(formatter, format, jodaDateTimeZone, epochSecond, nano);
+                }
+            }
+        }
+    }
+
+    private static RubyTimeFixedWidthFormatter compile(final String format) {
+        return RubyTimeFixedWidthFormatter.compile(format, org.joda.time.DateTimeZone.UTC);
+    }
+
+    @SuppressWarnings("deprecation")  // https://github.com/embulk/embulk/issues/830
+    private static void assertSameAsRubyDateFormat(final RubyTimeFixedWidthFormatter formatter,
+                                                   final String format,
+                                                   final org.joda.time.DateTimeZone jodaDateTimeZone,
+                                                   final long epochSecond,
+                                                   final int nano) {
+        final StringBuilder sb = new StringBuilder();
+        if (formatter.formatTo(epochSecond, nano, sb)) {
+            final org.jruby.util.RubyDateFormat rubyDateFormat = new org.jruby.util.RubyDateFormat(format, Locale.ENGLISH, true);
+            rubyDateFormat.setDateTime(new org.joda.time.DateTime(epochSecond * 1000, jodaDateTimeZone));
+            rubyDateFormat.setNSec(nano);
+            assertEquals(epochSecond + " " + nano, rubyDateFormat.format(null), sb.toString());
+        }
+    }
+}
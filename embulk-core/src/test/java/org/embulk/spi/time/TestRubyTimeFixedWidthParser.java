@@ -0,0 +1,153 @@
+package org.embulk.spi.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+import org.junit.Test;
+
+public class TestRubyTimeFixedWidthParser {
+    @Test
+    public void testUnsupportedFormats() {
+        assertNull(compileLegacy("%Y-%m"));
+        assertNull(compileLegacy("%d/%b/%Y:%H:%M:%S %z"));
+        assertNull(compileLegacy("%Y-%m-%d %z %H"));
+        assertNull(compileLegacy("%Y-%m-%d %H:%M:%S.%N%H"));
+        assertNull(compileLegacy("%Y-%m-%d 12:%M"));
+        assertNull(compileLegacy("%s"));
+    }
+
+    @Test
+    public void testParse() {
+        final RubyTimeFixedWidthParser parser = compileLegacy("%Y-%m-%d %H:%M:%S.%N %z");
+        assertEquals(Instant.ofEpochSecond(1500000000L, 123456000),
+                     parser.parse("2017-07-14 02:40:00.123456 +0000"));
+        assertEquals(Instant.ofEpochSecond(1500000000L - 9 * 3600, 100000000),
+                     parser.parse("2017-07-14 02:40:00.1 +09:00"));
+        assertEquals(Instant.ofEpochSecond(1500000000L, 0),
+                     parser.parse("2017-07-14 02:40:00.0 UTC"));
+
+        // Lenient texts are left to RubyTimeParser.
+        assertNull(parser.parse("2017-07-14 02:40:60.0 UTC"));
+        assertNull(parser.parse("2017-7-14 02:40:00.0 UTC"));
+        assertNull(parser.parse("2017-07-14 02:40:00.0  UTC"));
+        assertNull(parser.parse("2017-07-14 02:40:00.0 UTC+9"));
+        assertNull(parser.parse("2017-02-29 02:40:00.0 UTC"));
+        assertNull(parser.parse("2017-07-14 24:00:00.0 UTC"));
+    }
+
+    @Test
+    public void testSameAsRubyTimeParser() {
+        final String[] formats = {
+            "%Y-%m-%d %H:%M:%S.%N %z",
+            "%Y-%m-%d %H:%M:%S %Z",
+            "%Y-%m-%dT%H:%M:%S.%L%z",
+            "%Y-%m-%d %H:%M:%S",
+            "%Y%m%d%H%M%S",
+            "%F %T",
+            "%Y/%m/%e %k:%M",
+            "%Y-%m-%d",
+        };
+        final String[] zones = {"", "+0900", "-0530", "+09:00", "UTC", "Z", "JST", "PST", "EST", "utc", "XYZ", "+09", "GMT+9"};
+        final Random random = new Random(1);
+        for (final String format : formats) {
+            for (int i = 0; i < 3000; i++) {
+                final String text = randomText(random, format, zones[random.nextInt(zones.length)]);
+                assertSameAsRubyTimeParser(format, text);
+            }
+        }
+    }
+
+    private static RubyTimeFixedWidthParser compileLegacy(final String format) {
+        return RubyTimeFixedWidthParser.compileLegacy(RubyTimeFormat.compile(format), ZoneOffset.UTC);
+    }
+
+    private static void assertSameAsRubyTimeParser(final String format, final String text) {
+        final RubyTimeFormat compiled = RubyTimeFormat.compile(format);
+        final RubyTimeParsed parsed = new RubyTimeParser(compiled).parse(text);
+
+        for (final ZoneId defaultZoneId : new ZoneId[] {ZoneOffset.UTC, ZoneId.of("America/Los_Angeles")}) {
+            final Instant legacy = RubyTimeFixedWidthParser.compileLegacy(compiled, defaultZoneId).parse(text);
+            if (legacy != null) {
+                assertNotNull(text, parsed);
+                assertEquals(text, parsed.toLegacy().toInstant(1970, 1, 1, defaultZoneId), legacy);
+            }
+        }
+
+        for (final ZoneOffset defaultZoneOffset : new ZoneOffset[] {ZoneOffset.UTC, ZoneOffset.ofHours(-8)}) {
+            final Instant ruby = RubyTimeFixedWidthParser.compileRuby(compiled, defaultZoneOffset).parse(text);
+            if (ruby != null) {
+                assertNotNull(text, parsed);
+                assertEquals(text, parsed.toInstant(defaultZoneOffset), ruby);
+            }
+        }
+    }
+
+    // Builds a text which mostly matches with the format, and sometimes has a broken field.
+    private static String randomText(final Random random, final String format, final String zone) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < format.length(); i++) {
+            final char c = format.charAt(i);
+            if (c != '%') {
+                sb.append(random.nextInt(50) == 0 ? "  " : String.valueOf(c));
+                continue;
+            }
+            i++;
+            switch (format.charAt(i)) {
+                case 'Y':
+                    sb.append(digits(random, 1 + random.nextInt(9999), random.nextInt(30) == 0 ? 3 : 4));
+                    break;
+                case 'm':
+                    sb.append(digits(random, random.nextInt(14), 2));
+                    break;
+                case 'd':
+                case 'e':
+                    sb.append(digits(random, random.nextInt(33), 2));
+                    break;
+                case 'H':
+                case 'k':
+                    sb.append(digits(random, random.nextInt(26), 2));
+                    break;
+                case 'M':
+                case 'S':
+                    sb.append(digits(random, random.nextInt(62), 2));
+                    break;
+                case 'N':
+                case 'L':
+                    sb.append(digits(random, random.nextInt(1000000), 1 + random.nextInt(11)));
+                    break;
+                case 'z':
+                case 'Z':
+                    sb.append(zone);
+                    break;
+                case 'F':
+                    sb.append(randomText(random, "%Y-%m-%d", zone));
+                    break;
+                case 'T':
+                    sb.append(randomText(random, "%H:%M:%S", zone));
+                    break;
+                default:
+                    throw new IllegalArgumentException(format);
+            }
+        }
+        if (random.nextInt(50) == 0) {
+            sb.append('0');
+        }
+        return sb.toString();
+    }
+
+    private static String digits(final Random random, final int value, final int width) {
+        String s = Integer.toString(value);
+        if (s.length() > width) {
+            s = s.substring(s.length() - width);
+        }
+        while (s.length() < width) {
+            s = (random.nextInt(20) == 0 ? " " : "0") + s;
+        }
+        return s;
+    }
+}
@@ -45,6 +45,7 @@ public class TestTimestampParser {
         testRubyToParse("2001-02-03", "%Y-%m-%d", 981158400L);
         testRubyToParse("2001-02-03T23:59:60", "%Y-%m-%dT%H:%M:%S", 981244800L);
         testRubyToParse("2001-02-03T23:59:60+09:00", "%Y-%m-%dT%H:%M:%S%Z", 981212400L);
+        testRubyToParse("2001-02-03T01:00:00+09:00", "%Y-%m-%dT%H:%M:%S%Z", 981129600L);
         testRubyToParse("-2001-02-03T23:59:60+09:00", "%Y-%m-%dT%H:%M:%S%Z", -125309754000L);
         testRubyToParse("+012345-02-03T23:59:60+09:00", "%Y-%m-%dT%H:%M:%S%Z", 327406287600L);
         testRubyToParse("-012345-02-03T23:59:60+09:00", "%Y-%m-%dT%H:%M:%S%Z", -451734829200L);
@@ -0,0 +1,92 @@
+package org.embulk.spi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBlockCompressingOutputStream {
+    private static final BlockCompressingOutputStream.Compressor GZIP = new BlockCompressingOutputStream.Compressor() {
+        public byte[] compress(byte[] data, int offset, int length) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(data, offset, length);
+            }
+            return bytes.toByteArray();
+        }
+    };
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = BlockCompressingOutputStream.newExecutor(4);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        return ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    @Test
+    public void testConcatenatedMembers() throws IOException {
+        byte[] data = new byte[100000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BlockCompressingOutputStream stream = new BlockCompressingOutputStream(out, GZIP, executor, 1000, 3)) {
+            int pos = 0;
+            while (pos < data.length) {
+                int len = Math.min(random.nextInt(3000), data.length - pos);
+                stream.write(data, pos, len);
+                pos += len;
+                if (pos < data.length) {
+                    stream.write(data[pos++]);
+                }
+            }
+        }
+        assertArrayEquals(data, gunzip(out.toByteArray()));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BlockCompressingOutputStream(out, GZIP, executor, 1000, 3).close();
+        assertEquals(0, gunzip(out.toByteArray()).length);
+    }
+
+    @Test
+    public void testCompressorFailure() throws IOException {
+        BlockCompressingOutputStream.Compressor failing = new BlockCompressingOutputStream.Compressor() {
+            public byte[] compress(byte[] data, int offset, int length) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        BlockCompressingOutputStream stream = new BlockCompressingOutputStream(new ByteArrayOutputStream(), failing, executor, 10, 1);
+        try {
+            stream.write(new byte[100]);
+            stream.close();
+            fail();
+        } catch (IOException ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.embulk.spi.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFileChannelFileInput {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path newFile(String data) throws IOException {
+        Path path = tempFolder.newFile().toPath();
+        Files.write(path, data.getBytes(UTF_8));
+        return path;
+    }
+
+    private static String readAll(FileChannelFileInput input, int maxChunkSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(input.nextFile());
+        while (true) {
+            Buffer buffer = input.poll();
+            if (buffer == null) {
+                break;
+            }
+            assertTrue(buffer.limit() <= maxChunkSize);
+            out.write(buffer.array(), buffer.offset(), buffer.limit());
+            buffer.release();
+        }
+        assertFalse(input.nextFile());
+        input.close();
+        return new String(out.toByteArray(), UTF_8);
+    }
+
+    @Test
+    public void testReadWholeFile() throws IOException {
+        Path path = newFile("0123456789abcdef");
+        assertEquals("0123456789abcdef",
+                readAll(new FileChannelFileInput(runtime.getBufferAllocator(), path, 3, 5), 3));
+        assertEquals("0123456789abcdef",
+                readAll(new FileChannelFileInput(runtime.getBufferAllocator(), path, 0, 1024), 1024 * 1024));
+    }
+
+    @Test
+    public void testReadEmptyFile() throws IOException {
+        Path path = newFile("");
+        assertEquals("",
+                readAll(new FileChannelFileInput(runtime.getBufferAllocator(), path, 3, 5), 3));
+    }
+
+    @Test
+    public void testReadRanges() throws IOException {
+        Path path = newFile("header\naaa\nbbb\nccc\n");
+        assertEquals("header\nbbb\nccc\n",
+                readAll(new FileChannelFileInput(runtime.getBufferAllocator(), path,
+                        ImmutableList.of(new FileChannelFileInput.Range(0, 7), new FileChannelFileInput.Range(11, 19)), 4, 6), 4));
+        assertEquals("",
+                readAll(new FileChannelFileInput(runtime.getBufferAllocator(), path,
+                        ImmutableList.of(new FileChannelFileInput.Range(3, 3)), 4, 6), 4));
+    }
+}
@@ -0,0 +1,113 @@
+package org.embulk.spi.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestPipelinedFileInput {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static List<Buffer> buffers(String... values) {
+        List<Buffer> buffers = new ArrayList<>();
+        for (String value : values) {
+            buffers.add(Buffer.wrap(value.getBytes(UTF_8)));
+        }
+        return buffers;
+    }
+
+    private static String readFile(FileInput input) {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            Buffer buffer = input.poll();
+            if (buffer == null) {
+                break;
+            }
+            sb.append(new String(buffer.array(), buffer.offset(), buffer.limit(), UTF_8));
+            buffer.release();
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testReadFiles() {
+        FileInput input = new PipelinedFileInput(new ListFileInput(ImmutableList.of(
+                        buffers("a", "bc", "def"), buffers(), buffers("g", "h"))), 1);
+        assertTrue(input.nextFile());
+        assertEquals("abcdef", readFile(input));
+        assertTrue(input.nextFile());
+        assertEquals("", readFile(input));
+        assertTrue(input.nextFile());
+        assertEquals("gh", readFile(input));
+        assertNull(input.poll());
+        assertFalse(input.nextFile());
+        assertFalse(input.nextFile());
+        input.close();
+    }
+
+    @Test
+    public void testSkipRestOfFile() {
+        FileInput input = new PipelinedFileInput(new ListFileInput(ImmutableList.of(
+                        buffers("a", "b", "c"), buffers("d"))), 2);
+        assertTrue(input.nextFile());
+        input.poll().release();
+        assertTrue(input.nextFile());
+        assertEquals("d", readFile(input));
+        assertFalse(input.nextFile());
+        input.close();
+    }
+
+    @Test
+    public void testCloseBeforeEnd() {
+        List<Buffer> file = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            file.addAll(buffers("x"));
+        }
+        FileInput input = new PipelinedFileInput(new ListFileInput(ImmutableList.of(file)), 2);
+        assertTrue(input.nextFile());
+        input.poll().release();
+        input.close();
+    }
+
+    @Test
+    public void testPropagateException() {
+        FileInput failing = new FileInput() {
+            private int count = 0;
+
+            public boolean nextFile() {
+                return true;
+            }
+
+            public Buffer poll() {
+                if (count++ < 2) {
+                    return Buffer.wrap("a".getBytes(UTF_8));
+                }
+                throw new IllegalStateException("broken");
+            }
+
+            public void close() {}
+        };
+        FileInput input = new PipelinedFileInput(failing, 4);
+        assertTrue(input.nextFile());
+        try {
+            readFile(input);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+        assertFalse(input.nextFile());
+        input.close();
+    }
+}
@@ -0,0 +1,112 @@
+package org.embulk.spi.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class TestValueParsers {
+    // parses |s| surrounded by garbage to check that start and end are respected
+    private static long parseLong(String s) {
+        byte[] bytes = ("x" + s + "y").getBytes(UTF_8);
+        long value = ValueParsers.parseLong(bytes, 1, bytes.length - 1);
+        assertEquals(value, ValueParsers.parseLong("x" + s + "y", 1, s.length() + 1));
+        return value;
+    }
+
+    private static double parseDouble(String s) {
+        byte[] bytes = ("x" + s + "y").getBytes(UTF_8);
+        double value = ValueParsers.parseDouble(bytes, 1, bytes.length - 1);
+        assertEquals(Double.doubleToRawLongBits(value),
+                Double.doubleToRawLongBits(ValueParsers.parseDouble("x" + s + "y", 1, s.length() + 1)));
+        return value;
+    }
+
+    private static boolean isTrue(String s) {
+        byte[] bytes = ("x" + s + "y").getBytes(UTF_8);
+        boolean value = ValueParsers.isTrue(bytes, 1, bytes.length - 1);
+        assertEquals(value, ValueParsers.isTrue("x" + s + "y", 1, s.length() + 1));
+        return value;
+    }
+
+    private static void assertSameLong(String s) {
+        long expected;
+        try {
+            expected = Long.parseLong(s);
+        } catch (NumberFormatException ex) {
+            try {
+                parseLong(s);
+                fail("NumberFormatException expected: " + s);
+            } catch (NumberFormatException expectedException) {
+                // expected
+            }
+            return;
+        }
+        assertEquals(s, expected, parseLong(s));
+    }
+
+    private static void assertSameDouble(String s) {
+        double expected;
+        try {
+            expected = Double.parseDouble(s);
+        } catch (NumberFormatException ex) {
+            try {
+                parseDouble(s);
+                fail("NumberFormatException expected: " + s);
+            } catch (NumberFormatException expectedException) {
+                // expected
+            }
+            return;
+        }
+        assertEquals(s, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(parseDouble(s)));
+    }
+
+    @Test
+    public void testParseLong() {
+        for (String s : new String[] {
+                "0", "1", "-1", "+1", "0012", "-0", "123456789012345678", "9223372036854775807",
+                "-9223372036854775808", "9223372036854775808", "-9223372036854775809", "99999999999999999999",
+                "", "-", "+", "1.0", " 1", "1 ", "1e3", "0x10", "--1", "１"}) {
+            assertSameLong(s);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            assertSameLong(Long.toString(random.nextLong()));
+            assertSameLong(Long.toString(random.nextLong() >> random.nextInt(64)));
+        }
+    }
+
+    @Test
+    public void testParseDouble() {
+        for (String s : new String[] {
+                "0", "-0", "0.0", "-0.0", "1", "-1", "+1.5", ".5", "5.", "1e10", "1E+10", "1e-10", "-2.5e-3",
+                "0.1", "0.2", "0.3", "3.141592653589793", "2.718281828459045", "1.7976931348623157e308",
+                "1.7976931348623159e308", "2.2250738585072014e-308", "4.9e-324", "2e-324", "1e-400", "1e400",
+                "9007199254740993", "9007199254740992.5", "18446744073709551615", "123456789012345678901234567890",
+                "0.000000000000000000000000000001", "7.2057594037927933e16", "1e22", "1e23", "8.41e21",
+                "NaN", "-Infinity", " 1.0", "1.0 ", "1.0d", "1.0f", "0x1p3", "", "-", ".", "e5", "1e", "1e+", "1.2.3", "1,0"}) {
+            assertSameDouble(s);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            assertSameDouble(Double.toString(Double.longBitsToDouble(random.nextLong())));
+            assertSameDouble(Double.toString(random.nextDouble()));
+            assertSameDouble(String.format("%.17e", random.nextDouble() * Math.pow(10, random.nextInt(600) - 300)));
+            assertSameDouble(random.nextInt(1000000) + "." + random.nextInt(1000000) + "e" + (random.nextInt(80) - 40));
+        }
+    }
+
+    @Test
+    public void testIsTrue() {
+        for (String s : new String[] {"true", "True", "TRUE", "yes", "Yes", "YES", "t", "T", "y", "Y", "on", "On", "ON", "1"}) {
+            assertTrue(s, isTrue(s));
+        }
+        for (String s : new String[] {"", "false", "tRUE", "TRue", "oN", "0", "n", "yess", " true", "x"}) {
+            assertFalse(s, isTrue(s));
+        }
+    }
+}
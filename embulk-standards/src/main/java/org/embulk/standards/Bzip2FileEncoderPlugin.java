@@ -1,12 +1,15 @@
 package org.embulk.standards;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
@@ -14,6 +17,8 @@ import org.embulk.config.TaskSource;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.EncoderPlugin;
 import org.embulk.spi.FileOutput;
+import org.embulk.spi.unit.ByteSize;
+import org.embulk.spi.util.BlockCompressingOutputStream;
 import org.embulk.spi.util.FileOutputOutputStream;
 import org.embulk.spi.util.OutputStreamFileOutput;
 
@@ -25,12 +30,24 @@ public class Bzip2FileEncoderPlugin implements EncoderPlugin {
         @Max(9)
         int getLevel();
 
+        @Config("threads")
+        @ConfigDefault("1")
+        @Min(1)
+        int getThreads();
+
+        @Config("block_size")
+        @ConfigDefault("\"900KB\"")
+        ByteSize getBlockSize();
+
         @ConfigInject
         BufferAllocator getBufferAllocator();
     }
 
     public void transaction(ConfigSource config, EncoderPlugin.Control control) {
         PluginTask task = config.loadConfig(PluginTask.class);
+        if (task.getBlockSize().getBytes() <= 0 || task.getBlockSize().getBytes() > Integer.MAX_VALUE) {
+            throw new ConfigException("\"block_size\" must be larger than 0 and smaller than 2GB");
+        }
         control.run(task.dump());
     }
 
@@ -39,11 +56,24 @@ public class Bzip2FileEncoderPlugin implements EncoderPlugin {
         final PluginTask task = taskSource.loadTask(PluginTask.class);
 
         final FileOutputOutputStream output = new FileOutputOutputStream(fileOutput, task.getBufferAllocator(), FileOutputOutputStream.CloseMode.FLUSH);
+        final ExecutorService executor = task.getThreads() > 1 ? BlockCompressingOutputStream.newExecutor(task.getThreads()) : null;
 
         return new OutputStreamFileOutput(new OutputStreamFileOutput.Provider() {
                 public OutputStream openNext() throws IOException {
                     output.nextFile();
-                    return new BZip2CompressorOutputStream(output, task.getLevel());
+                    if (executor == null) {
+                        return new BZip2CompressorOutputStream(output, task.getLevel());
+                    }
+                    // compresses each block into a bzip2 stream. bzip2 decoders read concatenated streams.
+                    return new BlockCompressingOutputStream(output, new BlockCompressingOutputStream.Compressor() {
+                            public byte[] compress(byte[] data, int offset, int length) throws IOException {
+                                ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+                                try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(bytes, task.getLevel())) {
+                                    bzip2.write(data, offset, length);
+                                }
+                                return bytes.toByteArray();
+                            }
+                        }, executor, task.getBlockSize().getBytesInt(), task.getThreads() * 2);
                 }
 
                 public void finish() throws IOException {
@@ -51,6 +81,9 @@ public class Bzip2FileEncoderPlugin implements EncoderPlugin {
                 }
 
                 public void close() throws IOException {
+                    if (executor != null) {
+                        executor.shutdownNow();
+                    }
                     fileOutput.close();
                 }
             });
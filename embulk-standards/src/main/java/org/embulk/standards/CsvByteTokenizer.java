@@ -0,0 +1,689 @@
+package org.embulk.standards;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+import org.embulk.standards.CsvParserPlugin.QuotesInQuotedFields;
+import org.embulk.standards.CsvTokenizer.InvalidFormatException;
+import org.embulk.standards.CsvTokenizer.InvalidValueException;
+import org.embulk.standards.CsvTokenizer.QuotedSizeLimitExceededException;
+
+/**
+ * CsvByteTokenizer tokenizes CSV in the same way with CsvTokenizer, but it scans bytes of Buffers
+ * instead of Strings decoded by LineDecoder.
+ *
+ * It supports only charsets in which delimiter, quote, escape and newline characters are found by
+ * bytes, such as UTF-8. A value is available as a range of a byte array which is valid until the
+ * next call of {@link #nextValue()}, and it's decoded into a String only if it's needed.
+ */
+public class CsvByteTokenizer {
+    private enum RecordState {
+        NOT_END, END,
+    }
+
+    private enum ColumnState {
+        BEGIN, VALUE, QUOTED_VALUE, AFTER_QUOTED_VALUE, FIRST_TRIM, LAST_TRIM_OR_VALUE,
+    }
+
+    private static final int END_OF_LINE = -1;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SPACE = ' ';
+
+    private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+    // word-at-a-time scanning reads 8 bytes at once in the native byte order
+    private static final boolean SWAR = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final FileInput input;
+    private final Charset charset;
+    private final boolean skipBom;
+    private final byte delimiterByte;
+    private final byte[] delimiterFollowingBytes;  // null if the delimiter is 1 character
+    private final int quote;  // END_OF_LINE if no quote
+    private final int escape;  // END_OF_LINE if no escape
+    private final byte[] newline;
+    private final boolean trimIfNotQuoted;
+    private final QuotesInQuotedFields quotesInQuotedFields;
+    private final long maxQuotedSizeLimit;
+    private final byte[] commentLineMarker;  // null if not set
+    private final byte[] nullString;  // null if not set
+
+    // current input buffer
+    private Buffer buffer;
+    private Slice bufferSlice;
+    private byte[] bufferArray;
+    private int bufferPos;
+    private int bufferEnd;
+    private boolean skipLf = false;  // a line ended with CR at the end of the last buffer
+    private boolean firstLineOfFile = false;
+
+    // lines of the current record
+    private byte[] line = new byte[1024];
+    private Slice lineSlice = Slices.wrappedBuffer(line);
+    private int[] lineStarts = new int[4];
+    private int lineCount = 0;
+    private int lineEnd = 0;
+    private int linePos = 0;
+    private final Deque<byte[]> unreadLines = new ArrayDeque<>();
+
+    private RecordState recordState = RecordState.END;  // initial state is end of a record. nextRecord() must be called first
+    private long lineNumber = 0;
+
+    // current value
+    private byte[] quotedValue = new byte[256];
+    private int quotedValueLength;
+    private byte[] valueArray;
+    private int valueOffset;
+    private int valueLength;
+    private boolean wasQuotedColumn = false;
+    private int columnFirstLine = 0;
+
+    public CsvByteTokenizer(FileInput input, CsvParserPlugin.PluginTask task) {
+        if (!isSupportedCharset(task.getCharset())) {
+            throw new ConfigException(String.format("Charset %s is not supported by the byte tokenizer", task.getCharset()));
+        }
+        this.input = input;
+        this.charset = task.getCharset();
+        this.skipBom = charset.equals(StandardCharsets.UTF_8);
+
+        String delimiter = task.getDelimiter();
+        if (delimiter.length() == 0) {
+            throw new ConfigException("Empty delimiter is not allowed");
+        }
+        byte[] delimiterBytes = encodeAscii(delimiter, "delimiter");
+        this.delimiterByte = delimiterBytes[0];
+        this.delimiterFollowingBytes = (delimiterBytes.length > 1 ? Arrays.copyOfRange(delimiterBytes, 1, delimiterBytes.length) : null);
+
+        char quoteChar = task.getQuoteChar().or(CsvParserPlugin.QuoteCharacter.noQuote()).getCharacter();
+        char escapeChar = task.getEscapeChar().or(CsvParserPlugin.EscapeCharacter.noEscape()).getCharacter();
+        this.quote = (quoteChar == CsvTokenizer.NO_QUOTE ? END_OF_LINE : encodeAscii(String.valueOf(quoteChar), "quote")[0]);
+        this.escape = (escapeChar == CsvTokenizer.NO_ESCAPE ? END_OF_LINE : encodeAscii(String.valueOf(escapeChar), "escape")[0]);
+        this.newline = task.getNewline().getString().getBytes(StandardCharsets.US_ASCII);
+        this.trimIfNotQuoted = task.getTrimIfNotQuoted();
+        this.quotesInQuotedFields = task.getQuotesInQuotedFields();
+        if (trimIfNotQuoted && quotesInQuotedFields != QuotesInQuotedFields.ACCEPT_ONLY_RFC4180_ESCAPED) {
+            // The combination makes some syntax very ambiguous such as:
+            //     val1,  \"\"val2\"\"  ,val3
+            throw new ConfigException("[quotes_in_quoted_fields != ACCEPT_ONLY_RFC4180_ESCAPED] is not allowed to specify with [trim_if_not_quoted = true]");
+        }
+        this.maxQuotedSizeLimit = task.getMaxQuotedSizeLimit();
+        this.commentLineMarker = task.getCommentLineMarker().isPresent() ? task.getCommentLineMarker().get().getBytes(charset) : null;
+        this.nullString = task.getNullString().isPresent() ? task.getNullString().get().getBytes(charset) : null;
+    }
+
+    /**
+     * Returns true if delimiter, quote, escape and newline characters are found by bytes in the charset.
+     */
+    public static boolean isSupportedCharset(Charset charset) {
+        return CsvFileSplitter.isSplittableCharset(charset);
+    }
+
+    private static byte[] encodeAscii(String string, String name) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) >= 0x80) {
+                throw new ConfigException(String.format("\"%s\" must be ASCII characters to use the byte tokenizer", name));
+            }
+        }
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public long getCurrentLineNumber() {
+        return lineNumber;
+    }
+
+    public boolean skipHeaderLine() {
+        boolean skipped = nextLine(false);
+        if (skipped) {
+            lineNumber++;
+        }
+        return skipped;
+    }
+
+    // returns skipped line
+    public String skipCurrentLine() {
+        String skippedLine;
+        int lastLine = lineCount - 1;
+        if (lastLine <= columnFirstLine) {
+            skippedLine = decodeLine(lastLine);
+        } else {
+            // recover lines of the quoted value
+            skippedLine = decodeLine(columnFirstLine);
+            for (int i = lastLine; i > columnFirstLine; i--) {
+                unreadLines.addFirst(Arrays.copyOfRange(line, lineStarts[i], lineEndOf(i)));
+            }
+            lineNumber -= lastLine - columnFirstLine;
+        }
+        recordState = RecordState.END;
+        return skippedLine;
+    }
+
+    public boolean nextFile() {
+        releaseBuffer();
+        boolean next = input.nextFile();
+        if (next) {
+            lineNumber = 0;
+            skipLf = false;
+            firstLineOfFile = true;
+            unreadLines.clear();
+        }
+        return next;
+    }
+
+    public boolean nextRecord() {
+        return nextRecord(true);
+    }
+
+    public boolean nextRecord(boolean skipEmptyLine) {
+        // If at the end of record, read the next line and initialize the state
+        if (recordState != RecordState.END) {
+            throw new TooManyColumnsException("Too many columns");
+        }
+
+        while (true) {
+            if (!nextLine(false)) {
+                return false;
+            }
+            lineNumber++;
+
+            boolean skip = skipEmptyLine && (lineEnd == 0 || (commentLineMarker != null && startsWith(commentLineMarker)));
+            if (!skip) {
+                recordState = RecordState.NOT_END;
+                columnFirstLine = 0;
+                return true;
+            }
+        }
+    }
+
+    public boolean hasNextColumn() {
+        return recordState == RecordState.NOT_END;
+    }
+
+    public boolean wasQuotedColumn() {
+        return wasQuotedColumn;
+    }
+
+    /**
+     * Moves to the next column, and returns false if the value is null.
+     */
+    public boolean nextValue() {
+        nextColumn();
+        if (nullString == null) {
+            return valueLength > 0 || wasQuotedColumn;
+        } else {
+            return !(valueLength == nullString.length && rangeEquals(valueArray, valueOffset, nullString, 0, valueLength));
+        }
+    }
+
+    public byte[] getValueArray() {
+        return valueArray;
+    }
+
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    public String getValueString() {
+        return new String(valueArray, valueOffset, valueLength, charset);
+    }
+
+    private void nextColumn() {
+        if (!hasNextColumn()) {
+            throw new TooFewColumnsException("Too few columns");
+        }
+
+        // reset last state
+        wasQuotedColumn = false;
+        columnFirstLine = lineCount - 1;
+        quotedValueLength = 0;
+
+        // local state
+        int valueStartPos = linePos;
+        int valueEndPos = 0;  // initialized by VALUE state and used by LAST_TRIM_OR_VALUE
+        ColumnState columnState = ColumnState.BEGIN;
+
+        while (true) {
+            final int c = nextByte();
+
+            switch (columnState) {
+                case BEGIN:
+                case FIRST_TRIM:
+                    if (isDelimiter(c)) {
+                        // empty value
+                        if (delimiterFollowingBytes == null) {
+                            setValueInLine(linePos, linePos);
+                            return;
+                        } else if (isDelimiterFollowingFrom(linePos)) {
+                            linePos += delimiterFollowingBytes.length;
+                            setValueInLine(linePos, linePos);
+                            return;
+                        }
+                        // not a delimiter
+                    }
+                    if (c == END_OF_LINE) {
+                        // empty value
+                        recordState = RecordState.END;
+                        setValueInLine(linePos, linePos);
+                        return;
+
+                    } else if (isQuote(c)) {
+                        // column has heading spaces and quoted if the state is FIRST_TRIM. TODO should this be rejected?
+                        valueStartPos = linePos;
+                        wasQuotedColumn = true;
+                        columnState = ColumnState.QUOTED_VALUE;
+
+                    } else if (c == SPACE && (trimIfNotQuoted || columnState == ColumnState.FIRST_TRIM)) {
+                        // skip this character
+                        columnState = ColumnState.FIRST_TRIM;
+
+                    } else {
+                        valueStartPos = linePos - 1;
+                        if (!trimIfNotQuoted) {
+                            // fast path: look for the delimiter word-at-a-time
+                            scanValue(valueStartPos);
+                            return;
+                        }
+                        columnState = ColumnState.VALUE;
+                    }
+                    break;
+
+                case VALUE:
+                    if (isDelimiter(c)) {
+                        if (delimiterFollowingBytes == null) {
+                            setValueInLine(valueStartPos, linePos - 1);
+                            return;
+                        } else if (isDelimiterFollowingFrom(linePos)) {
+                            setValueInLine(valueStartPos, linePos - 1);
+                            linePos += delimiterFollowingBytes.length;
+                            return;
+                        }
+                        // not a delimiter
+                    }
+                    if (c == END_OF_LINE) {
+                        recordState = RecordState.END;
+                        setValueInLine(valueStartPos, linePos);
+                        return;
+
+                    } else if (c == SPACE) {
+                        valueEndPos = linePos - 1;  // this is possibly end of value
+                        columnState = ColumnState.LAST_TRIM_OR_VALUE;
+                    }
+                    break;
+
+                case LAST_TRIM_OR_VALUE:
+                    if (isDelimiter(c)) {
+                        if (delimiterFollowingBytes == null) {
+                            setValueInLine(valueStartPos, valueEndPos);
+                            return;
+                        } else if (isDelimiterFollowingFrom(linePos)) {
+                            linePos += delimiterFollowingBytes.length;
+                            setValueInLine(valueStartPos, valueEndPos);
+                            return;
+                        }
+                        // not a delimiter
+                    }
+                    if (c == END_OF_LINE) {
+                        recordState = RecordState.END;
+                        setValueInLine(valueStartPos, valueEndPos);
+                        return;
+
+                    } else if (c != SPACE) {
+                        // this spaces are not trailing spaces. go back to VALUE state
+                        columnState = ColumnState.VALUE;
+                    }
+                    break;
+
+                case QUOTED_VALUE:
+                    if (c == END_OF_LINE) {
+                        // multi-line quoted value
+                        appendQuotedValue(valueStartPos, linePos);
+                        appendQuotedValue(newline, 0, newline.length);
+                        if (!nextLine(true)) {
+                            throw new InvalidValueException("Unexpected end of line during parsing a quoted value");
+                        }
+                        lineNumber++;
+                        valueStartPos = linePos;
+
+                    } else if (isQuote(c)) {
+                        final int next = peekNextByte();
+                        final int nextNext = peekNextNextByte();
+                        if (isQuote(next)
+                                && (quotesInQuotedFields != QuotesInQuotedFields.ACCEPT_STRAY_QUOTES_ASSUMING_NO_DELIMITERS_IN_FIELDS
+                                        || (!isDelimiter(nextNext) && nextNext != END_OF_LINE))) {
+                            // Escaped by preceding it with another quote.
+                            appendQuotedValue(valueStartPos, linePos);
+                            valueStartPos = ++linePos;
+                        } else if (quotesInQuotedFields == QuotesInQuotedFields.ACCEPT_STRAY_QUOTES_ASSUMING_NO_DELIMITERS_IN_FIELDS
+                                && !(isDelimiter(next) || next == END_OF_LINE)) {
+                            // A non-escaped stray "quote character" in the field is processed as a regular character
+                            checkQuotedSizeLimit(valueStartPos);
+                        } else {
+                            appendQuotedValue(valueStartPos, linePos - 1);
+                            columnState = ColumnState.AFTER_QUOTED_VALUE;
+                        }
+
+                    } else if (isEscape(c)) {  // isQuote must be checked first in case of quote == escape
+                        final int next = peekNextByte();
+                        if (isQuote(next) || isEscape(next)) { // escaped quote
+                            appendQuotedValue(valueStartPos, linePos - 1);
+                            appendQuotedValue(line, linePos, 1);
+                            valueStartPos = ++linePos;
+                        }
+
+                    } else {
+                        checkQuotedSizeLimit(valueStartPos);
+                        // keep QUOTED_VALUE state
+                    }
+                    break;
+
+                case AFTER_QUOTED_VALUE:
+                    if (isDelimiter(c)) {
+                        if (delimiterFollowingBytes == null) {
+                            setQuotedValue();
+                            return;
+                        } else if (isDelimiterFollowingFrom(linePos)) {
+                            linePos += delimiterFollowingBytes.length;
+                            setQuotedValue();
+                            return;
+                        }
+                        // not a delimiter
+                    }
+                    if (c == END_OF_LINE) {
+                        recordState = RecordState.END;
+                        setQuotedValue();
+                        return;
+
+                    } else if (c == SPACE) {
+                        // column has trailing spaces and quoted. TODO should this be rejected?
+
+                    } else {
+                        throw new InvalidValueException(String.format("Unexpected extra character '%c' after a value quoted by '%c'", (char) c, (char) quote));
+                    }
+                    break;
+
+                default:
+                    assert false;
+            }
+        }
+    }
+
+    // scans an unquoted value which starts at |start| without trimming
+    private void scanValue(int start) {
+        int pos = linePos;
+        while (true) {
+            int found = indexOf(lineSlice, line, pos, lineEnd, delimiterByte, delimiterByte);
+            if (found < 0) {
+                recordState = RecordState.END;
+                linePos = lineEnd;
+                setValueInLine(start, lineEnd);
+                return;
+            }
+            if (delimiterFollowingBytes == null) {
+                linePos = found + 1;
+                setValueInLine(start, found);
+                return;
+            } else if (isDelimiterFollowingFrom(found + 1)) {
+                linePos = found + 1 + delimiterFollowingBytes.length;
+                setValueInLine(start, found);
+                return;
+            }
+            // not a delimiter
+            pos = found + 1;
+        }
+    }
+
+    private void setValueInLine(int start, int end) {
+        valueArray = line;
+        valueOffset = start;
+        valueLength = end - start;
+    }
+
+    private void setQuotedValue() {
+        valueArray = quotedValue;
+        valueOffset = 0;
+        valueLength = quotedValueLength;
+    }
+
+    private void appendQuotedValue(int start, int end) {
+        appendQuotedValue(line, start, end - start);
+    }
+
+    private void appendQuotedValue(byte[] bytes, int offset, int length) {
+        if (quotedValueLength + length > quotedValue.length) {
+            quotedValue = Arrays.copyOf(quotedValue, Math.max(quotedValueLength + length, quotedValue.length * 2));
+        }
+        System.arraycopy(bytes, offset, quotedValue, quotedValueLength, length);
+        quotedValueLength += length;
+    }
+
+    private void checkQuotedSizeLimit(int valueStartPos) {
+        if ((linePos - valueStartPos) + quotedValueLength > maxQuotedSizeLimit) {
+            throw new QuotedSizeLimitExceededException("The size of the quoted value exceeds the limit size (" + maxQuotedSizeLimit + ")");
+        }
+    }
+
+    private int nextByte() {
+        if (linePos >= lineEnd) {
+            return END_OF_LINE;
+        } else {
+            return line[linePos++] & 0xff;
+        }
+    }
+
+    private int peekNextByte() {
+        if (linePos >= lineEnd) {
+            return END_OF_LINE;
+        } else {
+            return line[linePos] & 0xff;
+        }
+    }
+
+    private int peekNextNextByte() {
+        if (linePos + 1 >= lineEnd) {
+            return END_OF_LINE;
+        } else {
+            return line[linePos + 1] & 0xff;
+        }
+    }
+
+    private boolean isDelimiterFollowingFrom(int pos) {
+        if (lineEnd < pos + delimiterFollowingBytes.length) {
+            return false;
+        }
+        return rangeEquals(line, pos, delimiterFollowingBytes, 0, delimiterFollowingBytes.length);
+    }
+
+    private boolean isDelimiter(int c) {
+        return c == (delimiterByte & 0xff);
+    }
+
+    private boolean isQuote(int c) {
+        return quote != END_OF_LINE && c == quote;
+    }
+
+    private boolean isEscape(int c) {
+        return escape != END_OF_LINE && c == escape;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        int start = lineStarts[lineCount - 1];
+        return lineEnd - start >= prefix.length && rangeEquals(line, start, prefix, 0, prefix.length);
+    }
+
+    private static boolean rangeEquals(byte[] array1, int offset1, byte[] array2, int offset2, int length) {
+        for (int i = 0; i < length; i++) {
+            if (array1[offset1 + i] != array2[offset2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decodeLine(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = lineStarts[index];
+        return new String(line, start, lineEndOf(index) - start, charset);
+    }
+
+    private int lineEndOf(int index) {
+        // lines are stored without newlines
+        return (index + 1 < lineCount ? lineStarts[index + 1] : lineEnd);
+    }
+
+    // reads the next line into |line|. the line is appended to the current record if |append| is true.
+    private boolean nextLine(boolean append) {
+        if (!append) {
+            lineCount = 0;
+            lineEnd = 0;
+        }
+        int start = lineEnd;
+
+        if (!unreadLines.isEmpty()) {
+            byte[] unread = unreadLines.removeFirst();
+            appendLine(unread, 0, unread.length);
+        } else if (!readLine()) {
+            lineEnd = start;
+            return false;
+        }
+
+        if (firstLineOfFile) {
+            firstLineOfFile = false;
+            if (skipBom && lineEnd - start >= UTF8_BOM.length && rangeEquals(line, start, UTF8_BOM, 0, UTF8_BOM.length)) {
+                System.arraycopy(line, start + UTF8_BOM.length, line, start, lineEnd - start - UTF8_BOM.length);
+                lineEnd -= UTF8_BOM.length;
+            }
+        }
+
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = start;
+        linePos = start;
+        return true;
+    }
+
+    // reads bytes until the next newline in the same way with BufferedReader.readLine
+    private boolean readLine() {
+        boolean read = false;
+        while (true) {
+            if (bufferPos >= bufferEnd) {
+                if (!nextBuffer()) {
+                    return read;
+                }
+                continue;
+            }
+            if (skipLf) {
+                skipLf = false;
+                if (bufferArray[bufferPos] == LF) {
+                    bufferPos++;
+                    continue;
+                }
+            }
+            int eol = indexOf(bufferSlice, bufferArray, bufferPos, bufferEnd, LF, CR);
+            if (eol < 0) {
+                appendLine(bufferArray, bufferPos, bufferEnd - bufferPos);
+                bufferPos = bufferEnd;
+                read = true;
+            } else {
+                appendLine(bufferArray, bufferPos, eol - bufferPos);
+                skipLf = (bufferArray[eol] == CR);
+                bufferPos = eol + 1;
+                return true;
+            }
+        }
+    }
+
+    private void appendLine(byte[] bytes, int offset, int length) {
+        if (lineEnd + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(lineEnd + length, line.length * 2));
+            lineSlice = Slices.wrappedBuffer(line);
+        }
+        System.arraycopy(bytes, offset, line, lineEnd, length);
+        lineEnd += length;
+    }
+
+    private boolean nextBuffer() {
+        releaseBuffer();
+        buffer = input.poll();
+        if (buffer == null) {
+            return false;
+        }
+        bufferArray = buffer.array();
+        bufferPos = buffer.offset();
+        bufferEnd = buffer.offset() + buffer.limit();
+        // index of the slice is same with index of the array
+        bufferSlice = Slices.wrappedBuffer(bufferArray);
+        return true;
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+            bufferArray = null;
+            bufferSlice = null;
+            bufferPos = 0;
+            bufferEnd = 0;
+        }
+    }
+
+    // returns index of the first byte which is |b1| or |b2| in [from, to), or -1
+    private static int indexOf(Slice slice, byte[] array, int from, int to, byte b1, byte b2) {
+        int i = from;
+        if (SWAR) {
+            final long pattern1 = ONES * (b1 & 0xff);
+            final long pattern2 = ONES * (b2 & 0xff);
+            for (; i + 8 <= to; i += 8) {
+                long word = slice.getLong(i);
+                long found = hasZeroByte(word ^ pattern1) | hasZeroByte(word ^ pattern2);
+                if (found != 0) {
+                    return i + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+        for (; i < to; i++) {
+            byte b = array[i];
+            if (b == b1 || b == b2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the lowest byte which is 0 has the highest bit set. bytes above it may have false positives
+    private static long hasZeroByte(long word) {
+        return (word - ONES) & ~word & HIGHS;
+    }
+
+    public void close() {
+        releaseBuffer();
+    }
+
+    public class TooManyColumnsException extends InvalidFormatException {
+        public TooManyColumnsException(String message) {
+            super(message);
+        }
+    }
+
+    public class TooFewColumnsException extends InvalidFormatException {
+        public TooFewColumnsException(String message) {
+            super(message);
+        }
+    }
+}
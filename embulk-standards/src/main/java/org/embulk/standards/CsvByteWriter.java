@@ -0,0 +1,341 @@
+package org.embulk.standards;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.PageReader;
+import org.embulk.standards.CsvFormatterPlugin.PluginTask;
+import org.embulk.standards.CsvFormatterPlugin.QuotePolicy;
+
+/**
+ * CsvByteWriter escapes and quotes values in the same way with CsvFormatterPlugin, but it writes UTF-8 bytes
+ * directly into Buffers of the FileOutput instead of going through Strings and LineEncoder.
+ *
+ * Whether a value needs quoting is checked by scanning the value without copying it. Long and boolean values are
+ * written without Strings. The delimiter, quote and escape characters must be ASCII.
+ */
+public class CsvByteWriter implements PageReader.ByteSink {
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final FileOutput output;
+    private final BufferAllocator allocator;
+    private final byte delimiter;
+    private final QuotePolicy quotePolicy;
+    private final byte quote;
+    private final byte escape;
+    private final byte[] newline;
+    private final byte[] newlineInField;
+    private final byte[] nullString;
+    private final String nullStringChars;
+
+    private Buffer buffer;
+    private byte[] array;
+    private int offset;
+    private int pos;
+    private int end;
+
+    private final byte[] numberBytes = new byte[24];
+
+    public CsvByteWriter(FileOutput output, PluginTask task) {
+        this.output = output;
+        this.allocator = task.getBufferAllocator();
+        this.quotePolicy = task.getQuotePolicy();
+        final char quote = task.getQuoteChar() != '\0' ? task.getQuoteChar() : '"';
+        this.delimiter = toAsciiByte(task.getDelimiterChar(), "delimiter");
+        this.quote = toAsciiByte(quote, "quote");
+        this.escape = toAsciiByte(task.getEscapeChar().or(quotePolicy == QuotePolicy.NONE ? '\\' : quote), "escape");
+        this.newline = task.getNewline().getString().getBytes(StandardCharsets.UTF_8);
+        this.newlineInField = task.getNewlineInField().getString().getBytes(StandardCharsets.UTF_8);
+        this.nullStringChars = task.getNullString();
+        this.nullString = nullStringChars.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static boolean isSupportedCharset(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8);
+    }
+
+    private static byte toAsciiByte(char c, String name) {
+        if (c >= 0x80) {
+            throw new ConfigException(String.format("'byte_writer' option doesn't support non-ASCII %s character.", name));
+        }
+        return (byte) c;
+    }
+
+    public void nextFile() {
+        flush();
+        output.nextFile();
+    }
+
+    public void addDelimiter() {
+        writeByte(delimiter);
+    }
+
+    public void addNewLine() {
+        writeBytes(newline, 0, newline.length);
+    }
+
+    public void addNullString() {
+        writeBytes(nullString, 0, nullString.length);
+    }
+
+    public void addBoolean(boolean value) {
+        final byte[] bytes = value ? TRUE : FALSE;
+        write(bytes, 0, bytes.length);
+    }
+
+    public void addLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            write(LONG_MIN_VALUE, 0, LONG_MIN_VALUE.length);
+            return;
+        }
+        final boolean negative = value < 0;
+        long v = negative ? -value : value;
+        int i = numberBytes.length;
+        do {
+            numberBytes[--i] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        if (negative) {
+            numberBytes[--i] = '-';
+        }
+        // numbers go through the same escaping because the delimiter or null_string may be digits
+        write(numberBytes, i, numberBytes.length - i);
+    }
+
+    public void addDouble(double value) {
+        // Double.toString writes integral values from -10^7 to 10^7 as "123.0"
+        if (value == (long) value && Math.abs(value) < 1.0e7 && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+            final long longValue = (long) value;
+            final boolean negative = value < 0;
+            long v = negative ? -longValue : longValue;
+            int i = numberBytes.length;
+            numberBytes[--i] = '0';
+            numberBytes[--i] = '.';
+            do {
+                numberBytes[--i] = (byte) ('0' + (v % 10));
+                v /= 10;
+            } while (v != 0);
+            if (negative) {
+                numberBytes[--i] = '-';
+            }
+            write(numberBytes, i, numberBytes.length - i);
+        } else {
+            addValue(Double.toString(value));
+        }
+    }
+
+    /**
+     * Escapes, quotes and writes a value in UTF-8 bytes.
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        final int end = offset + length;
+        boolean requireQuote = quotePolicy == QuotePolicy.ALL
+                || (quotePolicy == QuotePolicy.MINIMAL && equalsNullString(bytes, offset, length));
+        boolean requireEscape = false;
+        for (int i = offset; i < end; i++) {
+            if (isSpecial(bytes[i])) {
+                requireEscape = true;
+                break;
+            }
+        }
+
+        final boolean quoted = quotePolicy != QuotePolicy.NONE && (requireQuote || requireEscape);
+        if (quoted) {
+            writeByte(quote);
+        }
+        if (!requireEscape) {
+            writeBytes(bytes, offset, length);
+        } else {
+            int copied = offset;
+            byte previous = ' ';
+            for (int i = offset; i < end; i++) {
+                final byte b = bytes[i];
+                if (isSpecial(b)) {
+                    writeBytes(bytes, copied, i - copied);
+                    copied = i + 1;
+                    writeEscaped(b, previous);
+                }
+                previous = b;
+            }
+            writeBytes(bytes, copied, end - copied);
+        }
+        if (quoted) {
+            writeByte(quote);
+        }
+    }
+
+    /**
+     * Escapes, quotes and writes a value of characters by encoding them into UTF-8 bytes.
+     */
+    public void addValue(CharSequence value) {
+        final int length = value.length();
+        boolean requireQuote = quotePolicy == QuotePolicy.ALL
+                || (quotePolicy == QuotePolicy.MINIMAL && equalsNullString(value));
+        boolean requireEscape = false;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80 && isSpecial((byte) c)) {
+                requireEscape = true;
+                break;
+            }
+        }
+
+        final boolean quoted = quotePolicy != QuotePolicy.NONE && (requireQuote || requireEscape);
+        if (quoted) {
+            writeByte(quote);
+        }
+        byte previous = ' ';
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                final byte b = (byte) c;
+                if (requireEscape && isSpecial(b)) {
+                    writeEscaped(b, previous);
+                } else {
+                    writeByte(b);
+                }
+                previous = b;
+                continue;
+            }
+
+            previous = 0;
+            if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+                    i++;
+                    writeByte(0xf0 | (codePoint >> 18));
+                    writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                    writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                    writeByte(0x80 | (codePoint & 0x3f));
+                } else {
+                    writeByte('?');  // malformed surrogates are replaced as LineEncoder does
+                }
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        if (quoted) {
+            writeByte(quote);
+        }
+    }
+
+    public void finish() {
+        flush();
+        output.finish();
+    }
+
+    public void close() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        output.close();
+    }
+
+    private boolean isSpecial(byte b) {
+        return b == delimiter || b == '\r' || b == '\n' || (b == quote && quotePolicy != QuotePolicy.NONE);
+    }
+
+    // Same as CsvFormatterPlugin#setEscapeAndQuoteValue
+    private void writeEscaped(byte b, byte previous) {
+        if (b == quote && quotePolicy != QuotePolicy.NONE) {
+            writeByte(escape);
+            writeByte(b);
+        } else if (b == '\r') {
+            if (quotePolicy == QuotePolicy.NONE) {
+                writeByte(escape);
+            }
+            writeBytes(newlineInField, 0, newlineInField.length);
+        } else if (b == '\n') {
+            if (previous != '\r') {
+                if (quotePolicy == QuotePolicy.NONE) {
+                    writeByte(escape);
+                }
+                writeBytes(newlineInField, 0, newlineInField.length);
+            }
+        } else {  // delimiter
+            if (quotePolicy == QuotePolicy.NONE) {
+                writeByte(escape);
+            }
+            writeByte(b);
+        }
+    }
+
+    private boolean equalsNullString(byte[] bytes, int offset, int length) {
+        if (length != nullString.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != nullString[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsNullString(CharSequence value) {
+        final int length = value.length();
+        if (length != nullString.length) {
+            // a non-ASCII null_string has more bytes than chars
+            return length < nullString.length && nullStringChars.contentEquals(value);
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != nullString[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeByte(int b) {
+        if (pos >= end) {
+            flush();
+            allocate();
+        }
+        array[pos++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (pos >= end) {
+                flush();
+                allocate();
+            }
+            final int n = Math.min(length, end - pos);
+            System.arraycopy(bytes, offset, array, pos, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void allocate() {
+        buffer = allocator.allocate();
+        array = buffer.array();
+        offset = buffer.offset();
+        pos = offset;
+        end = offset + buffer.capacity();
+    }
+
+    private void flush() {
+        if (buffer != null && pos > offset) {
+            buffer.limit(pos - offset);
+            output.add(buffer);
+            buffer = null;
+            array = null;
+            pos = 0;
+            end = 0;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.embulk.standards;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvFileSplitter finds byte offsets where records of a file start so that a file can be parsed
+ * in several ranges concurrently.
+ *
+ * A range boundary is the first record boundary at or after its nominal offset. Without a quote
+ * character, a record boundary is just the end of a line. With a quote character, the file is
+ * scanned from the beginning with the same quoting rules as CsvTokenizer so that newlines in
+ * quoted values are not taken as boundaries.
+ */
+class CsvFileSplitter {
+    private static final int SCAN_BUFFER_SIZE = 256 * 1024;
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SPACE = ' ';
+
+    private enum State {
+        BEGIN, VALUE, QUOTED_VALUE, QUOTE_IN_QUOTED_VALUE, ESCAPE_IN_QUOTED_VALUE, COMMENT,
+    }
+
+    private final int skipHeaderLines;
+    private final byte delimiter;
+    private final byte quote;  // -1 if no quote
+    private final byte escape;  // -1 if no escape
+    private final boolean trimIfNotQuoted;
+    private final boolean acceptStrayQuotes;
+    private final byte[] commentLineMarker;  // null if not set
+
+    CsvFileSplitter(int skipHeaderLines, char delimiter, char quote, char escape,
+            boolean trimIfNotQuoted, boolean acceptStrayQuotes, String commentLineMarker) {
+        this.skipHeaderLines = skipHeaderLines;
+        this.delimiter = asciiByte(delimiter);
+        this.quote = (quote == CsvTokenizer.NO_QUOTE ? -1 : asciiByte(quote));
+        if (escape == CsvTokenizer.NO_ESCAPE || escape == quote) {
+            // quote is checked first in case of quote == escape
+            this.escape = -1;
+        } else {
+            this.escape = asciiByte(escape);
+        }
+        this.trimIfNotQuoted = trimIfNotQuoted;
+        this.acceptStrayQuotes = acceptStrayQuotes;
+        this.commentLineMarker = (commentLineMarker == null || commentLineMarker.isEmpty())
+                ? null : commentLineMarker.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns true if records in the charset can be found by scanning ASCII bytes, that is, no bytes of
+     * multi-byte characters are confused with ASCII characters.
+     */
+    static boolean isSplittableCharset(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || (charset.newEncoder().maxBytesPerChar() == 1.0f
+                    && "\r\n".equals(new String("\r\n".getBytes(charset), StandardCharsets.ISO_8859_1)));
+    }
+
+    static boolean isSplittableCharacter(char c) {
+        return c < 0x80;
+    }
+
+    /**
+     * Returns the offset right after the header lines.
+     */
+    long findHeaderEnd(FileChannel channel) throws IOException {
+        if (skipHeaderLines <= 0) {
+            return 0L;
+        }
+        LineScanner scanner = new LineScanner(channel, 0L);
+        long offset = 0L;
+        for (int i = 0; i < skipHeaderLines; i++) {
+            offset = scanner.nextLineStart();
+            if (offset < 0) {
+                return channel.size();
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Returns offsets of range boundaries, including 0 and the size of the file.
+     */
+    List<Long> findBoundaries(FileChannel channel, long headerEnd, long splitSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        // the first range has at least one byte after the header lines
+        if (quote >= 0) {
+            findQuotedBoundaries(channel, headerEnd, splitSize, size, boundaries);
+        } else {
+            long nominal = Math.max(splitSize, headerEnd + 1);
+            while (nominal < size) {
+                long boundary = findLineStart(channel, nominal);
+                if (boundary < 0 || boundary >= size) {
+                    break;
+                }
+                boundaries.add(boundary);
+                nominal = boundary + splitSize;
+            }
+        }
+
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    // returns the first line start at or after the offset, or -1 if no more lines
+    private long findLineStart(FileChannel channel, long offset) throws IOException {
+        if (offset == 0) {
+            return 0L;
+        }
+        // the offset itself is a line start if the previous byte ends a line
+        return new LineScanner(channel, offset - 1).nextLineStart();
+    }
+
+    private void findQuotedBoundaries(FileChannel channel, long headerEnd, long splitSize, long size, List<Long> boundaries)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = headerEnd;
+        long nominal = Math.max(splitSize, headerEnd + 1);
+        State state = State.BEGIN;
+        boolean recordStart = true;  // at the beginning of a line which is not in a quoted value
+        int commentMatched = 0;
+        boolean afterCr = false;
+
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < n; i++, position++) {
+                byte b = bytes[i];
+
+                if (afterCr) {
+                    afterCr = false;
+                    if (b != LF && state == State.BEGIN && recordStart) {
+                        // a line ended with a lone CR
+                        if (position >= nominal) {
+                            boundaries.add(position);
+                            nominal = position + splitSize;
+                        }
+                    }
+                }
+
+                if (b == LF || b == CR) {
+                    if (state == State.QUOTE_IN_QUOTED_VALUE) {
+                        // closing quote at the end of a line
+                        state = State.VALUE;
+                    } else if (state == State.ESCAPE_IN_QUOTED_VALUE) {
+                        state = State.QUOTED_VALUE;
+                    }
+                    if (state == State.QUOTED_VALUE) {
+                        // newline in a quoted value
+                        continue;
+                    }
+                    if (b == CR) {
+                        afterCr = true;
+                    } else if (position + 1 >= nominal && position + 1 < size) {
+                        boundaries.add(position + 1);
+                        nominal = position + 1 + splitSize;
+                    }
+                    state = State.BEGIN;
+                    recordStart = true;
+                    commentMatched = 0;
+                    continue;
+                }
+
+                if (recordStart && commentLineMarker != null && state == State.BEGIN) {
+                    if (b == commentLineMarker[commentMatched]) {
+                        commentMatched++;
+                        if (commentMatched == commentLineMarker.length) {
+                            state = State.COMMENT;
+                            recordStart = false;
+                        }
+                        continue;
+                    }
+                    if (commentMatched > 0) {
+                        // not a comment line. the matched bytes are an unquoted value
+                        state = State.VALUE;
+                        recordStart = false;
+                        commentMatched = 0;
+                    }
+                }
+                recordStart = false;
+
+                state = next(state, b);
+            }
+        }
+        // a CR at the end of the file ends the last record, and there are no more records
+    }
+
+    private State next(State state, byte b) {
+        switch (state) {
+            case BEGIN:
+                if (b == delimiter) {
+                    return State.BEGIN;
+                } else if (b == quote) {
+                    return State.QUOTED_VALUE;
+                } else if (b == SPACE && trimIfNotQuoted) {
+                    return State.BEGIN;
+                } else {
+                    return State.VALUE;
+                }
+
+            case VALUE:
+                if (b == delimiter) {
+                    return State.BEGIN;
+                } else {
+                    return State.VALUE;
+                }
+
+            case QUOTED_VALUE:
+                if (b == quote) {
+                    return State.QUOTE_IN_QUOTED_VALUE;
+                } else if (b == escape) {
+                    return State.ESCAPE_IN_QUOTED_VALUE;
+                } else {
+                    return State.QUOTED_VALUE;
+                }
+
+            case QUOTE_IN_QUOTED_VALUE:
+                if (b == quote) {
+                    // escaped by preceding it with another quote
+                    return State.QUOTED_VALUE;
+                } else if (b == delimiter) {
+                    return State.BEGIN;
+                } else if (acceptStrayQuotes) {
+                    // the stray quote is a regular character
+                    return next(State.QUOTED_VALUE, b);
+                } else {
+                    // spaces, or an invalid character which CsvTokenizer rejects, after a quoted value
+                    return State.VALUE;
+                }
+
+            case ESCAPE_IN_QUOTED_VALUE:
+                if (b == quote || b == escape) {
+                    return State.QUOTED_VALUE;
+                } else {
+                    return next(State.QUOTED_VALUE, b);
+                }
+
+            case COMMENT:
+                return State.COMMENT;
+
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static byte asciiByte(char c) {
+        if (!isSplittableCharacter(c)) {
+            throw new IllegalArgumentException("Non-ASCII character can't be used to split files: " + c);
+        }
+        return (byte) c;
+    }
+
+    // finds ends of lines in the same way with BufferedReader.readLine
+    private static class LineScanner {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private long position;
+
+        LineScanner(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+            buffer.limit(0);
+        }
+
+        // returns the offset of the next line, or -1 if there are no more lines
+        long nextLineStart() throws IOException {
+            int b;
+            while ((b = read()) >= 0) {
+                if (b == LF) {
+                    return position;
+                } else if (b == CR) {
+                    int next = read();
+                    if (next < 0) {
+                        return -1;
+                    } else if (next != LF) {
+                        unread();
+                    }
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                buffer.flip();
+                if (n <= 0) {
+                    return -1;
+                }
+            }
+            position++;
+            return buffer.get() & 0xff;
+        }
+
+        private void unread() {
+            position--;
+            buffer.position(buffer.position() - 1);
+        }
+    }
+}
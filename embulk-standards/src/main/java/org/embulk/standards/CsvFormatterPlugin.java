@@ -4,6 +4,7 @@ import com.google.common.base.Optional;
 import java.util.Map;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
@@ -71,6 +72,10 @@ public class CsvFormatterPlugin implements FormatterPlugin {
         @Config("column_options")
         @ConfigDefault("{}")
         Map<String, TimestampColumnOption> getColumnOptions();
+
+        @Config("byte_writer")
+        @ConfigDefault("false")
+        boolean getByteWriter();
     }
 
     public interface TimestampColumnOption extends Task, TimestampFormatter.TimestampColumnOption {}
@@ -84,6 +89,10 @@ public class CsvFormatterPlugin implements FormatterPlugin {
             schema.lookupColumn(columnName);  // throws SchemaConfigException
         }
 
+        if (task.getByteWriter() && !CsvByteWriter.isSupportedCharset(task.getCharset())) {
+            throw new ConfigException(String.format("'byte_writer' option doesn't support charset %s.", task.getCharset()));
+        }
+
         control.run(task.dump());
     }
 
@@ -91,26 +100,31 @@ public class CsvFormatterPlugin implements FormatterPlugin {
     public PageOutput open(TaskSource taskSource, final Schema schema,
             FileOutput output) {
         final PluginTask task = taskSource.loadTask(PluginTask.class);
-        final LineEncoder encoder = new LineEncoder(output, task);
         final TimestampFormatter[] timestampFormatters = Timestamps.newTimestampColumnFormatters(task, schema, task.getColumnOptions());
-        final char delimiter = task.getDelimiterChar();
-        final QuotePolicy quotePolicy = task.getQuotePolicy();
-        final char quote = task.getQuoteChar() != '\0' ? task.getQuoteChar() : '"';
-        final char escape = task.getEscapeChar().or(quotePolicy == QuotePolicy.NONE ? '\\' : quote);
-        final String newlineInField = task.getNewlineInField().getString();
-        final String nullString = task.getNullString();
+        final RecordWriter writer;
+        if (task.getByteWriter()) {
+            writer = new ByteRecordWriter(new CsvByteWriter(output, task));
+        } else {
+            writer = new StringRecordWriter(new LineEncoder(output, task), task);
+        }
 
         // create a file
-        encoder.nextFile();
+        writer.nextFile();
 
         // write header
         if (task.getHeaderLine()) {
-            writeHeader(schema, encoder, delimiter, quotePolicy, quote, escape, newlineInField, nullString);
+            for (Column column : schema.getColumns()) {
+                if (column.getIndex() != 0) {
+                    writer.addDelimiter();
+                }
+                writer.addValue(column.getName());
+            }
+            writer.addNewLine();
         }
 
         return new PageOutput() {
             private final PageReader pageReader = new PageReader(schema);
-            private final String delimiterString = String.valueOf(delimiter);
+            private final StringBuilder timestampBuilder = new StringBuilder();
 
             public void add(Page page) {
                 pageReader.setPage(page);
@@ -119,46 +133,44 @@ public class CsvFormatterPlugin implements FormatterPlugin {
                             public void booleanColumn(Column column) {
                                 addDelimiter(column);
                                 if (!pageReader.isNull(column)) {
-                                    addValue(Boolean.toString(pageReader.getBoolean(column)));
+                                    writer.addBoolean(pageReader.getBoolean(column));
                                 } else {
-                                    addNullString();
+                                    writer.addNullString();
                                 }
                             }
 
                             public void longColumn(Column column) {
                                 addDelimiter(column);
                                 if (!pageReader.isNull(column)) {
-                                    addValue(Long.toString(pageReader.getLong(column)));
+                                    writer.addLong(pageReader.getLong(column));
                                 } else {
-                                    addNullString();
+                                    writer.addNullString();
                                 }
                             }
 
                             public void doubleColumn(Column column) {
                                 addDelimiter(column);
                                 if (!pageReader.isNull(column)) {
-                                    addValue(Double.toString(pageReader.getDouble(column)));
+                                    writer.addDouble(pageReader.getDouble(column));
                                 } else {
-                                    addNullString();
+                                    writer.addNullString();
                                 }
                             }
 
                             public void stringColumn(Column column) {
                                 addDelimiter(column);
-                                if (!pageReader.isNull(column)) {
-                                    addValue(pageReader.getString(column));
-                                } else {
-                                    addNullString();
-                                }
+                                writer.addString(pageReader, column);
                             }
 
                             public void timestampColumn(Column column) {
                                 addDelimiter(column);
                                 if (!pageReader.isNull(column)) {
                                     Timestamp value = pageReader.getTimestamp(column);
-                                    addValue(timestampFormatters[column.getIndex()].format(value));
+                                    timestampBuilder.setLength(0);
+                                    timestampFormatters[column.getIndex()].format(value, timestampBuilder);
+                                    writer.addValue(timestampBuilder);
                                 } else {
-                                    addNullString();
+                                    writer.addNullString();
                                 }
                             }
 
@@ -166,56 +178,214 @@ public class CsvFormatterPlugin implements FormatterPlugin {
                                 addDelimiter(column);
                                 if (!pageReader.isNull(column)) {
                                     Value value = pageReader.getJson(column);
-                                    addValue(value.toJson());
+                                    writer.addValue(value.toJson());
                                 } else {
-                                    addNullString();
+                                    writer.addNullString();
                                 }
                             }
 
                             private void addDelimiter(Column column) {
                                 if (column.getIndex() != 0) {
-                                    encoder.addText(delimiterString);
+                                    writer.addDelimiter();
                                 }
                             }
-
-                            private void addValue(String v) {
-                                encoder.addText(setEscapeAndQuoteValue(v, delimiter, quotePolicy, quote, escape, newlineInField, nullString));
-                            }
-
-                            private void addNullString() {
-                                encoder.addText(nullString);
-                            }
                         });
-                    encoder.addNewLine();
+                    writer.addNewLine();
                 }
             }
 
             public void finish() {
-                encoder.finish();
+                writer.finish();
             }
 
             public void close() {
-                encoder.close();
+                writer.close();
             }
         };
     }
 
-    private void writeHeader(Schema schema, LineEncoder encoder, char delimiter, QuotePolicy policy, char quote, char escape, String newline, String nullString) {
-        String delimiterString = String.valueOf(delimiter);
-        for (Column column : schema.getColumns()) {
-            if (column.getIndex() != 0) {
-                encoder.addText(delimiterString);
+    // writes escaped and quoted values by LineEncoder or CsvByteWriter so that open() formats records in the same way with both
+    private abstract static class RecordWriter {
+        abstract void nextFile();
+
+        abstract void addDelimiter();
+
+        abstract void addNewLine();
+
+        abstract void addNullString();
+
+        abstract void addBoolean(boolean value);
+
+        abstract void addLong(long value);
+
+        abstract void addDouble(double value);
+
+        abstract void addValue(CharSequence value);
+
+        // writes the null string if the value is null
+        abstract void addString(PageReader pageReader, Column column);
+
+        abstract void finish();
+
+        abstract void close();
+    }
+
+    private static class StringRecordWriter extends RecordWriter {
+        private final LineEncoder encoder;
+        private final char delimiter;
+        private final String delimiterString;
+        private final QuotePolicy quotePolicy;
+        private final char quote;
+        private final char escape;
+        private final String quoteString;
+        private final String newlineInField;
+        private final String nullString;
+
+        // reused for every value so that values are written without allocating Strings
+        private final StringBuilder numberBuilder = new StringBuilder();
+        private final StringBuilder escapedValue = new StringBuilder();
+
+        StringRecordWriter(LineEncoder encoder, PluginTask task) {
+            this.encoder = encoder;
+            this.delimiter = task.getDelimiterChar();
+            this.delimiterString = String.valueOf(delimiter);
+            this.quotePolicy = task.getQuotePolicy();
+            this.quote = task.getQuoteChar() != '\0' ? task.getQuoteChar() : '"';
+            this.escape = task.getEscapeChar().or(quotePolicy == QuotePolicy.NONE ? '\\' : quote);
+            this.quoteString = String.valueOf(quote);
+            this.newlineInField = task.getNewlineInField().getString();
+            this.nullString = task.getNullString();
+        }
+
+        void nextFile() {
+            encoder.nextFile();
+        }
+
+        void addDelimiter() {
+            encoder.addText(delimiterString);
+        }
+
+        void addNewLine() {
+            encoder.addNewLine();
+        }
+
+        void addNullString() {
+            encoder.addText(nullString);
+        }
+
+        void addBoolean(boolean value) {
+            addValue(Boolean.toString(value));
+        }
+
+        void addLong(long value) {
+            numberBuilder.setLength(0);
+            addValue(numberBuilder.append(value));
+        }
+
+        void addDouble(double value) {
+            numberBuilder.setLength(0);
+            addValue(numberBuilder.append(value));
+        }
+
+        void addValue(CharSequence value) {
+            escapedValue.setLength(0);
+            final boolean quoted = appendEscapedValue(escapedValue, value, delimiter, quotePolicy, quote, escape, newlineInField, nullString);
+            if (quoted) {
+                encoder.addText(quoteString);
+            }
+            encoder.addText(escapedValue);
+            if (quoted) {
+                encoder.addText(quoteString);
+            }
+        }
+
+        void addString(PageReader pageReader, Column column) {
+            if (!pageReader.isNull(column)) {
+                addValue(pageReader.getString(column));
+            } else {
+                addNullString();
+            }
+        }
+
+        void finish() {
+            encoder.finish();
+        }
+
+        void close() {
+            encoder.close();
+        }
+    }
+
+    private static class ByteRecordWriter extends RecordWriter {
+        private final CsvByteWriter writer;
+
+        ByteRecordWriter(CsvByteWriter writer) {
+            this.writer = writer;
+        }
+
+        void nextFile() {
+            writer.nextFile();
+        }
+
+        void addDelimiter() {
+            writer.addDelimiter();
+        }
+
+        void addNewLine() {
+            writer.addNewLine();
+        }
+
+        void addNullString() {
+            writer.addNullString();
+        }
+
+        void addBoolean(boolean value) {
+            writer.addBoolean(value);
+        }
+
+        void addLong(long value) {
+            writer.addLong(value);
+        }
+
+        void addDouble(double value) {
+            writer.addDouble(value);
+        }
+
+        void addValue(CharSequence value) {
+            writer.addValue(value);
+        }
+
+        void addString(PageReader pageReader, Column column) {
+            // inline UTF-8 strings are escaped directly in the page
+            if (!pageReader.getStringBytes(column, writer)) {
+                writer.addNullString();
             }
-            encoder.addText(setEscapeAndQuoteValue(column.getName(), delimiter, policy, quote, escape, newline, nullString));
         }
-        encoder.addNewLine();
+
+        void finish() {
+            writer.finish();
+        }
+
+        void close() {
+            writer.close();
+        }
     }
 
-    private String setEscapeAndQuoteValue(String v, char delimiter, QuotePolicy policy, char quote, char escape, String newline, String nullString) {
+    static String setEscapeAndQuoteValue(String v, char delimiter, QuotePolicy policy, char quote, char escape, String newline, String nullString) {
         StringBuilder escapedValue = new StringBuilder();
+        if (appendEscapedValue(escapedValue, v, delimiter, policy, quote, escape, newline, nullString)) {
+            return setQuoteValue(escapedValue.toString(), quote);
+        } else {
+            return escapedValue.toString();
+        }
+    }
+
+    // appends the escaped value, and returns true if it needs to be quoted
+    private static boolean appendEscapedValue(StringBuilder escapedValue, CharSequence v,
+            char delimiter, QuotePolicy policy, char quote, char escape, String newline, String nullString) {
         char previousChar = ' ';
 
-        boolean isRequireQuote = (policy == QuotePolicy.ALL || policy == QuotePolicy.MINIMAL && v.equals(nullString)) ? true : false;
+        boolean isRequireQuote = (policy == QuotePolicy.ALL || policy == QuotePolicy.MINIMAL && nullString != null && nullString.contentEquals(v)) ? true : false;
 
         for (int i = 0; i < v.length(); i++) {
             char c = v.charAt(i);
@@ -250,14 +420,10 @@ public class CsvFormatterPlugin implements FormatterPlugin {
             previousChar = c;
         }
 
-        if (policy != QuotePolicy.NONE && isRequireQuote) {
-            return setQuoteValue(escapedValue.toString(), quote);
-        } else {
-            return escapedValue.toString();
-        }
+        return policy != QuotePolicy.NONE && isRequireQuote;
     }
 
-    private String setQuoteValue(String v, char quote) {
+    private static String setQuoteValue(String v, char quote) {
         StringBuilder sb = new StringBuilder();
         sb.append(quote);
         sb.append(v);
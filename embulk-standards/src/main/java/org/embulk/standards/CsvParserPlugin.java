@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
+import java.nio.charset.StandardCharsets;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.config.ConfigException;
@@ -17,7 +18,9 @@ import org.embulk.spi.DataException;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInput;
 import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageLayout;
 import org.embulk.spi.PageOutput;
+import org.embulk.spi.PageStringStorage;
 import org.embulk.spi.ParserPlugin;
 import org.embulk.spi.Schema;
 import org.embulk.spi.SchemaConfig;
@@ -27,6 +30,7 @@ import org.embulk.spi.time.TimestampParseException;
 import org.embulk.spi.time.TimestampParser;
 import org.embulk.spi.util.LineDecoder;
 import org.embulk.spi.util.Timestamps;
+import org.embulk.spi.util.ValueParsers;
 import org.slf4j.Logger;
 
 public class CsvParserPlugin implements ParserPlugin {
@@ -97,6 +101,10 @@ public class CsvParserPlugin implements ParserPlugin {
         @Config("stop_on_invalid_record")
         @ConfigDefault("false")
         boolean getStopOnInvalidRecord();
+
+        @Config("byte_tokenizer")
+        @ConfigDefault("false")
+        boolean getByteTokenizer();
     }
 
     public enum QuotesInQuotedFields {
@@ -225,6 +233,10 @@ public class CsvParserPlugin implements ParserPlugin {
             }
         }
 
+        if (task.getByteTokenizer() && !CsvByteTokenizer.isSupportedCharset(task.getCharset())) {
+            throw new ConfigException(String.format("'byte_tokenizer' option doesn't support charset %s.", task.getCharset()));
+        }
+
         control.run(task.dump(), task.getSchemaConfig().toSchema());
     }
 
@@ -232,15 +244,27 @@ public class CsvParserPlugin implements ParserPlugin {
     public void run(TaskSource taskSource, final Schema schema,
             FileInput input, PageOutput output) {
         PluginTask task = taskSource.loadTask(PluginTask.class);
+
         final TimestampParser[] timestampParsers = Timestamps.newTimestampColumnParsers(task, task.getSchemaConfig());
         final JsonParser jsonParser = new JsonParser();
-        final CsvTokenizer tokenizer = new CsvTokenizer(new LineDecoder(input, task), task);
         final boolean allowOptionalColumns = task.getAllowOptionalColumns();
         final boolean allowExtraColumns = task.getAllowExtraColumns();
         final boolean stopOnInvalidRecord = task.getStopOnInvalidRecord();
         final int skipHeaderLines = task.getSkipHeaderLines();
 
-        try (final PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
+        final RecordTokenizer tokenizer;
+        final PageStringStorage stringStorage;
+        if (task.getByteTokenizer()) {
+            // UTF-8 bytes are stored in pages without decoding
+            final boolean utf8 = task.getCharset().equals(StandardCharsets.UTF_8);
+            tokenizer = new ByteRecordTokenizer(new CsvByteTokenizer(input, task), utf8);
+            stringStorage = utf8 ? PageStringStorage.INLINE_UTF8 : PageStringStorage.REFERENCE;
+        } else {
+            tokenizer = new StringRecordTokenizer(new CsvTokenizer(new LineDecoder(input, task), task));
+            stringStorage = PageStringStorage.REFERENCE;
+        }
+
+        try (final PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output, PageLayout.ROW_ORIENTED, stringStorage)) {
             while (tokenizer.nextFile()) {
                 // skip the header lines for each file
                 for (int skipHeaderLineNumber = skipHeaderLines; skipHeaderLineNumber > 0; skipHeaderLineNumber--) {
@@ -260,21 +284,19 @@ public class CsvParserPlugin implements ParserPlugin {
                     try {
                         schema.visitColumns(new ColumnVisitor() {
                                 public void booleanColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
-                                        pageBuilder.setBoolean(column, TRUE_STRINGS.contains(v));
+                                        pageBuilder.setBoolean(column, tokenizer.getBoolean());
                                     }
                                 }
 
                                 public void longColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
                                         try {
-                                            pageBuilder.setLong(column, Long.parseLong(v));
+                                            pageBuilder.setLong(column, tokenizer.getLong());
                                         } catch (NumberFormatException e) {
                                             // TODO support default value
                                             throw new CsvRecordValidateException(e);
@@ -283,12 +305,11 @@ public class CsvParserPlugin implements ParserPlugin {
                                 }
 
                                 public void doubleColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
                                         try {
-                                            pageBuilder.setDouble(column, Double.parseDouble(v));
+                                            pageBuilder.setDouble(column, tokenizer.getDouble());
                                         } catch (NumberFormatException e) {
                                             // TODO support default value
                                             throw new CsvRecordValidateException(e);
@@ -297,21 +318,19 @@ public class CsvParserPlugin implements ParserPlugin {
                                 }
 
                                 public void stringColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
-                                        pageBuilder.setString(column, v);
+                                        tokenizer.setString(pageBuilder, column);
                                     }
                                 }
 
                                 public void timestampColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
                                         try {
-                                            pageBuilder.setTimestamp(column, timestampParsers[column.getIndex()].parse(v));
+                                            pageBuilder.setTimestamp(column, timestampParsers[column.getIndex()].parse(tokenizer.getString()));
                                         } catch (TimestampParseException e) {
                                             // TODO support default value
                                             throw new CsvRecordValidateException(e);
@@ -320,12 +339,11 @@ public class CsvParserPlugin implements ParserPlugin {
                                 }
 
                                 public void jsonColumn(Column column) {
-                                    String v = nextColumn();
-                                    if (v == null) {
+                                    if (!nextValue()) {
                                         pageBuilder.setNull(column);
                                     } else {
                                         try {
-                                            pageBuilder.setJson(column, jsonParser.parse(v));
+                                            pageBuilder.setJson(column, jsonParser.parse(tokenizer.getString()));
                                         } catch (JsonParseException e) {
                                             // TODO support default value
                                             throw new CsvRecordValidateException(e);
@@ -333,20 +351,21 @@ public class CsvParserPlugin implements ParserPlugin {
                                     }
                                 }
 
-                                private String nextColumn() {
+                                // returns false if the value is null
+                                private boolean nextValue() {
                                     if (allowOptionalColumns && !tokenizer.hasNextColumn()) {
                                         // TODO warning
-                                        return null;
+                                        return false;
                                     }
-                                    return tokenizer.nextColumnOrNull();
+                                    return tokenizer.nextValue();
                                 }
                             });
 
                         try {
                             hasNextRecord = tokenizer.nextRecord();
-                        } catch (CsvTokenizer.TooManyColumnsException ex) {
+                        } catch (CsvTokenizer.TooManyColumnsException | CsvByteTokenizer.TooManyColumnsException ex) {
                             if (allowExtraColumns) {
-                                String tooManyColumnsLine = tokenizer.skipCurrentLine();
+                                tokenizer.skipCurrentLine();
                                 // TODO warning
                                 hasNextRecord = tokenizer.nextRecord();
                             } else {
@@ -375,6 +394,167 @@ public class CsvParserPlugin implements ParserPlugin {
             }
 
             pageBuilder.finish();
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    // reads records by CsvTokenizer or CsvByteTokenizer so that run() parses values in the same way with both
+    private abstract static class RecordTokenizer {
+        abstract boolean nextFile();
+
+        abstract boolean skipHeaderLine();
+
+        abstract boolean nextRecord();
+
+        abstract String skipCurrentLine();
+
+        abstract long getCurrentLineNumber();
+
+        abstract boolean hasNextColumn();
+
+        // moves to the next column, and returns false if the value is null
+        abstract boolean nextValue();
+
+        abstract String getString();
+
+        abstract boolean getBoolean();
+
+        abstract long getLong();
+
+        abstract double getDouble();
+
+        abstract void setString(PageBuilder pageBuilder, Column column);
+
+        void close() {}
+    }
+
+    private static class StringRecordTokenizer extends RecordTokenizer {
+        private final CsvTokenizer tokenizer;
+        private String value;
+
+        StringRecordTokenizer(CsvTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        boolean nextFile() {
+            return tokenizer.nextFile();
+        }
+
+        boolean skipHeaderLine() {
+            return tokenizer.skipHeaderLine();
+        }
+
+        boolean nextRecord() {
+            return tokenizer.nextRecord();
+        }
+
+        String skipCurrentLine() {
+            return tokenizer.skipCurrentLine();
+        }
+
+        long getCurrentLineNumber() {
+            return tokenizer.getCurrentLineNumber();
+        }
+
+        boolean hasNextColumn() {
+            return tokenizer.hasNextColumn();
+        }
+
+        boolean nextValue() {
+            value = tokenizer.nextColumnOrNull();
+            return value != null;
+        }
+
+        String getString() {
+            return value;
+        }
+
+        boolean getBoolean() {
+            return TRUE_STRINGS.contains(value);
+        }
+
+        long getLong() {
+            return Long.parseLong(value);
+        }
+
+        double getDouble() {
+            return Double.parseDouble(value);
+        }
+
+        void setString(PageBuilder pageBuilder, Column column) {
+            pageBuilder.setString(column, value);
+        }
+    }
+
+    // values are parsed from bytes without being decoded into Strings except for timestamp and json columns
+    private static class ByteRecordTokenizer extends RecordTokenizer {
+        private final CsvByteTokenizer tokenizer;
+        private final boolean utf8;
+
+        ByteRecordTokenizer(CsvByteTokenizer tokenizer, boolean utf8) {
+            this.tokenizer = tokenizer;
+            this.utf8 = utf8;
+        }
+
+        boolean nextFile() {
+            return tokenizer.nextFile();
+        }
+
+        boolean skipHeaderLine() {
+            return tokenizer.skipHeaderLine();
+        }
+
+        boolean nextRecord() {
+            return tokenizer.nextRecord();
+        }
+
+        String skipCurrentLine() {
+            return tokenizer.skipCurrentLine();
+        }
+
+        long getCurrentLineNumber() {
+            return tokenizer.getCurrentLineNumber();
+        }
+
+        boolean hasNextColumn() {
+            return tokenizer.hasNextColumn();
+        }
+
+        boolean nextValue() {
+            return tokenizer.nextValue();
+        }
+
+        String getString() {
+            return tokenizer.getValueString();
+        }
+
+        boolean getBoolean() {
+            final int offset = tokenizer.getValueOffset();
+            return ValueParsers.isTrue(tokenizer.getValueArray(), offset, offset + tokenizer.getValueLength());
+        }
+
+        long getLong() {
+            final int offset = tokenizer.getValueOffset();
+            return ValueParsers.parseLong(tokenizer.getValueArray(), offset, offset + tokenizer.getValueLength());
+        }
+
+        double getDouble() {
+            final int offset = tokenizer.getValueOffset();
+            return ValueParsers.parseDouble(tokenizer.getValueArray(), offset, offset + tokenizer.getValueLength());
+        }
+
+        void setString(PageBuilder pageBuilder, Column column) {
+            if (utf8) {
+                pageBuilder.setStringBytes(column, tokenizer.getValueArray(), tokenizer.getValueOffset(), tokenizer.getValueLength());
+            } else {
+                pageBuilder.setString(column, tokenizer.getValueString());
+            }
+        }
+
+        @Override
+        void close() {
+            tokenizer.close();
         }
     }
 
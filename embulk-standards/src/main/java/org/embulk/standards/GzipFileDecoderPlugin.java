@@ -3,6 +3,9 @@ package org.embulk.standards;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
+import org.embulk.config.Config;
+import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
@@ -12,9 +15,18 @@ import org.embulk.spi.DecoderPlugin;
 import org.embulk.spi.FileInput;
 import org.embulk.spi.util.FileInputInputStream;
 import org.embulk.spi.util.InputStreamFileInput;
+import org.embulk.spi.util.PipelinedFileInput;
 
 public class GzipFileDecoderPlugin implements DecoderPlugin {
     public interface PluginTask extends Task {
+        @Config("pipeline")
+        @ConfigDefault("false")
+        boolean getPipeline();
+
+        @Config("pipeline_buffers")
+        @ConfigDefault("16")
+        int getPipelineBuffers();
+
         @ConfigInject
         BufferAllocator getBufferAllocator();
     }
@@ -22,6 +34,9 @@ public class GzipFileDecoderPlugin implements DecoderPlugin {
     @Override
     public void transaction(ConfigSource config, DecoderPlugin.Control control) {
         PluginTask task = config.loadConfig(PluginTask.class);
+        if (task.getPipelineBuffers() <= 0) {
+            throw new ConfigException("pipeline_buffers must be positive");
+        }
         control.run(task.dump());
     }
 
@@ -29,7 +44,7 @@ public class GzipFileDecoderPlugin implements DecoderPlugin {
     public FileInput open(TaskSource taskSource, FileInput fileInput) {
         PluginTask task = taskSource.loadTask(PluginTask.class);
         final FileInputInputStream files = new FileInputInputStream(fileInput);
-        return new InputStreamFileInput(
+        final FileInput decoded = new InputStreamFileInput(
                 task.getBufferAllocator(),
                 new InputStreamFileInput.Provider() {
                     public InputStream openNext() throws IOException {
@@ -43,5 +58,10 @@ public class GzipFileDecoderPlugin implements DecoderPlugin {
                         files.close();
                     }
                 });
+        if (task.getPipeline()) {
+            // decompresses on another thread while the parser consumes decoded buffers
+            return new PipelinedFileInput(decoded, task.getPipelineBuffers());
+        }
+        return decoded;
     }
 }
@@ -1,12 +1,15 @@
 package org.embulk.standards;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPOutputStream;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
@@ -14,6 +17,8 @@ import org.embulk.config.TaskSource;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.EncoderPlugin;
 import org.embulk.spi.FileOutput;
+import org.embulk.spi.unit.ByteSize;
+import org.embulk.spi.util.BlockCompressingOutputStream;
 import org.embulk.spi.util.FileOutputOutputStream;
 import org.embulk.spi.util.OutputStreamFileOutput;
 
@@ -25,12 +30,24 @@ public class GzipFileEncoderPlugin implements EncoderPlugin {
         @Max(9)
         int getLevel();
 
+        @Config("threads")
+        @ConfigDefault("1")
+        @Min(1)
+        int getThreads();
+
+        @Config("block_size")
+        @ConfigDefault("\"1MB\"")
+        ByteSize getBlockSize();
+
         @ConfigInject
         BufferAllocator getBufferAllocator();
     }
 
     public void transaction(ConfigSource config, EncoderPlugin.Control control) {
         PluginTask task = config.loadConfig(PluginTask.class);
+        if (task.getBlockSize().getBytes() <= 0 || task.getBlockSize().getBytes() > Integer.MAX_VALUE) {
+            throw new ConfigException("\"block_size\" must be larger than 0 and smaller than 2GB");
+        }
         control.run(task.dump());
     }
 
@@ -39,15 +56,24 @@ public class GzipFileEncoderPlugin implements EncoderPlugin {
         final PluginTask task = taskSource.loadTask(PluginTask.class);
 
         final FileOutputOutputStream output = new FileOutputOutputStream(fileOutput, task.getBufferAllocator(), FileOutputOutputStream.CloseMode.FLUSH);
+        final ExecutorService executor = task.getThreads() > 1 ? BlockCompressingOutputStream.newExecutor(task.getThreads()) : null;
 
         return new OutputStreamFileOutput(new OutputStreamFileOutput.Provider() {
                 public OutputStream openNext() throws IOException {
                     output.nextFile();
-                    return new GZIPOutputStream(output) {
-                        {
-                            this.def.setLevel(task.getLevel());
-                        }
-                    };
+                    if (executor == null) {
+                        return newGzipOutputStream(output, task.getLevel());
+                    }
+                    // compresses each block into a gzip member. concatenated members are a valid gzip file.
+                    return new BlockCompressingOutputStream(output, new BlockCompressingOutputStream.Compressor() {
+                            public byte[] compress(byte[] data, int offset, int length) throws IOException {
+                                ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2 + 64);
+                                try (GZIPOutputStream gzip = newGzipOutputStream(bytes, task.getLevel())) {
+                                    gzip.write(data, offset, length);
+                                }
+                                return bytes.toByteArray();
+                            }
+                        }, executor, task.getBlockSize().getBytesInt(), task.getThreads() * 2);
                 }
 
                 public void finish() throws IOException {
@@ -55,8 +81,19 @@ public class GzipFileEncoderPlugin implements EncoderPlugin {
                 }
 
                 public void close() throws IOException {
+                    if (executor != null) {
+                        executor.shutdownNow();
+                    }
                     fileOutput.close();
                 }
             });
     }
+
+    private static GZIPOutputStream newGzipOutputStream(OutputStream out, final int level) throws IOException {
+        return new GZIPOutputStream(out) {
+            {
+                this.def.setLevel(level);
+            }
+        };
+    }
 }
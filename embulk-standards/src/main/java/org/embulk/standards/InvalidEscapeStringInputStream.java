@@ -0,0 +1,198 @@
+package org.embulk.standards;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy;
+
+/**
+ * InvalidEscapeStringInputStream removes invalid escape sequences, such as {@code \a}, from a stream of JSON in
+ * UTF-8 while it is read, according to the SKIP or UNESCAPE policy.
+ *
+ * It keeps only a few bytes to look ahead of a backslash so that files of any size are repaired in a constant
+ * memory. Escape sequences are processed per line: a backslash at the end of a line is removed.
+ */
+class InvalidEscapeStringInputStream extends FilterInputStream {
+    private static final int LOOKAHEAD = 6;  // \\uXXXX
+
+    private final InvalidEscapeStringPolicy policy;
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private boolean eof;
+    private boolean literalNext;  // the next byte is the second byte of a valid escape sequence
+    private final byte[] oneByte = new byte[1];
+
+    InvalidEscapeStringInputStream(InputStream in, InvalidEscapeStringPolicy policy) {
+        this(in, policy, 8192);
+    }
+
+    InvalidEscapeStringInputStream(InputStream in, InvalidEscapeStringPolicy policy, int bufferSize) {
+        super(in);
+        this.policy = policy;
+        this.buffer = new byte[Math.max(bufferSize, LOOKAHEAD)];
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int n = read(oneByte, 0, 1);
+        return n < 0 ? -1 : (oneByte[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int pos = off;
+        final int limit = off + len;
+        while (pos < limit) {
+            if (!eof && (start == end || (end - start < LOOKAHEAD && buffer[start] == '\\' && !literalNext))) {
+                if (pos > off) {
+                    break;  // returns bytes already available without blocking
+                }
+                fill();
+                continue;
+            }
+            if (start == end) {
+                break;  // end of the stream
+            }
+
+            if (literalNext) {
+                b[pos++] = buffer[start++];
+                literalNext = false;
+                continue;
+            }
+
+            final byte c = buffer[start];
+            if (c != '\\') {
+                // copy a run of bytes until the next backslash
+                int i = start + 1;
+                final int runEnd = Math.min(end, start + (limit - pos));
+                while (i < runEnd && buffer[i] != '\\') {
+                    i++;
+                }
+                System.arraycopy(buffer, start, b, pos, i - start);
+                pos += i - start;
+                start = i;
+                continue;
+            }
+
+            if (start + 1 >= end || isNewline(buffer[start + 1])) {
+                start++;  // removes a backslash at the end of a line
+                continue;
+            }
+            final byte next = buffer[start + 1];
+            switch (next) {
+                case 'b':
+                case 'f':
+                case 'n':
+                case 'r':
+                case 't':
+                case '"':
+                case '\\':
+                case '/':
+                    b[pos++] = c;
+                    start++;
+                    literalNext = true;
+                    break;
+                case 'u':  // hexstring such as \u0001
+                    if (!hasFourCharsInLine(start + 2)) {
+                        start++;  // removes only the backslash
+                    } else if (isHexDigits(start + 2)) {
+                        b[pos++] = c;
+                        start++;
+                        literalNext = true;
+                    } else if (policy == InvalidEscapeStringPolicy.SKIP) {
+                        start += 2;  // removes \\u
+                    } else {
+                        start++;
+                    }
+                    break;
+                default:
+                    if (policy == InvalidEscapeStringPolicy.SKIP) {
+                        // removes the backslash and the next character which may be multi-byte
+                        start = Math.min(end, start + 1 + utf8Length(next));
+                    } else {
+                        start++;
+                    }
+                    break;
+            }
+        }
+        return pos > off ? pos - off : -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        final byte[] skipBuffer = new byte[(int) Math.min(n, 4096)];
+        while (skipped < n) {
+            final int r = read(skipBuffer, 0, (int) Math.min(n - skipped, skipBuffer.length));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        final int n = in.read(buffer, end, buffer.length - end);
+        if (n < 0) {
+            eof = true;
+        } else {
+            end += n;
+        }
+    }
+
+    private boolean hasFourCharsInLine(int index) {
+        if (index + 4 > end) {
+            return false;
+        }
+        for (int i = index; i < index + 4; i++) {
+            if (isNewline(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isHexDigits(int index) {
+        for (int i = index; i < index + 4; i++) {
+            if (Character.digit(buffer[i], 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNewline(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static int utf8Length(byte lead) {
+        if ((lead & 0xe0) == 0xc0) {
+            return 2;
+        } else if ((lead & 0xf0) == 0xe0) {
+            return 3;
+        } else if ((lead & 0xf8) == 0xf0) {
+            return 4;
+        }
+        return 1;
+    }
+}
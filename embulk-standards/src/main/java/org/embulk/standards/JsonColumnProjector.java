@@ -0,0 +1,328 @@
+package org.embulk.standards;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Column;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.embulk.spi.json.JsonParseException;
+import org.embulk.spi.time.TimestampParseException;
+import org.embulk.spi.time.TimestampParser;
+import org.embulk.spi.type.BooleanType;
+import org.embulk.spi.type.DoubleType;
+import org.embulk.spi.type.JsonType;
+import org.embulk.spi.type.LongType;
+import org.embulk.spi.type.StringType;
+import org.embulk.spi.type.TimestampType;
+import org.embulk.spi.type.Type;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+/**
+ * JsonColumnProjector reads JSON objects from a stream, and sets only the values pointed by JSON pointers of
+ * columns to a PageBuilder, reading the tokens of Jackson directly.
+ *
+ * Values which are not pointed by any columns are skipped without being built as msgpack Values. Only values of
+ * JSON columns, and objects and arrays for string columns, are built as Values.
+ */
+class JsonColumnProjector implements Closeable {
+    // A node of the tree of JSON pointers. A node has a column or children, but not both.
+    private static class PathNode {
+        private int columnIndex = -1;
+        private Map<String, PathNode> children;
+    }
+
+    private final JsonParser parser;
+    private final Schema schema;
+    private final TimestampParser[] timestampParsers;
+    private final PageBuilder pageBuilder;
+    private final PathNode root;
+    private final boolean[] columnSet;
+
+    private String invalidValueMessage;
+
+    JsonColumnProjector(JsonFactory factory, InputStream in, Schema schema, List<String> paths,
+            TimestampParser[] timestampParsers, PageBuilder pageBuilder) throws IOException {
+        this.parser = factory.createParser(in);
+        this.schema = schema;
+        this.timestampParsers = timestampParsers;
+        this.pageBuilder = pageBuilder;
+        this.root = buildPathTree(paths);
+        this.columnSet = new boolean[schema.getColumnCount()];
+    }
+
+    /**
+     * Parses a JSON pointer such as "/user/id" into its reference tokens.
+     */
+    static List<String> parseJsonPointer(String pointer) {
+        if (!pointer.startsWith("/")) {
+            throw new ConfigException(String.format("JSON pointer '%s' must start with '/'", pointer));
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static PathNode buildPathTree(List<String> paths) {
+        PathNode root = new PathNode();
+        for (int i = 0; i < paths.size(); i++) {
+            PathNode node = root;
+            for (String token : parseJsonPointer(paths.get(i))) {
+                if (node.columnIndex >= 0) {
+                    throw new ConfigException(String.format("JSON pointer '%s' overlaps with another column", paths.get(i)));
+                }
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                PathNode child = node.children.get(token);
+                if (child == null) {
+                    child = new PathNode();
+                    node.children.put(token, child);
+                }
+                node = child;
+            }
+            if (node.columnIndex >= 0 || node.children != null) {
+                throw new ConfigException(String.format("JSON pointer '%s' overlaps with another column", paths.get(i)));
+            }
+            node.columnIndex = i;
+        }
+        return root;
+    }
+
+    /**
+     * Reads the next JSON value in the stream, and sets the values of columns to the PageBuilder.
+     *
+     * The whole value is consumed even if it is invalid as a record so that the next call reads the next value.
+     * The caller adds the record to the PageBuilder if it returns true.
+     *
+     * @return false if the stream reached the end
+     * @throws JsonParserPlugin.JsonRecordValidateException if the value is not an object, or a value is not converted to the column type
+     */
+    boolean next() throws IOException {
+        JsonToken token = nextToken();
+        if (token == null) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            if (token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+            throw new JsonParserPlugin.JsonRecordValidateException(
+                    String.format("A Json record must not represent map value but it's %s", valueTypeName(token)));
+        }
+
+        invalidValueMessage = null;
+        for (int i = 0; i < columnSet.length; i++) {
+            columnSet[i] = false;
+        }
+        readObject(root);
+        if (invalidValueMessage != null) {
+            throw new JsonParserPlugin.JsonRecordValidateException(invalidValueMessage);
+        }
+        for (int i = 0; i < columnSet.length; i++) {
+            if (!columnSet[i]) {
+                pageBuilder.setNull(i);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    // The current token is START_OBJECT.
+    private void readObject(PathNode node) throws IOException {
+        JsonToken token;
+        while ((token = nextToken()) != JsonToken.END_OBJECT) {
+            if (token != JsonToken.FIELD_NAME) {
+                throw unexpectedToken(token);
+            }
+            PathNode child = node.children != null ? node.children.get(parser.getCurrentName()) : null;
+            readChild(child, nextValueToken());
+        }
+    }
+
+    // The current token is START_ARRAY.
+    private void readArray(PathNode node) throws IOException {
+        JsonToken token;
+        int index = 0;
+        while ((token = nextValueToken()) != JsonToken.END_ARRAY) {
+            readChild(node.children.get(Integer.toString(index)), token);
+            index++;
+        }
+    }
+
+    private void readChild(PathNode child, JsonToken token) throws IOException {
+        if (child == null) {
+            parser.skipChildren();  // no-op for scalar values
+        } else if (child.columnIndex >= 0) {
+            readColumn(schema.getColumn(child.columnIndex), token);
+            columnSet[child.columnIndex] = true;
+        } else if (token == JsonToken.START_OBJECT) {
+            readObject(child);
+        } else if (token == JsonToken.START_ARRAY) {
+            readArray(child);
+        }
+        // scalar values in the middle of a pointer leave its columns null
+    }
+
+    private void readColumn(Column column, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            pageBuilder.setNull(column);
+            return;
+        }
+
+        Type type = column.getType();
+        try {
+            if (type instanceof StringType) {
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    pageBuilder.setString(column, readValue(token).toJson());
+                } else {
+                    pageBuilder.setString(column, parser.getText());
+                }
+                return;
+            } else if (type instanceof JsonType) {
+                pageBuilder.setJson(column, readValue(token));
+                return;
+            } else if (type instanceof BooleanType) {
+                if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+                    pageBuilder.setBoolean(column, token == JsonToken.VALUE_TRUE);
+                    return;
+                }
+            } else if (type instanceof LongType) {
+                if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    pageBuilder.setLong(column, parser.getLongValue());
+                    return;
+                } else if (token == JsonToken.VALUE_STRING) {
+                    pageBuilder.setLong(column, Long.parseLong(parser.getText()));
+                    return;
+                }
+            } else if (type instanceof DoubleType) {
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    pageBuilder.setDouble(column, parser.getDoubleValue());
+                    return;
+                } else if (token == JsonToken.VALUE_STRING) {
+                    pageBuilder.setDouble(column, Double.parseDouble(parser.getText()));
+                    return;
+                }
+            } else if (type instanceof TimestampType) {
+                if (token == JsonToken.VALUE_STRING) {
+                    pageBuilder.setTimestamp(column, timestampParsers[column.getIndex()].parse(parser.getText()));
+                    return;
+                }
+            }
+        } catch (NumberFormatException | TimestampParseException e) {
+            setInvalidValue(column, String.format("'%s'", parser.getText()));
+            return;
+        }
+
+        parser.skipChildren();
+        setInvalidValue(column, valueTypeName(token));
+    }
+
+    private void setInvalidValue(Column column, String value) {
+        pageBuilder.setNull(column);
+        if (invalidValueMessage == null) {
+            invalidValueMessage = String.format("Invalid value for %s column '%s': %s",
+                    column.getType(), column.getName(), value);
+        }
+    }
+
+    private Value readValue(JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NULL:
+                return ValueFactory.newNil();
+            case VALUE_TRUE:
+                return ValueFactory.newBoolean(true);
+            case VALUE_FALSE:
+                return ValueFactory.newBoolean(false);
+            case VALUE_NUMBER_FLOAT:
+                return ValueFactory.newFloat(parser.getDoubleValue());
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    return ValueFactory.newInteger(parser.getBigIntegerValue());
+                }
+                return ValueFactory.newInteger(parser.getLongValue());
+            case VALUE_STRING:
+                return ValueFactory.newString(parser.getText());
+            case START_ARRAY: {
+                List<Value> list = new ArrayList<>();
+                while ((token = nextValueToken()) != JsonToken.END_ARRAY) {
+                    list.add(readValue(token));
+                }
+                return ValueFactory.newArray(list);
+            }
+            case START_OBJECT: {
+                Map<Value, Value> map = new HashMap<>();
+                while ((token = nextToken()) != JsonToken.END_OBJECT) {
+                    if (token != JsonToken.FIELD_NAME) {
+                        throw unexpectedToken(token);
+                    }
+                    Value key = ValueFactory.newString(parser.getCurrentName());
+                    map.put(key, readValue(nextValueToken()));
+                }
+                return ValueFactory.newMap(map);
+            }
+            default:
+                throw unexpectedToken(token);
+        }
+    }
+
+    private JsonToken nextToken() throws IOException {
+        try {
+            return parser.nextToken();
+        } catch (com.fasterxml.jackson.core.JsonParseException ex) {
+            throw new JsonParseException("Failed to parse JSON: in", ex);
+        }
+    }
+
+    private JsonToken nextValueToken() throws IOException {
+        JsonToken token = nextToken();
+        if (token == null) {
+            throw unexpectedToken(null);
+        }
+        return token;
+    }
+
+    private JsonParseException unexpectedToken(JsonToken token) {
+        if (token == null) {
+            return new JsonParseException("Unexpected end of JSON at " + parser.getTokenLocation());
+        }
+        return new JsonParseException("Unexpected token " + token + " at " + parser.getTokenLocation());
+    }
+
+    private static String valueTypeName(JsonToken token) {
+        switch (token) {
+            case START_ARRAY:
+                return "ARRAY";
+            case START_OBJECT:
+                return "MAP";
+            case VALUE_STRING:
+                return "STRING";
+            case VALUE_NUMBER_INT:
+                return "INTEGER";
+            case VALUE_NUMBER_FLOAT:
+                return "FLOAT";
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return "BOOLEAN";
+            case VALUE_NULL:
+                return "NIL";
+            default:
+                return token.name();
+        }
+    }
+}
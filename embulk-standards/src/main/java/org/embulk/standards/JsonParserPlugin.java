@@ -1,16 +1,18 @@
 package org.embulk.standards;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharSource;
-import com.google.common.io.CharStreams;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
@@ -18,6 +20,7 @@ import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
 import org.embulk.spi.Column;
+import org.embulk.spi.ColumnConfig;
 import org.embulk.spi.DataException;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInput;
@@ -25,10 +28,13 @@ import org.embulk.spi.PageBuilder;
 import org.embulk.spi.PageOutput;
 import org.embulk.spi.ParserPlugin;
 import org.embulk.spi.Schema;
+import org.embulk.spi.SchemaConfig;
 import org.embulk.spi.json.JsonParseException;
 import org.embulk.spi.json.JsonParser;
+import org.embulk.spi.time.TimestampParser;
 import org.embulk.spi.type.Types;
 import org.embulk.spi.util.FileInputInputStream;
+import org.embulk.spi.util.Timestamps;
 import org.msgpack.core.Preconditions;
 import org.msgpack.value.Value;
 import org.slf4j.Logger;
@@ -51,7 +57,7 @@ public class JsonParserPlugin implements ParserPlugin {
         }
     }
 
-    public interface PluginTask extends Task {
+    public interface PluginTask extends Task, TimestampParser.Task {
         @Config("stop_on_invalid_record")
         @ConfigDefault("false")
         boolean getStopOnInvalidRecord();
@@ -59,6 +65,16 @@ public class JsonParserPlugin implements ParserPlugin {
         @Config("invalid_string_escapes")
         @ConfigDefault("\"PASSTHROUGH\"")
         InvalidEscapeStringPolicy getInvalidEscapeStringPolicy();
+
+        @Config("columns")
+        @ConfigDefault("null")
+        Optional<SchemaConfig> getSchemaConfig();
+    }
+
+    public interface JsonColumnOption extends Task {
+        @Config("path")
+        @ConfigDefault("null")
+        Optional<String> getPath();
     }
 
     private final Logger log;
@@ -70,6 +86,12 @@ public class JsonParserPlugin implements ParserPlugin {
     @Override
     public void transaction(ConfigSource configSource, Control control) {
         PluginTask task = configSource.loadConfig(PluginTask.class);
+        if (task.getSchemaConfig().isPresent()) {
+            // validate JSON pointers
+            getJsonPointers(task.getSchemaConfig().get());
+            control.run(task.dump(), task.getSchemaConfig().get().toSchema());
+            return;
+        }
         control.run(task.dump(), newSchema());
     }
 
@@ -78,9 +100,25 @@ public class JsonParserPlugin implements ParserPlugin {
         return Schema.builder().add("record", Types.JSON).build(); // generate a schema
     }
 
+    // The path of a column is "/<name>" by default.
+    static List<String> getJsonPointers(SchemaConfig schemaConfig) {
+        List<String> pointers = new ArrayList<>();
+        for (ColumnConfig column : schemaConfig.getColumns()) {
+            JsonColumnOption option = column.getOption().loadConfig(JsonColumnOption.class);
+            String pointer = option.getPath().or("/" + column.getName().replace("~", "~0").replace("/", "~1"));
+            JsonColumnProjector.parseJsonPointer(pointer);  // throws ConfigException
+            pointers.add(pointer);
+        }
+        return pointers;
+    }
+
     @Override
     public void run(TaskSource taskSource, Schema schema, FileInput input, PageOutput output) {
         PluginTask task = taskSource.loadTask(PluginTask.class);
+        if (task.getSchemaConfig().isPresent()) {
+            runWithColumns(task, schema, input, output);
+            return;
+        }
 
         final boolean stopOnInvalidRecord = task.getStopOnInvalidRecord();
         final Column column = schema.getColumn(0); // record column
@@ -123,85 +161,81 @@ public class JsonParserPlugin implements ParserPlugin {
         }
     }
 
+    private void runWithColumns(PluginTask task, Schema schema, FileInput input, PageOutput output) {
+        final boolean stopOnInvalidRecord = task.getStopOnInvalidRecord();
+        final List<String> pointers = getJsonPointers(task.getSchemaConfig().get());
+        final TimestampParser[] timestampParsers = Timestamps.newTimestampColumnParsers(task, task.getSchemaConfig().get());
+        final JsonFactory factory = new JsonFactory();
+        factory.enable(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS);
+        factory.enable(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS);
+
+        try (PageBuilder pageBuilder = newPageBuilder(schema, output);
+                FileInputInputStream in = new FileInputInputStream(input)) {
+            while (in.nextFile()) {
+                boolean evenOneJsonParsed = false;
+                try (JsonColumnProjector projector = new JsonColumnProjector(factory, newJsonInputStream(in, task), schema, pointers,
+                        timestampParsers, pageBuilder)) {
+                    while (true) {
+                        try {
+                            if (!projector.next()) {
+                                break;
+                            }
+                            pageBuilder.addRecord();
+                            evenOneJsonParsed = true;
+                        } catch (JsonRecordValidateException e) {
+                            if (stopOnInvalidRecord) {
+                                throw new DataException(String.format("Invalid record: %s", e.getMessage()), e);
+                            }
+                            log.warn(String.format("Skipped record (%s)", e.getMessage()));
+                        }
+                    }
+                } catch (IOException | JsonParseException e) {
+                    if (Exec.isPreview() && evenOneJsonParsed) {
+                        // See run() for the last part of sampling buffer in preview.
+                        break;
+                    }
+                    throw new DataException(e);
+                }
+            }
+
+            pageBuilder.finish();
+        }
+    }
+
     private PageBuilder newPageBuilder(Schema schema, PageOutput output) {
         return new PageBuilder(Exec.getBufferAllocator(), schema, output);
     }
 
     private JsonParser.Stream newJsonStream(FileInputInputStream in, PluginTask task)
             throws IOException {
+        return new JsonParser().open(newJsonInputStream(in, task));
+    }
+
+    private InputStream newJsonInputStream(FileInputInputStream in, PluginTask task) {
         InvalidEscapeStringPolicy policy = task.getInvalidEscapeStringPolicy();
         switch (policy) {
             case SKIP:
             case UNESCAPE:
-                Iterable<CharSource> lines = Lists.transform(CharStreams.readLines(new BufferedReader(new InputStreamReader(in))),
-                        invalidEscapeStringFunction(policy));
-                return new JsonParser().open(new ByteArrayInputStream(CharStreams.toString(CharSource.concat(lines).openStream()).getBytes(StandardCharsets.UTF_8)));
+                return new InvalidEscapeStringInputStream(in, policy);
             case PASSTHROUGH:
             default:
-                return new JsonParser().open(in);
+                return in;
         }
     }
 
     Function<String, CharSource> invalidEscapeStringFunction(final InvalidEscapeStringPolicy policy) {
         return new Function<String, CharSource>() {
-            final Pattern digitsPattern = Pattern.compile("\\p{XDigit}+");
-
             @Override
             public CharSource apply(@Nullable String input) {
                 Preconditions.checkNotNull(input);
                 if (policy == InvalidEscapeStringPolicy.PASSTHROUGH) {
                     return CharSource.wrap(input);
                 }
-                StringBuilder builder = new StringBuilder();
-                char[] charArray = input.toCharArray();
-                for (int characterIndex = 0; characterIndex < charArray.length; characterIndex++) {
-                    char c = charArray[characterIndex];
-                    if (c == '\\') {
-                        if (charArray.length > characterIndex + 1) {
-                            char next = charArray[characterIndex + 1];
-                            switch (next) {
-                                case 'b':
-                                case 'f':
-                                case 'n':
-                                case 'r':
-                                case 't':
-                                case '"':
-                                case '\\':
-                                case '/':
-                                    builder.append(c);
-                                    break;
-                                case 'u': // hexstring such as \u0001
-                                    if (charArray.length > characterIndex + 5) {
-                                        char[] hexChars = {charArray[characterIndex + 2], charArray[characterIndex + 3], charArray[characterIndex + 4],
-                                                           charArray[characterIndex + 5]};
-                                        String hexString = new String(hexChars);
-                                        if (digitsPattern.matcher(hexString).matches()) {
-                                            builder.append(c);
-                                        } else {
-                                            if (policy == InvalidEscapeStringPolicy.SKIP) {
-                                                // remove \\u
-                                                characterIndex++;
-                                            }
-                                        }
-                                    }
-                                    break;
-                                default:
-                                    switch (policy) {
-                                        case SKIP:
-                                            characterIndex++;
-                                            break;
-                                        case UNESCAPE:
-                                            break;
-                                        default:  // Do nothing, and just pass through.
-                                    }
-                                    break;
-                            }
-                        }
-                    } else {
-                        builder.append(c);
-                    }
+                try (InputStream in = new InvalidEscapeStringInputStream(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), policy)) {
+                    return CharSource.wrap(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
                 }
-                return CharSource.wrap(builder.toString());
             }
         };
     }
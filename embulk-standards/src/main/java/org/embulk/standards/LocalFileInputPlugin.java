@@ -1,39 +1,51 @@
 package org.embulk.standards;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigInject;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskReport;
 import org.embulk.config.TaskSource;
+import org.embulk.plugin.PluginType;
+import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.SplittableFileInputPlugin;
 import org.embulk.spi.TransactionalFileInput;
+import org.embulk.spi.unit.ByteSize;
+import org.embulk.spi.util.FileChannelFileInput;
+import org.embulk.spi.util.FileChannelTransactionalFileInput;
+import org.embulk.spi.util.InputStreamFileInput;
 import org.embulk.spi.util.InputStreamTransactionalFileInput;
 import org.slf4j.Logger;
 
-public class LocalFileInputPlugin implements FileInputPlugin {
+public class LocalFileInputPlugin implements SplittableFileInputPlugin {
     public interface PluginTask extends Task {
         @Config("path_prefix")
         String getPathPrefix();
@@ -46,10 +58,69 @@ public class LocalFileInputPlugin implements FileInputPlugin {
         @ConfigDefault("false")
         boolean getFollowSymlinks();
 
+        @Config("listing_threads")
+        @ConfigDefault("null")
+        Optional<Integer> getListingThreads();
+
+        @Config("split_size")
+        @ConfigDefault("null")
+        Optional<ByteSize> getSplitSize();
+
+        @Config("min_task_size")
+        @ConfigDefault("null")
+        Optional<ByteSize> getMinTaskSize();
+
+        @Config("max_files_per_task")
+        @ConfigDefault("null")
+        Optional<Integer> getMaxFilesPerTask();
+
+        @Config("state_file")
+        @ConfigDefault("null")
+        Optional<String> getStateFile();
+
+        @Config("append_only")
+        @ConfigDefault("false")
+        boolean getAppendOnly();
+
+        @Config("decoders")
+        @ConfigDefault("[]")
+        List<ConfigSource> getDecoderConfigs();
+
+        @Config("parser")
+        @ConfigDefault("{}")
+        ConfigSource getParserConfig();
+
         List<String> getFiles();
 
         void setFiles(List<String> files);
 
+        @Config("memory_map")
+        @ConfigDefault("false")
+        boolean getMemoryMap();
+
+        @Config("read_chunk_size")
+        @ConfigDefault("null")
+        Optional<ByteSize> getReadChunkSize();
+
+        @Config("read_ahead_size")
+        @ConfigDefault("\"64MB\"")
+        ByteSize getReadAheadSize();
+
+        // ranges of files if split_size is set. a task reads a range instead of a file
+        Optional<List<FileRange>> getFileRanges();
+
+        void setFileRanges(Optional<List<FileRange>> fileRanges);
+
+        // index of the first file of each task if files are grouped. a task reads files until the first file of the next task
+        Optional<List<Integer>> getFileGroupStarts();
+
+        void setFileGroupStarts(Optional<List<Integer>> fileGroupStarts);
+
+        // states of all listed files if state_file is set, which are written to state_file after the transaction
+        Optional<List<FileState>> getFileStates();
+
+        void setFileStates(Optional<List<FileState>> fileStates);
+
         @ConfigInject
         BufferAllocator getBufferAllocator();
     }
@@ -61,14 +132,41 @@ public class LocalFileInputPlugin implements FileInputPlugin {
     @Override
     public ConfigDiff transaction(ConfigSource config, FileInputPlugin.Control control) {
         PluginTask task = config.loadConfig(PluginTask.class);
+        validateReadOptions(task);
 
         // list files recursively
         List<String> files = listFiles(task);
-        log.info("Loading files {}", files);
+        // the list of files is logged only in debug because it can be huge
+        log.info("Loading {} files", files.size());
+        log.debug("Loading files {}", files);
         task.setFiles(files);
 
-        // number of processors is same with number of files
-        int taskCount = task.getFiles().size();
+        final int taskCount;
+        task.setFileRanges(Optional.<List<FileRange>>absent());
+        task.setFileGroupStarts(Optional.<List<Integer>>absent());
+        task.setFileStates(Optional.<List<FileState>>absent());
+        if (task.getStateFile().isPresent()) {
+            // files are filtered by their states, and appended bytes are read as ranges if append_only is set
+            filterFilesByStates(task);
+            log.info("Loading {} new or changed files in {} files", task.getFiles().size(), files.size());
+        }
+        if (task.getSplitSize().isPresent()) {
+            List<FileRange> ranges = splitFiles(task);
+            task.setFileRanges(Optional.of(ranges));
+            // number of processors is same with number of ranges
+            taskCount = ranges.size();
+        } else if (task.getFileRanges().isPresent()) {
+            taskCount = task.getFileRanges().get().size();
+        } else if (task.getMinTaskSize().isPresent() || task.getMaxFilesPerTask().isPresent()) {
+            List<Integer> starts = groupFiles(task);
+            task.setFileGroupStarts(Optional.of(starts));
+            log.info("Reading {} files in {} tasks", task.getFiles().size(), starts.size());
+            // number of processors is same with number of groups
+            taskCount = starts.size();
+        } else {
+            // number of processors is same with number of files
+            taskCount = task.getFiles().size();
+        }
         return resume(task.dump(), taskCount, control);
     }
 
@@ -80,11 +178,21 @@ public class LocalFileInputPlugin implements FileInputPlugin {
 
         control.run(taskSource, taskCount);
 
+        // states are committed after all tasks and the output are committed. preview reads files without loading them
+        if (task.getStateFile().isPresent() && !Exec.isPreview()) {
+            final Path stateFile = Paths.get(task.getStateFile().get());
+            try {
+                LocalFileStateIndex.write(stateFile, task.getFileStates().get());
+            } catch (IOException ex) {
+                throw new RuntimeException(String.format("Failed to write state file '%s'", stateFile), ex);
+            }
+        }
+
         // build next config
         ConfigDiff configDiff = Exec.newConfigDiff();
 
         // last_path
-        if (task.getFiles().isEmpty()) {
+        if (task.getFiles().isEmpty() || task.getStateFile().isPresent()) {
             // keep the last value
             if (task.getLastPath().isPresent()) {
                 configDiff.set("last_path", task.getLastPath().get());
@@ -103,6 +211,338 @@ public class LocalFileInputPlugin implements FileInputPlugin {
             int taskCount,
             List<TaskReport> successTaskReports) {}
 
+    public static class FileRange {
+        private final int fileIndex;
+        private final long start;
+        private final long end;
+        private final long headerSize;
+
+        @JsonCreator
+        public FileRange(
+                @JsonProperty("file_index") int fileIndex,
+                @JsonProperty("start") long start,
+                @JsonProperty("end") long end,
+                @JsonProperty("header_size") long headerSize) {
+            this.fileIndex = fileIndex;
+            this.start = start;
+            this.end = end;
+            this.headerSize = headerSize;
+        }
+
+        @JsonProperty("file_index")
+        public int getFileIndex() {
+            return fileIndex;
+        }
+
+        @JsonProperty("start")
+        public long getStart() {
+            return start;
+        }
+
+        @JsonProperty("end")
+        public long getEnd() {
+            return end;
+        }
+
+        // header lines at the beginning of the file which are read before the range so that
+        // skip_header_lines of the parser skips them instead of records in the range
+        @JsonProperty("header_size")
+        public long getHeaderSize() {
+            return headerSize;
+        }
+    }
+
+    // state of a file loaded before, which is stored in state_file
+    public static class FileState {
+        private final String path;
+        private final long size;
+        private final long modifiedTime;
+        private final long offset;
+
+        @JsonCreator
+        public FileState(
+                @JsonProperty("path") String path,
+                @JsonProperty("size") long size,
+                @JsonProperty("modified_time") long modifiedTime,
+                @JsonProperty("offset") long offset) {
+            this.path = path;
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+            this.offset = offset;
+        }
+
+        @JsonProperty("path")
+        public String getPath() {
+            return path;
+        }
+
+        @JsonProperty("size")
+        public long getSize() {
+            return size;
+        }
+
+        // milliseconds since the epoch
+        @JsonProperty("modified_time")
+        public long getModifiedTime() {
+            return modifiedTime;
+        }
+
+        // bytes before the offset are loaded
+        @JsonProperty("offset")
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    private static void validateReadOptions(PluginTask task) {
+        if (task.getReadChunkSize().isPresent() && task.getReadChunkSize().get().getBytes() <= 0) {
+            throw new ConfigException("\"read_chunk_size\" must be larger than 0");
+        }
+        if (task.getReadAheadSize().getBytes() <= 0 || task.getReadAheadSize().getBytes() > Integer.MAX_VALUE) {
+            throw new ConfigException("\"read_ahead_size\" must be larger than 0 and smaller than 2GB");
+        }
+        if (task.getListingThreads().isPresent() && task.getListingThreads().get() <= 0) {
+            throw new ConfigException("\"listing_threads\" must be larger than 0");
+        }
+        if (task.getAppendOnly()) {
+            if (!task.getStateFile().isPresent()) {
+                throw new ConfigException("\"append_only\" requires \"state_file\"");
+            }
+            if (task.getSplitSize().isPresent() || task.getMinTaskSize().isPresent() || task.getMaxFilesPerTask().isPresent()) {
+                throw new ConfigException("\"append_only\" can't be used with \"split_size\", \"min_task_size\" or \"max_files_per_task\"");
+            }
+            if (!task.getDecoderConfigs().isEmpty()) {
+                throw new ConfigException("\"append_only\" can't be used with \"decoders\" because appended bytes can't be decoded");
+            }
+        }
+        if (task.getMinTaskSize().isPresent() || task.getMaxFilesPerTask().isPresent()) {
+            if (task.getSplitSize().isPresent()) {
+                throw new ConfigException("\"min_task_size\" and \"max_files_per_task\" can't be used with \"split_size\"");
+            }
+            if (task.getMinTaskSize().isPresent() && task.getMinTaskSize().get().getBytes() <= 0) {
+                throw new ConfigException("\"min_task_size\" must be larger than 0");
+            }
+            if (task.getMaxFilesPerTask().isPresent() && task.getMaxFilesPerTask().get() <= 0) {
+                throw new ConfigException("\"max_files_per_task\" must be larger than 0");
+            }
+        }
+    }
+
+    private void filterFilesByStates(PluginTask task) {
+        final Path stateFile = Paths.get(task.getStateFile().get());
+        final LocalFileStateIndex index;
+        try {
+            index = LocalFileStateIndex.read(stateFile);
+        } catch (IOException ex) {
+            throw new RuntimeException(String.format("Failed to read state file '%s'", stateFile), ex);
+        }
+        final CsvFileSplitter headerFinder = task.getAppendOnly() ? newHeaderFinder(task) : null;
+
+        final ImmutableList.Builder<String> files = ImmutableList.builder();
+        final ImmutableList.Builder<FileRange> ranges = ImmutableList.builder();
+        final ImmutableList.Builder<FileState> states = ImmutableList.builder();
+        int fileIndex = 0;
+        for (String file : task.getFiles()) {
+            final Path path = Paths.get(file);
+            try {
+                final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                final long size = attrs.size();
+                final long modifiedTime = attrs.lastModifiedTime().toMillis();
+                final FileState previous = index.get(file);
+                if (previous != null && previous.getSize() == size && previous.getModifiedTime() == modifiedTime) {
+                    // unchanged files are skipped without being opened
+                    states.add(previous);
+                    continue;
+                }
+
+                if (!task.getAppendOnly()) {
+                    // changed files are read again
+                    states.add(new FileState(file, size, modifiedTime, size));
+                    files.add(file);
+                    continue;
+                }
+
+                // bytes appended after the offset are read. files which got smaller are read again
+                long start = (previous != null && previous.getOffset() <= size) ? previous.getOffset() : 0L;
+                start = LocalFileStateIndex.skipLineFeedAfterCarriageReturn(path, start);
+                long headerSize = 0L;
+                if (start > 0 && headerFinder != null) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                        headerSize = headerFinder.findHeaderEnd(channel);
+                    }
+                    if (headerSize >= start) {
+                        // header lines were not completed when the file was loaded before. no records are loaded yet
+                        start = 0L;
+                        headerSize = 0L;
+                    }
+                }
+                final long end = LocalFileStateIndex.findLastLineEnd(path, start, size);
+                states.add(new FileState(file, size, modifiedTime, end));
+                if (start < end) {
+                    files.add(file);
+                    ranges.add(new FileRange(fileIndex, start, end, headerSize));
+                    fileIndex++;
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(String.format("Failed to get the state of local file '%s'", path), ex);
+            }
+        }
+
+        task.setFiles(files.build());
+        if (task.getAppendOnly()) {
+            task.setFileRanges(Optional.<List<FileRange>>of(ranges.build()));
+        }
+        task.setFileStates(Optional.<List<FileState>>of(states.build()));
+    }
+
+    // returns null if the parser doesn't skip header lines
+    private CsvFileSplitter newHeaderFinder(PluginTask task) {
+        final ConfigSource parserConfig = task.getParserConfig();
+        final PluginType parserType = parserConfig.get(PluginType.class, "type", null);
+        if (parserType == null || !"csv".equals(parserType.getName())) {
+            return null;
+        }
+        if (parserConfig.get(Integer.class, "skip_header_lines", 0) <= 0 && !parserConfig.get(Boolean.class, "header_line", false)) {
+            return null;
+        }
+        final CsvFileSplitter splitter = newCsvFileSplitter(parserConfig);
+        if (splitter == null) {
+            throw new ConfigException(
+                    "\"append_only\" can't find header lines because charset or delimiter, quote, escape or comment_line_marker characters can't be found by bytes");
+        }
+        return splitter;
+    }
+
+    private List<Integer> groupFiles(PluginTask task) {
+        final List<String> files = task.getFiles();
+        final long[] sizes = new long[files.size()];
+        if (task.getMinTaskSize().isPresent()) {
+            for (int i = 0; i < sizes.length; i++) {
+                final Path path = Paths.get(files.get(i));
+                try {
+                    sizes[i] = Files.size(path);
+                } catch (IOException ex) {
+                    throw new RuntimeException(String.format("Failed to get the size of local file '%s'", path), ex);
+                }
+            }
+        }
+        return groupFiles(sizes,
+                task.getMinTaskSize().isPresent() ? task.getMinTaskSize().get().getBytes() : Long.MAX_VALUE,
+                task.getMaxFilesPerTask().or(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Groups files in the order into tasks, and returns the index of the first file of each task.
+     *
+     * A task reads files until the total size reaches minTaskSize, or until it reads maxFilesPerTask files.
+     */
+    static List<Integer> groupFiles(long[] sizes, long minTaskSize, int maxFilesPerTask) {
+        final ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+        long groupSize = 0;
+        int groupFiles = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (groupFiles == 0) {
+                builder.add(i);
+            }
+            groupSize += sizes[i];
+            groupFiles++;
+            if (groupSize >= minTaskSize || groupFiles >= maxFilesPerTask) {
+                groupSize = 0;
+                groupFiles = 0;
+            }
+        }
+        return builder.build();
+    }
+
+    private List<FileRange> splitFiles(PluginTask task) {
+        final long splitSize = task.getSplitSize().get().getBytes();
+        if (splitSize <= 0) {
+            throw new ConfigException("\"split_size\" must be larger than 0");
+        }
+
+        final CsvFileSplitter splitter = newSplitter(task);
+        final List<String> files = task.getFiles();
+        final ImmutableList.Builder<FileRange> builder = ImmutableList.builder();
+        for (int i = 0; i < files.size(); i++) {
+            final Path path = Paths.get(files.get(i));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                final long size = channel.size();
+                if (splitter == null || size <= splitSize) {
+                    builder.add(new FileRange(i, 0L, size, 0L));
+                    continue;
+                }
+                final long headerEnd = splitter.findHeaderEnd(channel);
+                final List<Long> boundaries = splitter.findBoundaries(channel, headerEnd, splitSize);
+                for (int j = 0; j < boundaries.size() - 1; j++) {
+                    final long start = boundaries.get(j);
+                    builder.add(new FileRange(i, start, boundaries.get(j + 1), start == 0 ? 0L : headerEnd));
+                }
+                log.info("Splitting file {} into {} ranges", path, boundaries.size() - 1);
+            } catch (IOException ex) {
+                throw new RuntimeException(String.format("Failed to split local file '%s'", path), ex);
+            }
+        }
+        return builder.build();
+    }
+
+    // returns null if files can't be split
+    private CsvFileSplitter newSplitter(PluginTask task) {
+        if (!task.getDecoderConfigs().isEmpty()) {
+            log.warn("\"split_size\" is ignored because files are decoded by \"decoders\".");
+            return null;
+        }
+
+        final ConfigSource parserConfig = task.getParserConfig();
+        final PluginType parserType = parserConfig.get(PluginType.class, "type", null);
+        if (parserType == null || !"csv".equals(parserType.getName())) {
+            log.warn("\"split_size\" is ignored because it supports only the csv parser.");
+            return null;
+        }
+
+        final CsvFileSplitter splitter = newCsvFileSplitter(parserConfig);
+        if (splitter == null) {
+            log.warn("\"split_size\" is ignored because charset or delimiter, quote, escape or comment_line_marker characters can't be found by bytes.");
+        }
+        return splitter;
+    }
+
+    // returns null if records can't be found by bytes
+    private static CsvFileSplitter newCsvFileSplitter(ConfigSource parserConfig) {
+        final Charset charset = parserConfig.get(Charset.class, "charset", Charset.forName("utf-8"));
+        final String delimiter = parserConfig.get(String.class, "delimiter", ",");
+        final char quote = parserConfig.get(CsvParserPlugin.QuoteCharacter.class, "quote", new CsvParserPlugin.QuoteCharacter('"'))
+                .getCharacter();
+        final char escape = parserConfig.get(CsvParserPlugin.EscapeCharacter.class, "escape", new CsvParserPlugin.EscapeCharacter('\\'))
+                .getCharacter();
+        // CsvFileSplitter scans a single-character delimiter only
+        if (!CsvFileSplitter.isSplittableCharset(charset)
+                || delimiter.length() != 1
+                || !CsvFileSplitter.isSplittableCharacter(delimiter.charAt(0))
+                || !CsvFileSplitter.isSplittableCharacter(quote)
+                || !CsvFileSplitter.isSplittableCharacter(escape)) {
+            return null;
+        }
+
+        int skipHeaderLines = parserConfig.get(Integer.class, "skip_header_lines", 0);
+        if (parserConfig.get(Boolean.class, "header_line", false)) {
+            skipHeaderLines = 1;
+        }
+        final String commentLineMarker = parserConfig.get(String.class, "comment_line_marker", null);
+        final boolean acceptStrayQuotes = parserConfig.get(CsvParserPlugin.QuotesInQuotedFields.class, "quotes_in_quoted_fields",
+                CsvParserPlugin.QuotesInQuotedFields.ACCEPT_ONLY_RFC4180_ESCAPED)
+                == CsvParserPlugin.QuotesInQuotedFields.ACCEPT_STRAY_QUOTES_ASSUMING_NO_DELIMITERS_IN_FIELDS;
+        if (commentLineMarker != null) {
+            for (char c : commentLineMarker.toCharArray()) {
+                if (!CsvFileSplitter.isSplittableCharacter(c)) {
+                    return null;
+                }
+            }
+        }
+
+        return new CsvFileSplitter(skipHeaderLines, delimiter.charAt(0), quote, escape,
+                parserConfig.get(Boolean.class, "trim_if_not_quoted", false), acceptStrayQuotes, commentLineMarker);
+    }
+
     public List<String> listFiles(PluginTask task) {
         Path pathPrefix = Paths.get(task.getPathPrefix()).normalize();
         final Path directory;
@@ -116,95 +556,96 @@ public class LocalFileInputPlugin implements FileInputPlugin {
             directory = (d == null ? CURRENT_DIR : d);
         }
 
-        final ImmutableList.Builder<String> builder = ImmutableList.builder();
         final String lastPath = task.getLastPath().orNull();
+        final int listingThreads = task.getListingThreads().or(Runtime.getRuntime().availableProcessors());
         try {
             log.info("Listing local files at directory '{}' filtering filename by prefix '{}'", directory.equals(CURRENT_DIR) ? "." : directory.toString(), fileNamePrefix);
 
-            int maxDepth = Integer.MAX_VALUE;
-            Set<FileVisitOption> opts;
-            if (task.getFollowSymlinks()) {
-                opts = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
-            } else {
-                opts = EnumSet.noneOf(FileVisitOption.class);
+            if (!task.getFollowSymlinks()) {
                 log.info("\"follow_symlinks\" is set false. Note that symbolic links to directories are skipped.");
             }
 
-            Files.walkFileTree(directory, opts, maxDepth, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
-                        if (path.equals(directory)) {
-                            return FileVisitResult.CONTINUE;
-                        } else if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
-                            return FileVisitResult.SKIP_SUBTREE;
-                        } else {
-                            Path parent = path.getParent();
-                            if (parent == null) {
-                                parent = CURRENT_DIR;
-                            }
-                            if (parent.equals(directory)) {
-                                if (path.getFileName().toString().startsWith(fileNamePrefix)) {
-                                    return FileVisitResult.CONTINUE;
-                                } else {
-                                    return FileVisitResult.SKIP_SUBTREE;
-                                }
-                            } else {
-                                return FileVisitResult.CONTINUE;
-                            }
-                        }
-                    }
-
-                    @Override
-                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-                        try {
-                            // Avoid directories from listing.
-                            // Directories are normally unvisited with |FileVisitor#visitFile|, but symbolic links to
-                            // directories are visited like files unless |FOLLOW_LINKS| is set in |Files#walkFileTree|.
-                            // Symbolic links to directories are explicitly skipped here by checking with |Path#toReadlPath|.
-                            if (Files.isDirectory(path.toRealPath())) {
-                                return FileVisitResult.CONTINUE;
-                            }
-                        } catch (IOException ex) {
-                            throw new RuntimeException("Can't resolve symbolic link", ex);
-                        }
-                        if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
-                            return FileVisitResult.CONTINUE;
-                        } else {
-                            Path parent = path.getParent();
-                            if (parent == null) {
-                                parent = CURRENT_DIR;
-                            }
-                            if (parent.equals(directory)) {
-                                if (path.getFileName().toString().startsWith(fileNamePrefix)) {
-                                    builder.add(path.toString());
-                                    return FileVisitResult.CONTINUE;
-                                }
-                            } else {
-                                builder.add(path.toString());
-                            }
-                            return FileVisitResult.CONTINUE;
-                        }
-                    }
-                });
+            return new LocalFileLister(directory, fileNamePrefix, lastPath, task.getFollowSymlinks()).listFiles(listingThreads);
         } catch (IOException ex) {
             throw new RuntimeException(String.format("Failed get a list of local files at '%s'", directory), ex);
         }
-        return builder.build();
     }
 
     @Override
     public TransactionalFileInput open(TaskSource taskSource, int taskIndex) {
         final PluginTask task = taskSource.loadTask(PluginTask.class);
 
-        final File file = new File(task.getFiles().get(taskIndex));
+        final int fileIndex;
+        if (task.getFileGroupStarts().isPresent()) {
+            final int start = task.getFileGroupStarts().get().get(taskIndex);
+            final int end = getFileGroupEnd(task, taskIndex);
+            if (end - start > 1) {
+                return openFiles(task, task.getFiles().subList(start, end));
+            }
+            fileIndex = start;
+        } else {
+            fileIndex = taskIndex;
+        }
+        return openFile(task, taskIndex, fileIndex);
+    }
+
+    /**
+     * Returns the number of files of a task which reads many files, so that files are read concurrently.
+     */
+    @Override
+    public int getSplitCount(TaskSource taskSource, int taskIndex) {
+        final PluginTask task = taskSource.loadTask(PluginTask.class);
+        if (!task.getFileGroupStarts().isPresent()) {
+            return 1;
+        }
+        return getFileGroupEnd(task, taskIndex) - task.getFileGroupStarts().get().get(taskIndex);
+    }
+
+    @Override
+    public TransactionalFileInput openSplit(TaskSource taskSource, int taskIndex, int splitIndex) {
+        final PluginTask task = taskSource.loadTask(PluginTask.class);
+        return openFile(task, taskIndex, task.getFileGroupStarts().get().get(taskIndex) + splitIndex);
+    }
+
+    @Override
+    public TaskReport mergeSplitTaskReports(TaskSource taskSource, int taskIndex, List<TaskReport> splitTaskReports) {
+        return Exec.newTaskReport();
+    }
+
+    private static int getFileGroupEnd(PluginTask task, int taskIndex) {
+        final List<Integer> starts = task.getFileGroupStarts().get();
+        return taskIndex + 1 < starts.size() ? starts.get(taskIndex + 1) : task.getFiles().size();
+    }
+
+    // reads a file, or a range of a file if split_size is set
+    private TransactionalFileInput openFile(PluginTask task, int taskIndex, int fileIndex) {
+        if (task.getMemoryMap()) {
+            return openMapped(task, taskIndex, fileIndex);
+        }
 
-        return new InputStreamTransactionalFileInput(
-                task.getBufferAllocator(),
-                new InputStreamTransactionalFileInput.Opener() {
+        final InputStreamTransactionalFileInput.Opener opener;
+        if (task.getFileRanges().isPresent()) {
+            final FileRange range = task.getFileRanges().get().get(taskIndex);
+            final Path path = Paths.get(task.getFiles().get(range.getFileIndex()));
+            opener = new InputStreamTransactionalFileInput.Opener() {
+                    public InputStream open() throws IOException {
+                        InputStream in = openRange(path, range.getStart(), range.getEnd());
+                        if (range.getHeaderSize() > 0) {
+                            in = new SequenceInputStream(openRange(path, 0L, range.getHeaderSize()), in);
+                        }
+                        return in;
+                    }
+                };
+        } else {
+            final File file = new File(task.getFiles().get(fileIndex));
+            opener = new InputStreamTransactionalFileInput.Opener() {
                     public InputStream open() throws IOException {
                         return new FileInputStream(file);
                     }
-                }) {
+                };
+        }
+
+        return new InputStreamTransactionalFileInput(task.getBufferAllocator(), opener) {
             @Override
             public void abort() {}
 
@@ -214,4 +655,116 @@ public class LocalFileInputPlugin implements FileInputPlugin {
             }
         };
     }
+
+    // reads files one by one as files of a FileInput. files are opened when they are read
+    private TransactionalFileInput openFiles(PluginTask task, List<String> files) {
+        final Iterator<String> paths = files.iterator();
+        if (task.getMemoryMap()) {
+            return openMappedFiles(task, paths);
+        }
+        final InputStreamFileInput.Provider provider = new InputStreamFileInput.Provider() {
+                public InputStream openNext() throws IOException {
+                    if (!paths.hasNext()) {
+                        return null;
+                    }
+                    return new FileInputStream(paths.next());
+                }
+
+                public void close() {}
+            };
+
+        return new InputStreamTransactionalFileInput(task.getBufferAllocator(), provider) {
+            @Override
+            public void abort() {}
+
+            @Override
+            public TaskReport commit() {
+                return Exec.newTaskReport();
+            }
+        };
+    }
+
+    private TransactionalFileInput openMappedFiles(PluginTask task, final Iterator<String> paths) {
+        final BufferAllocator allocator = task.getBufferAllocator();
+        final int chunkSize = task.getReadChunkSize().isPresent() ? task.getReadChunkSize().get().getBytesInt() : 0;
+        final int mapSize = task.getReadAheadSize().getBytesInt();
+        return new TransactionalFileInput() {
+            private FileChannelFileInput current = null;
+
+            @Override
+            public boolean nextFile() {
+                close();
+                if (!paths.hasNext()) {
+                    return false;
+                }
+                current = new FileChannelFileInput(allocator, Paths.get(paths.next()), chunkSize, mapSize);
+                return current.nextFile();
+            }
+
+            @Override
+            public Buffer poll() {
+                return current == null ? null : current.poll();
+            }
+
+            @Override
+            public void close() {
+                if (current != null) {
+                    try {
+                        current.close();
+                    } finally {
+                        current = null;
+                    }
+                }
+            }
+
+            @Override
+            public void abort() {}
+
+            @Override
+            public TaskReport commit() {
+                return Exec.newTaskReport();
+            }
+        };
+    }
+
+    private TransactionalFileInput openMapped(PluginTask task, int taskIndex, int fileIndex) {
+        final Path path;
+        final List<FileChannelFileInput.Range> ranges;
+        if (task.getFileRanges().isPresent()) {
+            final FileRange range = task.getFileRanges().get().get(taskIndex);
+            path = Paths.get(task.getFiles().get(range.getFileIndex()));
+            final ImmutableList.Builder<FileChannelFileInput.Range> builder = ImmutableList.builder();
+            if (range.getHeaderSize() > 0) {
+                builder.add(new FileChannelFileInput.Range(0L, range.getHeaderSize()));
+            }
+            builder.add(new FileChannelFileInput.Range(range.getStart(), range.getEnd()));
+            ranges = builder.build();
+        } else {
+            path = Paths.get(task.getFiles().get(fileIndex));
+            ranges = null;
+        }
+
+        final int chunkSize = task.getReadChunkSize().isPresent() ? task.getReadChunkSize().get().getBytesInt() : 0;
+        final int mapSize = task.getReadAheadSize().getBytesInt();
+        return new FileChannelTransactionalFileInput(task.getBufferAllocator(), path, ranges, chunkSize, mapSize) {
+            @Override
+            public void abort() {}
+
+            @Override
+            public TaskReport commit() {
+                return Exec.newTaskReport();
+            }
+        };
+    }
+
+    private static InputStream openRange(Path path, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(start);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return ByteStreams.limit(Channels.newInputStream(channel), end - start);
+    }
 }
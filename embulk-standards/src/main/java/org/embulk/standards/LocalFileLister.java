@@ -0,0 +1,169 @@
+package org.embulk.standards;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * LocalFileLister lists files under a directory in parallel on a ForkJoinPool, a task per directory.
+ *
+ * It lists the same files in the same order as Files.walkFileTree does: entries of a directory are in the order of
+ * its DirectoryStream, and files in a subdirectory are placed at the subdirectory. Directories whose names are
+ * smaller than or equal to last_path, and directories not starting with the file name prefix, are not listed.
+ */
+class LocalFileLister {
+    private static final LinkOption[] NOFOLLOW_LINKS = new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+    private static final LinkOption[] FOLLOW_LINKS = new LinkOption[0];
+
+    private final Path directory;
+    private final String fileNamePrefix;
+    private final String lastPath;
+    private final boolean followSymlinks;
+
+    LocalFileLister(Path directory, String fileNamePrefix, String lastPath, boolean followSymlinks) {
+        this.directory = directory;
+        this.fileNamePrefix = fileNamePrefix;
+        this.lastPath = lastPath;
+        this.followSymlinks = followSymlinks;
+    }
+
+    List<String> listFiles(int parallelism) throws IOException {
+        final BasicFileAttributes attrs = Files.readAttributes(directory, BasicFileAttributes.class, linkOptions());
+        if (!attrs.isDirectory()) {
+            // Files.walkFileTree doesn't walk a symbolic link to the directory unless it follows links
+            return ImmutableList.of();
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final DirectoryTask root = new DirectoryTask(directory, true, new Ancestor(null, attrs.fileKey(), directory));
+            pool.execute(root);
+            final ImmutableList.Builder<String> builder = ImmutableList.builder();
+            flatten(root, builder);
+            return builder.build();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // joins tasks in the order so that files are listed in the same order as Files.walkFileTree
+    private static void flatten(DirectoryTask task, ImmutableList.Builder<String> builder) {
+        for (Object entry : task.join()) {
+            if (entry instanceof DirectoryTask) {
+                flatten((DirectoryTask) entry, builder);
+            } else {
+                builder.add((String) entry);
+            }
+        }
+    }
+
+    private LinkOption[] linkOptions() {
+        return followSymlinks ? FOLLOW_LINKS : NOFOLLOW_LINKS;
+    }
+
+    // files and directories are filtered by the same conditions
+    private boolean accepts(Path path, boolean topLevel) {
+        if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
+            return false;
+        }
+        return !topLevel || path.getFileName().toString().startsWith(fileNamePrefix);
+    }
+
+    // directories from the root to detect loops of symbolic links, as Files.walkFileTree does
+    private static class Ancestor {
+        private final Ancestor parent;
+        private final Object fileKey;
+        private final Path path;
+
+        Ancestor(Ancestor parent, Object fileKey, Path path) {
+            this.parent = parent;
+            this.fileKey = fileKey;
+            this.path = path;
+        }
+
+        boolean contains(Object fileKey, Path path) throws IOException {
+            for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (fileKey != null && ancestor.fileKey != null) {
+                    if (fileKey.equals(ancestor.fileKey)) {
+                        return true;
+                    }
+                } else if (Files.isSameFile(path, ancestor.path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // returns files as Strings and subdirectories as DirectoryTasks forked in the order of the DirectoryStream
+    private class DirectoryTask extends RecursiveTask<List<Object>> {
+        private final Path path;
+        private final boolean topLevel;
+        private final Ancestor ancestor;
+
+        DirectoryTask(Path path, boolean topLevel, Ancestor ancestor) {
+            this.path = path;
+            this.topLevel = topLevel;
+            this.ancestor = ancestor;
+        }
+
+        @Override
+        protected List<Object> compute() {
+            try {
+                return listDirectory();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private List<Object> listDirectory() throws IOException {
+            final List<Object> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    final BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, linkOptions());
+                    if (attrs.isDirectory()) {
+                        if (!accepts(child, topLevel)) {
+                            continue;
+                        }
+                        if (followSymlinks && ancestor.contains(attrs.fileKey(), child)) {
+                            throw new FileSystemLoopException(child.toString());
+                        }
+                        final DirectoryTask task = new DirectoryTask(child, false, new Ancestor(ancestor, attrs.fileKey(), child));
+                        task.fork();
+                        entries.add(task);
+                    } else {
+                        // Symbolic links to directories are visited like files unless symbolic links are followed.
+                        // They are skipped here, but only symbolic links are resolved to avoid a system call per file.
+                        if (attrs.isSymbolicLink() && isSymbolicLinkToDirectory(child)) {
+                            continue;
+                        }
+                        if (accepts(child, topLevel)) {
+                            entries.add(child.toString());
+                        }
+                    }
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static boolean isSymbolicLinkToDirectory(Path path) {
+        try {
+            return Files.isDirectory(path.toRealPath());
+        } catch (IOException ex) {
+            throw new RuntimeException("Can't resolve symbolic link", ex);
+        }
+    }
+}
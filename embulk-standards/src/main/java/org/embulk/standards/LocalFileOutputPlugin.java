@@ -20,9 +20,26 @@ import org.embulk.spi.Buffer;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileOutputPlugin;
 import org.embulk.spi.TransactionalFileOutput;
+import org.embulk.spi.unit.ByteSize;
 import org.slf4j.Logger;
 
 public class LocalFileOutputPlugin implements FileOutputPlugin {
+    public enum FsyncPolicy {
+        NONE("NONE"),
+        CLOSE("CLOSE"),
+        INTERVAL("INTERVAL");
+
+        private final String string;
+
+        private FsyncPolicy(String string) {
+            this.string = string;
+        }
+
+        public String getString() {
+            return string;
+        }
+    }
+
     public interface PluginTask extends Task {
         @Config("path_prefix")
         String getPathPrefix();
@@ -33,6 +50,22 @@ public class LocalFileOutputPlugin implements FileOutputPlugin {
         @Config("sequence_format")
         @ConfigDefault("\"%03d.%02d.\"")
         String getSequenceFormat();
+
+        @Config("write_behind")
+        @ConfigDefault("false")
+        boolean getWriteBehind();
+
+        @Config("write_queue_size")
+        @ConfigDefault("16")
+        int getWriteQueueSize();
+
+        @Config("fsync")
+        @ConfigDefault("\"NONE\"")
+        FsyncPolicy getFsyncPolicy();
+
+        @Config("fsync_interval")
+        @ConfigDefault("\"64MB\"")
+        ByteSize getFsyncInterval();
     }
 
     private final Logger log = Exec.getLogger(getClass());
@@ -48,6 +81,12 @@ public class LocalFileOutputPlugin implements FileOutputPlugin {
         } catch (IllegalFormatException ex) {
             throw new ConfigException("Invalid sequence_format: parameter for file output plugin", ex);
         }
+        if (task.getWriteQueueSize() <= 0) {
+            throw new ConfigException("\"write_queue_size\" must be larger than 0");
+        }
+        if (task.getFsyncInterval().getBytes() <= 0) {
+            throw new ConfigException("\"fsync_interval\" must be larger than 0");
+        }
 
         return resume(task.dump(), taskCount, control);
     }
@@ -72,11 +111,18 @@ public class LocalFileOutputPlugin implements FileOutputPlugin {
         final String pathPrefix = task.getPathPrefix();
         final String pathSuffix = task.getFileNameExtension();
         final String sequenceFormat = task.getSequenceFormat();
+        final boolean writeBehind = task.getWriteBehind();
+        final int writeQueueSize = task.getWriteQueueSize();
+        final boolean fsyncOnClose = task.getFsyncPolicy() != FsyncPolicy.NONE;
+        final long fsyncInterval = task.getFsyncPolicy() == FsyncPolicy.INTERVAL ? task.getFsyncInterval().getBytes() : 0L;
 
         return new TransactionalFileOutput() {
             private final List<String> fileNames = new ArrayList<>();
             private int fileIndex = 0;
             private FileOutputStream output = null;
+            private long unsyncedBytes = 0;
+            // used instead of output if write_behind is true
+            private WriteBehindFileChannel channel = null;
 
             public void nextFile() {
                 closeFile();
@@ -88,22 +134,52 @@ public class LocalFileOutputPlugin implements FileOutputPlugin {
                 } catch (FileNotFoundException ex) {
                     throw new RuntimeException(ex);  // TODO exception class
                 }
+                if (writeBehind) {
+                    // the channel is closed when the writer thread is closed
+                    channel = new WriteBehindFileChannel(output.getChannel(), writeQueueSize, fsyncInterval, fsyncOnClose,
+                                                         Thread.currentThread().getName() + "-writer");
+                    output = null;
+                }
+                unsyncedBytes = 0;
                 fileIndex++;
             }
 
             private void closeFile() {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } finally {
+                        channel = null;
+                    }
+                }
                 if (output != null) {
                     try {
+                        if (fsyncOnClose) {
+                            output.getChannel().force(false);
+                        }
                         output.close();
                     } catch (IOException ex) {
                         throw new RuntimeException(ex);
+                    } finally {
+                        output = null;
                     }
                 }
             }
 
             public void add(Buffer buffer) {
+                if (channel != null) {
+                    channel.write(buffer);
+                    return;
+                }
                 try {
                     output.write(buffer.array(), buffer.offset(), buffer.limit());
+                    if (fsyncInterval > 0) {
+                        unsyncedBytes += buffer.limit();
+                        if (unsyncedBytes >= fsyncInterval) {
+                            output.getChannel().force(false);
+                            unsyncedBytes = 0;
+                        }
+                    }
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
                 } finally {
@@ -119,7 +195,13 @@ public class LocalFileOutputPlugin implements FileOutputPlugin {
                 closeFile();
             }
 
-            public void abort() {}
+            public void abort() {
+                if (channel != null) {
+                    // bytes not written yet are discarded
+                    channel.abort();
+                    channel = null;
+                }
+            }
 
             public TaskReport commit() {
                 TaskReport report = Exec.newTaskReport();
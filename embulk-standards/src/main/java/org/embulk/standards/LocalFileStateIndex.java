@@ -0,0 +1,128 @@
+package org.embulk.standards;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.embulk.standards.LocalFileInputPlugin.FileState;
+
+/**
+ * LocalFileStateIndex is the state of local files loaded before, stored in a file of JSON lines.
+ *
+ * Each line has the path, the size and the last modified time of a file when it was listed, and the offset up to
+ * which the file was loaded. The file is replaced atomically so that a broken index is never read.
+ */
+class LocalFileStateIndex {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, FileState> entries;
+
+    private LocalFileStateIndex(Map<String, FileState> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the index. It's empty if the file doesn't exist.
+     */
+    static LocalFileStateIndex read(Path indexPath) throws IOException {
+        final Map<String, FileState> entries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    final FileState entry = MAPPER.readValue(line, FileState.class);
+                    entries.put(entry.getPath(), entry);
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            // no files are loaded yet
+        }
+        return new LocalFileStateIndex(entries);
+    }
+
+    static void write(Path indexPath, List<FileState> entries) throws IOException {
+        final Path absolutePath = indexPath.toAbsolutePath();
+        final Path temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+                for (FileState entry : entries) {
+                    writer.write(MAPPER.writeValueAsString(entry));
+                    writer.newLine();
+                }
+            }
+            Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Returns the entry of the file, or null if the file is not loaded before.
+     */
+    FileState get(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Returns the offset right after the last newline between start and end, or start if there are no newlines.
+     * Both of CR and LF end a line in the same way with CsvTokenizer.
+     *
+     * Bytes appended to a file are loaded up to the last newline so that a line being written is loaded next time.
+     */
+    static long findLastLineEnd(Path path, long start, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long position = end;
+            while (position > start) {
+                final int length = (int) Math.min(SCAN_BUFFER_SIZE, position - start);
+                position -= length;
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException(String.format("File '%s' is truncated while it is read", path));
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    final byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        return position + i + 1;
+                    }
+                }
+            }
+            return start;
+        }
+    }
+
+    /**
+     * Returns the offset after the LF if the offset is between CR and LF of a CRLF, or the offset itself otherwise.
+     *
+     * A file loaded up to a CR is loaded from the offset next time, and the LF appended after it is not a new line.
+     */
+    static long skipLineFeedAfterCarriageReturn(Path path, long offset) throws IOException {
+        if (offset <= 0) {
+            return offset;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(2);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset - 1 + buffer.position()) < 0) {
+                    return offset;
+                }
+            }
+            return (buffer.get(0) == '\r' && buffer.get(1) == '\n') ? offset + 1 : offset;
+        }
+    }
+}
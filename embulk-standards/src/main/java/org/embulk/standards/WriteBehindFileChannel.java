@@ -0,0 +1,214 @@
+package org.embulk.standards;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.Buffer;
+
+/**
+ * WriteBehindFileChannel writes buffers to a FileChannel on a dedicated thread, so that formatting and disk I/O
+ * run in parallel. Buffers are handed over through a bounded queue of {@code queueBuffers} buffers, and buffers
+ * queued at once are written by a gathering write.
+ *
+ * The channel is forced every {@code fsyncInterval} bytes, and when it's closed if {@code fsyncOnClose} is true.
+ */
+class WriteBehindFileChannel {
+    private static final Buffer END = Buffer.allocate(0);
+
+    private static final long PUT_CHECK_INTERVAL_MILLIS = 100;
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
+    private final FileChannel channel;
+    private final BlockingQueue<Buffer> queue;
+    private final long fsyncInterval;
+    private final boolean fsyncOnClose;
+    private final Thread thread;
+
+    private volatile Throwable failure = null;
+    private volatile boolean aborted = false;
+    private boolean closed = false;
+
+    WriteBehindFileChannel(FileChannel channel, int queueBuffers, long fsyncInterval, boolean fsyncOnClose, String name) {
+        this.channel = channel;
+        this.queue = new ArrayBlockingQueue<>(queueBuffers);
+        this.fsyncInterval = fsyncInterval;
+        this.fsyncOnClose = fsyncOnClose;
+        this.thread = new Thread(new Runnable() {
+                public void run() {
+                    consume();
+                }
+            }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues the buffer, which is released after it's written. It blocks while the queue is full.
+     */
+    void write(Buffer buffer) {
+        if (!put(buffer)) {
+            buffer.release();
+            throwFailure();
+        }
+    }
+
+    /**
+     * Writes all queued buffers, and closes the channel.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            put(END);
+            join();
+            throwFailure();
+        } finally {
+            releaseQueuedBuffers();
+            closeChannel();
+        }
+    }
+
+    /**
+     * Discards queued buffers, and closes the channel.
+     */
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        try {
+            thread.interrupt();
+            join();
+        } finally {
+            releaseQueuedBuffers();
+            closeChannel();
+        }
+    }
+
+    private void consume() {
+        final List<Buffer> buffers = new ArrayList<>(MAX_GATHERED_BUFFERS);
+        try {
+            long unsyncedBytes = 0;
+            while (true) {
+                buffers.add(queue.take());
+                queue.drainTo(buffers, MAX_GATHERED_BUFFERS - 1);
+                final boolean end = buffers.get(buffers.size() - 1) == END;
+                if (end) {
+                    buffers.remove(buffers.size() - 1);
+                }
+
+                unsyncedBytes += writeBuffers(buffers);
+                releaseBuffers(buffers);
+
+                if (end) {
+                    if (fsyncOnClose || (fsyncInterval > 0 && unsyncedBytes > 0)) {
+                        channel.force(false);
+                    }
+                    return;
+                }
+                if (fsyncInterval > 0 && unsyncedBytes >= fsyncInterval) {
+                    channel.force(false);
+                    unsyncedBytes = 0;
+                }
+            }
+        } catch (Throwable ex) {
+            if (!aborted) {
+                failure = ex;
+            }
+        } finally {
+            releaseBuffers(buffers);
+        }
+    }
+
+    private long writeBuffers(List<Buffer> buffers) throws IOException {
+        final ByteBuffer[] byteBuffers = new ByteBuffer[buffers.size()];
+        long bytes = 0;
+        for (int i = 0; i < byteBuffers.length; i++) {
+            final Buffer buffer = buffers.get(i);
+            byteBuffers[i] = ByteBuffer.wrap(buffer.array(), buffer.offset(), buffer.limit());
+            bytes += buffer.limit();
+        }
+        long written = 0;
+        while (written < bytes) {
+            written += channel.write(byteBuffers);
+        }
+        return bytes;
+    }
+
+    // returns false if the writer thread failed
+    private boolean put(Buffer buffer) {
+        try {
+            while (failure == null && thread.isAlive()) {
+                if (queue.offer(buffer, PUT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void join() {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+                // the writer thread stops writing after the current write
+                aborted = true;
+                thread.interrupt();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throwFailure() {
+        final Throwable cause = failure;
+        if (cause == null) {
+            return;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void releaseQueuedBuffers() {
+        Buffer buffer;
+        while ((buffer = queue.poll()) != null) {
+            if (buffer != END) {
+                buffer.release();
+            }
+        }
+    }
+
+    private static void releaseBuffers(List<Buffer> buffers) {
+        for (Buffer buffer : buffers) {
+            buffer.release();
+        }
+        buffers.clear();
+    }
+}
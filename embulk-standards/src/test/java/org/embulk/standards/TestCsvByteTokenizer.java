@@ -0,0 +1,254 @@
+package org.embulk.standards;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.DataException;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.LineDecoder;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestCsvByteTokenizer {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private ConfigSource config;
+    private CsvParserPlugin.PluginTask task;
+
+    @Before
+    public void setup() {
+        config = Exec.newConfigSource()
+            .set("newline", "LF")
+            .set("columns", ImmutableList.of(
+                        ImmutableMap.<String,Object>of(
+                            "name", "date_code", "type", "string", "option", ImmutableMap.of()),
+                        ImmutableMap.<String,Object>of(
+                            "name", "foo", "type", "string", "option", ImmutableMap.of()))
+                );
+        reloadPluginTask();
+    }
+
+    private void reloadPluginTask() {
+        task = config.loadConfig(CsvParserPlugin.PluginTask.class);
+    }
+
+    // splits the text into buffers of |bufferSize| bytes so that lines and values span buffers
+    private static FileInput newFileInput(String text, int bufferSize) {
+        byte[] bytes = text.getBytes(UTF_8);
+        List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += bufferSize) {
+            buffers.add(Buffer.wrap(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + bufferSize))));
+        }
+        return new ListFileInput(ImmutableList.of(buffers));
+    }
+
+    private List<List<String>> parse(String text, int bufferSize) {
+        CsvByteTokenizer tokenizer = new CsvByteTokenizer(newFileInput(text, bufferSize), task);
+        tokenizer.nextFile();
+
+        List<List<String>> records = new ArrayList<>();
+        while (tokenizer.nextRecord()) {
+            List<String> record = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                record.add(tokenizer.nextValue() ? tokenizer.getValueString() : null);
+            }
+            records.add(record);
+        }
+        tokenizer.close();
+        return records;
+    }
+
+    private List<List<String>> parseWithLineTokenizer(String text) {
+        CsvTokenizer tokenizer = new CsvTokenizer(new LineDecoder(newFileInput(text, 1024), task), task);
+        tokenizer.nextFile();
+
+        List<List<String>> records = new ArrayList<>();
+        while (tokenizer.nextRecord()) {
+            List<String> record = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                record.add(tokenizer.nextColumnOrNull());
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    // asserts that the result is same with CsvTokenizer regardless of sizes of buffers
+    private void assertSameWithLineTokenizer(String text) {
+        List<List<String>> expected = parseWithLineTokenizer(text);
+        for (int bufferSize : new int[] {1, 2, 3, 7, 8, 9, 1024}) {
+            assertEquals("buffer size " + bufferSize, expected, parse(text, bufferSize));
+        }
+    }
+
+    private static List<List<String>> records(String... values) {
+        List<List<String>> records = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            records.add(Arrays.asList(values[i], values[i + 1]));
+        }
+        return records;
+    }
+
+    @Test
+    public void testSimple() {
+        assertEquals(records("aaa", "bbb", "ccc", "ddd"), parse("aaa,bbb\nccc,ddd\n", 1024));
+        assertSameWithLineTokenizer("aaa,bbb\nccc,ddd\n");
+        assertSameWithLineTokenizer("aaa,bbb\r\nccc,ddd\rexxxxxxxxxxxxxxxxxxx,fyyyyyyyyyyyyyyyyyyyyyyy");
+        assertSameWithLineTokenizer("\n\naaa,bbb\n\n\nccc,ddd\n\n");
+    }
+
+    @Test
+    public void testNullAndEmptyValues() {
+        assertEquals(records(null, null, "", "", "  ", "  "), parse(",\n\"\",\"\"\n  ,  \n", 1024));
+        assertSameWithLineTokenizer(",\n\"\",\"\"\n  ,  \n");
+
+        config.set("null_string", "NULL");
+        reloadPluginTask();
+        assertEquals(records("", null, null, "NULLL"), parse(",NULL\n\"NULL\",NULLL\n", 1024));
+    }
+
+    @Test
+    public void testQuotedValues() {
+        assertSameWithLineTokenizer("\"a\na\na\",\"b,bb\"\n\n\"cc\"\"c\",\"\"\"ddd\"\n\"\",\"\"\n");
+        assertSameWithLineTokenizer("\"a\\\"a\",\"b\\\\b\"\n\"c\\d\",e\n");
+        assertSameWithLineTokenizer("\"aaa\"  ,  \"bbb\" \n");
+    }
+
+    @Test
+    public void testMultilineQuotedValueUsesConfiguredNewline() {
+        config.set("newline", "CRLF");
+        reloadPluginTask();
+        assertEquals(records("a\r\nb\r\nc", "d"), parse("\"a\nb\rc\",d\n", 3));
+    }
+
+    @Test
+    public void testDelimiters() {
+        config.set("delimiter", "\t");
+        reloadPluginTask();
+        assertSameWithLineTokenizer("aaa\tbbb\nccc\t\"d\td\"\n");
+
+        config.set("delimiter", "::");
+        reloadPluginTask();
+        assertSameWithLineTokenizer("aaa::bbb\nc:c::d:d\n\"e::e\"::\n");
+    }
+
+    @Test
+    public void testTrimIfNotQuoted() {
+        config.set("trim_if_not_quoted", true);
+        reloadPluginTask();
+        assertSameWithLineTokenizer("  aaa  ,  b cd \n \"  ccc  \" ,\n  ,  \n");
+    }
+
+    @Test
+    public void testCommentLineMarker() {
+        config.set("comment_line_marker", JsonNodeFactory.instance.textNode("#"));
+        reloadPluginTask();
+        assertEquals(records("aaa", "bbb", "eee", "fff"), parse("#ccc,ddd\naaa,bbb\n#\neee,fff\n", 2));
+    }
+
+    @Test
+    public void testStrayQuotes() {
+        config.set("quotes_in_quoted_fields", "ACCEPT_STRAY_QUOTES_ASSUMING_NO_DELIMITERS_IN_FIELDS");
+        reloadPluginTask();
+        assertSameWithLineTokenizer("\"foo\"bar\",\"hoge\"\"fuga\"\n\"a\"\"\",b\n");
+    }
+
+    @Test
+    public void testUtf8() {
+        assertEquals(records("あいう", "🍣"), parse("\uFEFFあいう,🍣\n", 1));
+        assertSameWithLineTokenizer("あいう,\"え\nお\"\n");
+    }
+
+    @Test
+    public void testValueBytes() {
+        CsvByteTokenizer tokenizer = new CsvByteTokenizer(newFileInput("abc,\"d\"\"e\"\n", 1024), task);
+        assertTrue(tokenizer.nextFile());
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("abc", new String(tokenizer.getValueArray(), tokenizer.getValueOffset(), tokenizer.getValueLength(), UTF_8));
+        assertFalse(tokenizer.wasQuotedColumn());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("d\"e", new String(tokenizer.getValueArray(), tokenizer.getValueOffset(), tokenizer.getValueLength(), UTF_8));
+        assertTrue(tokenizer.wasQuotedColumn());
+        assertFalse(tokenizer.hasNextColumn());
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    @Test
+    public void testInvalidValues() {
+        try {
+            parse("\"foo\"bar\",\"hoge\"fuga\"\n", 1024);
+            fail();
+        } catch (CsvTokenizer.InvalidValueException ex) {
+            // expected
+        }
+        try {
+            parse("aaa,bbb,ccc\n", 1024);
+            fail();
+        } catch (CsvByteTokenizer.TooManyColumnsException ex) {
+            // expected
+        }
+        try {
+            parse("aaa\n", 1024);
+            fail();
+        } catch (CsvByteTokenizer.TooFewColumnsException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void recoverFromQuotedSizeLimitExceededException() {
+        config.set("max_quoted_size_limit", 12);
+        reloadPluginTask();
+        CsvByteTokenizer tokenizer = new CsvByteTokenizer(newFileInput(
+                    "v1,v2\nv3,\"0123\nv4,v5\nv6,v7\n", 4), task);
+        tokenizer.nextFile();
+
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v1", tokenizer.getValueString());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v2", tokenizer.getValueString());
+
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v3", tokenizer.getValueString());
+        try {
+            tokenizer.nextValue();
+            fail();
+        } catch (DataException ex) {
+            assertTrue(ex instanceof CsvTokenizer.QuotedSizeLimitExceededException);
+        }
+        assertEquals("v3,\"0123", tokenizer.skipCurrentLine());
+        assertEquals(2, tokenizer.getCurrentLineNumber());
+
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v4", tokenizer.getValueString());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v5", tokenizer.getValueString());
+
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v6", tokenizer.getValueString());
+        assertTrue(tokenizer.nextValue());
+        assertEquals("v7", tokenizer.getValueString());
+        assertEquals(4, tokenizer.getCurrentLineNumber());
+    }
+}
@@ -0,0 +1,171 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileOutput;
+import org.embulk.standards.CsvFormatterPlugin.QuotePolicy;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestCsvByteWriter {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static class ByteArrayFileOutput implements FileOutput {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void nextFile() {}
+
+        @Override
+        public void add(Buffer buffer) {
+            bytes.write(buffer.array(), buffer.offset(), buffer.limit());
+            buffer.release();
+        }
+
+        @Override
+        public void finish() {}
+
+        @Override
+        public void close() {}
+
+        String toUtf8String() {
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static CsvFormatterPlugin.PluginTask loadTask(ConfigSource config) {
+        return config.loadConfig(CsvFormatterPlugin.PluginTask.class);
+    }
+
+    private static String escapeAndQuote(CsvFormatterPlugin.PluginTask task, String value) {
+        QuotePolicy policy = task.getQuotePolicy();
+        char quote = task.getQuoteChar() != '\0' ? task.getQuoteChar() : '"';
+        char escape = task.getEscapeChar().or(policy == QuotePolicy.NONE ? '\\' : quote);
+        return CsvFormatterPlugin.setEscapeAndQuoteValue(value, task.getDelimiterChar(), policy, quote, escape,
+                task.getNewlineInField().getString(), task.getNullString());
+    }
+
+    // Writes values through both of the String and byte paths and compares them with CsvFormatterPlugin.
+    private static void assertSameAsFormatter(CsvFormatterPlugin.PluginTask task, String... values) {
+        StringBuilder expected = new StringBuilder();
+        for (String value : values) {
+            expected.append(escapeAndQuote(task, value)).append(task.getDelimiterChar());
+        }
+
+        ByteArrayFileOutput charOutput = new ByteArrayFileOutput();
+        CsvByteWriter charWriter = new CsvByteWriter(charOutput, task);
+        ByteArrayFileOutput byteOutput = new ByteArrayFileOutput();
+        CsvByteWriter byteWriter = new CsvByteWriter(byteOutput, task);
+        for (String value : values) {
+            charWriter.addValue(value);
+            charWriter.addDelimiter();
+            byte[] bytes = ("x" + value).getBytes(StandardCharsets.UTF_8);
+            byteWriter.write(bytes, 1, bytes.length - 1);
+            byteWriter.addDelimiter();
+        }
+        charWriter.finish();
+        byteWriter.finish();
+
+        assertEquals(expected.toString(), charOutput.toUtf8String());
+        assertEquals(expected.toString(), byteOutput.toUtf8String());
+    }
+
+    @Test
+    public void testSameAsFormatter() {
+        String[] values = {"", "abc", "a,b", "a\"b", "\"", "a\nb", "a\rb", "a\r\nb", "\r\n\r\n", "\n\r", "\\N", "NULL",
+                           "あ,い", "🍣\"", "'a'", "a\tb"};
+        ConfigSource[] configs = {
+            Exec.newConfigSource(),
+            Exec.newConfigSource().set("quote_policy", "ALL").set("quote", "'"),
+            Exec.newConfigSource().set("quote_policy", "NONE").set("delimiter", "\t"),
+            Exec.newConfigSource().set("quote_policy", "MINIMAL").set("null_string", "\\N").set("escape", "\\"),
+            Exec.newConfigSource().set("quote_policy", "MINIMAL").set("null_string", "NULL").set("newline_in_field", "CRLF"),
+        };
+        for (ConfigSource config : configs) {
+            assertSameAsFormatter(loadTask(config), values);
+        }
+    }
+
+    @Test
+    public void testRandomValues() {
+        Random random = new Random(1);
+        char[] chars = {'a', ',', '"', '\'', '\r', '\n', '\\', '\t', 'é', 'あ'};
+        for (String policy : new String[] {"ALL", "MINIMAL", "NONE"}) {
+            CsvFormatterPlugin.PluginTask task = loadTask(Exec.newConfigSource().set("quote_policy", policy));
+            String[] values = new String[1000];
+            for (int i = 0; i < values.length; i++) {
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int j = 0; j < length; j++) {
+                    sb.append(chars[random.nextInt(chars.length)]);
+                }
+                values[i] = sb.toString();
+            }
+            assertSameAsFormatter(task, values);
+        }
+    }
+
+    @Test
+    public void testValuesAcrossBuffers() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append(i % 7 == 0 ? "\"" : i % 5 == 0 ? "あ" : "a");
+        }
+        assertSameAsFormatter(loadTask(Exec.newConfigSource()), sb.toString(), sb.toString());
+    }
+
+    @Test
+    public void testNumbersAndBooleans() {
+        ByteArrayFileOutput output = new ByteArrayFileOutput();
+        CsvByteWriter writer = new CsvByteWriter(output, loadTask(Exec.newConfigSource()));
+        StringBuilder expected = new StringBuilder();
+
+        long[] longs = {0L, 1L, -1L, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : longs) {
+            writer.addLong(value);
+            writer.addDelimiter();
+            expected.append(value).append(',');
+        }
+        double[] doubles = {0.0, -0.0, 1.0, -1.0, 1.5, 9999999.0, 1.0e7, -1.0e7, 1.0e-5, 123.456,
+                            Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE};
+        for (double value : doubles) {
+            writer.addDouble(value);
+            writer.addDelimiter();
+            expected.append(Double.toString(value)).append(',');
+        }
+        writer.addBoolean(true);
+        writer.addDelimiter();
+        writer.addBoolean(false);
+        writer.addNewLine();
+        expected.append("true,false\r\n");
+        writer.finish();
+
+        assertEquals(expected.toString(), output.toUtf8String());
+    }
+
+    @Test
+    public void testNumbersWithDigitNullString() {
+        ByteArrayFileOutput output = new ByteArrayFileOutput();
+        CsvByteWriter writer = new CsvByteWriter(output, loadTask(Exec.newConfigSource().set("null_string", "0")));
+        writer.addLong(0L);
+        writer.addDelimiter();
+        writer.addNullString();
+        writer.finish();
+
+        assertEquals("\"0\",0", output.toUtf8String());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testNonAsciiDelimiter() {
+        new CsvByteWriter(new ByteArrayFileOutput(), loadTask(Exec.newConfigSource().set("delimiter", "、")));
+    }
+}
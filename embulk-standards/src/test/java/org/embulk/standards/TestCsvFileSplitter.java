@@ -0,0 +1,93 @@
+package org.embulk.standards;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestCsvFileSplitter {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private List<String> split(CsvFileSplitter splitter, String data, long splitSize) throws IOException {
+        File file = tempFolder.newFile();
+        Files.write(file.toPath(), data.getBytes(UTF_8));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long headerEnd = splitter.findHeaderEnd(channel);
+            List<Long> boundaries = splitter.findBoundaries(channel, headerEnd, splitSize);
+            List<String> ranges = new ArrayList<>();
+            for (int i = 0; i < boundaries.size() - 1; i++) {
+                ranges.add(data.substring((int) (long) boundaries.get(i), (int) (long) boundaries.get(i + 1)));
+            }
+            return ranges;
+        }
+    }
+
+    private static CsvFileSplitter newSplitter(int skipHeaderLines, char quote) {
+        return new CsvFileSplitter(skipHeaderLines, ',', quote, '\\', false, false, null);
+    }
+
+    @Test
+    public void testNoSplit() throws IOException {
+        assertEquals(ImmutableList.of("a,b\nc,d\n"),
+                split(newSplitter(0, CsvTokenizer.NO_QUOTE), "a,b\nc,d\n", 100));
+        assertEquals(ImmutableList.of(""),
+                split(newSplitter(0, CsvTokenizer.NO_QUOTE), "", 1));
+    }
+
+    @Test
+    public void testSplitAtNewlines() throws IOException {
+        assertEquals(ImmutableList.of("aaa\n", "bbb\n", "ccc"),
+                split(newSplitter(0, CsvTokenizer.NO_QUOTE), "aaa\nbbb\nccc", 2));
+        assertEquals(ImmutableList.of("aaa\r\nbbb\r\n", "ccc\r\n"),
+                split(newSplitter(0, CsvTokenizer.NO_QUOTE), "aaa\r\nbbb\r\nccc\r\n", 6));
+        assertEquals(ImmutableList.of("aaa\r", "bbb\r", "ccc\r"),
+                split(newSplitter(0, CsvTokenizer.NO_QUOTE), "aaa\rbbb\rccc\r", 1));
+    }
+
+    @Test
+    public void testSplitAtNewlinesWithQuote() throws IOException {
+        assertEquals(ImmutableList.of("aaa\n", "bbb\n", "ccc"),
+                split(newSplitter(0, '"'), "aaa\nbbb\nccc", 2));
+        assertEquals(ImmutableList.of("aaa\r\nbbb\r\n", "ccc\r\n"),
+                split(newSplitter(0, '"'), "aaa\r\nbbb\r\nccc\r\n", 6));
+        assertEquals(ImmutableList.of("aaa\r", "bbb\r", "ccc\r"),
+                split(newSplitter(0, '"'), "aaa\rbbb\rccc\r", 1));
+    }
+
+    @Test
+    public void testQuotedNewlines() throws IOException {
+        assertEquals(ImmutableList.of("1,\"a\nb\"\n", "2,\"c\r\n\"\"\nd\"\n", "3,e\n"),
+                split(newSplitter(0, '"'), "1,\"a\nb\"\n2,\"c\r\n\"\"\nd\"\n3,e\n", 1));
+        assertEquals(ImmutableList.of("1,\"a\\\"\nb\"\n", "2,c\n"),
+                split(newSplitter(0, '"'), "1,\"a\\\"\nb\"\n2,c\n", 1));
+        // quotes in unquoted values don't start quoted values
+        assertEquals(ImmutableList.of("1,a\"\n", "2,\"\n\"\n"),
+                split(newSplitter(0, '"'), "1,a\"\n2,\"\n\"\n", 1));
+    }
+
+    @Test
+    public void testHeaderLines() throws IOException {
+        assertEquals(ImmutableList.of("\"h\nh\"\n1\n", "2\n"),
+                split(newSplitter(2, CsvTokenizer.NO_QUOTE), "\"h\nh\"\n1\n2\n", 1));
+        assertEquals(ImmutableList.of("h\n1\n", "2\n"),
+                split(newSplitter(1, '"'), "h\n1\n2\n", 1));
+    }
+
+    @Test
+    public void testCommentLines() throws IOException {
+        CsvFileSplitter splitter = new CsvFileSplitter(0, ',', '"', '\\', false, false, "#");
+        assertEquals(ImmutableList.of("#\"\n", "1\n", "#a\"b\n", "\"#\n\"\n"),
+                split(splitter, "#\"\n1\n#a\"b\n\"#\n\"\n", 1));
+    }
+}
@@ -1,15 +1,34 @@
 package org.embulk.standards;
 
 import static org.junit.Assert.assertEquals;
+import static org.msgpack.value.ValueFactory.newArray;
+import static org.msgpack.value.ValueFactory.newInteger;
+import static org.msgpack.value.ValueFactory.newMap;
+import static org.msgpack.value.ValueFactory.newString;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
 import org.embulk.spi.Exec;
+import org.embulk.spi.FormatterPlugin;
+import org.embulk.spi.MockFileOutput;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageLayout;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.PageStringStorage;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.type.Types;
 import org.embulk.spi.util.Newline;
 import org.junit.Rule;
 import org.junit.Test;
@@ -297,4 +316,79 @@ public class TestCsvFormatterPlugin {
         assertEquals("", method.invoke(formatter, "", delimiter, CsvFormatterPlugin.QuotePolicy.NONE, quote, escape, newline, "N/A"));
         assertEquals("N/A", method.invoke(formatter, "N/A", delimiter, CsvFormatterPlugin.QuotePolicy.NONE, quote, escape, newline, "N/A"));
     }
+
+    @Test
+    public void testOpen() {
+        checkOpen(false);
+    }
+
+    @Test
+    public void testOpenWithByteWriter() {
+        checkOpen(true);
+    }
+
+    private void checkOpen(boolean byteWriter) {
+        Schema schema = Schema.builder()
+                .add("id", Types.LONG)
+                .add("score", Types.DOUBLE)
+                .add("flag", Types.BOOLEAN)
+                .add("name", Types.STRING)
+                .add("time", Types.TIMESTAMP)
+                .add("json", Types.JSON)
+                .build();
+        ConfigSource config = Exec.newConfigSource().set("byte_writer", byteWriter);
+        String expected = "id,score,flag,name,time,json\r\n"
+                + "1,1.5,true,\"a,b\",1970-01-01 00:00:00.000000 +0000,\"{\"\"k\"\":1}\"\r\n"
+                + ",,,,,\r\n"
+                + "-2,3.0,false,\"x\"\"y\",1970-01-01 00:00:01.500000 +0000,[1]\r\n";
+        // strings are stored in pages as references or as inline UTF-8 bytes
+        for (PageStringStorage stringStorage : PageStringStorage.values()) {
+            assertEquals(expected, format(config, schema, buildPage(schema, stringStorage)));
+        }
+    }
+
+    private Page buildPage(Schema schema, PageStringStorage stringStorage) {
+        MockPageOutput output = new MockPageOutput();
+        try (PageBuilder builder = new PageBuilder(runtime.getBufferAllocator(), schema, output, PageLayout.ROW_ORIENTED, stringStorage)) {
+            builder.setLong(0, 1L);
+            builder.setDouble(1, 1.5);
+            builder.setBoolean(2, true);
+            builder.setString(3, "a,b");
+            builder.setTimestamp(4, Timestamp.ofEpochSecond(0L));
+            builder.setJson(5, newMap(newString("k"), newInteger(1)));
+            builder.addRecord();
+            for (int i = 0; i < schema.getColumnCount(); i++) {
+                builder.setNull(i);
+            }
+            builder.addRecord();
+            builder.setLong(0, -2L);
+            builder.setDouble(1, 3.0);
+            builder.setBoolean(2, false);
+            builder.setString(3, "x\"y");
+            builder.setTimestamp(4, Timestamp.ofEpochMilli(1500L));
+            builder.setJson(5, newArray(newInteger(1)));
+            builder.addRecord();
+            builder.finish();
+        }
+        assertEquals(1, output.pages.size());
+        return output.pages.get(0);
+    }
+
+    private String format(ConfigSource config, final Schema schema, final Page page) {
+        final CsvFormatterPlugin plugin = new CsvFormatterPlugin();
+        final MockFileOutput output = new MockFileOutput();
+        plugin.transaction(config, schema, new FormatterPlugin.Control() {
+                public void run(TaskSource taskSource) {
+                    try (PageOutput pageOutput = plugin.open(taskSource, schema, output)) {
+                        pageOutput.add(page);
+                        pageOutput.finish();
+                    }
+                }
+            });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Buffer buffer : output.getLastBuffers()) {
+            bytes.write(buffer.array(), buffer.offset(), buffer.limit());
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
 }
@@ -1,16 +1,32 @@
 package org.embulk.standards;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.msgpack.value.ValueFactory.emptyMap;
+import static org.msgpack.value.ValueFactory.newArray;
+import static org.msgpack.value.ValueFactory.newInteger;
+import static org.msgpack.value.ValueFactory.newMap;
+import static org.msgpack.value.ValueFactory.newString;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
 import org.embulk.spi.Exec;
+import org.embulk.spi.ParserPlugin;
+import org.embulk.spi.Schema;
+import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.util.ListFileInput;
 import org.embulk.spi.util.Newline;
+import org.embulk.spi.util.Pages;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -68,4 +84,60 @@ public class TestCsvParserPlugin {
         assertEquals(Optional.of(new CsvParserPlugin.QuoteCharacter('\\')), task.getQuoteChar());
         assertEquals(true, task.getAllowOptionalColumns());
     }
+
+    @Test
+    public void testParse() {
+        checkParse(false);
+    }
+
+    @Test
+    public void testParseWithByteTokenizer() {
+        checkParse(true);
+    }
+
+    private void checkParse(boolean byteTokenizer) {
+        ConfigSource config = Exec.newConfigSource()
+                .set("header_line", true)
+                .set("allow_optional_columns", true)
+                .set("allow_extra_columns", true)
+                .set("byte_tokenizer", byteTokenizer)
+                .set("columns", ImmutableList.of(
+                        ImmutableMap.of("name", "id", "type", "long"),
+                        ImmutableMap.of("name", "flag", "type", "boolean"),
+                        ImmutableMap.of("name", "score", "type", "double"),
+                        ImmutableMap.of("name", "name", "type", "string"),
+                        ImmutableMap.of("name", "time", "type", "timestamp", "format", "%Y-%m-%d %H:%M:%S"),
+                        ImmutableMap.of("name", "json", "type", "json")));
+        List<Object[]> records = parse(config,
+                "id,flag,score,name,time,json\n"
+                + "1,true,1.5,\"a,b\",2017-01-02 03:04:05,\"{\"\"k\"\":1}\"\n"
+                + "x,true,1.0,invalid,2017-01-02 03:04:05,{}\n"
+                + "2,no,-2.25,\"\",2017-01-02 03:04:06,[1]\n"
+                + "3,,,,,\n"
+                + "4,yes,0,extra,2017-01-02 03:04:07,{},extra\n"
+                + "5,1\n");
+
+        assertEquals(5, records.size());
+        assertArrayEquals(new Object[] {1L, true, 1.5, "a,b", Timestamp.ofEpochSecond(1483326245L), newMap(newString("k"), newInteger(1))},
+                records.get(0));
+        // the record with an invalid long value is skipped
+        assertArrayEquals(new Object[] {2L, false, -2.25, "", Timestamp.ofEpochSecond(1483326246L), newArray(newInteger(1))},
+                records.get(1));
+        assertArrayEquals(new Object[] {3L, null, null, null, null, null}, records.get(2));
+        assertArrayEquals(new Object[] {4L, true, 0.0, "extra", Timestamp.ofEpochSecond(1483326247L), emptyMap()}, records.get(3));
+        assertArrayEquals(new Object[] {5L, true, null, null, null, null}, records.get(4));
+    }
+
+    private List<Object[]> parse(ConfigSource config, String text) {
+        final CsvParserPlugin plugin = new CsvParserPlugin();
+        final MockPageOutput output = new MockPageOutput();
+        final Buffer buffer = Buffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        plugin.transaction(config, new ParserPlugin.Control() {
+                public void run(TaskSource taskSource, Schema schema) {
+                    plugin.run(taskSource, schema, new ListFileInput(ImmutableList.of(ImmutableList.of(buffer))), output);
+                }
+            });
+        Schema schema = config.loadConfig(CsvParserPlugin.PluginTask.class).getSchemaConfig().toSchema();
+        return Pages.toObjects(schema, output.pages);
+    }
 }
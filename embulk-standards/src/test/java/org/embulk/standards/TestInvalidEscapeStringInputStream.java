@@ -0,0 +1,60 @@
+package org.embulk.standards;
+
+import static org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy.SKIP;
+import static org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy.UNESCAPE;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy;
+import org.junit.Test;
+
+public class TestInvalidEscapeStringInputStream {
+    private static String repair(String json, InvalidEscapeStringPolicy policy, int bufferSize) throws IOException {
+        try (InputStream in = new InvalidEscapeStringInputStream(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), policy, bufferSize)) {
+            return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testRepair() throws IOException {
+        assertEquals("{\"\":\"b\"}\n{\"c\":1}\n", repair("{\"\\a\":\"b\"}\\\n{\"c\":1}\n", SKIP, 8192));
+        assertEquals("{\"a\":\"b\"}\n{\"c\":1}\n", repair("{\"\\a\":\"b\"}\\\n{\"c\":1}\n", UNESCAPE, 8192));
+
+        // escaped backslashes are kept as they are
+        assertEquals("{\"\\\\a\":\"\\\\\"}", repair("{\"\\\\a\":\"\\\\\"}", SKIP, 8192));
+
+        // a multi-byte character after a backslash is removed as a whole
+        assertEquals("{\"ab\":1}", repair("{\"a\\あb\":1}", SKIP, 8192));
+        assertEquals("{\"aあb\":1}", repair("{\"a\\あb\":1}", UNESCAPE, 8192));
+
+        // \\u needs 4 characters in the line
+        assertEquals("{\"u12\n\":1}", repair("{\"\\u12\n\":1}", SKIP, 8192));
+        assertEquals("{\"\\u12aB\":1}", repair("{\"\\u12aB\":1}", SKIP, 8192));
+    }
+
+    @Test
+    public void testSmallBuffers() throws IOException {
+        Random random = new Random(1);
+        String[] pieces = {"\\", "\\\\", "\\a", "\\u00e9", "\\u12xY", "\\\"", "\\n", "\n", "\\\n", "a", "bc", "あ", "\\あ", "{\"k\":\"v\"}"};
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(100);
+            for (int j = 0; j < length; j++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String json = sb.toString();
+            for (InvalidEscapeStringPolicy policy : new InvalidEscapeStringPolicy[] {SKIP, UNESCAPE}) {
+                String expected = repair(json, policy, 8192);
+                for (int bufferSize = 6; bufferSize < 12; bufferSize++) {
+                    assertEquals(json, expected, repair(json, policy, bufferSize));
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.embulk.standards;
 import static org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy.PASSTHROUGH;
 import static org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy.SKIP;
 import static org.embulk.standards.JsonParserPlugin.InvalidEscapeStringPolicy.UNESCAPE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -13,6 +14,7 @@ import static org.msgpack.value.ValueFactory.newMap;
 import static org.msgpack.value.ValueFactory.newString;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharSource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -20,6 +22,7 @@ import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskSource;
 import org.embulk.spi.DataException;
@@ -28,12 +31,14 @@ import org.embulk.spi.FileInput;
 import org.embulk.spi.ParserPlugin;
 import org.embulk.spi.Schema;
 import org.embulk.spi.TestPageBuilderReader.MockPageOutput;
+import org.embulk.spi.time.Timestamp;
 import org.embulk.spi.util.InputStreamFileInput;
 import org.embulk.spi.util.Pages;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
 
 public class TestJsonParserPlugin {
     @Rule
@@ -286,6 +291,76 @@ public class TestJsonParserPlugin {
         }
     }
 
+    @Test
+    public void readColumnsWithJsonPointers() throws Exception {
+        ConfigSource config = this.config.deepCopy().set("columns", ImmutableList.of(
+                ImmutableMap.of("name", "id", "type", "long"),
+                ImmutableMap.of("name", "user_name", "type", "string", "path", "/user/name"),
+                ImmutableMap.of("name", "score", "type", "double", "path", "/scores/1"),
+                ImmutableMap.of("name", "ok", "type", "boolean"),
+                ImmutableMap.of("name", "time", "type", "timestamp", "format", "%Y-%m-%d %H:%M:%S"),
+                ImmutableMap.of("name", "tags", "type", "json"),
+                ImmutableMap.of("name", "a/b", "type", "string")));
+
+        transaction(config, fileInput(
+                "{\"id\":1,\"user\":{\"name\":\"embulk\",\"age\":5},\"scores\":[1,2.5],\"ok\":true,"
+                        + "\"time\":\"2017-07-14 02:40:00\",\"tags\":[\"a\",{\"b\":null}],\"a/b\":{\"c\":1},\"x\":{\"y\":[1,{}]}}",
+                "{}",
+                "{\"id\":\"2\",\"user\":\"embulk\",\"scores\":[1],\"ok\":null,\"a/b\":10}",
+                "{\"id\":1.5}", // this record should be skipped.
+                "{\"time\":\"invalid\"}", // this record should be skipped.
+                "[1, 2, 3]", // this record should be skipped.
+                "{\"id\":3}"));
+
+        List<Object[]> records = Pages.toObjects(schema(config), output.pages);
+        assertEquals(4, records.size());
+
+        Object[] record = records.get(0);
+        assertEquals(1L, record[0]);
+        assertEquals("embulk", record[1]);
+        assertEquals(2.5, record[2]);
+        assertEquals(true, record[3]);
+        assertEquals(Timestamp.ofEpochSecond(1500000000L), record[4]);
+        assertEquals(newArray(newString("a"), newMap(newString("b"), ValueFactory.newNil())), record[5]);
+        assertEquals("{\"c\":1}", record[6]);
+
+        assertArrayEquals(new Object[7], records.get(1));
+
+        record = records.get(2);
+        assertEquals(2L, record[0]);
+        assertEquals(null, record[1]);
+        assertEquals(null, record[2]);
+        assertEquals(null, record[3]);
+        assertEquals("10", record[6]);
+
+        assertEquals(3L, records.get(3)[0]);
+    }
+
+    @Test
+    public void useStopOnInvalidRecordWithColumns() throws Exception {
+        ConfigSource config = this.config.deepCopy()
+                .set("stop_on_invalid_record", true)
+                .set("columns", ImmutableList.of(ImmutableMap.of("name", "id", "type", "long")));
+        try {
+            transaction(config, fileInput("{\"id\":true}"));
+            fail();
+        } catch (Throwable t) {
+            assertTrue(t instanceof DataException);
+        }
+    }
+
+    @Test(expected = ConfigException.class)
+    public void checkOverlappingJsonPointers() throws Exception {
+        ConfigSource config = this.config.deepCopy().set("columns", ImmutableList.of(
+                ImmutableMap.of("name", "user", "type", "json"),
+                ImmutableMap.of("name", "user_name", "type", "string", "path", "/user/name")));
+        transaction(config, fileInput("{}"));
+    }
+
+    private Schema schema(ConfigSource config) {
+        return config.loadConfig(JsonParserPlugin.PluginTask.class).getSchemaConfig().get().toSchema();
+    }
+
     private ConfigSource config() {
         return runtime.getExec().newConfigSource();
     }
@@ -0,0 +1,243 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+import org.embulk.spi.ExecAction;
+import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.TransactionalFileInput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestLocalFileInputPlugin {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalFileInputPlugin plugin;
+
+    @Before
+    public void createPlugin() {
+        plugin = new LocalFileInputPlugin();
+    }
+
+    @Test
+    public void testGroupFilesBySize() {
+        long[] sizes = {10, 10, 10, 100, 5, 5, 5, 5};
+        assertEquals(Arrays.asList(0, 3, 4), LocalFileInputPlugin.groupFiles(sizes, 30, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), LocalFileInputPlugin.groupFiles(sizes, 1, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList(0), LocalFileInputPlugin.groupFiles(sizes, 1000, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testGroupFilesByCount() {
+        long[] sizes = {10, 10, 10, 100, 5, 5, 5, 5};
+        assertEquals(Arrays.asList(0, 3, 6), LocalFileInputPlugin.groupFiles(sizes, Long.MAX_VALUE, 3));
+        assertEquals(Arrays.asList(0, 2, 4, 6), LocalFileInputPlugin.groupFiles(sizes, 20, 2));
+    }
+
+    @Test
+    public void testGroupNoFiles() {
+        assertEquals(Collections.<Integer>emptyList(), LocalFileInputPlugin.groupFiles(new long[0], 100, 10));
+    }
+
+    @Test
+    public void testSplitSize() throws IOException {
+        writeFile("sample_01.csv", "id,name\n1,aaaa\n2,bbbb\n3,cccc\n4,dddd\n");
+        for (boolean memoryMap : new boolean[] {false, true}) {
+            ConfigSource config = config()
+                    .set("split_size", 10L)
+                    .set("memory_map", memoryMap)
+                    .set("parser", ImmutableMap.of("type", "csv", "header_line", true));
+            // ranges after the first one are read after the header line
+            assertEquals(ImmutableList.of(
+                    ImmutableList.of("id,name\n1,aaaa\n"),
+                    ImmutableList.of("id,name\n2,bbbb\n3,cccc\n"),
+                    ImmutableList.of("id,name\n4,dddd\n")),
+                    readTasks(config));
+        }
+    }
+
+    @Test
+    public void testSplitSizeWithMultiCharacterDelimiter() throws IOException {
+        writeFile("sample_01.csv", "id::name\n1::aaaa\n2::bbbb\n3::cccc\n");
+        ConfigSource config = config()
+                .set("split_size", 10L)
+                .set("parser", ImmutableMap.of("type", "csv", "header_line", true, "delimiter", "::"));
+        // files are not split
+        assertEquals(ImmutableList.of(ImmutableList.of("id::name\n1::aaaa\n2::bbbb\n3::cccc\n")), readTasks(config));
+    }
+
+    @Test
+    public void testMaxFilesPerTask() throws IOException {
+        writeFile("sample_01.csv", "1,a\n");
+        writeFile("sample_02.csv", "2,b\n");
+        writeFile("sample_03.csv", "3,c\n");
+        for (boolean memoryMap : new boolean[] {false, true}) {
+            ConfigSource config = config()
+                    .set("max_files_per_task", 2)
+                    .set("memory_map", memoryMap);
+            List<List<String>> tasks = readTasks(config);
+            assertEquals(2, tasks.size());
+            assertEquals(2, tasks.get(0).size());
+            assertEquals(1, tasks.get(1).size());
+            // files are listed in no particular order
+            assertEquals(ImmutableSet.of("1,a\n", "2,b\n", "3,c\n"),
+                    ImmutableSet.builder().addAll(tasks.get(0)).addAll(tasks.get(1)).build());
+        }
+    }
+
+    @Test
+    public void testOpenSplits() throws IOException {
+        writeFile("sample_01.csv", "1,a\n");
+        writeFile("sample_02.csv", "2,b\n");
+        writeFile("sample_03.csv", "3,c\n");
+        final ConfigSource config = config().set("max_files_per_task", 2);
+        final List<List<String>> tasks = new ArrayList<>();
+        plugin.transaction(config, new FileInputPlugin.Control() {
+                public List<TaskReport> run(TaskSource taskSource, int taskCount) {
+                    final List<TaskReport> reports = new ArrayList<>();
+                    for (int i = 0; i < taskCount; i++) {
+                        // a split reads a file of the task
+                        final List<String> files = new ArrayList<>();
+                        final List<TaskReport> splitReports = new ArrayList<>();
+                        for (int j = 0; j < plugin.getSplitCount(taskSource, i); j++) {
+                            try (TransactionalFileInput input = plugin.openSplit(taskSource, i, j)) {
+                                final List<String> splitFiles = readFiles(input);
+                                assertEquals(1, splitFiles.size());
+                                files.addAll(splitFiles);
+                                splitReports.add(input.commit());
+                            }
+                        }
+                        tasks.add(files);
+                        reports.add(plugin.mergeSplitTaskReports(taskSource, i, splitReports));
+                    }
+                    return reports;
+                }
+            });
+        assertEquals(2, tasks.size());
+        assertEquals(2, tasks.get(0).size());
+        assertEquals(1, tasks.get(1).size());
+        // files are listed in no particular order
+        assertEquals(ImmutableSet.of("1,a\n", "2,b\n", "3,c\n"),
+                ImmutableSet.builder().addAll(tasks.get(0)).addAll(tasks.get(1)).build());
+    }
+
+    @Test
+    public void testStateFile() throws IOException {
+        Path stateFile = temporaryFolder.getRoot().toPath().resolve("state.jsonl");
+        writeFile("sample_01.csv", "1,a\n");
+        writeFile("sample_02.csv", "2,b\n");
+        ConfigSource config = config().set("state_file", stateFile.toString());
+        // files are listed in no particular order
+        assertEquals(ImmutableSet.of(ImmutableList.of("1,a\n"), ImmutableList.of("2,b\n")), ImmutableSet.copyOf(readTasks(config)));
+
+        // changed files and new files are read again
+        Path changed = writeFile("sample_02.csv", "2,bb\n");
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 1000L));
+        writeFile("sample_03.csv", "3,c\n");
+        assertEquals(ImmutableSet.of(ImmutableList.of("2,bb\n"), ImmutableList.of("3,c\n")), ImmutableSet.copyOf(readTasks(config)));
+        assertEquals(ImmutableList.of(), readTasks(config));
+    }
+
+    @Test
+    public void testAppendOnly() throws IOException {
+        Path stateFile = temporaryFolder.getRoot().toPath().resolve("state.jsonl");
+        Path file = writeFile("sample_01.csv", "id,name\n1,a\n2,b");
+        ConfigSource config = config()
+                .set("state_file", stateFile.toString())
+                .set("append_only", true)
+                .set("parser", ImmutableMap.of("type", "csv", "header_line", true));
+        // the last line is read after it's completed
+        assertEquals(ImmutableList.of(ImmutableList.of("id,name\n1,a\n")), readTasks(config));
+
+        // appended lines are read after the header line
+        Files.write(file, "b\n3,c\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(ImmutableList.of(ImmutableList.of("id,name\n2,bb\n3,c\n")), readTasks(config));
+        assertEquals(ImmutableList.of(), readTasks(config));
+
+        // the LF of a CRLF appended after a CR is not read as an empty line
+        Files.write(file, "4,d\r".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(ImmutableList.of(ImmutableList.of("id,name\n4,d\r")), readTasks(config));
+        Files.write(file, "\n5,e\r\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(ImmutableList.of(ImmutableList.of("id,name\n5,e\r\n")), readTasks(config));
+    }
+
+    @Test
+    public void testStateFileIsNotWrittenInPreview() throws Exception {
+        final Path stateFile = temporaryFolder.getRoot().toPath().resolve("state.jsonl");
+        writeFile("sample_01.csv", "1,a\n");
+        Exec.doWith(runtime.getExec().forPreview(), new ExecAction<Void>() {
+                public Void run() {
+                    assertEquals(ImmutableList.of(ImmutableList.of("1,a\n")), readTasks(config().set("state_file", stateFile.toString())));
+                    return null;
+                }
+            });
+        assertFalse(Files.exists(stateFile));
+    }
+
+    private ConfigSource config() {
+        return Exec.newConfigSource()
+                .set("path_prefix", temporaryFolder.getRoot().toPath().resolve("sample_").toString());
+    }
+
+    private Path writeFile(String name, String content) throws IOException {
+        return Files.write(temporaryFolder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // returns contents of files read by each task
+    private List<List<String>> readTasks(ConfigSource config) {
+        final List<List<String>> tasks = new ArrayList<>();
+        plugin.transaction(config, new FileInputPlugin.Control() {
+                public List<TaskReport> run(TaskSource taskSource, int taskCount) {
+                    final List<TaskReport> reports = new ArrayList<>();
+                    for (int i = 0; i < taskCount; i++) {
+                        try (TransactionalFileInput input = plugin.open(taskSource, i)) {
+                            tasks.add(readFiles(input));
+                            reports.add(input.commit());
+                        }
+                    }
+                    return reports;
+                }
+            });
+        return tasks;
+    }
+
+    private static List<String> readFiles(TransactionalFileInput input) {
+        final List<String> files = new ArrayList<>();
+        while (input.nextFile()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Buffer buffer;
+            while ((buffer = input.poll()) != null) {
+                out.write(buffer.array(), buffer.offset(), buffer.limit());
+                buffer.release();
+            }
+            files.add(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,104 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestLocalFileLister {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void createFiles() throws IOException {
+        root = temporaryFolder.getRoot().toPath();
+        for (String dir : new String[] {"sample_a", "sample_b/c", "sample_b/d/e", "other"}) {
+            Files.createDirectories(root.resolve(dir));
+        }
+        for (String file : new String[] {"sample_01.csv", "sample_02.csv", "other.csv", "sample_a/1.csv", "sample_a/2.csv",
+                                         "sample_b/3.csv", "sample_b/c/4.csv", "sample_b/d/5.csv", "sample_b/d/e/6.csv", "other/7.csv"}) {
+            Files.write(root.resolve(file), new byte[] {'a'});
+        }
+        Files.createSymbolicLink(root.resolve("sample_link"), root.resolve("sample_a"));
+        Files.createSymbolicLink(root.resolve("sample_b/link.csv"), root.resolve("sample_01.csv"));
+    }
+
+    // lists files in the same way as LocalFileInputPlugin did with Files.walkFileTree
+    private static List<String> walkFileTree(final Path directory, final String fileNamePrefix, final String lastPath,
+            boolean followSymlinks) throws IOException {
+        final List<String> files = new ArrayList<>();
+        EnumSet<FileVisitOption> opts = followSymlinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+        Files.walkFileTree(directory, opts, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                    if (path.equals(directory)) {
+                        return FileVisitResult.CONTINUE;
+                    } else if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    } else if (path.getParent().equals(directory) && !path.getFileName().toString().startsWith(fileNamePrefix)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                    if (Files.isDirectory(path.toRealPath())) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (lastPath != null && path.toString().compareTo(lastPath) <= 0) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (!path.getParent().equals(directory) || path.getFileName().toString().startsWith(fileNamePrefix)) {
+                        files.add(path.toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        return files;
+    }
+
+    private void assertSameAsWalkFileTree(String fileNamePrefix, String lastPath, boolean followSymlinks) throws IOException {
+        List<String> expected = walkFileTree(root, fileNamePrefix, lastPath, followSymlinks);
+        for (int parallelism = 1; parallelism <= 4; parallelism++) {
+            assertEquals(expected, new LocalFileLister(root, fileNamePrefix, lastPath, followSymlinks).listFiles(parallelism));
+        }
+    }
+
+    @Test
+    public void testSameAsWalkFileTree() throws IOException {
+        assertSameAsWalkFileTree("", null, false);
+        assertSameAsWalkFileTree("sample_", null, false);
+        assertSameAsWalkFileTree("sample_", root.resolve("sample_a/1.csv").toString(), false);
+        assertSameAsWalkFileTree("sample_", root.resolve("sample_b/c").toString(), false);
+        assertSameAsWalkFileTree("", null, true);
+        assertSameAsWalkFileTree("sample_", root.resolve("sample_02.csv").toString(), true);
+    }
+
+    @Test
+    public void testSymbolicLinks() throws IOException {
+        List<String> files = new LocalFileLister(root, "sample_", null, false).listFiles(2);
+        assertEquals(true, files.contains(root.resolve("sample_b/link.csv").toString()));
+        assertEquals(false, files.contains(root.resolve("sample_link/1.csv").toString()));
+        assertEquals(true, new LocalFileLister(root, "sample_", null, true).listFiles(2).contains(root.resolve("sample_link/1.csv").toString()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotFound() throws IOException {
+        new LocalFileLister(root.resolve("not_found"), "", null, false).listFiles(2);
+    }
+}
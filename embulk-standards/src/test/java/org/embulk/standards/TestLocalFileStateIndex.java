@@ -0,0 +1,79 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.embulk.standards.LocalFileInputPlugin.FileState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestLocalFileStateIndex {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadMissingFile() throws IOException {
+        LocalFileStateIndex index = LocalFileStateIndex.read(temporaryFolder.getRoot().toPath().resolve("state.jsonl"));
+        assertNull(index.get("a.csv"));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("state.jsonl");
+        LocalFileStateIndex.write(indexPath, ImmutableList.of(new FileState("a.csv", 10L, 1000L, 10L), new FileState("b.csv", 20L, 2000L, 15L)));
+        // overwritten atomically
+        LocalFileStateIndex.write(indexPath, ImmutableList.of(new FileState("a.csv", 30L, 3000L, 25L)));
+
+        LocalFileStateIndex index = LocalFileStateIndex.read(indexPath);
+        FileState state = index.get("a.csv");
+        assertEquals("a.csv", state.getPath());
+        assertEquals(30L, state.getSize());
+        assertEquals(3000L, state.getModifiedTime());
+        assertEquals(25L, state.getOffset());
+        assertNull(index.get("b.csv"));
+        assertEquals(Arrays.asList("state.jsonl"), Arrays.asList(temporaryFolder.getRoot().list()));
+    }
+
+    @Test
+    public void testFindLastLineEnd() throws IOException {
+        Path path = temporaryFolder.newFile("a.csv").toPath();
+        Files.write(path, "a,b\nc,d\ne,".getBytes(StandardCharsets.UTF_8));
+        assertEquals(8L, LocalFileStateIndex.findLastLineEnd(path, 0L, 10L));
+        assertEquals(8L, LocalFileStateIndex.findLastLineEnd(path, 4L, 10L));
+        assertEquals(4L, LocalFileStateIndex.findLastLineEnd(path, 0L, 7L));
+        // no newlines after the start
+        assertEquals(8L, LocalFileStateIndex.findLastLineEnd(path, 8L, 10L));
+    }
+
+    @Test
+    public void testFindLastLineEndWithCarriageReturns() throws IOException {
+        Path path = temporaryFolder.newFile("a.csv").toPath();
+        Files.write(path, "a,b\rc,d\r\ne,".getBytes(StandardCharsets.UTF_8));
+        assertEquals(9L, LocalFileStateIndex.findLastLineEnd(path, 0L, 11L));
+        assertEquals(4L, LocalFileStateIndex.findLastLineEnd(path, 0L, 7L));
+        // a CR at the end may be followed by a LF appended later
+        assertEquals(8L, LocalFileStateIndex.findLastLineEnd(path, 0L, 8L));
+        assertEquals(9L, LocalFileStateIndex.skipLineFeedAfterCarriageReturn(path, 8L));
+        assertEquals(4L, LocalFileStateIndex.skipLineFeedAfterCarriageReturn(path, 4L));
+        assertEquals(0L, LocalFileStateIndex.skipLineFeedAfterCarriageReturn(path, 0L));
+        assertEquals(11L, LocalFileStateIndex.skipLineFeedAfterCarriageReturn(path, 11L));
+    }
+
+    @Test
+    public void testFindLastLineEndInLargeFile() throws IOException {
+        Path path = temporaryFolder.newFile("a.csv").toPath();
+        byte[] bytes = new byte[200 * 1024];
+        Arrays.fill(bytes, (byte) 'a');
+        bytes[1000] = '\n';
+        Files.write(path, bytes);
+        assertEquals(1001L, LocalFileStateIndex.findLastLineEnd(path, 0L, bytes.length));
+        assertEquals(2000L, LocalFileStateIndex.findLastLineEnd(path, 2000L, bytes.length));
+    }
+}
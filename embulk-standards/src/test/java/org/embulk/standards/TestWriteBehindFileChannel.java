@@ -0,0 +1,67 @@
+package org.embulk.standards;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.embulk.spi.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestWriteBehindFileChannel {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWrite() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("out.csv");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        WriteBehindFileChannel channel = new WriteBehindFileChannel(
+                FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE), 2, 100L, true, "test-writer");
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = String.format("%d,line%d\n", i, i).getBytes(StandardCharsets.UTF_8);
+            expected.write(bytes);
+            // a buffer with an offset
+            Buffer buffer = Buffer.allocate(bytes.length + 3);
+            buffer.setBytes(3, bytes, 0, bytes.length);
+            buffer.offset(3).limit(bytes.length);
+            channel.write(buffer);
+        }
+        channel.close();
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("out.csv");
+        WriteBehindFileChannel channel = new WriteBehindFileChannel(
+                FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE), 2, 0L, false, "test-writer");
+        channel.write(Buffer.copyOf(new byte[] {'a'}));
+        channel.abort();
+        channel.close();
+    }
+
+    @Test
+    public void testFailure() throws IOException {
+        Path path = temporaryFolder.newFile("out.csv").toPath();
+        WriteBehindFileChannel channel = new WriteBehindFileChannel(
+                FileChannel.open(path, StandardOpenOption.READ), 2, 0L, false, "test-writer");
+        try {
+            for (int i = 0; i < 100; i++) {
+                channel.write(Buffer.copyOf(new byte[] {'a'}));
+            }
+            channel.close();
+            fail();
+        } catch (NonWritableChannelException ex) {
+            // failure of the writer thread is thrown by write() or close()
+        }
+    }
+}